@@ -0,0 +1,91 @@
+package com.seanclen.capstone.benchmark;
+
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.repository.InMemoryAppointmentRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Two-term keyword searches over the description index for the first ten matches. Descriptions are two
+ * to four words drawn with a skew, so some terms are far more common than others. The score should
+ * depend on the limit, not on the number of appointments.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AppointmentSearchBenchmark {
+    private static final String[] WORDS = {"checkup", "mri", "follow", "up", "dental", "cleaning", "consult",
+            "xray", "blood", "test", "physical", "therapy", "vaccine", "review", "results", "surgery", "prep",
+            "eye", "exam", "annual"};
+    private static final int QUERIES = 4096;
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    private InMemoryAppointmentRepository appointments;
+    private String[] queries;
+
+    @Setup
+    public void load() {
+        Random random = new Random(42);
+        appointments = new InMemoryAppointmentRepository();
+        List<Appointment> batch = new ArrayList<>(10_000);
+        for (int n = 1; n <= size; n++) {
+            batch.add(new Appointment(String.valueOf(n), Datasets.START.plusSeconds(n), description(random)));
+            if (batch.size() == 10_000 || n == size) {
+                appointments.saveAll(batch);
+                batch = new ArrayList<>(10_000);
+            }
+        }
+        queries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+        }
+    }
+
+    /**
+     * Per-thread random source, so picking a query allocates nothing.
+     */
+    @State(Scope.Thread)
+    public static class Worker {
+        private final SplittableRandom random = new SplittableRandom(42);
+
+        int next(int bound) {
+            return random.nextInt(bound);
+        }
+    }
+
+    @Benchmark
+    public List<Appointment> search(Worker worker) {
+        return appointments.search(queries[worker.next(QUERIES)], null, null, 10);
+    }
+
+    // Two to four words, skewed so that some terms are far more common than others.
+    private static String description(Random random) {
+        StringBuilder description = new StringBuilder();
+        int words = 2 + random.nextInt(3);
+        for (int i = 0; i < words; i++) {
+            int word = (int) (WORDS.length * Math.pow(random.nextDouble(), 2));
+            description.append(i == 0 ? "" : " ").append(WORDS[word]);
+        }
+        return description.toString();
+    }
+}
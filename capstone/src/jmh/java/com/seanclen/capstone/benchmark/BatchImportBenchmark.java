@@ -0,0 +1,95 @@
+package com.seanclen.capstone.benchmark;
+
+import com.seanclen.capstone.CapstoneApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Importing contacts over real HTTP against the embedded server: one POST /api/contacts per contact,
+ * or all of them in one POST /api/contacts/batch. Both import count contacts per operation, so the
+ * ratio of their scores is the speedup of the batch endpoint.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchImportBenchmark {
+    @Param({"100", "1000"})
+    public int count;
+
+    private ConfigurableApplicationContext application;
+    private HttpClient client;
+    private HttpRequest create;
+    private HttpRequest batch;
+
+    @Setup
+    public void start() {
+        application = SpringApplication.run(CapstoneApplication.class, "--server.port=0",
+                "--capstone.persistence.enabled=false", "--spring.main.banner-mode=off");
+        URI base = URI.create("http://localhost:" + ((WebServerApplicationContext) application).getWebServer().getPort());
+        client = HttpClient.newHttpClient();
+        create = HttpRequest.newBuilder(base.resolve("/api/contacts?firstName=Jane&lastName=Doe&phone=5551234567&address=1%20Main%20St"))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            body.append("{\"op\":\"create\",\"firstName\":\"Jane\",\"lastName\":\"Doe\",")
+                    .append("\"phone\":\"5551234567\",\"address\":\"1 Main St\"}\n");
+        }
+        batch = HttpRequest.newBuilder(base.resolve("/api/contacts/batch"))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+    }
+
+    @TearDown
+    public void stop() {
+        application.close();
+    }
+
+    @Benchmark
+    public int importOneByOne() throws IOException, InterruptedException {
+        for (int i = 0; i < count; i++) {
+            send(create, 201);
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int importInOneBatch() throws IOException, InterruptedException {
+        send(batch, 200);
+        return count;
+    }
+
+    /**
+     * Send a request, failing the benchmark on an unexpected status rather than timing errors.
+     */
+    private void send(HttpRequest request, int expectedStatus) throws IOException, InterruptedException {
+        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status != expectedStatus) {
+            throw new IllegalStateException("Unexpected status " + status);
+        }
+    }
+}
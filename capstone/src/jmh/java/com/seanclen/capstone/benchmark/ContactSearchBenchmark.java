@@ -0,0 +1,95 @@
+package com.seanclen.capstone.benchmark;
+
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.repository.InMemoryContactRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search-as-you-type over the contact name index, and inbound-call lookups in the phone index. Names are
+ * random strings of 3 to 10 letters rather than the few names of Datasets, so prefixes of one to three
+ * letters match anywhere from a handful to tens of thousands of contacts. Phone numbers are random, and
+ * looked up among those stored. Run with -prof gc to check that phone lookups allocate nothing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContactSearchBenchmark {
+    private static final int PREFIXES = 4096;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private InMemoryContactRepository contacts;
+    private String[] prefixes;
+    private String[] phones;
+
+    @Setup
+    public void load() {
+        Random random = new Random(42);
+        contacts = new InMemoryContactRepository();
+        phones = new String[size];
+        List<Contact> batch = new ArrayList<>(10_000);
+        for (int n = 1; n <= size; n++) {
+            phones[n - 1] = String.format("%010d", random.nextLong(10_000_000_000L));
+            batch.add(new Contact(String.valueOf(n), randomName(random), randomName(random), phones[n - 1], "1 Main St"));
+            if (batch.size() == 10_000 || n == size) {
+                contacts.saveAll(batch);
+                batch = new ArrayList<>(10_000);
+            }
+        }
+        prefixes = new String[PREFIXES];
+        for (int i = 0; i < PREFIXES; i++) {
+            prefixes[i] = randomName(random).substring(0, 1 + random.nextInt(3));
+        }
+    }
+
+    /**
+     * Per-thread random source, so picking a prefix allocates nothing.
+     */
+    @State(Scope.Thread)
+    public static class Worker {
+        private final SplittableRandom random = new SplittableRandom(42);
+
+        int next(int bound) {
+            return random.nextInt(bound);
+        }
+    }
+
+    @Benchmark
+    public List<Contact> findByNamePrefix(Worker worker) {
+        return contacts.findByNamePrefix(prefixes[worker.next(PREFIXES)], 10);
+    }
+
+    @Benchmark
+    public List<Contact> findByPhone(Worker worker) {
+        return contacts.findByPhone(phones[worker.next(size)]);
+    }
+
+    private static String randomName(Random random) {
+        char[] name = new char[3 + random.nextInt(8)];
+        name[0] = (char) ('A' + random.nextInt(26));
+        for (int i = 1; i < name.length; i++) {
+            name[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(name);
+    }
+}
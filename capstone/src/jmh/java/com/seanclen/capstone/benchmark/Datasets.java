@@ -0,0 +1,67 @@
+package com.seanclen.capstone.benchmark;
+
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.repository.InMemoryAppointmentRepository;
+import com.seanclen.capstone.repository.InMemoryContactRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the repositories the benchmarks run against. Entities get the IDs 1..size, as the repositories
+ * would hand them out, and appointments are spread one minute apart from a year from now, so that
+ * they stay valid for as long as a benchmark runs.
+ */
+final class Datasets {
+    static final LocalDateTime START = LocalDateTime.now().plusYears(1).withNano(0);
+    private static final String[] FIRST_NAMES = {"James", "Mary", "John", "Patricia", "Robert", "Jennifer",
+            "Michael", "Linda", "David", "Elizabeth"};
+    private static final String[] LAST_NAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia",
+            "Miller", "Davis", "Rodriguez", "Martinez"};
+    private static final String[] DESCRIPTIONS = {"Annual checkup", "Dental cleaning", "MRI follow-up",
+            "Blood test", "Physical therapy", "Eye exam"};
+    private static final int BATCH = 10_000;
+
+    private Datasets() {
+    }
+
+    static Contact contact(int n) {
+        return new Contact(String.valueOf(n), FIRST_NAMES[n % FIRST_NAMES.length],
+                LAST_NAMES[n / FIRST_NAMES.length % LAST_NAMES.length],
+                String.valueOf(5_550_000_000L + n % 10_000_000), n + " Main St");
+    }
+
+    static Appointment appointment(int n) {
+        return new Appointment(String.valueOf(n), START.plusMinutes(n), DESCRIPTIONS[n % DESCRIPTIONS.length]);
+    }
+
+    static InMemoryContactRepository contacts(int size) {
+        InMemoryContactRepository repository = new InMemoryContactRepository();
+        List<Contact> batch = new ArrayList<>(BATCH);
+        for (int n = 1; n <= size; n++) {
+            batch.add(contact(n));
+            if (batch.size() == BATCH || n == size) {
+                repository.saveAll(batch);
+                batch = new ArrayList<>(BATCH);
+            }
+        }
+        repository.restoreIdCounter(size);
+        return repository;
+    }
+
+    static InMemoryAppointmentRepository appointments(int size) {
+        InMemoryAppointmentRepository repository = new InMemoryAppointmentRepository();
+        List<Appointment> batch = new ArrayList<>(BATCH);
+        for (int n = 1; n <= size; n++) {
+            batch.add(appointment(n));
+            if (batch.size() == BATCH || n == size) {
+                repository.saveAll(batch);
+                batch = new ArrayList<>(BATCH);
+            }
+        }
+        repository.restoreIdCounter(size);
+        return repository;
+    }
+}
@@ -0,0 +1,64 @@
+package com.seanclen.capstone.benchmark;
+
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.repository.InMemoryContactRepository;
+import com.seanclen.capstone.repository.Page;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of reading every contact: findAll copies the whole repository into a sorted list, while
+ * stream and findPage walk it without a full copy. Compare them at the same size to see what the copy
+ * costs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FindAllBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private InMemoryContactRepository contacts;
+
+    @Setup
+    public void load() {
+        contacts = Datasets.contacts(size);
+    }
+
+    @Benchmark
+    public List<Contact> findAll() {
+        return contacts.findAll();
+    }
+
+    @Benchmark
+    public long streamAll() {
+        return contacts.stream().count();
+    }
+
+    @Benchmark
+    public int pageThroughAll() {
+        int read = 0;
+        String cursor = null;
+        do {
+            Page<Contact> page = contacts.findPage(Page.decodeCursor(cursor), 1000);
+            read += page.getItems().size();
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return read;
+    }
+}
@@ -0,0 +1,77 @@
+package com.seanclen.capstone.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.model.Contact;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of the model classes, with the settings Spring Boot gives the application's
+ * ObjectMapper (Java time support, dates written as ISO-8601 strings): a single entity, and a list of
+ * 100 as a page of results is written.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+    private ObjectMapper objectMapper;
+    private Contact contact;
+    private Appointment appointment;
+    private List<Contact> contacts;
+    private List<Appointment> appointments;
+
+    @Setup
+    public void create() {
+        objectMapper = JsonMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        contact = Datasets.contact(1);
+        appointment = Datasets.appointment(1);
+        contacts = new ArrayList<>();
+        appointments = new ArrayList<>();
+        for (int n = 1; n <= 100; n++) {
+            contacts.add(Datasets.contact(n));
+            appointments.add(Datasets.appointment(n));
+        }
+    }
+
+    @Benchmark
+    public byte[] writeContact() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(contact);
+    }
+
+    @Benchmark
+    public byte[] writeAppointment() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(appointment);
+    }
+
+    @Benchmark
+    public byte[] writeContactList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(contacts);
+    }
+
+    @Benchmark
+    public byte[] writeAppointmentList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(appointments);
+    }
+}
@@ -0,0 +1,83 @@
+package com.seanclen.capstone.benchmark;
+
+import com.seanclen.capstone.CapstoneApplication;
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.service.ContactService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the timers of MetricsAspect add to GET /api/contacts/{id}, with and without the aspect
+ * (capstone.metrics.enabled). The instrumentation on that path is the service proxy and its timer
+ * around getContactById (findById itself is not timed at the repository), so the difference between
+ * the two getContactById scores is their cost, and the request scores show it against a whole request
+ * over real HTTP against the embedded server. The target is under 2% of the findById path, which a
+ * proxied, timed call cannot meet on a lookup of a few nanoseconds; see the README for measurements.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+    @Param({"true", "false"})
+    public boolean metrics;
+
+    private ConfigurableApplicationContext application;
+    private ContactService contactService;
+    private HttpClient client;
+    private HttpRequest request;
+    private String id;
+
+    @Setup
+    public void start() {
+        application = SpringApplication.run(CapstoneApplication.class, "--server.port=0",
+                "--capstone.persistence.enabled=false", "--capstone.metrics.enabled=" + metrics,
+                "--spring.main.banner-mode=off");
+        contactService = application.getBean(ContactService.class);
+        id = contactService.createContact("Jane", "Doe", "5551234567", "1 Main St").getId();
+        URI base = URI.create("http://localhost:" + ((WebServerApplicationContext) application).getWebServer().getPort());
+        client = HttpClient.newHttpClient();
+        request = HttpRequest.newBuilder(base.resolve("/api/contacts/" + id)).GET().build();
+    }
+
+    @TearDown
+    public void stop() {
+        application.close();
+    }
+
+    @Benchmark
+    public Contact getContactById() {
+        return contactService.getContactById(id);
+    }
+
+    @Benchmark
+    public int request() throws IOException, InterruptedException {
+        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status != 200) {
+            throw new IllegalStateException("Unexpected status " + status);
+        }
+        return status;
+    }
+}
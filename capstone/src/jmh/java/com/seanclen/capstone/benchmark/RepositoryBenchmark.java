@@ -0,0 +1,139 @@
+package com.seanclen.capstone.benchmark;
+
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.repository.InMemoryAppointmentRepository;
+import com.seanclen.capstone.repository.InMemoryContactRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * CRUD operations of the in-memory repositories at several dataset sizes, on one thread and on every
+ * core at once (the *Parallel benchmarks). Reads and updates pick uniformly random existing IDs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepositoryBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private InMemoryContactRepository contacts;
+    private InMemoryAppointmentRepository appointments;
+    // The stored instances, by ID - 1, so that picking one allocates nothing.
+    private Contact[] storedContacts;
+    private Appointment[] storedAppointments;
+
+    @Setup
+    public void load() {
+        contacts = Datasets.contacts(size);
+        appointments = Datasets.appointments(size);
+        storedContacts = contacts.findAll().toArray(new Contact[0]);
+        storedAppointments = appointments.findAll().toArray(new Appointment[0]);
+    }
+
+    /**
+     * Per-thread random source, and an ID of its own for create-and-delete, outside the loaded range.
+     */
+    @State(Scope.Thread)
+    public static class Worker {
+        private static final AtomicInteger THREADS = new AtomicInteger();
+
+        private final SplittableRandom random = new SplittableRandom(THREADS.get());
+        private Contact newContact;
+        private Appointment newAppointment;
+
+        @Setup
+        public void create() {
+            int n = 100_000_000 + THREADS.incrementAndGet();
+            newContact = Datasets.contact(n);
+            newAppointment = Datasets.appointment(n);
+        }
+
+        int next(int size) {
+            return random.nextInt(size);
+        }
+    }
+
+    @Benchmark
+    public Contact findContact(Worker worker) {
+        return contacts.findById(storedContacts[worker.next(size)].getId());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Contact findContactParallel(Worker worker) {
+        return contacts.findById(storedContacts[worker.next(size)].getId());
+    }
+
+    @Benchmark
+    public Contact updateContact(Worker worker) {
+        return contacts.save(storedContacts[worker.next(size)]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Contact updateContactParallel(Worker worker) {
+        return contacts.save(storedContacts[worker.next(size)]);
+    }
+
+    @Benchmark
+    public boolean createAndDeleteContact(Worker worker) {
+        contacts.save(worker.newContact);
+        return contacts.deleteById(worker.newContact.getId());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean createAndDeleteContactParallel(Worker worker) {
+        contacts.save(worker.newContact);
+        return contacts.deleteById(worker.newContact.getId());
+    }
+
+    @Benchmark
+    public Appointment findAppointment(Worker worker) {
+        return appointments.findById(storedAppointments[worker.next(size)].getId());
+    }
+
+    @Benchmark
+    public Appointment updateAppointment(Worker worker) {
+        return appointments.save(storedAppointments[worker.next(size)]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Appointment updateAppointmentParallel(Worker worker) {
+        return appointments.save(storedAppointments[worker.next(size)]);
+    }
+
+    @Benchmark
+    public boolean createAndDeleteAppointment(Worker worker) {
+        appointments.save(worker.newAppointment);
+        return appointments.deleteById(worker.newAppointment.getId());
+    }
+
+    @Benchmark
+    public List<Appointment> findAppointmentsInWindow(Worker worker) {
+        // A day's worth of the one-minute spacing, starting anywhere in the data.
+        Appointment first = storedAppointments[worker.next(size)];
+        return appointments.findByDateBetween(first.getDate(), first.getDate().plusDays(1), 100);
+    }
+}
@@ -0,0 +1,70 @@
+package com.seanclen.capstone.benchmark;
+
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.service.ContactService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ContactService over an in-memory repository: the work a controller does per request below the HTTP
+ * layer, validation included.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServiceBenchmark {
+    @Param({"1000", "100000"})
+    public int size;
+
+    private ContactService contactService;
+    private String[] ids;
+
+    @Setup
+    public void load() {
+        contactService = new ContactService(Datasets.contacts(size));
+        ids = contactService.getAllContacts().stream().map(Contact::getId).toArray(String[]::new);
+    }
+
+    @State(Scope.Thread)
+    public static class Worker {
+        private final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Benchmark
+    public Contact getContactById(Worker worker) {
+        return contactService.getContactById(ids[worker.random.nextInt(size)]);
+    }
+
+    @Benchmark
+    public Contact updateContact(Worker worker) {
+        return contactService.updateContact(ids[worker.random.nextInt(size)], "Jennifer", "Rodriguez",
+                "5551234567", "1234 Main Street");
+    }
+
+    @Benchmark
+    public boolean createAndDeleteContact() {
+        Contact contact = contactService.createContact("Jennifer", "Rodriguez", "5551234567", "1234 Main Street");
+        return contactService.deleteContact(contact.getId());
+    }
+
+    @Benchmark
+    public List<Contact> searchContacts() {
+        return contactService.searchContacts("jo", ContactService.DEFAULT_SEARCH_LIMIT);
+    }
+}
@@ -0,0 +1,95 @@
+package com.seanclen.capstone.benchmark;
+
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.model.Validation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Constructing the model classes, which validates every attribute, and rejecting invalid input.
+ * validateContact and rejectInvalidContact check a whole contact with Validation; the legacy*
+ * benchmarks run the checks the model used before it, which trimmed every string and stopped at the
+ * first failure, for comparison. Run with -prof gc to see the allocation of each.
+ * The inputs are fields rather than constants so the JIT cannot fold the checks away.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ValidationBenchmark {
+    private String id = "1234567890";
+    private String firstName = "Jennifer";
+    private String lastName = "Rodriguez";
+    private String phone = "5551234567";
+    private String invalidPhone = "555-1234";
+    private String address = "1234 Main Street, Springfield";
+    // As typed into a form, with spaces that trim() has to copy the string to remove.
+    private String typedFirstName = " Jennifer ";
+    private LocalDateTime date = Datasets.START;
+    private String description = "Annual checkup with bloodwork";
+
+    @Benchmark
+    public Contact newContact() {
+        return new Contact(id, firstName, lastName, phone, address);
+    }
+
+    @Benchmark
+    public Appointment newAppointment() {
+        return new Appointment(id, date, description);
+    }
+
+    @Benchmark
+    public boolean isValidPhone() {
+        return Contact.isValidPhone(phone);
+    }
+
+    @Benchmark
+    public Object rejectContact() {
+        try {
+            return new Contact(id, firstName, lastName, invalidPhone, address);
+        } catch (IllegalArgumentException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public int validateContact() {
+        return Validation.contact(id, typedFirstName, lastName, phone, address);
+    }
+
+    @Benchmark
+    public boolean legacyValidateContact() {
+        return legacyIsValid(id, 10) && legacyIsValid(typedFirstName, 10) && legacyIsValid(lastName, 10)
+                && phone != null && phone.trim().length() == 10 && legacyIsValid(address, 30);
+    }
+
+    @Benchmark
+    public int rejectInvalidContact() {
+        return Validation.contact(id, typedFirstName, lastName, invalidPhone, address);
+    }
+
+    @Benchmark
+    public boolean legacyRejectInvalidContact() {
+        return legacyIsValid(id, 10) && legacyIsValid(typedFirstName, 10) && legacyIsValid(lastName, 10)
+                && invalidPhone != null && invalidPhone.trim().length() == 10 && legacyIsValid(address, 30);
+    }
+
+    // The checks of Contact before Validation: trim() allocates a copy of any string with spaces
+    // around it, and was called twice per check.
+    private static boolean legacyIsValid(String value, int max) {
+        return value != null && value.trim().length() != 0 && value.trim().length() <= max;
+    }
+}
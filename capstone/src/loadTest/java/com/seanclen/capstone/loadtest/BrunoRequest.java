@@ -0,0 +1,115 @@
+package com.seanclen.capstone.loadtest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * One request of the Bruno collection in capstone-testing, read from its .bru file.
+ * Only what the load test replays is read: the name from the meta block, the HTTP method and URL, and
+ * a JSON body if there is one. The URL keeps its {{host}} placeholder.
+ * @author Sean Clendening
+ */
+final class BrunoRequest {
+    private static final Set<String> METHODS = Set.of("get", "post", "put", "patch", "delete");
+
+    private final String name;
+    private final String method;
+    private final String url;
+    private final String jsonBody;
+
+    BrunoRequest(String name, String method, String url, String jsonBody) {
+        this.name = name;
+        this.method = method;
+        this.url = url;
+        this.jsonBody = jsonBody;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getMethod() {
+        return method;
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the JSON body, or null if the request is sent without one
+     */
+    String getJsonBody() {
+        return jsonBody;
+    }
+
+    /**
+     * Read every request of a collection, skipping the collection and environment files.
+     * @param collection the directory holding bruno.json
+     * @return the requests, ordered by file path
+     */
+    static List<BrunoRequest> loadCollection(Path collection) {
+        try (Stream<Path> files = Files.walk(collection)) {
+            List<BrunoRequest> requests = new ArrayList<>();
+            for (Path file : files.sorted().toList()) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(".bru") && !fileName.equals("collection.bru")
+                        && !collection.relativize(file).startsWith("environments")) {
+                    requests.add(parse(Files.readString(file)));
+                }
+            }
+            return requests;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parse one .bru file. Blocks start with "name {" and end with "}" at the start of a line.
+     * @param text the content of the file
+     * @return the request
+     * @throws IllegalArgumentException if the file has no name or no HTTP method block
+     */
+    static BrunoRequest parse(String text) {
+        String name = null;
+        String method = null;
+        String url = null;
+        String jsonBody = null;
+        String block = null;
+        StringBuilder body = new StringBuilder();
+        for (String line : text.split("\\R")) {
+            if (block == null) {
+                if (line.endsWith("{") && !line.startsWith(" ")) {
+                    block = line.substring(0, line.length() - 1).trim();
+                    body.setLength(0);
+                }
+            } else if (line.equals("}")) {
+                if (block.equals("body:json")) {
+                    jsonBody = body.toString().strip();
+                }
+                block = null;
+            } else if (block.equals("body:json")) {
+                body.append(line).append('\n');
+            } else {
+                String entry = line.trim();
+                if (block.equals("meta") && entry.startsWith("name:")) {
+                    name = entry.substring("name:".length()).trim();
+                } else if (METHODS.contains(block) && entry.startsWith("url:")) {
+                    method = block.toUpperCase(Locale.ROOT);
+                    url = entry.substring("url:".length()).trim();
+                }
+            }
+        }
+        if (name == null || method == null) {
+            throw new IllegalArgumentException("Not a Bruno HTTP request: " + text);
+        }
+        return new BrunoRequest(name, method, url, jsonBody);
+    }
+}
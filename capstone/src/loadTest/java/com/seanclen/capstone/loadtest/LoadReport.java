@@ -0,0 +1,156 @@
+package com.seanclen.capstone.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and outcome counts per scenario.
+ * Two latencies are recorded for every request:
+ * - response time, from the moment the request was due to be sent by the arrival schedule to the
+ *   moment its response arrived. This is what a user arriving at that moment would have seen, so it
+ *   includes any time the request spent waiting because the generator or the connection was held up
+ *   by earlier requests: coordinated omission is corrected by construction.
+ * - service time, from the moment the request was actually sent. It leaves that waiting out, and is
+ *   reported only to show how much of the response time it is.
+ * Errors are transport failures, timeouts, 5xx responses and requests that could not be sent (no
+ * entity left to delete, or too many requests in flight). 4xx responses are counted by status but
+ * are not errors: the collection's fixed inputs, such as a phone number nobody has, can legitimately
+ * produce a 404.
+ * The response bytes received are counted per scenario, body only, to compare runs with and without
+ * conditional requests.
+ * @author Sean Clendening
+ */
+final class LoadReport {
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final Map<String, Outcomes> scenarios = new LinkedHashMap<>();
+
+    LoadReport(List<Scenario> mix) {
+        for (Scenario scenario : mix) {
+            scenarios.put(scenario.getName(), new Outcomes());
+        }
+    }
+
+    /**
+     * Record a response.
+     * @param scenario the scenario of the request
+     * @param intended when the request was due, in System.nanoTime
+     * @param sent when it was sent
+     * @param done when its response arrived
+     * @param status the response status
+     * @param bytes the length of the response body
+     */
+    void record(Scenario scenario, long intended, long sent, long done, int status, long bytes) {
+        Outcomes outcomes = scenarios.get(scenario.getName());
+        outcomes.bytes.add(bytes);
+        outcomes.responseTimes.recordValue(done - intended);
+        outcomes.serviceTimes.recordValue(done - sent);
+        outcomes.statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+        if (status >= 500) {
+            outcomes.errors.increment();
+        }
+    }
+
+    /**
+     * Record a request that failed without a response, or was never sent.
+     * @param scenario the scenario of the request
+     * @param intended when the request was due
+     * @param done when it failed; equal to intended if it was never sent
+     * @param reason a short description, such as the exception class
+     */
+    void recordFailure(Scenario scenario, long intended, long done, String reason) {
+        Outcomes outcomes = scenarios.get(scenario.getName());
+        outcomes.responseTimes.recordValue(done - intended);
+        outcomes.errors.increment();
+        outcomes.failures.computeIfAbsent(reason, r -> new LongAdder()).increment();
+    }
+
+    /**
+     * Print a summary table, and write each scenario's response time distribution, and that of all of
+     * them together, as HdrHistogram percentile files (.hgrm, in milliseconds) that can be plotted.
+     * @param out where to print the table
+     * @param seconds the length of the measurement, to compute throughput
+     * @param directory where to write the .hgrm files
+     * @return the error rate over all scenarios, between 0 and 1
+     */
+    double print(PrintStream out, double seconds, Path directory) {
+        Histogram allResponses = new Histogram(SIGNIFICANT_DIGITS);
+        Histogram allServices = new Histogram(SIGNIFICANT_DIGITS);
+        long allErrors = 0;
+        long allBytes = 0;
+        List<String> details = new ArrayList<>();
+        out.printf("%-28s %9s %9s %8s %9s %9s %9s %9s %12s %10s%n", "Scenario", "Requests", "Req/s", "Errors",
+                "p50 ms", "p99 ms", "p99.9 ms", "max ms", "svc p99 ms", "KB/s");
+        for (Map.Entry<String, Outcomes> entry : scenarios.entrySet()) {
+            Outcomes outcomes = entry.getValue();
+            Histogram responses = outcomes.responseTimes.getIntervalHistogram();
+            Histogram services = outcomes.serviceTimes.getIntervalHistogram();
+            long errors = outcomes.errors.sum();
+            long bytes = outcomes.bytes.sum();
+            printRow(out, entry.getKey(), responses, services, errors, bytes, seconds);
+            write(directory.resolve(fileName(entry.getKey())), responses);
+            allResponses.add(responses);
+            allServices.add(services);
+            allErrors += errors;
+            allBytes += bytes;
+            details.add(entry.getKey() + ": statuses " + new TreeMap<>(outcomes.statuses)
+                    + (outcomes.failures.isEmpty() ? "" : ", failures " + outcomes.failures));
+        }
+        printRow(out, "All", allResponses, allServices, allErrors, allBytes, seconds);
+        write(directory.resolve("all.hgrm"), allResponses);
+        out.println();
+        details.forEach(out::println);
+        return allResponses.getTotalCount() == 0 ? 0 : (double) allErrors / allResponses.getTotalCount();
+    }
+
+    private static void printRow(PrintStream out, String name, Histogram responses, Histogram services,
+                                 long errors, long bytes, double seconds) {
+        long count = responses.getTotalCount();
+        out.printf(Locale.ROOT, "%-28s %9d %9.1f %7.2f%% %9.2f %9.2f %9.2f %9.2f %12.2f %10.1f%n", name, count,
+                count / seconds, count == 0 ? 0 : 100.0 * errors / count,
+                millis(responses.getValueAtPercentile(50)), millis(responses.getValueAtPercentile(99)),
+                millis(responses.getValueAtPercentile(99.9)), millis(responses.getMaxValue()),
+                millis(services.getValueAtPercentile(99)), bytes / 1024.0 / seconds);
+    }
+
+    private static void write(Path file, Histogram histogram) {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            histogram.outputPercentileDistribution(out, NANOS_PER_MILLI);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String fileName(String scenario) {
+        return scenario.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "-") + ".hgrm";
+    }
+
+    private static double millis(long nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+
+    private static final class Outcomes {
+        // Recorders take concurrent updates without locking, from the client's completion threads.
+        private final Recorder responseTimes = new Recorder(SIGNIFICANT_DIGITS);
+        private final Recorder serviceTimes = new Recorder(SIGNIFICANT_DIGITS);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+    }
+}
@@ -0,0 +1,283 @@
+package com.seanclen.capstone.loadtest;
+
+import com.seanclen.capstone.CapstoneApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays the Bruno collection in capstone-testing as an open-model load test.
+ * Requests arrive at a fixed rate, each picking a scenario at random according to the weights of the
+ * mix, whether or not earlier requests have completed, the way independent users arrive at a real
+ * service. Latencies are measured from each request's scheduled arrival (see LoadReport), so a server
+ * that stalls is charged for every request that arrived during the stall.
+ * By default the application is started in this JVM on a random port, with persistence off; set
+ * loadtest.target to test a running server instead. Settings are read from system properties, which
+ * the Gradle loadTest task passes on from -Ploadtest.* properties:
+ * - loadtest.rate: requests per second (default 200)
+ * - loadtest.duration, loadtest.warmup: ISO-8601 durations (default PT60S and PT10S); nothing is
+ *   recorded during the warmup
+ * - loadtest.mix: comma-separated "request name=weight" pairs, names as in the .bru files
+ * - loadtest.seed: contacts and appointments to create before starting (default 10000)
+ * - loadtest.timeout: per-request timeout (default PT10S)
+ * - loadtest.maxInFlight: requests in flight at once before new arrivals fail (default 10000)
+ * - loadtest.maxErrorRate: the error rate above which the run fails (default 0.01)
+ * - loadtest.api: the API versions to run the mix against, one after the other on the same server and
+ *   data, such as "v1,v2" to compare /api with /api/v2 (default v1)
+ * - loadtest.conditional: whether GET requests send If-None-Match with the ETag of the last response
+ *   to the same URI, as a polling client with a cache does; "false,true" runs the mix both ways, one
+ *   after the other, to compare them (default false)
+ * - loadtest.collection, loadtest.reportDir: where the .bru files are and where to write histograms
+ * Besides latencies, each run reports the response bytes received and the CPU time of this JVM, which
+ * is the server's as well as the load generator's unless loadtest.target is set.
+ * @author Sean Clendening
+ */
+public final class LoadTest {
+    static final String DEFAULT_MIX = "Get Contact By Id=25,Search Contacts=10,Get Contacts By Phone=5,"
+            + "Get Contacts Page=5,Create Contact=5,Update Contact=5,Delete Contact=3,"
+            + "Get Appointment By Id=15,Get Appointments In Range=5,Search Appointments=5,"
+            + "Create Appointment=5,Update Appointment=5,Delete Appointment=2,Get Statistics=5";
+
+    private final double rate;
+    private final Duration duration;
+    private final Duration warmup;
+    private final Duration timeout;
+    private final int maxInFlight;
+    private final List<Scenario> mix;
+    private final int totalWeight;
+    private final HttpClient client;
+    private final URI base;
+    private final TestData data;
+    private final LoadReport report;
+    private final Path reportDir;
+    private final boolean conditional;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // The ETag of the last response to each URI, sent back as If-None-Match when conditional.
+    private final Map<URI, String> tags = new ConcurrentHashMap<>();
+
+    private LoadTest(URI base, List<Scenario> mix, TestData data, HttpClient client, Path reportDir, boolean conditional) {
+        this.rate = Double.parseDouble(setting("rate", "200"));
+        this.duration = Duration.parse(setting("duration", "PT60S"));
+        this.warmup = Duration.parse(setting("warmup", "PT10S"));
+        this.timeout = Duration.parse(setting("timeout", "PT10S"));
+        this.maxInFlight = Integer.parseInt(setting("maxInFlight", "10000"));
+        this.base = base;
+        this.mix = mix;
+        this.totalWeight = mix.stream().mapToInt(Scenario::getWeight).sum();
+        this.data = data;
+        this.client = client;
+        this.report = new LoadReport(mix);
+        this.reportDir = reportDir;
+        this.conditional = conditional;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String target = System.getProperty("loadtest.target");
+        ConfigurableApplicationContext application = null;
+        URI base;
+        if (target == null || target.isBlank()) {
+            application = SpringApplication.run(CapstoneApplication.class, "--server.port=0",
+                    "--capstone.persistence.enabled=false", "--spring.main.banner-mode=off");
+            base = URI.create("http://localhost:" + ((WebServerApplicationContext) application).getWebServer().getPort());
+        } else {
+            base = URI.create(target);
+        }
+
+        double errorRate = 0;
+        try {
+            List<BrunoRequest> requests = BrunoRequest.loadCollection(Path.of(setting("collection", "../capstone-testing")));
+            List<String> apis = List.of(setting("api", "v1").split(","));
+            List<String> conditionals = List.of(setting("conditional", "false").split(","));
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+            System.out.printf("Seeding %s with %s contacts and appointments%n", base, setting("seed", "10000"));
+            TestData data = TestData.seed(client, base, Integer.parseInt(setting("seed", "10000")));
+            Path reportDir = Path.of(setting("reportDir", "build/reports/loadtest"));
+            boolean several = apis.size() * conditionals.size() > 1;
+            for (String api : apis) {
+                String root = api.trim().equals("v1") ? "/api" : "/api/" + api.trim();
+                List<Scenario> mix = mix(requests, setting("mix", DEFAULT_MIX), root);
+                for (String mode : conditionals) {
+                    boolean conditional = Boolean.parseBoolean(mode.trim());
+                    String run = api.trim() + (conditional ? "-conditional" : "");
+                    if (several) {
+                        // The runs share the seeded data; each gets its own warmup and its own histograms.
+                        System.out.printf("%n=== %s%s ===%n", root, conditional ? ", conditional GETs" : "");
+                    }
+                    LoadTest test = new LoadTest(base, mix, data, client, several ? reportDir.resolve(run) : reportDir, conditional);
+                    errorRate = Math.max(errorRate, test.run());
+                }
+            }
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+        }
+
+        double maxErrorRate = Double.parseDouble(setting("maxErrorRate", "0.01"));
+        if (errorRate > maxErrorRate) {
+            System.out.printf("FAILED: error rate %.2f%% is above %.2f%%%n", errorRate * 100, maxErrorRate * 100);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Send requests on schedule for the warmup and then the measurement, and print the report.
+     * @return the error rate of the measurement
+     */
+    private double run() throws Exception {
+        System.out.printf("Running %.0f requests/s for %s after a %s warmup%n", rate, duration, warmup);
+        SplittableRandom random = new SplittableRandom(42);
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        long cpuFrom = -1;
+        for (long i = 0; ; i++) {
+            // The schedule is fixed up front: a late request does not push back the ones after it.
+            long intended = start + (long) (i * 1_000_000_000L / rate);
+            if (intended >= end) {
+                break;
+            }
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+            if (cpuFrom < 0 && intended >= measureFrom) {
+                cpuFrom = processCpuNanos();
+            }
+            send(pick(random), intended, intended >= measureFrom, random);
+        }
+
+        // Let the last requests finish or time out before reporting.
+        long deadline = System.nanoTime() + timeout.toNanos() + 1_000_000_000L;
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        double cpuSeconds = cpuFrom < 0 ? 0 : (processCpuNanos() - cpuFrom) / 1e9;
+        Files.createDirectories(reportDir);
+        System.out.println();
+        double errorRate = report.print(System.out, duration.toNanos() / 1e9, reportDir);
+        System.out.println();
+        System.out.printf("CPU time of this JVM during the measurement: %.2f s (%.1f%% of one core)%n",
+                cpuSeconds, 100 * cpuSeconds / (duration.toNanos() / 1e9));
+        System.out.println("Response time histograms written to " + reportDir.toAbsolutePath());
+        return errorRate;
+    }
+
+    private void send(Scenario scenario, long intended, boolean measured, SplittableRandom random) {
+        HttpRequest next = scenario.next(base, data, random, timeout);
+        HttpRequest request = conditional(next);
+        if (request == null || inFlight.get() >= maxInFlight) {
+            if (measured) {
+                report.recordFailure(scenario, intended, System.nanoTime(),
+                        request == null ? "nothing to delete" : "too many in flight");
+            }
+            return;
+        }
+
+        inFlight.incrementAndGet();
+        long sent = System.nanoTime();
+        // Bodies are always read, to count the bytes received.
+        client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).whenComplete((response, failure) -> {
+            long done = System.nanoTime();
+            inFlight.decrementAndGet();
+            if (response != null) {
+                byte[] bytes = response.body();
+                scenario.completed(response.statusCode(), scenario.readsBody() ? new String(bytes, StandardCharsets.UTF_8) : null, data);
+                if (conditional && response.statusCode() == 200) {
+                    response.headers().firstValue("ETag").ifPresent(tag -> tags.put(request.uri(), tag));
+                }
+            }
+            if (!measured) {
+                return;
+            }
+            if (response != null) {
+                report.record(scenario, intended, sent, done, response.statusCode(), response.body().length);
+            } else {
+                Throwable cause = failure.getCause() != null ? failure.getCause() : failure;
+                report.recordFailure(scenario, intended, done, cause.getClass().getSimpleName());
+            }
+        });
+    }
+
+    /**
+     * Add If-None-Match to a GET request when running conditionally and a tag is known for its URI.
+     */
+    private HttpRequest conditional(HttpRequest request) {
+        if (!conditional || request == null || !request.method().equals("GET")) {
+            return request;
+        }
+        String tag = tags.get(request.uri());
+        return tag == null ? request : HttpRequest.newBuilder(request, (name, value) -> true).header("If-None-Match", tag).build();
+    }
+
+    private Scenario pick(SplittableRandom random) {
+        int ticket = random.nextInt(totalWeight);
+        for (Scenario scenario : mix) {
+            ticket -= scenario.getWeight();
+            if (ticket < 0) {
+                return scenario;
+            }
+        }
+        throw new IllegalStateException("Weights changed while picking");
+    }
+
+    /**
+     * Resolve a mix against the collection.
+     * @param requests the requests of the collection
+     * @param mix comma-separated "request name=weight" pairs
+     * @param api the root of the API to send the requests to, such as /api
+     * @return one scenario per pair
+     * @throws IllegalArgumentException if a name is not in the collection or a weight is not positive
+     */
+    static List<Scenario> mix(List<BrunoRequest> requests, String mix, String api) {
+        Map<String, BrunoRequest> byName = new LinkedHashMap<>();
+        requests.forEach(request -> byName.put(request.getName(), request));
+        LocalDateTime now = LocalDateTime.now();
+        List<Scenario> scenarios = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            int equals = entry.lastIndexOf('=');
+            String name = equals < 0 ? entry.trim() : entry.substring(0, equals).trim();
+            int weight = equals < 0 ? 1 : Integer.parseInt(entry.substring(equals + 1).trim());
+            BrunoRequest request = byName.get(name);
+            if (request == null) {
+                throw new IllegalArgumentException("No request named \"" + name + "\" in the collection; known: " + byName.keySet());
+            }
+            if (weight < 1) {
+                throw new IllegalArgumentException("Invalid weight for " + name);
+            }
+            scenarios.add(Scenario.of(request, weight, now, api));
+        }
+        return scenarios;
+    }
+
+    private static long processCpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+    }
+
+    private static String setting(String name, String defaultValue) {
+        String value = System.getProperty("loadtest." + name);
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+}
@@ -0,0 +1,175 @@
+package com.seanclen.capstone.loadtest;
+
+import com.seanclen.capstone.model.Appointment;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.SplittableRandom;
+import java.util.StringJoiner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A request of the Bruno collection, made replayable against a seeded server:
+ * - the entity ID in a path such as /api/contacts/1 is replaced on every call with a random seeded ID,
+ *   or for a DELETE with an ID nothing else reads (see TestData), so that reads never hit deleted
+ *   entities and deletes never run out
+ * - dates in the query are moved forward by whole years, all by the same amount, until the earliest is
+ *   in the future, since the service rejects appointments in the past
+ * - query values are URL-encoded, as Bruno does when it sends them
+ * A POST to a collection (/api/contacts or /api/appointments) creates an entity; its ID is handed to
+ * TestData for later deletes.
+ * The collection is written against /api; a scenario can send the same request to another version of
+ * the API, such as /api/v2, which has the same paths below its root.
+ * @author Sean Clendening
+ */
+final class Scenario {
+    private static final Pattern ENTITY_ID = Pattern.compile("^/api/(contacts|appointments)/(\\d+)$");
+    private static final Pattern CREATE = Pattern.compile("^/api/(contacts|appointments)$");
+    private static final Pattern DATE = Pattern.compile("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}");
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern(Appointment.DATE_FORMAT);
+
+    private final String name;
+    private final int weight;
+    private final String method;
+    private final String path;
+    private final String query;
+    private final String jsonBody;
+    // The collection whose entity ID is in the path, or that a POST creates in; null otherwise.
+    private final String collection;
+    private final boolean hasId;
+    private final boolean creates;
+
+    private Scenario(String name, int weight, String method, String path, String query, String jsonBody, String api) {
+        this.name = name;
+        this.weight = weight;
+        this.method = method;
+        this.jsonBody = jsonBody;
+        this.query = query;
+        Matcher id = ENTITY_ID.matcher(path);
+        Matcher create = CREATE.matcher(path);
+        if (id.matches()) {
+            this.collection = id.group(1);
+            this.path = api + "/" + collection + "/";
+            this.hasId = true;
+            this.creates = false;
+        } else {
+            this.collection = create.matches() ? create.group(1) : null;
+            this.path = path.startsWith("/api/") ? api + path.substring("/api".length()) : path;
+            this.hasId = false;
+            this.creates = collection != null && method.equals("POST");
+        }
+    }
+
+    /**
+     * Make a request of the collection replayable.
+     * @param request the request as written in its .bru file
+     * @param weight its share of the traffic, relative to the other scenarios of the mix
+     * @param now the current date and time, to move past dates after
+     * @param api the root of the API to send it to, such as /api or /api/v2
+     * @return the scenario
+     */
+    static Scenario of(BrunoRequest request, int weight, LocalDateTime now, String api) {
+        String url = request.getUrl().replace("{{host}}", "");
+        int question = url.indexOf('?');
+        String path = question < 0 ? url : url.substring(0, question);
+        String query = question < 0 ? "" : encodeQuery(shiftDates(url.substring(question + 1), now));
+        return new Scenario(request.getName(), weight, request.getMethod(), path, query, request.getJsonBody(), api);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Build the next request of this scenario.
+     * @param base the server's base URI, such as http://localhost:8080
+     * @param data the seeded entities
+     * @param random the random source of the calling thread
+     * @param timeout the request timeout
+     * @return the request, or null for a DELETE when there is no entity left to delete
+     */
+    HttpRequest next(URI base, TestData data, SplittableRandom random, Duration timeout) {
+        String target = path;
+        if (hasId) {
+            String id = method.equals("DELETE") ? data.takeDisposable(collection) : data.randomId(collection, random);
+            if (id == null) {
+                return null;
+            }
+            target += id;
+        }
+        URI uri = base.resolve(query.isEmpty() ? target : target + "?" + query);
+        HttpRequest.BodyPublisher body = jsonBody != null
+                ? HttpRequest.BodyPublishers.ofString(jsonBody)
+                : HttpRequest.BodyPublishers.noBody();
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(timeout).method(method, body);
+        if (jsonBody != null) {
+            builder.header("Content-Type", "application/json");
+        }
+        return builder.build();
+    }
+
+    /**
+     * Whether the response body is needed, to collect the ID of a created entity.
+     */
+    boolean readsBody() {
+        return creates;
+    }
+
+    /**
+     * Collect the ID of an entity this scenario created.
+     * @param status the response status
+     * @param body the response body, passed only if readsBody is true
+     * @param data the seeded entities
+     */
+    void completed(int status, String body, TestData data) {
+        if (creates && status == 201 && body != null) {
+            String id = TestData.createdId(body);
+            if (id != null) {
+                data.addDisposable(collection, id);
+            }
+        }
+    }
+
+    static String shiftDates(String query, LocalDateTime now) {
+        Matcher matcher = DATE.matcher(query);
+        LocalDateTime earliest = null;
+        while (matcher.find()) {
+            LocalDateTime date = LocalDateTime.parse(matcher.group(), DATE_FORMAT);
+            earliest = earliest == null || date.isBefore(earliest) ? date : earliest;
+        }
+        if (earliest == null) {
+            return query;
+        }
+
+        int years = 0;
+        while (earliest.plusYears(years).isBefore(now.plusDays(1))) {
+            years++;
+        }
+        int shift = years;
+        return matcher.reset().replaceAll(date -> LocalDateTime.parse(date.group(), DATE_FORMAT).plusYears(shift).format(DATE_FORMAT));
+    }
+
+    private static String encodeQuery(String query) {
+        StringJoiner encoded = new StringJoiner("&");
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals < 0) {
+                encoded.add(URLEncoder.encode(parameter, StandardCharsets.UTF_8));
+            } else {
+                encoded.add(URLEncoder.encode(parameter.substring(0, equals), StandardCharsets.UTF_8) + "="
+                        + URLEncoder.encode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return encoded.toString();
+    }
+}
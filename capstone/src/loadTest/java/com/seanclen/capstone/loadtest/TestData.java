@@ -0,0 +1,127 @@
+package com.seanclen.capstone.loadtest;
+
+import com.seanclen.capstone.model.Appointment;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.IntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The contacts and appointments a load test runs against, created over HTTP before it starts.
+ * Seeded entities are split in two: readable ones, which reads and updates pick at random and which are
+ * never deleted, and disposable ones, which deletes take one at a time. Entities created during the
+ * test are added to the disposable ones.
+ * Seeded values are varied, and include the values the collection queries for (the "jo" name prefix,
+ * the phone number 5551234567, "MRI follow-up"), so that its searches find something.
+ * @author Sean Clendening
+ */
+final class TestData {
+    private static final String[] FIRST_NAMES = {"Johnny", "Joanne", "Mary", "Robert", "Linda", "James", "Jose", "Karen"};
+    private static final String[] LAST_NAMES = {"Appleseed", "Smith", "Jones", "Garcia", "Miller", "Davis"};
+    private static final String[] DESCRIPTIONS = {"MRI follow-up", "Annual checkup", "Dental cleaning",
+            "Blood test", "Physical therapy", "Lorem Ipsum"};
+    private static final Pattern CREATED_ID = Pattern.compile("\"id\"\\s*:\\s*\"([^\"]+)\"");
+    // Seeding requests in flight at once.
+    private static final int SEED_CONCURRENCY = 64;
+
+    private final Map<String, String[]> readable;
+    private final Map<String, ConcurrentLinkedQueue<String>> disposable;
+
+    private TestData(Map<String, String[]> readable, Map<String, ConcurrentLinkedQueue<String>> disposable) {
+        this.readable = readable;
+        this.disposable = disposable;
+    }
+
+    /**
+     * Create the entities of a test.
+     * @param client the client to create them with
+     * @param base the server's base URI
+     * @param count the number of readable contacts and of readable appointments; a fifth as many
+     *              disposable ones of each are created as well
+     * @return the created entities
+     */
+    static TestData seed(HttpClient client, URI base, int count) {
+        LocalDateTime start = LocalDateTime.now().plusDays(1).withNano(0);
+        DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern(Appointment.DATE_FORMAT);
+        int total = count + count / 5;
+        List<String> contacts = create(client, base, total, n -> "/api/contacts?firstName=" + encode(FIRST_NAMES[n % FIRST_NAMES.length])
+                + "&lastName=" + encode(LAST_NAMES[n % LAST_NAMES.length])
+                + "&phone=" + (n % 100 == 0 ? "5551234567" : String.valueOf(5_550_000_000L + n))
+                + "&address=" + encode(n + " Main St"));
+        // Spread over the next year, a few hours apart.
+        List<String> appointments = create(client, base, total, n -> "/api/appointments?date="
+                + start.plusMinutes(n * 211L % (365 * 24 * 60)).format(dateFormat)
+                + "&description=" + encode(DESCRIPTIONS[n % DESCRIPTIONS.length]));
+        return new TestData(
+                Map.of("contacts", contacts.subList(0, count).toArray(new String[0]),
+                        "appointments", appointments.subList(0, count).toArray(new String[0])),
+                Map.of("contacts", new ConcurrentLinkedQueue<>(contacts.subList(count, total)),
+                        "appointments", new ConcurrentLinkedQueue<>(appointments.subList(count, total))));
+    }
+
+    String randomId(String collection, SplittableRandom random) {
+        String[] ids = readable.get(collection);
+        return ids[random.nextInt(ids.length)];
+    }
+
+    /**
+     * @return an ID to delete, or null if every disposable entity has been deleted
+     */
+    String takeDisposable(String collection) {
+        return disposable.get(collection).poll();
+    }
+
+    void addDisposable(String collection, String id) {
+        disposable.get(collection).add(id);
+    }
+
+    private static List<String> create(HttpClient client, URI base, int count, IntFunction<String> path) {
+        Semaphore permits = new Semaphore(SEED_CONCURRENCY);
+        List<CompletableFuture<String>> created = new ArrayList<>(count);
+        for (int n = 1; n <= count; n++) {
+            permits.acquireUninterruptibly();
+            HttpRequest request = HttpRequest.newBuilder(base.resolve(path.apply(n)))
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build();
+            created.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, failure) -> permits.release())
+                    .thenApply(response -> {
+                        String id = createdId(response.body());
+                        if (response.statusCode() != 201 || id == null) {
+                            throw new IllegalStateException("Seeding failed with " + response.statusCode()
+                                    + " for " + request.uri() + ": " + response.body());
+                        }
+                        return id;
+                    }));
+        }
+        return created.stream().map(CompletableFuture::join).toList();
+    }
+
+    /**
+     * @return the ID in the JSON of a created entity, or null if there is none
+     */
+    static String createdId(String body) {
+        Matcher id = CREATED_ID.matcher(body);
+        return id.find() ? id.group(1) : null;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,225 @@
+package com.seanclen.capstone.archive;
+
+import com.seanclen.capstone.model.Appointment;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The read-only archive of past appointments, moved out of the appointment repository by
+ * AppointmentSweeper so that the repository only holds the appointments that can still change.
+ * - appointments are packed into immutable ArchiveSegments of a few arrays each, about a tenth of the
+ *   heap an appointment takes in the repository with its index entries
+ * - readers never lock: every change builds new segments aside and publishes the new list with one
+ *   volatile write, so queries see the archive before or after a sweep, never half of one
+ * - each sweep adds one segment, and the newest segments are merged while the one before is no
+ *   larger, so the archive holds O(log n) segments and every appointment is copied O(log n) times
+ * - a date window is a binary search and a merge across the segments; an ID is a binary search of
+ *   each segment's sorted ID hashes
+ * - appointments older than the retention period are hidden at once and dropped with their segment,
+ *   or when enough of a segment has expired to be worth copying the rest
+ * Only appointments of this process are archived: with a database, the archive stays empty.
+ * @author Sean Clendening
+ */
+@Component
+public class AppointmentArchive {
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // Oldest first; replaced as a whole, never modified.
+    private volatile List<ArchiveSegment> segments = List.of();
+    // Appointments dated before this have expired; null while none have.
+    private volatile LocalDateTime expiredBefore;
+
+    /**
+     * Find an archived appointment by its ID.
+     * @param id the ID of the appointment
+     * @return the appointment, or null if it is not archived
+     */
+    public Appointment findById(String id) {
+        if (id == null) {
+            return null;
+        }
+
+        List<ArchiveSegment> segments = this.segments;
+        LocalDateTime expired = expiredBefore;
+        for (int s = segments.size() - 1; s >= 0; s--) {
+            ArchiveSegment segment = segments.get(s);
+            int index = segment.indexOf(id);
+            if (index >= 0) {
+                return expired != null && segment.isBefore(index, expired) ? null : segment.appointment(index);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the archived appointments whose date falls in the window [from, to), ordered by date.
+     * @param from the inclusive start of the window, or null for no lower bound
+     * @param to the exclusive end of the window, or null for no upper bound
+     * @param limit the maximum number of appointments to return
+     * @return the matching appointments in ascending date order
+     */
+    public List<Appointment> findByDateBetween(LocalDateTime from, LocalDateTime to, int limit) {
+        List<ArchiveSegment> segments = this.segments;
+        LocalDateTime expired = expiredBefore;
+        if (expired != null && (from == null || from.isBefore(expired))) {
+            from = expired;
+        }
+
+        int count = segments.size();
+        int[] next = new int[count];
+        int[] end = new int[count];
+        for (int s = 0; s < count; s++) {
+            ArchiveSegment segment = segments.get(s);
+            next[s] = from != null ? segment.lowerBound(from) : 0;
+            end[s] = to != null ? segment.lowerBound(to) : segment.size();
+        }
+
+        List<Appointment> result = new ArrayList<>(Math.min(limit, 64));
+        while (result.size() < limit) {
+            // Segments are few, so the next appointment is picked by scanning their heads.
+            int first = -1;
+            for (int s = 0; s < count; s++) {
+                if (next[s] < end[s] && (first < 0
+                        || segments.get(s).compare(next[s], segments.get(first), next[first]) < 0)) {
+                    first = s;
+                }
+            }
+            if (first < 0) {
+                break;
+            }
+            result.add(segments.get(first).appointment(next[first]++));
+        }
+        return result;
+    }
+
+    /**
+     * Count the archived appointments that have not expired.
+     * @return the number of appointments
+     */
+    public long count() {
+        List<ArchiveSegment> segments = this.segments;
+        LocalDateTime expired = expiredBefore;
+        long count = 0;
+        for (ArchiveSegment segment : segments) {
+            count += segment.size() - (expired != null ? segment.lowerBound(expired) : 0);
+        }
+        return count;
+    }
+
+    /**
+     * Estimate the heap used by the archive, including appointments that expired but whose segment
+     * has not been dropped yet.
+     * @return the number of bytes
+     */
+    public long estimatedBytes() {
+        long bytes = 0;
+        for (ArchiveSegment segment : segments) {
+            bytes += segment.bytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Check whether an appointment is archived, expired or not, without decoding it.
+     * @param id the ID of the appointment
+     * @return true if the archive holds it
+     */
+    boolean contains(String id) {
+        for (ArchiveSegment segment : segments) {
+            if (segment.indexOf(id) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add appointments as a new segment, then merge the newest segments.
+     * @param appointments appointments that are not archived yet
+     */
+    void add(Collection<Appointment> appointments) {
+        if (appointments.isEmpty()) {
+            return;
+        }
+
+        ArchiveSegment added = ArchiveSegment.of(appointments);
+        writeLock.lock();
+        try {
+            List<ArchiveSegment> updated = new ArrayList<>(segments);
+            updated.add(added);
+            segments = List.copyOf(updated);
+
+            // Published before merging, so the appointments are readable while the merges are copied.
+            while (updated.size() > 1 && updated.get(updated.size() - 2).size() <= updated.get(updated.size() - 1).size()) {
+                ArchiveSegment newer = updated.remove(updated.size() - 1);
+                ArchiveSegment older = updated.remove(updated.size() - 1);
+                updated.add(ArchiveSegment.merge(older, newer));
+            }
+            segments = List.copyOf(updated);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Remove appointments from the archive, copying the segments that hold them.
+     * @param ids the IDs of the appointments
+     */
+    void discard(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        writeLock.lock();
+        try {
+            List<ArchiveSegment> updated = new ArrayList<>(segments.size());
+            for (ArchiveSegment segment : segments) {
+                if (ids.stream().anyMatch(id -> segment.indexOf(id) >= 0)) {
+                    ArchiveSegment retained = segment.retain(0, ids);
+                    if (retained.size() > 0) {
+                        updated.add(retained);
+                    }
+                } else {
+                    updated.add(segment);
+                }
+            }
+            segments = List.copyOf(updated);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Expire the appointments dated before a date: hide them at once, drop the segments that hold
+     * nothing else, and copy the rest of a segment once at least a quarter of it has expired.
+     * @param before the earliest date kept
+     */
+    void expire(LocalDateTime before) {
+        writeLock.lock();
+        try {
+            expiredBefore = before;
+            List<ArchiveSegment> updated = new ArrayList<>(segments.size());
+            for (ArchiveSegment segment : segments) {
+                int expired = segment.lowerBound(before);
+                if (expired == segment.size()) {
+                    continue;
+                }
+                updated.add(expired * 4 >= segment.size() ? segment.retain(expired, List.of()) : segment);
+            }
+            segments = List.copyOf(updated);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of segments, for tests.
+     */
+    int segmentCount() {
+        return segments.size();
+    }
+}
@@ -0,0 +1,202 @@
+package com.seanclen.capstone.archive;
+
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.repository.EntityRepository;
+import com.seanclen.capstone.repository.InMemoryAppointmentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Moves past appointments out of the in-memory appointment repository into the AppointmentArchive.
+ * A past appointment can no longer be edited, since a new date must be in the future, yet it would
+ * otherwise stay in the repository's maps and indexes forever and be copied by every findAll.
+ * Every sweep takes the appointments dated before the cutoff from the date index, in batches of
+ * BATCH_SIZE, and for each batch:
+ * - records the appointments in the archive log, when the repository is durable, and waits for that
+ * - adds them to the archive, where they are readable at once
+ * - deletes them from the repository, each only if it has not been saved since it was read (see
+ *   InMemoryRepository.deleteAllIfVersion), so an appointment moved to a new date during the sweep is
+ *   kept, and discarded from the archive again
+ * Nothing is locked for longer than one appointment's delete: requests keep being served during a
+ * sweep, and see an appointment in the repository, in the archive, or briefly in both, never in
+ * neither. Pages following the change feed see the archived appointments deleted.
+ * Used with the memory and compact storage types; a database keeps its appointments where they are.
+ * Settings:
+ * - capstone.archive.after: how long after its date an appointment is archived (default P1D)
+ * - capstone.archive.retention: how long after its date an archived appointment is kept; P0D keeps
+ *   it forever (default P0D)
+ * - capstone.archive.interval: the time between sweeps (default PT1M)
+ * The archive log is kept in the archive subdirectory of capstone.persistence.directory when
+ * capstone.persistence.enabled is true.
+ * @author Sean Clendening
+ */
+@Component
+@ConditionalOnExpression("'${capstone.storage.type:memory}' == 'memory' or '${capstone.storage.type:memory}' == 'compact'")
+public class AppointmentSweeper {
+    private static final Logger log = LoggerFactory.getLogger(AppointmentSweeper.class);
+
+    // Appointments archived per log commit and repository batch.
+    static final int BATCH_SIZE = 1024;
+
+    private final InMemoryAppointmentRepository appointmentRepository;
+    private final AppointmentArchive archive;
+    private final Duration after;
+    private final Duration retention;
+    private final Path directory;
+    private final boolean fsync;
+    private final Clock clock;
+    // Null when the archive is only kept in memory.
+    private ArchiveLog archiveLog;
+
+    @Autowired
+    public AppointmentSweeper(InMemoryAppointmentRepository appointmentRepository,
+                              AppointmentArchive archive,
+                              @Value("${capstone.archive.after:P1D}") Duration after,
+                              @Value("${capstone.archive.retention:P0D}") Duration retention,
+                              @Value("${capstone.persistence.enabled:false}") boolean persistent,
+                              @Value("${capstone.persistence.directory:data}") String directory,
+                              @Value("${capstone.persistence.fsync:true}") boolean fsync) {
+        this(appointmentRepository, archive, after, retention,
+                persistent ? Path.of(directory, "archive") : null, fsync, Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param directory the directory of the archive log, or null to keep the archive in memory only
+     */
+    AppointmentSweeper(InMemoryAppointmentRepository appointmentRepository, AppointmentArchive archive,
+                       Duration after, Duration retention, Path directory, boolean fsync, Clock clock) {
+        if (after.isNegative() || retention.isNegative() || (!retention.isZero() && retention.compareTo(after) < 0)) {
+            throw new IllegalArgumentException("Invalid archive settings");
+        }
+        this.appointmentRepository = appointmentRepository;
+        this.archive = archive;
+        this.after = after;
+        this.retention = retention;
+        this.directory = directory;
+        this.fsync = fsync;
+        this.clock = clock;
+    }
+
+    /**
+     * Read the archive back from its log, when the repository is durable.
+     * @throws IOException if the archive log cannot be read or opened
+     */
+    @PostConstruct
+    public void recover() throws IOException {
+        if (directory == null) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        archiveLog = ArchiveLog.recover(directory, fsync, archive);
+        log.info("Loaded {} archived appointments in {} ms", String.format("%,d", archive.count()),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Archive every appointment dated more than capstone.archive.after ago, then drop archived
+     * appointments older than the retention period.
+     * @return the number of appointments moved out of the repository
+     */
+    @Scheduled(initialDelayString = "${capstone.archive.interval:PT1M}",
+            fixedDelayString = "${capstone.archive.interval:PT1M}")
+    public int sweep() {
+        long start = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now(clock);
+        LocalDateTime cutoff = now.minus(after);
+        int archived = 0;
+        int moved;
+        do {
+            moved = sweepBatch(cutoff);
+            archived += moved;
+        } while (moved > 0);
+
+        if (!retention.isZero()) {
+            LocalDateTime expired = now.minus(retention);
+            archive.expire(expired);
+            if (archiveLog != null) {
+                try {
+                    archiveLog.expire(expired);
+                } catch (IOException e) {
+                    // Expired segments are still skipped; the next sweep tries to delete them again.
+                    log.error("Failed to delete expired archive segments", e);
+                }
+            }
+        }
+
+        if (archived > 0) {
+            log.info("Archived {} past appointments in {} ms ({} in the repository, {} archived)", archived,
+                    (System.nanoTime() - start) / 1_000_000, appointmentRepository.count(), archive.count());
+        }
+        return archived;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (archiveLog != null) {
+            archiveLog.close();
+        }
+    }
+
+    /**
+     * Archive the oldest batch of appointments dated before the cutoff.
+     * @return the number of appointments moved out of the repository; 0 when none are left
+     */
+    private int sweepBatch(LocalDateTime cutoff) {
+        List<Appointment> candidates = appointmentRepository.findByDateBetween(null, cutoff, BATCH_SIZE);
+        Map<String, Long> versions = new LinkedHashMap<>();
+        List<Appointment> batch = new ArrayList<>(candidates.size());
+        for (Appointment candidate : candidates) {
+            String id = candidate.getId();
+            // The version is read before the appointment, so that a delete at this version only
+            // succeeds if the appointment archived is still the one stored.
+            long version = appointmentRepository.versionOf(id);
+            Appointment appointment = appointmentRepository.findById(id);
+            if (version == EntityRepository.NO_VERSION || appointment == null || !appointment.getDate().isBefore(cutoff)) {
+                continue;
+            }
+            versions.put(id, version);
+            // Already archived by a sweep that stopped before deleting it.
+            if (!archive.contains(id)) {
+                batch.add(appointment);
+            }
+        }
+        if (versions.isEmpty()) {
+            return 0;
+        }
+
+        if (archiveLog != null) {
+            archiveLog.archive(batch);
+        }
+        archive.add(batch);
+        List<String> deleted = appointmentRepository.deleteAllIfVersion(versions);
+        if (deleted.size() < versions.size()) {
+            Set<String> kept = new HashSet<>(versions.keySet());
+            deleted.forEach(kept::remove);
+            if (archiveLog != null) {
+                archiveLog.discard(kept);
+            }
+            archive.discard(kept);
+        }
+        return deleted.size();
+    }
+}
@@ -0,0 +1,201 @@
+package com.seanclen.capstone.archive;
+
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.persistence.AppointmentCodec;
+import com.seanclen.capstone.persistence.WriteAheadLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Keeps the appointment archive on disk, in a WriteAheadLog of its own, so that appointments moved out
+ * of the durable appointment repository survive a restart.
+ * Records are [byte op] followed by the appointment as written by AppointmentCodec for an archived
+ * appointment, or by its UTF ID for a discarded one: an appointment that was archived but then kept
+ * in the repository because it changed during the sweep.
+ * Segments are sealed once they pass SEGMENT_BYTES, and a sealed segment is deleted once every
+ * appointment in it has expired. Segments are only deleted from the oldest on, so a discard is never
+ * deleted before the appointment it discards.
+ * Not thread-safe: AppointmentSweeper uses it from one thread at a time.
+ * @author Sean Clendening
+ */
+final class ArchiveLog implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(ArchiveLog.class);
+
+    private static final byte ARCHIVE = 1;
+    private static final byte DISCARD = 2;
+    private static final long SEGMENT_BYTES = 64L << 20;
+    // Appointments read back per archive segment during recovery.
+    private static final int RECOVERY_BATCH = 65_536;
+
+    private final Path directory;
+    private final AppointmentCodec codec = new AppointmentCodec();
+    // The date of the newest appointment in every segment that holds one, as UTC epoch seconds.
+    private final TreeMap<Long, Long> newest = new TreeMap<>();
+    private WriteAheadLog writeAheadLog;
+
+    private ArchiveLog(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Read every archived appointment back into the archive, then open the log for new ones.
+     * @param directory the directory of the log
+     * @param fsync whether to force every commit to disk before acknowledging it
+     * @param archive the archive to fill
+     * @return the log
+     * @throws IOException if the log cannot be read or opened
+     */
+    static ArchiveLog recover(Path directory, boolean fsync, AppointmentArchive archive) throws IOException {
+        ArchiveLog archiveLog = new ArchiveLog(directory);
+        List<Appointment> batch = new ArrayList<>();
+        long lastSegment = 0;
+        for (long segment : WriteAheadLog.listSegments(directory)) {
+            Path file = WriteAheadLog.segmentPath(directory, segment);
+            long valid = WriteAheadLog.replay(file, payload -> {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+                byte op = in.readByte();
+                if (op == ARCHIVE) {
+                    Appointment appointment = archiveLog.codec.read(in);
+                    archiveLog.archived(segment, appointment.getDate());
+                    batch.add(appointment);
+                    if (batch.size() == RECOVERY_BATCH) {
+                        archive.add(batch);
+                        batch.clear();
+                    }
+                } else if (op == DISCARD) {
+                    // Rare, and applied in order: the same appointment may be archived again later.
+                    String id = in.readUTF();
+                    if (!batch.removeIf(appointment -> appointment.getId().equals(id))) {
+                        archive.discard(Set.of(id));
+                    }
+                } else {
+                    throw new IOException("Unknown archive record type " + op);
+                }
+            });
+            if (valid < Files.size(file)) {
+                // Records are only appended to the last segment, so only it can end in a torn record.
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                }
+                log.warn("Discarded a torn record at the end of {}", file);
+            }
+            lastSegment = segment;
+        }
+        archive.add(batch);
+
+        archiveLog.writeAheadLog = new WriteAheadLog(directory, lastSegment + 1, fsync);
+        return archiveLog;
+    }
+
+    /**
+     * Record archived appointments, returning once they are durable.
+     * @param appointments the appointments
+     * @throws IllegalStateException if the log cannot be written
+     */
+    void archive(Collection<Appointment> appointments) {
+        long segment = writeAheadLog.currentSegment();
+        List<CompletableFuture<Void>> pending = new ArrayList<>(appointments.size());
+        for (Appointment appointment : appointments) {
+            pending.add(writeAheadLog.append(encode(ARCHIVE, appointment, null)));
+            archived(segment, appointment.getDate());
+        }
+        await(pending);
+        if (writeAheadLog.currentSegmentBytes() > SEGMENT_BYTES) {
+            writeAheadLog.rotate().join();
+        }
+    }
+
+    /**
+     * Record that archived appointments were kept in the repository after all, returning once that is
+     * durable.
+     * @param ids the IDs of the appointments
+     * @throws IllegalStateException if the log cannot be written
+     */
+    void discard(Collection<String> ids) {
+        List<CompletableFuture<Void>> pending = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            pending.add(writeAheadLog.append(encode(DISCARD, null, id)));
+        }
+        await(pending);
+    }
+
+    /**
+     * Delete the oldest sealed segments for as long as every appointment in them has expired.
+     * @param before the earliest date kept
+     * @return the number of segments deleted
+     * @throws IOException if a segment cannot be deleted
+     */
+    int expire(LocalDateTime before) throws IOException {
+        long current = writeAheadLog.currentSegment();
+        long earliest = before.toEpochSecond(ZoneOffset.UTC);
+        int deleted = 0;
+        for (long segment : WriteAheadLog.listSegments(directory)) {
+            Long newestInSegment = newest.get(segment);
+            if (segment >= current || (newestInSegment != null && newestInSegment >= earliest)) {
+                break;
+            }
+            Files.deleteIfExists(WriteAheadLog.segmentPath(directory, segment));
+            newest.remove(segment);
+            deleted++;
+        }
+        return deleted;
+    }
+
+    /**
+     * Commit every record appended so far and close the log.
+     */
+    @Override
+    public void close() {
+        writeAheadLog.close();
+    }
+
+    private void archived(long segment, LocalDateTime date) {
+        newest.merge(segment, date.toEpochSecond(ZoneOffset.UTC), Math::max);
+    }
+
+    private byte[] encode(byte op, Appointment appointment, String id) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(op);
+            if (appointment != null) {
+                codec.write(appointment, out);
+            } else {
+                out.writeUTF(id);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // Writing to a byte array cannot fail.
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void await(List<CompletableFuture<Void>> pending) {
+        try {
+            pending.forEach(CompletableFuture::join);
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Failed to persist archived appointments", e.getCause());
+        }
+    }
+}
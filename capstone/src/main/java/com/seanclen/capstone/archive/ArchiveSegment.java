@@ -0,0 +1,283 @@
+package com.seanclen.capstone.archive;
+
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.persistence.AppointmentCodec;
+import com.seanclen.capstone.repository.InMemoryRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An immutable run of archived appointments, packed for AppointmentArchive.
+ * Every appointment is kept in the binary form written by AppointmentCodec, one after the other in a
+ * single byte array, in (date, ID) order. Beside the records, the segment keeps their dates as
+ * primitive arrays, for binary searches of a date window, and their ID hashes sorted, for finding an
+ * ID. The garbage collector sees seven objects per segment instead of four per appointment, and an
+ * appointment is only decoded when it is returned.
+ * @author Sean Clendening
+ */
+final class ArchiveSegment {
+    static final Comparator<Appointment> ORDER = Comparator.comparing(Appointment::getDate)
+            .thenComparing(Appointment::getId, InMemoryRepository.ID_ORDER);
+
+    private static final AppointmentCodec CODEC = new AppointmentCodec();
+    // The segment object and the headers of its six arrays.
+    private static final long OVERHEAD_BYTES = 40 + 6 * 16;
+
+    private final byte[] records;
+    // Where each record starts; the last entry is the length of the records.
+    private final int[] offsets;
+    // The date of each record, as UTC epoch seconds and nanoseconds, as in AppointmentCodec.
+    private final long[] seconds;
+    private final int[] nanos;
+    // The hash of every ID, in ascending order, and the record each belongs to.
+    private final int[] hashes;
+    private final int[] byHash;
+
+    private ArchiveSegment(byte[] records, int[] offsets, long[] seconds, int[] nanos) {
+        this.records = records;
+        this.offsets = offsets;
+        this.seconds = seconds;
+        this.nanos = nanos;
+
+        // Sort (hash, record) pairs packed into longs, then split them.
+        long[] pairs = new long[seconds.length];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = ((long) id(i).hashCode() << 32) | i;
+        }
+        Arrays.sort(pairs);
+        this.hashes = new int[pairs.length];
+        this.byHash = new int[pairs.length];
+        for (int i = 0; i < pairs.length; i++) {
+            hashes[i] = (int) (pairs[i] >> 32);
+            byHash[i] = (int) pairs[i];
+        }
+    }
+
+    /**
+     * Pack appointments into a segment.
+     * @param appointments the appointments, in any order
+     * @return the segment
+     */
+    static ArchiveSegment of(Collection<Appointment> appointments) {
+        List<Appointment> sorted = new ArrayList<>(appointments);
+        sorted.sort(ORDER);
+
+        int size = sorted.size();
+        int[] offsets = new int[size + 1];
+        long[] seconds = new long[size];
+        int[] nanos = new int[size];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(size * 48);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            for (int i = 0; i < size; i++) {
+                Appointment appointment = sorted.get(i);
+                offsets[i] = out.size();
+                CODEC.write(appointment, out);
+                seconds[i] = appointment.getDate().toEpochSecond(ZoneOffset.UTC);
+                nanos[i] = appointment.getDate().getNano();
+            }
+        } catch (IOException e) {
+            // Writing to a byte array cannot fail.
+            throw new UncheckedIOException(e);
+        }
+        offsets[size] = out.size();
+        return new ArchiveSegment(bytes.toByteArray(), offsets, seconds, nanos);
+    }
+
+    /**
+     * Merge two segments into one, in (date, ID) order.
+     * @param older a segment
+     * @param newer another segment
+     * @return the merged segment
+     */
+    static ArchiveSegment merge(ArchiveSegment older, ArchiveSegment newer) {
+        Builder merged = new Builder(older.size() + newer.size(), older.records.length + newer.records.length);
+        int i = 0;
+        int j = 0;
+        while (i < older.size() && j < newer.size()) {
+            if (older.compare(i, newer, j) <= 0) {
+                merged.add(older, i++);
+            } else {
+                merged.add(newer, j++);
+            }
+        }
+        while (i < older.size()) {
+            merged.add(older, i++);
+        }
+        while (j < newer.size()) {
+            merged.add(newer, j++);
+        }
+        return merged.build();
+    }
+
+    /**
+     * Copy the records of this segment from an index on, leaving out some IDs.
+     * @param from the first record to keep
+     * @param excluded the IDs to leave out
+     * @return the new segment
+     */
+    ArchiveSegment retain(int from, Collection<String> excluded) {
+        Builder retained = new Builder(size() - from, records.length - offsets[from]);
+        for (int i = from; i < size(); i++) {
+            if (!excluded.contains(id(i))) {
+                retained.add(this, i);
+            }
+        }
+        return retained.build();
+    }
+
+    int size() {
+        return seconds.length;
+    }
+
+    /**
+     * Estimate the heap used by the segment.
+     * @return the number of bytes
+     */
+    long bytes() {
+        return OVERHEAD_BYTES + records.length + 4L * offsets.length + 20L * seconds.length;
+    }
+
+    /**
+     * Find the record of an ID.
+     * @param id the ID
+     * @return the index of the record, or -1 if the ID is not in the segment
+     */
+    int indexOf(String id) {
+        int hash = id.hashCode();
+        int low = 0;
+        int high = hashes.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (hashes[middle] < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int i = low; i < hashes.length && hashes[i] == hash; i++) {
+            if (id(byHash[i]).equals(id)) {
+                return byHash[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the first record dated at or after a date.
+     * @param date the date
+     * @return the index of the record, or size() if every record is dated before
+     */
+    int lowerBound(LocalDateTime date) {
+        long second = date.toEpochSecond(ZoneOffset.UTC);
+        int nano = date.getNano();
+        int low = 0;
+        int high = seconds.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (seconds[middle] < second || (seconds[middle] == second && nanos[middle] < nano)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Check whether a record is dated before a date.
+     * @param index the index of the record
+     * @param date the date
+     * @return true if the record's date is earlier
+     */
+    boolean isBefore(int index, LocalDateTime date) {
+        long second = date.toEpochSecond(ZoneOffset.UTC);
+        return seconds[index] < second || (seconds[index] == second && nanos[index] < date.getNano());
+    }
+
+    /**
+     * Compare the (date, ID) order of a record with a record of another segment.
+     */
+    int compare(int index, ArchiveSegment other, int otherIndex) {
+        int byDate = seconds[index] != other.seconds[otherIndex]
+                ? Long.compare(seconds[index], other.seconds[otherIndex])
+                : Integer.compare(nanos[index], other.nanos[otherIndex]);
+        return byDate != 0 ? byDate : InMemoryRepository.ID_ORDER.compare(id(index), other.id(otherIndex));
+    }
+
+    /**
+     * Decode the ID of a record, which AppointmentCodec writes first.
+     */
+    String id(int index) {
+        try {
+            return input(index).readUTF();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Decode a record.
+     */
+    Appointment appointment(int index) {
+        try {
+            return CODEC.read(input(index));
+        } catch (IOException e) {
+            // Only valid appointments are ever packed.
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private DataInputStream input(int index) {
+        return new DataInputStream(new ByteArrayInputStream(records, offsets[index], offsets[index + 1] - offsets[index]));
+    }
+
+    /**
+     * Copies records, already in order, from other segments.
+     */
+    private static final class Builder {
+        private final byte[] records;
+        private final int[] offsets;
+        private final long[] seconds;
+        private final int[] nanos;
+        private int size;
+
+        private Builder(int capacity, int bytes) {
+            this.records = new byte[bytes];
+            this.offsets = new int[capacity + 1];
+            this.seconds = new long[capacity];
+            this.nanos = new int[capacity];
+        }
+
+        private void add(ArchiveSegment source, int index) {
+            int start = source.offsets[index];
+            int length = source.offsets[index + 1] - start;
+            System.arraycopy(source.records, start, records, offsets[size], length);
+            seconds[size] = source.seconds[index];
+            nanos[size] = source.nanos[index];
+            offsets[size + 1] = offsets[size] + length;
+            size++;
+        }
+
+        private ArchiveSegment build() {
+            if (size == seconds.length) {
+                return new ArchiveSegment(records, offsets, seconds, nanos);
+            }
+            // Records were left out: trim the arrays to what was copied.
+            return new ArchiveSegment(Arrays.copyOf(records, offsets[size]), Arrays.copyOf(offsets, size + 1),
+                    Arrays.copyOf(seconds, size), Arrays.copyOf(nanos, size));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.seanclen.capstone.changes;
+
+import com.seanclen.capstone.model.HasId;
+
+/**
+ * One entry of the change feed.
+ * @param sequence the position of the change in the feed; for RESET, the last change published before
+ *                 it, and for HEARTBEAT, the last change delivered
+ * @param collection "contacts" or "appointments"; null for RESET and HEARTBEAT
+ * @param type SAVED, DELETED, REMINDER, RESET or HEARTBEAT
+ * @param id the ID of the saved or deleted entity, or of the appointment of a REMINDER
+ * @param entity the saved entity, or the appointment of a REMINDER; null for other types
+ * @author Sean Clendening
+ */
+public record Change(long sequence, String collection, String type, String id, HasId entity) {
+    public static final String CONTACTS = "contacts";
+    public static final String APPOINTMENTS = "appointments";
+
+    /** An entity was created or updated. */
+    public static final String SAVED = "saved";
+    /** An entity was deleted. */
+    public static final String DELETED = "deleted";
+    /**
+     * Changes were lost to the subscriber, because it fell too far behind or asked to resume from a
+     * sequence the feed no longer holds. The subscriber must read the collections again; the feed ends
+     * after this change.
+     */
+    public static final String RESET = "reset";
+    /**
+     * An appointment's reminder is due. Not a change to the appointment, but sent to the subscribers
+     * following appointments all the same.
+     */
+    public static final String REMINDER = "reminder";
+    /** Nothing changed for a while; sent so that idle connections are not closed by proxies. */
+    public static final String HEARTBEAT = "heartbeat";
+
+    /**
+     * Check whether the change belongs to a collection.
+     * @param collection the collection, or null for every collection
+     * @return true if the change should be delivered to a subscriber of the collection
+     */
+    public boolean belongsTo(String collection) {
+        return collection == null || this.collection == null || collection.equals(this.collection);
+    }
+}
@@ -0,0 +1,297 @@
+package com.seanclen.capstone.changes;
+
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.model.HasId;
+import com.seanclen.capstone.reminders.ReminderEvent;
+import com.seanclen.capstone.repository.AppointmentRepository;
+import com.seanclen.capstone.repository.ChangeListener;
+import com.seanclen.capstone.repository.ContactRepository;
+import jakarta.annotation.PreDestroy;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publishes every save and delete of a contact or appointment as a numbered change, for clients that
+ * follow the collections live (GET /api/changes).
+ * - a write only claims the next sequence number and stores its change in a ring of recent history,
+ *   so publishing adds well under a microsecond to save and deleteById and never waits for a client
+ * - one dispatcher thread walks the history in sequence order and copies each change into the ring of
+ *   every subscriber (see ChangeSubscription); a subscriber whose ring fills up is sent a RESET and
+ *   dropped, so a stalled client costs one ring, not an ever-growing queue
+ * - a subscriber may resume after a sequence it has seen, such as the Last-Event-ID of a reconnecting
+ *   EventSource, and is replayed what it missed while that is still in the history; otherwise it is
+ *   sent a RESET
+ * - sequences start from the clock, so a sequence from before a restart is never mistaken for a later
+ *   one and only leads to a RESET
+ * - when nothing changes, a HEARTBEAT is sent every 15 seconds to keep connections open
+ * - appointment reminders (see ReminderScheduler) are sent as REMINDER changes, so the pages that
+ *   follow appointments can show them
+ * Changes made through this process only are published: with a shared database, every instance has a
+ * feed of its own.
+ * Settings:
+ * - capstone.changes.history: how many recent changes are kept for resuming (default 16384)
+ * - capstone.changes.buffer: how many changes a subscriber may fall behind before it is reset
+ *   (default 1024)
+ * Both are rounded up to a power of two.
+ * @author Sean Clendening
+ */
+@Component
+public class ChangeFeed {
+    private static final Logger log = LoggerFactory.getLogger(ChangeFeed.class);
+
+    private static final long HEARTBEAT_NANOS = TimeUnit.SECONDS.toNanos(15);
+
+    private final ContactRepository contactRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final CollectionListener<Contact> contactListener = new CollectionListener<>(Change.CONTACTS);
+    private final CollectionListener<Appointment> appointmentListener = new CollectionListener<>(Change.APPOINTMENTS);
+    private final AtomicReferenceArray<Change> history;
+    private final int mask;
+    private final int buffer;
+    // Sequences are microseconds since the epoch when the feed started, then one more per change; that
+    // stays below 2^53, so browsers read them exactly.
+    private final long firstSequence = System.currentTimeMillis() * 1000;
+    // The sequence of the last change published.
+    private final AtomicLong sequence = new AtomicLong(firstSequence);
+    private final ConcurrentLinkedQueue<ChangeSubscription> joining = new ConcurrentLinkedQueue<>();
+    private final Thread dispatcher;
+    // True while the dispatcher has subscribers, has delivered everything and is parked; only then
+    // does a publishing write need to wake it.
+    private volatile boolean waiting;
+    private volatile boolean running = true;
+
+    public ChangeFeed(ContactRepository contactRepository,
+                      AppointmentRepository appointmentRepository,
+                      @Value("${capstone.changes.history:16384}") int history,
+                      @Value("${capstone.changes.buffer:1024}") int buffer) {
+        if (history < 1 || buffer < 1) {
+            throw new IllegalArgumentException("The change history and buffer must hold at least one change");
+        }
+        this.contactRepository = contactRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.history = new AtomicReferenceArray<>(powerOfTwo(history));
+        this.mask = this.history.length() - 1;
+        this.buffer = powerOfTwo(buffer);
+        this.dispatcher = new Thread(this::dispatch, "change-feed");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+        contactRepository.attachChangeListener(contactListener);
+        appointmentRepository.attachChangeListener(appointmentListener);
+    }
+
+    /**
+     * Get the sequence of the last change published, which a client may resume after.
+     * @return the sequence
+     */
+    public long lastSequence() {
+        return sequence.get();
+    }
+
+    /**
+     * Follow the changes to one or both collections. Every subscription has its own delivery ring; the
+     * publisher may be subscribed to more than once.
+     * @param collection Change.CONTACTS, Change.APPOINTMENTS, or null for both
+     * @param after the sequence of the last change the subscriber has seen, or null to start with the
+     *              next change
+     * @return the changes, in sequence order, ending after a RESET or when the application stops
+     * @throws IllegalArgumentException if the collection is not one of the above
+     */
+    public Publisher<Change> changes(String collection, Long after) {
+        if (collection != null && !collection.equals(Change.CONTACTS) && !collection.equals(Change.APPOINTMENTS)) {
+            throw new IllegalArgumentException("Invalid collection");
+        }
+        return subscriber -> {
+            long resumeAfter = after != null ? after : sequence.get();
+            ChangeSubscription subscription = new ChangeSubscription(subscriber, collection, resumeAfter, buffer);
+            subscriber.onSubscribe(subscription);
+            joining.add(subscription);
+            LockSupport.unpark(dispatcher);
+        };
+    }
+
+    /**
+     * Stop publishing and end every subscriber's feed once its buffered changes are delivered.
+     */
+    @PreDestroy
+    public void close() {
+        contactRepository.detachChangeListener(contactListener);
+        appointmentRepository.detachChangeListener(appointmentListener);
+        running = false;
+        LockSupport.unpark(dispatcher);
+    }
+
+    /**
+     * Send the appointments whose reminders are due to the subscribers following appointments.
+     * @param event the reminders
+     */
+    @EventListener
+    public void remind(ReminderEvent event) {
+        for (Appointment appointment : event.appointments()) {
+            publish(Change.APPOINTMENTS, Change.REMINDER, appointment.getId(), appointment);
+        }
+    }
+
+    // Called by the repositories, while the entity's ID is locked, and for reminders.
+    private void publish(String collection, String type, String id, HasId entity) {
+        long next = sequence.incrementAndGet();
+        history.setRelease((int) next & mask, new Change(next, collection, type, id, entity));
+        if (waiting) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    private void dispatch() {
+        List<ChangeSubscription> subscribers = new ArrayList<>();
+        // The sequence of the next change to deliver.
+        long cursor = sequence.get() + 1;
+        long lastDelivery = System.nanoTime();
+        while (running) {
+            if (subscribers.isEmpty()) {
+                // Nobody was delivered to: skip ahead. Whoever joins now is replayed what it missed.
+                cursor = sequence.get() + 1;
+            }
+            ChangeSubscription subscription;
+            while ((subscription = joining.poll()) != null) {
+                if (admit(subscription, cursor)) {
+                    subscribers.add(subscription);
+                }
+            }
+            subscribers.removeIf(ChangeSubscription::isDone);
+
+            if (subscribers.isEmpty()) {
+                // Sleep until someone subscribes.
+                if (joining.isEmpty() && running) {
+                    LockSupport.park(this);
+                }
+                continue;
+            }
+
+            long lastPublished = sequence.get();
+            if (cursor <= lastPublished) {
+                Change change = await(cursor);
+                if (change == null) {
+                    // The writes lapped the dispatcher: what it had not delivered is gone.
+                    log.warn("Change feed fell {} changes behind; resetting {} subscribers",
+                            lastPublished - cursor + 1, subscribers.size());
+                    subscribers.forEach(s -> s.reset(lastPublished));
+                    subscribers.clear();
+                    cursor = lastPublished + 1;
+                    continue;
+                }
+                for (ChangeSubscription s : subscribers) {
+                    deliver(s, change, lastPublished);
+                }
+                cursor++;
+                lastDelivery = System.nanoTime();
+                continue;
+            }
+
+            long idle = HEARTBEAT_NANOS - (System.nanoTime() - lastDelivery);
+            if (idle <= 0) {
+                Change heartbeat = new Change(cursor - 1, null, Change.HEARTBEAT, null, null);
+                for (ChangeSubscription s : subscribers) {
+                    deliver(s, heartbeat, lastPublished);
+                }
+                lastDelivery = System.nanoTime();
+                continue;
+            }
+            waiting = true;
+            // Checked again after waiting is set, so that a write that missed it has been counted.
+            if (cursor > sequence.get() && joining.isEmpty() && running) {
+                LockSupport.parkNanos(this, idle);
+            }
+            waiting = false;
+        }
+
+        ChangeSubscription subscription;
+        while ((subscription = joining.poll()) != null) {
+            subscribers.add(subscription);
+        }
+        subscribers.forEach(s -> s.finish(null));
+    }
+
+    /**
+     * Replay to a new subscriber what it missed before the cursor.
+     * @return true if the subscriber should follow the feed from the cursor on, false if it was reset
+     */
+    private boolean admit(ChangeSubscription subscription, long cursor) {
+        long after = subscription.after();
+        long lastPublished = sequence.get();
+        if (after < firstSequence || after > lastPublished || cursor - 1 - after > history.length()) {
+            subscription.reset(lastPublished);
+            return false;
+        }
+        for (long next = after + 1; next < cursor; next++) {
+            Change change = await(next);
+            if (change == null) {
+                subscription.reset(lastPublished);
+                return false;
+            }
+            if (!deliver(subscription, change, lastPublished)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read a change from the history, waiting for a write that has claimed its sequence but not stored
+     * its change yet.
+     * @return the change, or null if it has been overwritten by a later one
+     */
+    private Change await(long next) {
+        for (;;) {
+            Change change = history.get((int) next & mask);
+            if (change != null && change.sequence() >= next) {
+                return change.sequence() == next ? change : null;
+            }
+            Thread.yield();
+        }
+    }
+
+    private boolean deliver(ChangeSubscription subscription, Change change, long lastPublished) {
+        try {
+            return subscription.offer(change, lastPublished);
+        } catch (RuntimeException e) {
+            // A subscriber must not throw; drop it rather than the dispatcher.
+            log.warn("Dropping change feed subscriber that failed to accept a change", e);
+            subscription.cancel();
+            return false;
+        }
+    }
+
+    private static int powerOfTwo(int size) {
+        return size == 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+    }
+
+    private final class CollectionListener<T extends HasId> implements ChangeListener<T> {
+        private final String collection;
+
+        private CollectionListener(String collection) {
+            this.collection = collection;
+        }
+
+        @Override
+        public void saved(T item) {
+            publish(collection, Change.SAVED, item.getId(), item);
+        }
+
+        @Override
+        public void deleted(String id) {
+            publish(collection, Change.DELETED, id, null);
+        }
+    }
+}
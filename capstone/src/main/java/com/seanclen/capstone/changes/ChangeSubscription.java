@@ -0,0 +1,154 @@
+package com.seanclen.capstone.changes;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One subscriber's view of the change feed: a bounded ring of the changes not yet delivered to it.
+ * The feed's dispatcher thread is the only producer and the subscriber's requests drain the ring, so
+ * the two only share the head and tail counters. When the ring is full, the subscriber is not keeping
+ * up: the buffered changes are dropped, it is sent a RESET and its feed ends. A stalled client
+ * therefore never holds more than one ring of changes.
+ * @author Sean Clendening
+ */
+final class ChangeSubscription implements Subscription {
+    private final Subscriber<? super Change> subscriber;
+    private final String collection;
+    private final long after;
+    private final Change[] buffer;
+    private final int mask;
+    // The next slot to deliver, advanced by the subscriber; the next slot to fill, by the dispatcher.
+    private volatile long head;
+    private volatile long tail;
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    // Set once by finish; the change to deliver last instead of whatever is buffered, if any.
+    private volatile boolean finished;
+    private volatile Change last;
+    private volatile boolean done;
+
+    /**
+     * @param subscriber the subscriber to deliver to
+     * @param collection the collection to deliver changes of, or null for every collection
+     * @param after the sequence to resume after, or ChangeFeed.LIVE for changes from now on
+     * @param capacity the size of the ring, a power of two
+     */
+    ChangeSubscription(Subscriber<? super Change> subscriber, String collection, long after, int capacity) {
+        this.subscriber = subscriber;
+        this.collection = collection;
+        this.after = after;
+        this.buffer = new Change[capacity];
+        this.mask = capacity - 1;
+    }
+
+    long after() {
+        return after;
+    }
+
+    boolean isDone() {
+        return done || finished;
+    }
+
+    /**
+     * Buffer a change for delivery. Called by the dispatcher only.
+     * @return false if the ring was full, in which case the subscription has been reset
+     */
+    boolean offer(Change change, long lastPublished) {
+        if (isDone() || change.sequence() <= after && !change.type().equals(Change.HEARTBEAT) || !change.belongsTo(collection)) {
+            return true;
+        }
+        long t = tail;
+        if (t - head == buffer.length) {
+            reset(lastPublished);
+            return false;
+        }
+        buffer[(int) t & mask] = change;
+        tail = t + 1;
+        drain();
+        return true;
+    }
+
+    /**
+     * Drop whatever is buffered, deliver a RESET and end the feed.
+     * @param lastPublished the sequence of the last change published
+     */
+    void reset(long lastPublished) {
+        finish(new Change(lastPublished, null, Change.RESET, null, null));
+    }
+
+    /**
+     * End the feed once the buffered changes are delivered, or in place of them.
+     * @param last the change to deliver instead of the buffered ones, or null to deliver those
+     */
+    void finish(Change last) {
+        if (!finished) {
+            this.last = last;
+            finished = true;
+            drain();
+        }
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            done = true;
+            subscriber.onError(new IllegalArgumentException("Requested " + n + " changes; the request must be positive"));
+            return;
+        }
+        requested.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+        drain();
+    }
+
+    @Override
+    public void cancel() {
+        done = true;
+    }
+
+    // Deliver as many changes as were requested, from whichever thread gets here first.
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        for (;;) {
+            long wanted = requested.get();
+            long emitted = 0;
+            while (!done) {
+                boolean ending = finished;
+                Change closing = last;
+                long h = head;
+                if (ending && (closing != null || h == tail)) {
+                    if (closing != null) {
+                        if (emitted == wanted) {
+                            break;
+                        }
+                        emitted++;
+                        subscriber.onNext(closing);
+                    }
+                    done = true;
+                    subscriber.onComplete();
+                    break;
+                }
+                if (h == tail || emitted == wanted) {
+                    break;
+                }
+                int slot = (int) h & mask;
+                Change change = buffer[slot];
+                buffer[slot] = null;
+                head = h + 1;
+                emitted++;
+                subscriber.onNext(change);
+            }
+            if (emitted != 0 && wanted != Long.MAX_VALUE) {
+                requested.addAndGet(-emitted);
+            }
+            missed = wip.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+}
@@ -1,11 +1,17 @@
 package com.seanclen.capstone.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.repository.Page;
+import com.seanclen.capstone.repository.VersionConflictException;
+import com.seanclen.capstone.repository.Versioned;
 import com.seanclen.capstone.service.AppointmentService;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.time.LocalDateTime;
@@ -14,9 +20,11 @@ import java.time.LocalDateTime;
 @RequestMapping("/api/appointments")
 public class AppointmentController {
     private final AppointmentService appointmentService;
+    private final ObjectMapper objectMapper;
 
-    public AppointmentController(AppointmentService appointmentService) {
+    public AppointmentController(AppointmentService appointmentService, ObjectMapper objectMapper) {
         this.appointmentService = appointmentService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
@@ -26,31 +34,162 @@ public class AppointmentController {
         return new ResponseEntity<>(appointment, HttpStatus.CREATED);
     }
 
+    /**
+     * List appointments. Without parameters every appointment is returned; with from, to or limit
+     * only the appointments in the date window [from, to) are returned, ordered by date.
+     * The response carries the version of the appointments as its ETag, and a request whose
+     * If-None-Match still matches it gets 304 Not Modified without any appointment being read.
+     */
     @GetMapping
-    public ResponseEntity<List<Appointment>> getAllAppointments() {
-        List<Appointment> appointments = appointmentService.getAllAppointments();
-        return new ResponseEntity<>(appointments, HttpStatus.OK);
+    public ResponseEntity<List<Appointment>> getAllAppointments(@RequestParam(required = false) @DateTimeFormat(pattern = Appointment.DATE_FORMAT) LocalDateTime from,
+                                                                @RequestParam(required = false) @DateTimeFormat(pattern = Appointment.DATE_FORMAT) LocalDateTime to,
+                                                                @RequestParam(required = false) Integer limit,
+                                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String tag = VersionTags.of(appointmentService.getAppointmentsVersion());
+        if (VersionTags.matches(ifNoneMatch, tag)) {
+            return VersionTags.notModified(tag);
+        }
+
+        if (from == null && to == null && limit == null) {
+            List<Appointment> appointments = appointmentService.getAllAppointments();
+            return new ResponseEntity<>(appointments, VersionTags.headers(tag), HttpStatus.OK);
+        }
+
+        try {
+            int max = limit != null ? limit : AppointmentService.DEFAULT_QUERY_LIMIT;
+            List<Appointment> appointments = appointmentService.getAppointmentsBetween(from, to, max);
+            return new ResponseEntity<>(appointments, VersionTags.headers(tag), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * List one page of appointments, ordered by ID. Selected when the cursor parameter is present; pass
+     * an empty cursor for the first page and the returned nextCursor for each following page. Tagged like
+     * the full list.
+     */
+    @GetMapping(params = "cursor")
+    public ResponseEntity<Page<Appointment>> getAppointmentsPage(@RequestParam(required = false) String cursor,
+                                                                 @RequestParam(required = false) Integer limit,
+                                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String tag = VersionTags.of(appointmentService.getAppointmentsVersion());
+        if (VersionTags.matches(ifNoneMatch, tag)) {
+            return VersionTags.notModified(tag);
+        }
+
+        try {
+            int max = limit != null ? limit : AppointmentService.DEFAULT_QUERY_LIMIT;
+            Page<Appointment> page = appointmentService.getAppointmentsPage(cursor, max);
+            return new ResponseEntity<>(page, VersionTags.headers(tag), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Search appointments by keywords in their description. Every term of q must appear; from and to
+     * optionally restrict the results to the date window [from, to). Tagged like the full list.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<Appointment>> searchAppointments(@RequestParam String q,
+                                                                @RequestParam(required = false) @DateTimeFormat(pattern = Appointment.DATE_FORMAT) LocalDateTime from,
+                                                                @RequestParam(required = false) @DateTimeFormat(pattern = Appointment.DATE_FORMAT) LocalDateTime to,
+                                                                @RequestParam(required = false) Integer limit,
+                                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String tag = VersionTags.of(appointmentService.getAppointmentsVersion());
+        if (VersionTags.matches(ifNoneMatch, tag)) {
+            return VersionTags.notModified(tag);
+        }
+
+        try {
+            int max = limit != null ? limit : AppointmentService.DEFAULT_QUERY_LIMIT;
+            List<Appointment> appointments = appointmentService.searchAppointments(q, from, to, max);
+            return new ResponseEntity<>(appointments, VersionTags.headers(tag), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Export every appointment as newline-delimited JSON, streamed straight from the repository.
+     * The response is gzip-compressed when the client sends Accept-Encoding: gzip.
+     */
+    @GetMapping(value = "/export", produces = NdjsonExport.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> exportAppointments(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return NdjsonExport.of(appointmentService::streamAllAppointments, objectMapper, acceptEncoding);
+    }
+
+    /**
+     * List archived appointments: past appointments moved out of the live list (see AppointmentSweeper),
+     * in the date window [from, to) and ordered by date. They can no longer change, so the response is
+     * not tagged.
+     */
+    @GetMapping("/archive")
+    public ResponseEntity<List<Appointment>> getArchivedAppointments(@RequestParam(required = false) @DateTimeFormat(pattern = Appointment.DATE_FORMAT) LocalDateTime from,
+                                                                     @RequestParam(required = false) @DateTimeFormat(pattern = Appointment.DATE_FORMAT) LocalDateTime to,
+                                                                     @RequestParam(required = false) Integer limit) {
+        try {
+            int max = limit != null ? limit : AppointmentService.DEFAULT_QUERY_LIMIT;
+            List<Appointment> appointments = appointmentService.getArchivedAppointmentsBetween(from, to, max);
+            return new ResponseEntity<>(appointments, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Get an archived appointment.
+     */
+    @GetMapping("/archive/{id}")
+    public ResponseEntity<Appointment> getArchivedAppointmentById(@PathVariable String id) {
+        Appointment appointment = appointmentService.getArchivedAppointmentById(id);
+        if (appointment != null) {
+            return new ResponseEntity<>(appointment, HttpStatus.OK);
+        }
+
+        return new ResponseEntity<>(HttpStatus.NOT_FOUND);
     }
 
+    /**
+     * Get an appointment. The response carries the appointment's version as its ETag, and a request
+     * whose If-None-Match still matches it gets 304 Not Modified without the appointment being read.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<Appointment> getAppointmentById(@PathVariable String id) {
+    public ResponseEntity<Appointment> getAppointmentById(@PathVariable String id,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String tag = VersionTags.of(appointmentService.getAppointmentVersion(id));
+        if (VersionTags.matches(ifNoneMatch, tag)) {
+            return VersionTags.notModified(tag);
+        }
+
         Appointment appointment = appointmentService.getAppointmentById(id);
         if (appointment != null) {
-            return new ResponseEntity<>(appointment, HttpStatus.OK);
+            return new ResponseEntity<>(appointment, VersionTags.headers(tag), HttpStatus.OK);
         }
 
         return new ResponseEntity<>(HttpStatus.NOT_FOUND);
     }
 
+    /**
+     * Update an appointment. With If-Match, the update is only applied if the appointment still has one
+     * of the listed tags, and otherwise, or if the appointment does not exist, fails with 412
+     * Precondition Failed. The response carries the appointment's new tag.
+     */
     @PutMapping("/{id}")
     public ResponseEntity<Appointment> updateAppointment(@PathVariable String id,
                                                          @RequestParam @DateTimeFormat(pattern = Appointment.DATE_FORMAT) LocalDateTime date,
-                                                         @RequestParam String description) {
+                                                         @RequestParam String description,
+                                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Appointment updatedAppointment = appointmentService.updateAppointment(id, date, description);
-            return new ResponseEntity<>(updatedAppointment, HttpStatus.OK);
+            long expected = VersionTags.expectedVersion(ifMatch, appointmentService.getAppointmentVersion(id));
+            Versioned<Appointment> updatedAppointment = appointmentService.updateAppointment(id, date, description, expected);
+            return new ResponseEntity<>(updatedAppointment.item(), VersionTags.headers(VersionTags.of(updatedAppointment.version())), HttpStatus.OK);
+        } catch (VersionConflictException e) {
+            return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
         } catch (IllegalArgumentException e) {
-            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            // Also thrown when the appointment does not exist, which fails If-Match.
+            return new ResponseEntity<>(VersionTags.rejectedUpdate(ifMatch, appointmentService.getAppointmentVersion(id)));
         }
     }
 
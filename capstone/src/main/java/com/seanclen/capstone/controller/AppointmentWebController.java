@@ -1,28 +1,36 @@
 package com.seanclen.capstone.controller;
 
+import com.seanclen.capstone.changes.ChangeFeed;
 import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.model.InvalidAttributesException;
 import com.seanclen.capstone.form.AppointmentForm;
 import com.seanclen.capstone.service.AppointmentService;
 
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 
 @Controller
 @RequestMapping("/appointments")
 public class AppointmentWebController {
 
     private final AppointmentService appointmentService;
+    private final ChangeFeed changeFeed;
 
-    public AppointmentWebController(AppointmentService appointmentService) {
+    public AppointmentWebController(AppointmentService appointmentService, ChangeFeed changeFeed) {
         this.appointmentService = appointmentService;
+        this.changeFeed = changeFeed;
     }
 
     @GetMapping
     public String listAppointments(Model model) {
+        // Read before the list, so the page follows the change feed from a point the list already covers.
+        model.addAttribute("changesAfter", changeFeed.lastSequence());
         model.addAttribute("appointments", appointmentService.getAllAppointments());
         return "appointments"; 
     }
@@ -52,15 +60,17 @@ public class AppointmentWebController {
     }
 
     @PostMapping 
-    public String createAppointment(@ModelAttribute AppointmentForm form, // Use @ModelAttribute to bind form fields
+    public String createAppointment(@ModelAttribute("appointment") AppointmentForm form, // Use @ModelAttribute to bind form fields
+                                BindingResult result,
                                 RedirectAttributes redirectAttributes) {
-        // Convert the date string to LocalDateTime if necessary
-        LocalDateTime date = LocalDateTime.parse(form.getDate());
-
         try {
             // Call the service with the data from the form object
-            appointmentService.createAppointment(date, form.getDescription());
+            appointmentService.createAppointment(parseDate(form.getDate()), form.getDescription());
             redirectAttributes.addFlashAttribute("success", "Appointment created successfully.");
+        } catch (InvalidAttributesException e) {
+            // Show the form again, with every invalid field marked.
+            FormErrors.reject(e, result);
+            return "appointments_form";
         } catch (IllegalArgumentException e) {
             redirectAttributes.addFlashAttribute("error", "Error creating appointment: " + e.getMessage());
         }
@@ -69,14 +79,17 @@ public class AppointmentWebController {
 
     @PutMapping("/{id}") // Maps to POST /appointments/{id} for updating
     public String updateAppointment(@PathVariable String id,
-                                    @ModelAttribute AppointmentForm form,
+                                    @ModelAttribute("appointment") AppointmentForm form,
+                                    BindingResult result,
                                     RedirectAttributes redirectAttributes) {
         try {
-            // Convert the date string to LocalDateTime if necessary
-            LocalDateTime date = LocalDateTime.parse(form.getDate());
-
-            appointmentService.updateAppointment(id, date, form.getDescription());
+            appointmentService.updateAppointment(id, parseDate(form.getDate()), form.getDescription());
             redirectAttributes.addFlashAttribute("success", "Appointment updated successfully.");
+        } catch (InvalidAttributesException e) {
+            // Show the form again, still editing the appointment, with every invalid field marked.
+            form.setId(id);
+            FormErrors.reject(e, result);
+            return "appointments_form";
         } catch (IllegalArgumentException e) {
             redirectAttributes.addFlashAttribute("error", "Error updating appointment: " + e.getMessage());
         }
@@ -93,4 +106,14 @@ public class AppointmentWebController {
         }
         return "redirect:/appointments";
     }
+
+    // A date that cannot be parsed is passed on as missing, so that the validation of the appointment
+    // reports it together with any other invalid field.
+    private static LocalDateTime parseDate(String date) {
+        try {
+            return date == null ? null : LocalDateTime.parse(date);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
 }
\ No newline at end of file
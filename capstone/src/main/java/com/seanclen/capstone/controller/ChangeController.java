@@ -0,0 +1,56 @@
+package com.seanclen.capstone.controller;
+
+import com.seanclen.capstone.changes.Change;
+import com.seanclen.capstone.changes.ChangeFeed;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+
+/**
+ * Streams the changes to contacts and appointments as server-sent events (see ChangeFeed).
+ * Every event is named after the change type and carries the change as JSON; its id is the change's
+ * sequence, so an EventSource that reconnects resumes with Last-Event-ID where it left off. Heartbeats
+ * are sent as comments.
+ * @author Sean Clendening
+ */
+@RestController
+@RequestMapping("/api/changes")
+public class ChangeController {
+    private final ChangeFeed changeFeed;
+
+    public ChangeController(ChangeFeed changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
+    /**
+     * Follow the changes, from the next one on or from after a sequence already seen.
+     * A page passes the sequence read before it listed the entities as after; when its EventSource
+     * reconnects, the Last-Event-ID header it adds is newer and takes precedence.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<Change>>> streamChanges(@RequestParam(required = false) String collection,
+                                                                       @RequestParam(required = false) Long after,
+                                                                       @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        try {
+            Long resumeAfter = lastEventId != null ? Long.valueOf(lastEventId.trim()) : after;
+            Flux<ServerSentEvent<Change>> events = Flux.from(changeFeed.changes(collection, resumeAfter))
+                    .map(ChangeController::event);
+            return new ResponseEntity<>(events, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    private static ServerSentEvent<Change> event(Change change) {
+        if (change.type().equals(Change.HEARTBEAT)) {
+            return ServerSentEvent.<Change>builder().comment(Change.HEARTBEAT).build();
+        }
+        return ServerSentEvent.builder(change)
+                .id(Long.toString(change.sequence()))
+                .event(change.type())
+                .build();
+    }
+}
@@ -1,20 +1,36 @@
 package com.seanclen.capstone.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seanclen.capstone.form.ContactBatchOperation;
+import com.seanclen.capstone.form.ContactBatchResult;
 import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.repository.Page;
+import com.seanclen.capstone.repository.VersionConflictException;
+import com.seanclen.capstone.repository.Versioned;
 import com.seanclen.capstone.service.ContactService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/contacts")
 public class ContactController {
     private final ContactService contactService;
+    private final ObjectMapper objectMapper;
 
-    public ContactController(ContactService contactService) {
+    public ContactController(ContactService contactService, ObjectMapper objectMapper) {
         this.contactService = contactService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
@@ -26,33 +42,166 @@ public class ContactController {
         return new ResponseEntity<>(contact, HttpStatus.CREATED);
     }
 
+    /**
+     * Apply a batch of create, update and delete operations sent as a JSON array.
+     * Returns one result per operation, in order; invalid operations are reported, not applied.
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<ContactBatchResult>> applyBatch(@RequestBody List<ContactBatchOperation> operations) {
+        List<ContactBatchResult> results = contactService.applyBatch(operations);
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
+
+    /**
+     * Apply a batch of operations sent as newline-delimited JSON, one operation per line.
+     */
+    @PostMapping(value = "/batch", consumes = NdjsonExport.MEDIA_TYPE)
+    public ResponseEntity<List<ContactBatchResult>> applyBatchStream(InputStream body) throws IOException {
+        List<ContactBatchOperation> operations = new ArrayList<>();
+        try (MappingIterator<ContactBatchOperation> lines = objectMapper.readerFor(ContactBatchOperation.class).readValues(body)) {
+            while (lines.hasNextValue()) {
+                operations.add(lines.nextValue());
+            }
+        } catch (JsonProcessingException e) {
+            // Nothing is applied when any line is malformed.
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        List<ContactBatchResult> results = contactService.applyBatch(operations);
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
+
+    /**
+     * List every contact. The response carries the version of the contacts as its ETag, and a request
+     * whose If-None-Match still matches it gets 304 Not Modified without any contact being read.
+     */
     @GetMapping
-    public ResponseEntity<List<Contact>> getAllContacts() {
+    public ResponseEntity<List<Contact>> getAllContacts(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String tag = VersionTags.of(contactService.getContactsVersion());
+        if (VersionTags.matches(ifNoneMatch, tag)) {
+            return VersionTags.notModified(tag);
+        }
+
         List<Contact> contacts = contactService.getAllContacts();
-        return new ResponseEntity<>(contacts, HttpStatus.OK);
+        return new ResponseEntity<>(contacts, VersionTags.headers(tag), HttpStatus.OK);
+    }
+
+    /**
+     * List one page of contacts. Selected when the cursor parameter is present; pass an empty cursor
+     * for the first page and the returned nextCursor for each following page. Tagged like the full list.
+     */
+    @GetMapping(params = "cursor")
+    public ResponseEntity<Page<Contact>> getContactsPage(@RequestParam(required = false) String cursor,
+                                                         @RequestParam(required = false) Integer limit,
+                                                         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String tag = VersionTags.of(contactService.getContactsVersion());
+        if (VersionTags.matches(ifNoneMatch, tag)) {
+            return VersionTags.notModified(tag);
+        }
+
+        try {
+            int max = limit != null ? limit : ContactService.DEFAULT_QUERY_LIMIT;
+            Page<Contact> page = contactService.getContactsPage(cursor, max);
+            return new ResponseEntity<>(page, VersionTags.headers(tag), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Search contacts by the start of their first or last name, for search-as-you-type. Tagged like the
+     * full list.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<Contact>> searchContacts(@RequestParam String prefix,
+                                                        @RequestParam(required = false) Integer limit,
+                                                        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String tag = VersionTags.of(contactService.getContactsVersion());
+        if (VersionTags.matches(ifNoneMatch, tag)) {
+            return VersionTags.notModified(tag);
+        }
+
+        try {
+            int max = limit != null ? limit : ContactService.DEFAULT_SEARCH_LIMIT;
+            List<Contact> contacts = contactService.searchContacts(prefix, max);
+            return new ResponseEntity<>(contacts, VersionTags.headers(tag), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
     }
 
+    /**
+     * Look up the contacts with a phone number, for inbound-call screen pops. Tagged like the full list.
+     */
+    @GetMapping("/by-phone/{phone}")
+    public ResponseEntity<List<Contact>> getContactsByPhone(@PathVariable String phone,
+                                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String tag = VersionTags.of(contactService.getContactsVersion());
+        if (VersionTags.matches(ifNoneMatch, tag)) {
+            return VersionTags.notModified(tag);
+        }
+
+        try {
+            List<Contact> contacts = contactService.findContactsByPhone(phone);
+            if (contacts.isEmpty()) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            return new ResponseEntity<>(contacts, VersionTags.headers(tag), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Export every contact as newline-delimited JSON, streamed straight from the repository.
+     * The response is gzip-compressed when the client sends Accept-Encoding: gzip.
+     */
+    @GetMapping(value = "/export", produces = NdjsonExport.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> exportContacts(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return NdjsonExport.of(contactService::streamAllContacts, objectMapper, acceptEncoding);
+    }
+
+    /**
+     * Get a contact. The response carries the contact's version as its ETag, and a request whose
+     * If-None-Match still matches it gets 304 Not Modified without the contact being read.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<Contact> getContactById(@PathVariable String id) {
+    public ResponseEntity<Contact> getContactById(@PathVariable String id,
+                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String tag = VersionTags.of(contactService.getContactVersion(id));
+        if (VersionTags.matches(ifNoneMatch, tag)) {
+            return VersionTags.notModified(tag);
+        }
+
         Contact contact = contactService.getContactById(id);
         if (contact != null) {
-            return new ResponseEntity<>(contact, HttpStatus.OK);
+            return new ResponseEntity<>(contact, VersionTags.headers(tag), HttpStatus.OK);
         }
 
         return new ResponseEntity<>(HttpStatus.NOT_FOUND);
     }
 
+    /**
+     * Update a contact. With If-Match, the update is only applied if the contact still has one of the
+     * listed tags, and otherwise, or if the contact does not exist, fails with 412 Precondition Failed,
+     * so a client never overwrites a change it has not seen. The response carries the contact's new tag.
+     */
     @PutMapping("/{id}")
     public ResponseEntity<Contact> updateContact(@PathVariable String id,
                                                  @RequestParam String firstName,
                                                  @RequestParam String lastName,
                                                  @RequestParam String phone,
-                                                 @RequestParam String address) {
+                                                 @RequestParam String address,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Contact updatedContact = contactService.updateContact(id, firstName, lastName, phone, address);
-            return new ResponseEntity<>(updatedContact, HttpStatus.OK);
+            long expected = VersionTags.expectedVersion(ifMatch, contactService.getContactVersion(id));
+            Versioned<Contact> updatedContact = contactService.updateContact(id, firstName, lastName, phone, address, expected);
+            return new ResponseEntity<>(updatedContact.item(), VersionTags.headers(VersionTags.of(updatedContact.version())), HttpStatus.OK);
+        } catch (VersionConflictException e) {
+            return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
         } catch (IllegalArgumentException e) {
-            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            // Also thrown when the contact does not exist, which fails If-Match.
+            return new ResponseEntity<>(VersionTags.rejectedUpdate(ifMatch, contactService.getContactVersion(id)));
         }
     }
 
@@ -1,11 +1,14 @@
 package com.seanclen.capstone.controller;
 
+import com.seanclen.capstone.changes.ChangeFeed;
 import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.model.InvalidAttributesException;
 import com.seanclen.capstone.form.ContactForm;
 import com.seanclen.capstone.service.ContactService;
 
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
@@ -14,13 +17,17 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 public class ContactWebController {
 
     private final ContactService contactService;
+    private final ChangeFeed changeFeed;
 
-    public ContactWebController(ContactService contactService) {
+    public ContactWebController(ContactService contactService, ChangeFeed changeFeed) {
         this.contactService = contactService;
+        this.changeFeed = changeFeed;
     }
 
     @GetMapping
     public String listContacts(Model model) {
+        // Read before the list, so the page follows the change feed from a point the list already covers.
+        model.addAttribute("changesAfter", changeFeed.lastSequence());
         model.addAttribute("contacts", contactService.getAllContacts());
         return "contacts"; 
     }
@@ -52,13 +59,18 @@ public class ContactWebController {
     }
     
     @PostMapping 
-    public String createContact(@ModelAttribute ContactForm form, // Use @ModelAttribute to bind form fields
+    public String createContact(@ModelAttribute("contact") ContactForm form, // Use @ModelAttribute to bind form fields
+                                BindingResult result,
                                 RedirectAttributes redirectAttributes) {
         
         try {
             // Call the service with the data from the form object
             contactService.createContact(form.getFirstName(), form.getLastName(), form.getPhone(), form.getAddress());
             redirectAttributes.addFlashAttribute("message", "Contact created successfully!");
+        } catch (InvalidAttributesException e) {
+            // Show the form again, with every invalid field marked.
+            FormErrors.reject(e, result);
+            return "contacts_form";
         } catch (IllegalArgumentException e) {
             redirectAttributes.addFlashAttribute("error", "Error creating contact: " + e.getMessage());
         }
@@ -68,13 +80,19 @@ public class ContactWebController {
     // --- U (Handle Update PUT) - UPDATED BINDING ---
     @PutMapping("/{id}")
     public String updateContact(@PathVariable String id,
-                                @ModelAttribute ContactForm form, // Use @ModelAttribute
+                                @ModelAttribute("contact") ContactForm form, // Use @ModelAttribute
+                                BindingResult result,
                                 RedirectAttributes redirectAttributes) {
         
         try {
             // Call the service with the data from the form object
             contactService.updateContact(id, form.getFirstName(), form.getLastName(), form.getPhone(), form.getAddress());
             redirectAttributes.addFlashAttribute("message", "Contact updated successfully!");
+        } catch (InvalidAttributesException e) {
+            // Show the form again, still editing the contact, with every invalid field marked.
+            form.setId(id);
+            FormErrors.reject(e, result);
+            return "contacts_form";
         } catch (IllegalArgumentException e) {
             redirectAttributes.addFlashAttribute("error", "Error updating contact: " + e.getMessage());
         }
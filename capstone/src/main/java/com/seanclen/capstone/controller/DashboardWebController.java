@@ -1,7 +1,7 @@
 package com.seanclen.capstone.controller;
 
-import com.seanclen.capstone.service.AppointmentService;
-import com.seanclen.capstone.service.ContactService;
+import com.seanclen.capstone.form.DashboardStatistics;
+import com.seanclen.capstone.service.StatisticsService;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -9,26 +9,26 @@ import org.springframework.web.bind.annotation.GetMapping;
 /**
  * Web controller for the dashboard page.
  * Handles requests to the dashboard and populates the model with necessary data.
+ * The figures come from StatisticsService, which reads running counts instead of listing the repositories.
  * @author Sean Clendening
  */
 @Controller
 public class DashboardWebController {
-    private final AppointmentService appointmentService;
-    private final ContactService contactService;
+    private final StatisticsService statisticsService;
 
-    public DashboardWebController(AppointmentService appointmentService, ContactService contactService) {
-        this.appointmentService = appointmentService;
-        this.contactService = contactService;
+    public DashboardWebController(StatisticsService statisticsService) {
+        this.statisticsService = statisticsService;
     }
 
     @GetMapping("/")
     public String getDashboard(Model model) {
-        int appointmentCount = appointmentService.getAllAppointments().size();
-        model.addAttribute("appointmentCount", appointmentCount);
-        
-        int contactCount = contactService.getAllContacts().size();
-        model.addAttribute("contactCount", contactCount);
-        
+        DashboardStatistics statistics = statisticsService.getStatistics();
+        model.addAttribute("appointmentCount", statistics.getAppointmentCount());
+        model.addAttribute("appointmentsNext24Hours", statistics.getAppointmentsNext24Hours());
+        model.addAttribute("appointmentsPerDay", statistics.getAppointmentsPerDay());
+
+        model.addAttribute("contactCount", statistics.getContactCount());
+
         return "dashboard";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,27 @@
+package com.seanclen.capstone.controller;
+
+import com.seanclen.capstone.model.InvalidAttributesException;
+import com.seanclen.capstone.model.Validation;
+import org.springframework.validation.BindingResult;
+
+/**
+ * Puts the rules a contact or an appointment failed on the fields of its web form, so that the form is
+ * shown again with every invalid field marked at once. The rules are those of Validation, which the
+ * model checks for the API as well, so the forms and the API accept and reject the same input.
+ * @author Sean Clendening
+ */
+final class FormErrors {
+    private FormErrors() {
+    }
+
+    /**
+     * Reject the field of every rule that failed, with the rule's message.
+     * @param e the exception listing the rules that failed
+     * @param result the binding result of the form
+     */
+    static void reject(InvalidAttributesException e, BindingResult result) {
+        for (Validation.Rule rule : e.getRules()) {
+            result.rejectValue(rule.attribute(), rule.name(), rule.message());
+        }
+    }
+}
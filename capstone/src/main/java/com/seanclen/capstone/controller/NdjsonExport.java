@@ -0,0 +1,92 @@
+package com.seanclen.capstone.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Builds streaming newline-delimited JSON (NDJSON) responses for the export endpoints.
+ * Entities are serialized one at a time straight from a repository stream into the response, so memory
+ * use is constant and the first line is sent as soon as the first entity is serialized, whatever the size
+ * of the dataset. When the client disconnects the next write fails and the stream is closed.
+ * @author Sean Clendening
+ */
+final class NdjsonExport {
+    static final String MEDIA_TYPE = "application/x-ndjson";
+
+    // Flush after this many lines so a slow export still delivers data steadily.
+    private static final int FLUSH_INTERVAL = 1000;
+
+    private NdjsonExport() {
+    }
+
+    /**
+     * Create a streaming NDJSON response.
+     * @param items supplies the stream to export; it is only opened once the response starts writing
+     * @param objectMapper the mapper used to serialize each entity
+     * @param acceptEncoding the request's Accept-Encoding header, or null
+     * @return the response entity
+     */
+    static ResponseEntity<StreamingResponseBody> of(Supplier<? extends Stream<?>> items,
+                                                    ObjectMapper objectMapper,
+                                                    String acceptEncoding) {
+        boolean gzip = acceptsGzip(acceptEncoding);
+        // Only flush explicitly, otherwise every entity would be flushed to the socket on its own.
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = gzip ? new GZIPOutputStream(outputStream, 8192, true) : outputStream;
+            try (Stream<?> stream = items.get();
+                 JsonGenerator generator = writer.createGenerator(out)) {
+                // Lines are terminated explicitly instead of separating root values with a space.
+                generator.setRootValueSeparator(null);
+                int lines = 0;
+                Iterator<?> iterator = stream.iterator();
+                while (iterator.hasNext()) {
+                    writer.writeValue(generator, iterator.next());
+                    generator.writeRaw('\n');
+                    if (++lines == 1 || lines % FLUSH_INTERVAL == 0) {
+                        generator.flush();
+                    }
+                }
+            }
+            // Closing the generator closed out, which finishes the gzip trailer.
+        };
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.CONTENT_TYPE, MEDIA_TYPE);
+        headers.set(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    /**
+     * Check if the client accepts a gzip response, honoring an explicit "gzip;q=0".
+     */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length < 2 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,105 @@
+package com.seanclen.capstone.controller;
+
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.repository.Page;
+import com.seanclen.capstone.service.AppointmentService;
+import com.seanclen.capstone.service.ReactiveAppointmentService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static com.seanclen.capstone.controller.ReactiveContactController.ok;
+
+/**
+ * The /api/v2 appointment endpoints, served from ReactiveAppointmentService.
+ * Request and response bodies are the same as in AppointmentController; see ReactiveContactController.
+ * @author Sean Clendening
+ */
+@RestController
+@RequestMapping("/api/v2/appointments")
+public class ReactiveAppointmentController {
+    private final ReactiveAppointmentService appointmentService;
+
+    public ReactiveAppointmentController(ReactiveAppointmentService appointmentService) {
+        this.appointmentService = appointmentService;
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<Appointment>> createAppointment(@RequestParam @DateTimeFormat(pattern = Appointment.DATE_FORMAT) LocalDateTime date,
+                                                               @RequestParam String description) {
+        return appointmentService.createAppointment(date, description)
+                .map(appointment -> new ResponseEntity<>(appointment, HttpStatus.CREATED))
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(new ResponseEntity<>(HttpStatus.BAD_REQUEST)));
+    }
+
+    /**
+     * Stream every appointment, ordered by ID, as newline-delimited JSON, reading each one only once
+     * the previous one has been written. Selected when none of the window or page parameters is present.
+     */
+    @GetMapping(params = {"!from", "!to", "!limit", "!cursor"}, produces = NdjsonExport.MEDIA_TYPE)
+    public Flux<Appointment> streamAllAppointments() {
+        return appointmentService.streamAllAppointments();
+    }
+
+    /**
+     * Stream every appointment as server-sent events, for clients that ask for them explicitly.
+     */
+    @GetMapping(params = {"!from", "!to", "!limit", "!cursor"}, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<Appointment> streamAllAppointmentsAsEvents() {
+        return appointmentService.streamAllAppointments();
+    }
+
+    /**
+     * List the appointments in the date window [from, to), ordered by date, as GET /api/appointments
+     * does with the same parameters.
+     */
+    @GetMapping
+    public Mono<ResponseEntity<List<Appointment>>> getAppointmentsBetween(@RequestParam(required = false) @DateTimeFormat(pattern = Appointment.DATE_FORMAT) LocalDateTime from,
+                                                                          @RequestParam(required = false) @DateTimeFormat(pattern = Appointment.DATE_FORMAT) LocalDateTime to,
+                                                                          @RequestParam(required = false) Integer limit) {
+        int max = limit != null ? limit : AppointmentService.DEFAULT_QUERY_LIMIT;
+        return ok(appointmentService.getAppointmentsBetween(from, to, max));
+    }
+
+    @GetMapping(params = "cursor")
+    public Mono<ResponseEntity<Page<Appointment>>> getAppointmentsPage(@RequestParam(required = false) String cursor,
+                                                                       @RequestParam(required = false) Integer limit) {
+        int max = limit != null ? limit : AppointmentService.DEFAULT_QUERY_LIMIT;
+        return ok(appointmentService.getAppointmentsPage(cursor, max));
+    }
+
+    @GetMapping("/search")
+    public Mono<ResponseEntity<List<Appointment>>> searchAppointments(@RequestParam String q,
+                                                                      @RequestParam(required = false) @DateTimeFormat(pattern = Appointment.DATE_FORMAT) LocalDateTime from,
+                                                                      @RequestParam(required = false) @DateTimeFormat(pattern = Appointment.DATE_FORMAT) LocalDateTime to,
+                                                                      @RequestParam(required = false) Integer limit) {
+        int max = limit != null ? limit : AppointmentService.DEFAULT_QUERY_LIMIT;
+        return ok(appointmentService.searchAppointments(q, from, to, max));
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Appointment>> getAppointmentById(@PathVariable String id) {
+        return ok(appointmentService.getAppointmentById(id));
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<Appointment>> updateAppointment(@PathVariable String id,
+                                                               @RequestParam @DateTimeFormat(pattern = Appointment.DATE_FORMAT) LocalDateTime date,
+                                                               @RequestParam String description) {
+        return ok(appointmentService.updateAppointment(id, date, description));
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteAppointment(@PathVariable String id) {
+        return appointmentService.deleteAppointment(id)
+                .map(deleted -> new ResponseEntity<Void>(deleted ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND))
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(new ResponseEntity<>(HttpStatus.BAD_REQUEST)));
+    }
+}
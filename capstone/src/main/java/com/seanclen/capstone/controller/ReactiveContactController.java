@@ -0,0 +1,111 @@
+package com.seanclen.capstone.controller;
+
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.repository.Page;
+import com.seanclen.capstone.service.ContactService;
+import com.seanclen.capstone.service.ReactiveContactService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * The /api/v2 contact endpoints, served from ReactiveContactService.
+ * Request and response bodies are the same as in ContactController. Handlers return a Mono or a Flux,
+ * so the request thread is released while a write waits for the log; the listing is streamed with
+ * backpressure (see streamAllContacts).
+ * @author Sean Clendening
+ */
+@RestController
+@RequestMapping("/api/v2/contacts")
+public class ReactiveContactController {
+    private final ReactiveContactService contactService;
+
+    public ReactiveContactController(ReactiveContactService contactService) {
+        this.contactService = contactService;
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<Contact>> createContact(@RequestParam String firstName,
+                                                       @RequestParam String lastName,
+                                                       @RequestParam String phone,
+                                                       @RequestParam String address) {
+        return contactService.createContact(firstName, lastName, phone, address)
+                .map(contact -> new ResponseEntity<>(contact, HttpStatus.CREATED))
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(new ResponseEntity<>(HttpStatus.BAD_REQUEST)));
+    }
+
+    /**
+     * Stream every contact, ordered by ID, as newline-delimited JSON.
+     * The next contact is only read once the previous one has been written to the connection, so a
+     * slow client holds back the repository rather than having the whole collection buffered for it.
+     */
+    @GetMapping(params = "!cursor", produces = NdjsonExport.MEDIA_TYPE)
+    public Flux<Contact> streamAllContacts() {
+        return contactService.streamAllContacts();
+    }
+
+    /**
+     * Stream every contact as server-sent events, for clients that ask for them explicitly.
+     */
+    @GetMapping(params = "!cursor", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<Contact> streamAllContactsAsEvents() {
+        return contactService.streamAllContacts();
+    }
+
+    /**
+     * List one page of contacts, as GET /api/contacts?cursor= does.
+     */
+    @GetMapping(params = "cursor")
+    public Mono<ResponseEntity<Page<Contact>>> getContactsPage(@RequestParam(required = false) String cursor,
+                                                               @RequestParam(required = false) Integer limit) {
+        int max = limit != null ? limit : ContactService.DEFAULT_QUERY_LIMIT;
+        return ok(contactService.getContactsPage(cursor, max));
+    }
+
+    @GetMapping("/search")
+    public Mono<ResponseEntity<List<Contact>>> searchContacts(@RequestParam String prefix,
+                                                              @RequestParam(required = false) Integer limit) {
+        int max = limit != null ? limit : ContactService.DEFAULT_SEARCH_LIMIT;
+        return ok(contactService.searchContacts(prefix, max));
+    }
+
+    @GetMapping("/by-phone/{phone}")
+    public Mono<ResponseEntity<List<Contact>>> getContactsByPhone(@PathVariable String phone) {
+        return ok(contactService.findContactsByPhone(phone).filter(contacts -> !contacts.isEmpty()));
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Contact>> getContactById(@PathVariable String id) {
+        return ok(contactService.getContactById(id));
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<Contact>> updateContact(@PathVariable String id,
+                                                       @RequestParam String firstName,
+                                                       @RequestParam String lastName,
+                                                       @RequestParam String phone,
+                                                       @RequestParam String address) {
+        return ok(contactService.updateContact(id, firstName, lastName, phone, address));
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteContact(@PathVariable String id) {
+        return contactService.deleteContact(id)
+                .map(deleted -> new ResponseEntity<Void>(deleted ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND))
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(new ResponseEntity<>(HttpStatus.BAD_REQUEST)));
+    }
+
+    /**
+     * Answer 200 with the value, 404 if there is none, and 400 if the arguments were invalid.
+     */
+    static <T> Mono<ResponseEntity<T>> ok(Mono<T> result) {
+        return result.map(value -> new ResponseEntity<>(value, HttpStatus.OK))
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND))
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(new ResponseEntity<>(HttpStatus.BAD_REQUEST)));
+    }
+}
@@ -0,0 +1,29 @@
+package com.seanclen.capstone.controller;
+
+import com.seanclen.capstone.form.DashboardStatistics;
+import com.seanclen.capstone.service.StatisticsService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/api/v2/stats")
+public class ReactiveStatisticsController {
+    private final StatisticsService statisticsService;
+
+    public ReactiveStatisticsController(StatisticsService statisticsService) {
+        this.statisticsService = statisticsService;
+    }
+
+    /**
+     * Get the dashboard figures. They are read from maintained counts and never block, so they are
+     * computed on the subscribing thread.
+     */
+    @GetMapping
+    public Mono<ResponseEntity<DashboardStatistics>> getStatistics() {
+        return Mono.fromSupplier(() -> new ResponseEntity<>(statisticsService.getStatistics(), HttpStatus.OK));
+    }
+}
@@ -0,0 +1,27 @@
+package com.seanclen.capstone.controller;
+
+import com.seanclen.capstone.form.DashboardStatistics;
+import com.seanclen.capstone.service.StatisticsService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/stats")
+public class StatisticsController {
+    private final StatisticsService statisticsService;
+
+    public StatisticsController(StatisticsService statisticsService) {
+        this.statisticsService = statisticsService;
+    }
+
+    /**
+     * Get the dashboard figures, read from counts maintained on every change.
+     */
+    @GetMapping
+    public ResponseEntity<DashboardStatistics> getStatistics() {
+        return new ResponseEntity<>(statisticsService.getStatistics(), HttpStatus.OK);
+    }
+}
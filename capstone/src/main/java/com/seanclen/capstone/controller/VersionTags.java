@@ -0,0 +1,110 @@
+package com.seanclen.capstone.controller;
+
+import com.seanclen.capstone.repository.EntityRepository;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Builds strong ETags from repository versions and answers If-None-Match with them, so a client that
+ * polls for changes gets 304 Not Modified without any entity being loaded or serialized. Also turns
+ * If-Match into the version an update expects, so a client only overwrites what it has seen.
+ * Controllers read the version before the entities, and repositories publish a version after the
+ * change it describes, so a tag is never newer than the body it is sent with.
+ * @author Sean Clendening
+ */
+final class VersionTags {
+    private VersionTags() {
+    }
+
+    /**
+     * Create the ETag of a version.
+     * @param version the version of an entity or collection
+     * @return the quoted tag, or null for NO_VERSION
+     */
+    static String of(long version) {
+        return version == EntityRepository.NO_VERSION ? null : '"' + Long.toHexString(version) + '"';
+    }
+
+    /**
+     * Check whether a request's If-None-Match header matches a tag, using the weak comparison the header
+     * calls for: a W/ prefix is ignored, and * matches any tag.
+     * @param ifNoneMatch the header, a comma-separated list of tags, or null
+     * @param tag the current tag, or null
+     * @return true if the client already has the current representation
+     */
+    static boolean matches(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null || tag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Turn a request's If-Match header into the version an update must still find, using the strong
+     * comparison the header calls for: weak tags never match.
+     * @param ifMatch the header, a comma-separated list of tags, or null
+     * @param current the current version of the entity
+     * @return ANY_VERSION without a header or with *, current if one of the tags is current's tag, and
+     *         otherwise NO_VERSION, which no existing entity has, so the update fails
+     */
+    static long expectedVersion(String ifMatch, long current) {
+        if (ifMatch == null) {
+            return EntityRepository.ANY_VERSION;
+        }
+        String tag = of(current);
+        for (String candidate : ifMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*")) {
+                return EntityRepository.ANY_VERSION;
+            }
+            if (candidate.equals(tag)) {
+                return current;
+            }
+        }
+        return EntityRepository.NO_VERSION;
+    }
+
+    /**
+     * Choose the status of an update that was rejected as invalid or not found. If-Match can only be met
+     * by an entity that exists, so for a missing entity a request carrying it fails its precondition,
+     * whatever its tags, even *.
+     * @param ifMatch the request's If-Match header, or null
+     * @param current the current version of the entity, read after the update failed
+     * @return 412 Precondition Failed for If-Match on a missing entity, and otherwise 400 Bad Request
+     */
+    static HttpStatus rejectedUpdate(String ifMatch, long current) {
+        return ifMatch != null && current == EntityRepository.NO_VERSION ? HttpStatus.PRECONDITION_FAILED : HttpStatus.BAD_REQUEST;
+    }
+
+    /**
+     * Create the headers of a response carrying a tag.
+     * @param tag the tag, or null for none
+     * @return the headers
+     */
+    static HttpHeaders headers(String tag) {
+        HttpHeaders headers = new HttpHeaders();
+        if (tag != null) {
+            headers.setETag(tag);
+        }
+        return headers;
+    }
+
+    /**
+     * Create an empty 304 Not Modified response.
+     * @param tag the current tag
+     * @return the response entity
+     */
+    static <T> ResponseEntity<T> notModified(String tag) {
+        return new ResponseEntity<>(headers(tag), HttpStatus.NOT_MODIFIED);
+    }
+}
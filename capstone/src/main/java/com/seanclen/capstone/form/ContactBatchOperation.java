@@ -0,0 +1,69 @@
+package com.seanclen.capstone.form;
+
+/**
+ * One operation of a contact batch request.
+ * - op: "create", "update" or "delete"
+ * - id: the contact to update or delete; ignored for create
+ * - firstName, lastName, phone, address: the contact's attributes; ignored for delete
+ */
+public class ContactBatchOperation {
+    public static final String CREATE = "create";
+    public static final String UPDATE = "update";
+    public static final String DELETE = "delete";
+
+    private String op;
+    private String id;
+    private String firstName;
+    private String lastName;
+    private String phone;
+    private String address;
+
+    // Getters and Setters
+    public String getOp() {
+        return op;
+    }
+
+    public void setOp(String op) {
+        this.op = op;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+
+    public String getPhone() {
+        return phone;
+    }
+
+    public void setPhone(String phone) {
+        this.phone = phone;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public void setAddress(String address) {
+        this.address = address;
+    }
+}
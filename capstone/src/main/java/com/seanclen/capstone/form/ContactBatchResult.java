@@ -0,0 +1,41 @@
+package com.seanclen.capstone.form;
+
+/**
+ * The outcome of one operation of a contact batch request, in the same position as the operation.
+ * - status: "created", "updated", "deleted" or "error"
+ * - id: the ID of the affected contact, if known
+ * - error: why the operation was rejected, when status is "error"
+ */
+public class ContactBatchResult {
+    public static final String CREATED = "created";
+    public static final String UPDATED = "updated";
+    public static final String DELETED = "deleted";
+    public static final String ERROR = "error";
+
+    private final String status;
+    private final String id;
+    private final String error;
+
+    public ContactBatchResult(String status, String id, String error) {
+        this.status = status;
+        this.id = id;
+        this.error = error;
+    }
+
+    public static ContactBatchResult error(String id, String error) {
+        return new ContactBatchResult(ERROR, id, error);
+    }
+
+    // Getters
+    public String getStatus() {
+        return status;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,64 @@
+package com.seanclen.capstone.form;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * The figures shown on the dashboard and returned by /api/stats.
+ * - contactCount, appointmentCount: the total number of contacts and appointments
+ * - appointmentsNext24Hours: appointments from the start of the current minute to 24 hours later
+ * - appointmentsPerDay: appointments on each of the next days, starting today
+ */
+public class DashboardStatistics {
+    private final long contactCount;
+    private final long appointmentCount;
+    private final long appointmentsNext24Hours;
+    private final List<DayCount> appointmentsPerDay;
+
+    public DashboardStatistics(long contactCount, long appointmentCount, long appointmentsNext24Hours,
+                               List<DayCount> appointmentsPerDay) {
+        this.contactCount = contactCount;
+        this.appointmentCount = appointmentCount;
+        this.appointmentsNext24Hours = appointmentsNext24Hours;
+        this.appointmentsPerDay = appointmentsPerDay;
+    }
+
+    // Getters
+    public long getContactCount() {
+        return contactCount;
+    }
+
+    public long getAppointmentCount() {
+        return appointmentCount;
+    }
+
+    public long getAppointmentsNext24Hours() {
+        return appointmentsNext24Hours;
+    }
+
+    public List<DayCount> getAppointmentsPerDay() {
+        return appointmentsPerDay;
+    }
+
+    /**
+     * The number of appointments on one day.
+     */
+    public static class DayCount {
+        private final LocalDate date;
+        private final long count;
+
+        public DayCount(LocalDate date, long count) {
+            this.date = date;
+            this.count = count;
+        }
+
+        // Getters
+        public LocalDate getDate() {
+            return date;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.seanclen.capstone.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times repository operations and every service method.
+ * - capstone.repository: tagged with the repository class and the operation (save, findPage, ...),
+ *   for each method of EntityRepository, ContactRepository and AppointmentRepository except findById
+ *   and existsById
+ * - capstone.service: tagged with the service class and the method, for each public service method
+ * Reads by ID take a few nanoseconds, far less than an advised call and its timer, and the services
+ * that make them are timed already, so timing them again at the repository would only double their
+ * cost. A percentile histogram is enabled in application.properties for capstone.service only, so
+ * Prometheus can compute any quantile of a service call across instances; the repository timers keep
+ * a count, a total and a maximum. Methods returning a Stream, Mono or Flux are timed until it is
+ * returned, not until it is consumed; the reactive services' work shows in the timers of the services
+ * and repositories they call.
+ * Timers are created on first use and then found with two lookups (class, then method), so a timed
+ * call costs two System.nanoTime calls and one timer update on top of the method and its proxy.
+ * Set capstone.metrics.enabled=false to remove the aspect, for example to measure its overhead.
+ * @author Sean Clendening
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(prefix = "capstone.metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class MetricsAspect {
+    public static final String REPOSITORY_TIMER = "capstone.repository";
+    public static final String SERVICE_TIMER = "capstone.service";
+
+    private final MeterRegistry registry;
+    private final ClassValue<ConcurrentHashMap<Method, Timer>> repositoryTimers = timersByMethod();
+    private final ClassValue<ConcurrentHashMap<Method, Timer>> serviceTimers = timersByMethod();
+
+    public MetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Around("(execution(* com.seanclen.capstone.repository.EntityRepository.*(..))"
+            + " || execution(* com.seanclen.capstone.repository.ContactRepository.*(..))"
+            + " || execution(* com.seanclen.capstone.repository.AppointmentRepository.*(..)))"
+            + " && !execution(* *.findById(String)) && !execution(* *.existsById(String))")
+    public Object timeRepository(ProceedingJoinPoint call) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            return call.proceed();
+        } finally {
+            timer(call, repositoryTimers, REPOSITORY_TIMER, "repository", "operation")
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Around("execution(public * com.seanclen.capstone.service.*Service.*(..))")
+    public Object timeService(ProceedingJoinPoint call) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            return call.proceed();
+        } finally {
+            timer(call, serviceTimers, SERVICE_TIMER, "service", "method")
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer timer(ProceedingJoinPoint call, ClassValue<ConcurrentHashMap<Method, Timer>> timers,
+                        String name, String classTag, String methodTag) {
+        Class<?> target = call.getTarget().getClass();
+        Method method = ((MethodSignature) call.getSignature()).getMethod();
+        Timer timer = timers.get(target).get(method);
+        if (timer == null) {
+            timer = timers.get(target).computeIfAbsent(method, m -> Timer.builder(name)
+                    .tags(classTag, target.getSimpleName(), methodTag, m.getName())
+                    .register(registry));
+        }
+        return timer;
+    }
+
+    private static ClassValue<ConcurrentHashMap<Method, Timer>> timersByMethod() {
+        return new ClassValue<>() {
+            @Override
+            protected ConcurrentHashMap<Method, Timer> computeValue(Class<?> type) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package com.seanclen.capstone.metrics;
+
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.model.Validation;
+import com.seanclen.capstone.model.ValidationFailures;
+import com.seanclen.capstone.repository.AppointmentRepository;
+import com.seanclen.capstone.repository.CompactContactRepository;
+import com.seanclen.capstone.repository.ContactRepository;
+import com.seanclen.capstone.repository.EntityRepository;
+import com.seanclen.capstone.repository.InMemoryRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Publishes the size of the repositories and the validation failures of the model.
+ * - capstone.repository.entities: the number of contacts and appointments
+ * - capstone.repository.memory: the estimated heap used by each in-memory repository and its indexes,
+ *   in bytes (see InMemoryRepository.estimatedBytes); not published for database-backed repositories
+ * - capstone.validation.failures: failed checks by entity and rule, such as rule="isValidPhone"
+ * All three are read from values the application maintains anyway, so a scrape costs the same
+ * whatever the number of entities.
+ * @author Sean Clendening
+ */
+@Component
+public class RepositoryMetrics implements MeterBinder {
+    public static final String ENTITIES = "capstone.repository.entities";
+    public static final String MEMORY = "capstone.repository.memory";
+    public static final String VALIDATION_FAILURES = "capstone.validation.failures";
+
+    private final ContactRepository contactRepository;
+    private final AppointmentRepository appointmentRepository;
+
+    public RepositoryMetrics(ContactRepository contactRepository, AppointmentRepository appointmentRepository) {
+        this.contactRepository = contactRepository;
+        this.appointmentRepository = appointmentRepository;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindRepository(registry, "contacts", contactRepository);
+        bindRepository(registry, "appointments", appointmentRepository);
+        bindValidation(registry, Contact.class);
+        bindValidation(registry, Appointment.class);
+    }
+
+    private static void bindRepository(MeterRegistry registry, String name, EntityRepository<?> repository) {
+        Gauge.builder(ENTITIES, repository, EntityRepository::count)
+                .tags("repository", name)
+                .description("Number of entities stored")
+                .register(registry);
+        if (repository instanceof InMemoryRepository<?> inMemory) {
+            Gauge.builder(MEMORY, inMemory, InMemoryRepository::estimatedBytes)
+                    .tags("repository", name)
+                    .baseUnit("bytes")
+                    .description("Estimated heap used by the entities and their indexes")
+                    .register(registry);
+        } else if (repository instanceof CompactContactRepository compact) {
+            Gauge.builder(MEMORY, compact, CompactContactRepository::estimatedBytes)
+                    .tags("repository", name)
+                    .baseUnit("bytes")
+                    .description("Estimated heap used by the entities and their indexes")
+                    .register(registry);
+        }
+    }
+
+    // One counter per validation rule of the entity, named as ValidationFailures names it.
+    private static void bindValidation(MeterRegistry registry, Class<?> entity) {
+        String prefix = entity.getSimpleName() + ".";
+        for (Validation.Rule rule : Validation.Rule.values()) {
+            if (rule.ruleName().startsWith(prefix)) {
+                FunctionCounter.builder(VALIDATION_FAILURES, rule.ruleName(), ValidationFailures::count)
+                        .tags("entity", entity.getSimpleName(), "rule", rule.ruleName().substring(prefix.length()))
+                        .description("Failed validation checks")
+                        .register(registry);
+            }
+        }
+    }
+}
@@ -9,12 +9,14 @@ import java.time.LocalDateTime;
  * - date: the date of the appointment
  * - time: the time of the appointment
  * - description: a brief description of the appointment
+ * Appointments are immutable: a change is a new appointment saved in place of the old one, so the
+ * repository versions, journals, indexes and reports every change.
  * @author Sean Clendening
  */
 public class Appointment implements HasId {
-    private String id;
-    private LocalDateTime date;
-    private String description;
+    private final String id;
+    private final LocalDateTime date;
+    private final String description;
 
     // Public constants for validation
     public final static int MAX_ID_LENGTH = 10;
@@ -29,23 +31,35 @@ public class Appointment implements HasId {
      * @throws IllegalArgumentException if any of the attributes are invalid
      */
     public Appointment(String id, LocalDateTime date, String description) {
-        if (!isValidId(id)) {
-            throw new IllegalArgumentException("Invalid ID");
-        }
-
-        if (!isValidDate(date)) {
-            throw new IllegalArgumentException("Invalid date");
-        }
+        // Every attribute is checked, so the exception lists all that are invalid.
+        this(id, date, description, Validation.appointment(id, date, description));
+    }
 
-        if (!isValidDescription(description)) {
-            throw new IllegalArgumentException("Invalid description");
-        }
+    // Used by the public constructor, restore and withId, which each check the attributes their own way.
+    private Appointment(String id, LocalDateTime date, String description, int failures) {
+        Validation.require(failures);
 
         this.id = id;
         this.date = date;
         this.description = description;
     }
 
+    /**
+     * Recreate a stored appointment, for example when reloading it from durable storage.
+     * The ID and description are validated as usual, but the date only has to be present: an
+     * appointment that was valid when it was saved may be in the past by the time it is reloaded.
+     * @param id the ID of the appointment
+     * @param date the date of the appointment
+     * @param description the description of the appointment
+     * @return the restored appointment
+     * @throws IllegalArgumentException if any of the attributes are invalid
+     */
+    public static Appointment restore(String id, LocalDateTime date, String description) {
+        int failures = Validation.appointmentId(id) | Validation.appointmentDescription(description);
+        return new Appointment(id, date, description,
+                date == null ? failures | Validation.Rule.APPOINTMENT_DATE.bit() : failures);
+    }
+
     /**
      * Get the ID of the appointment.
      * @return the ID of the appointment
@@ -71,42 +85,15 @@ public class Appointment implements HasId {
     }
 
     /**
-     * Set the ID of the appointment.
-     * @param id the new ID of the appointment
+     * Copy the appointment with another ID, for example when a repository assigns one. Only the ID is
+     * checked, so an appointment that has since passed can still be copied.
+     * @param id the ID of the copy
+     * @return an appointment with the given ID and the other attributes of this one
      * @throws IllegalArgumentException if the ID is invalid
      */
-    public void setId(String id) {
-        if (!isValidId(id)) {
-            throw new IllegalArgumentException("Invalid ID");
-        }
-
-        this.id = id;
-    }
-
-    /**
-     * Set the date of the appointment.
-     * @param date the new date of the appointment
-     * @throws IllegalArgumentException if the date is invalid
-     */
-    public void setDate(LocalDateTime date) {
-        if (!isValidDate(date)) {
-            throw new IllegalArgumentException("Invalid date");
-        }
-
-        this.date = date;
-    }
-
-    /**
-     * Set the description of the appointment.
-     * @param description the new description of the appointment
-     * @throws IllegalArgumentException if the description is invalid
-     */
-    public void setDescription(String description) {
-        if (!isValidDescription(description)) {
-            throw new IllegalArgumentException("Invalid description");
-        }
-
-        this.description = description;
+    @Override
+    public Appointment withId(String id) {
+        return new Appointment(id, date, description, Validation.appointmentId(id));
     }
 
     /**
@@ -115,8 +102,8 @@ public class Appointment implements HasId {
      * @param id the ID to check
      * @return true if the ID is valid, false otherwise
      */
-    private boolean isValidId(String id) {
-        return id != null && !id.isEmpty() && id.length() <= MAX_ID_LENGTH;
+    public final static boolean isValidId(String id) {
+        return Validation.appointmentId(id) == 0;
     }
 
     /**
@@ -126,7 +113,7 @@ public class Appointment implements HasId {
      * @return true if the date is valid, false otherwise
      */
     public final static boolean isValidDate(LocalDateTime date) {
-        return date != null && date.isAfter(LocalDateTime.now());
+        return Validation.appointmentDate(date) == 0;
     }
 
     /**
@@ -136,6 +123,6 @@ public class Appointment implements HasId {
      * @return true if the description is valid, false otherwise
      */
     public final static boolean isValidDescription(String description) {
-        return description != null && !description.isEmpty() && description.length() <= MAX_DESCRIPTION_LENGTH;
+        return Validation.appointmentDescription(description) == 0;
     }
 }
@@ -1,5 +1,7 @@
 package com.seanclen.capstone.model;
 
+import java.util.function.Supplier;
+
 /**
  * This class represents a contact in the address book.
  * It has the following attributes:
@@ -8,14 +10,16 @@ package com.seanclen.capstone.model;
  * - lastName: the last name of the contact
  * - phone: the phone number of the contact
  * - address: the address of the contact
+ * Contacts are immutable: a change is a new contact saved in place of the old one, so the repository
+ * versions, journals, indexes and reports every change, and a contact it returns is a snapshot.
  * @author Sean Clendening
  */
 public class Contact implements HasId {
-	private String id;
-	private String firstName;
-	private String lastName;
-	private String phone;
-	private String address;
+	private final String id;
+	private final String firstName;
+	private final String lastName;
+	private final String phone;
+	private final String address;
 
 	/**
 	 * Create a new contact with the given attributes.
@@ -27,25 +31,13 @@ public class Contact implements HasId {
 	 * @throws IllegalArgumentException if any of the attributes are invalid
 	 */
 	public Contact(String id, String firstName, String lastName, String phone, String address) {
-		if (!isValidId(id)) {
-			throw new IllegalArgumentException("Invalid ID");
-		}
-
-		if (!isValidFirstName(firstName)) {
-			throw new IllegalArgumentException("Invalid first name");
-		}
-
-		if (!isValidLastName(lastName)) {
-			throw new IllegalArgumentException("Invalid last name");
-		}
-
-		if (!isValidPhone(phone)) {
-			throw new IllegalArgumentException("Invalid phone number");
-		}
+		// Every attribute is checked, so the exception lists all that are invalid.
+		this(id, firstName, lastName, phone, address, Validation.contact(id, firstName, lastName, phone, address));
+	}
 
-		if (!isValidAddress(address)) {
-			throw new IllegalArgumentException("Invalid address");
-		}
+	// Used by the public constructor, create and withId, which check only what they have not checked already.
+	private Contact(String id, String firstName, String lastName, String phone, String address, int failures) {
+		Validation.require(failures);
 
 		this.id = id;
 		this.firstName = firstName;
@@ -54,6 +46,23 @@ public class Contact implements HasId {
 		this.address = address;
 	}
 
+	/**
+	 * Create a new contact, checking its attributes before taking an ID for it, so an invalid contact
+	 * does not use an ID up. Every attribute is checked once.
+	 * @param nextId supplies the ID of the contact, and is only called if the other attributes are valid
+	 * @param firstName the first name of the contact
+	 * @param lastName the last name of the contact
+	 * @param phone the phone number of the contact
+	 * @param address the address of the contact
+	 * @return the new contact
+	 * @throws IllegalArgumentException if any of the attributes are invalid
+	 */
+	public static Contact create(Supplier<String> nextId, String firstName, String lastName, String phone, String address) {
+		Validation.require(Validation.contactAttributes(firstName, lastName, phone, address));
+		String id = nextId.get();
+		return new Contact(id, firstName, lastName, phone, address, Validation.contactId(id));
+	}
+
 	/**
 	 * Get the ID of the contact.
 	 * @return the ID of the contact
@@ -95,67 +104,14 @@ public class Contact implements HasId {
 	}
 
 	/**
-	 * Set the ID of the contact.
-	 * @param id
+	 * Copy the contact with another ID, for example when a repository assigns one.
+	 * @param id the ID of the copy
+	 * @return a contact with the given ID and the other attributes of this one
 	 * @throws IllegalArgumentException if the ID is invalid
 	 */
-	public void setId(String id) {
-		if (!isValidId(id)) {
-			throw new IllegalArgumentException("Invalid ID");
-		}
-		this.id = id;
-	}
-
-	/**
-	 * Set the first name of the contact.
-	 * @param firstName
-	 * @throws IllegalArgumentException if the first name is invalid
-	 */
-	public void setFirstName(String firstName) {
-		if (!isValidFirstName(firstName)) {
-			throw new IllegalArgumentException("Invalid first name");
-		}
-
-		this.firstName = firstName;
-	}
-
-	/**
-	 * Set the last name of the contact.
-	 * @param lastName
-	 * @throws IllegalArgumentException if the last name is invalid
-	 */
-	public void setLastName(String lastName) {
-		if (!isValidLastName(lastName)) {
-			throw new IllegalArgumentException("Invalid last name");
-		}
-
-		this.lastName = lastName;
-	}
-
-	/**
-	 * Set the phone number of the contact.
-	 * @param phone
-	 * @throws IllegalArgumentException if the phone number is invalid
-	 */
-	public void setPhone(String phone) {
-		if (!isValidPhone(phone)) {
-			throw new IllegalArgumentException("Invalid phone number");
-		}
-
-		this.phone = phone;
-	}
-
-	/**
-	 * Set the address of the contact.
-	 * @param address
-	 * @throws IllegalArgumentException if the address is invalid
-	 */
-	public void setAddress(String address) {
-		if (!isValidAddress(address)) {
-			throw new IllegalArgumentException("Invalid address");
-		}
-
-		this.address = address;
+	@Override
+	public Contact withId(String id) {
+		return new Contact(id, firstName, lastName, phone, address, Validation.contactId(id));
 	}
 
 	/**
@@ -166,11 +122,7 @@ public class Contact implements HasId {
 	 * @return true if the ID is valid, false otherwise
 	 */
 	public final static boolean isValidId(String id) {
-		if (id == null || id.trim().length() == 0 || id.trim().length() > 10) {
-			return false;
-		}
-
-		return true;
+		return Validation.contactId(id) == 0;
 	}
 
 	/**
@@ -181,11 +133,7 @@ public class Contact implements HasId {
 	 * @return true if the first name is valid, false otherwise
 	 */
 	public final static boolean isValidFirstName(String firstName) {
-		if (firstName == null || firstName.trim().length() == 0 || firstName.trim().length() > 10) {
-			return false;
-		}
-
-		return true;
+		return Validation.contactFirstName(firstName) == 0;
 	}
 
 	/**
@@ -196,11 +144,7 @@ public class Contact implements HasId {
 	 * @return true if the last name is valid, false otherwise
 	 */
 	public final static boolean isValidLastName(String lastName) {
-		if (lastName == null || lastName.trim().length() == 0 || lastName.trim().length() > 10) {
-			return false;
-		}
-
-		return true;
+		return Validation.contactLastName(lastName) == 0;
 	}
 
 	/**
@@ -211,11 +155,7 @@ public class Contact implements HasId {
 	 * @return true if the phone number is valid, false otherwise
 	 */
 	public final static boolean isValidPhone(String phone) {
-		if (phone == null || phone.trim().length() != 10) {
-			return false;
-		}
-
-		return true;
+		return Validation.contactPhone(phone) == 0;
 	}
 
 	/**
@@ -226,10 +166,6 @@ public class Contact implements HasId {
 	 * @return true if the address is valid, false otherwise
 	 */
 	public final static boolean isValidAddress(String address) {
-		if (address == null || address.trim().length() == 0 || address.trim().length() > 30) {
-			return false;
-		}
-
-		return true;
+		return Validation.contactAddress(address) == 0;
 	}
 }
@@ -6,5 +6,12 @@ package com.seanclen.capstone.model;
  */
 public interface HasId {
     String getId();
-    void setId(String id);
+
+    /**
+     * Copy the entity with another ID. Entities are immutable, so a repository assigning an ID stores
+     * the copy, not the entity it was given.
+     * @param id the ID of the copy
+     * @return a copy of the entity with the given ID
+     */
+    HasId withId(String id);
 }
\ No newline at end of file
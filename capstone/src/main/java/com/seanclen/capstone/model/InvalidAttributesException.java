@@ -0,0 +1,45 @@
+package com.seanclen.capstone.model;
+
+import java.util.List;
+
+/**
+ * Thrown when attributes of a contact or an appointment are invalid, listing every rule that failed.
+ * It is an IllegalArgumentException, so callers that only need to know that the input was rejected
+ * do not have to handle it separately. The message is the messages of the failed rules, joined with
+ * ", ", such as "Invalid first name, Invalid phone number".
+ * @author Sean Clendening
+ */
+public class InvalidAttributesException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final int failures;
+
+    /**
+     * Create an exception for the rules that failed.
+     * @param failures the rules that failed, as returned by the Validation checks; must not be 0
+     */
+    public InvalidAttributesException(int failures) {
+        super(message(failures));
+        this.failures = failures;
+    }
+
+    /**
+     * Get the rules that failed, in the order of their attributes.
+     * @return the failed rules
+     */
+    public List<Validation.Rule> getRules() {
+        return Validation.rules(failures);
+    }
+
+    /**
+     * Get the messages of the rules that failed, in the order of their attributes.
+     * @return the messages, such as "Invalid phone number"
+     */
+    public List<String> getErrors() {
+        return getRules().stream().map(Validation.Rule::message).toList();
+    }
+
+    private static String message(int failures) {
+        return String.join(", ", Validation.rules(failures).stream().map(Validation.Rule::message).toList());
+    }
+}
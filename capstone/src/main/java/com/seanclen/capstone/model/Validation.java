@@ -0,0 +1,244 @@
+package com.seanclen.capstone.model;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The validation rules of Contact and Appointment, shared by their constructors, the services and
+ * the web forms.
+ * Every check returns a bit mask of the rules that failed, 0 when the value is valid, so a whole
+ * entity is checked in one pass by combining the checks of its attributes with |, and every failure
+ * is reported instead of only the first. A check allocates nothing when the value is valid: lengths
+ * are measured without trimming the string, and the current time compared with appointment dates is
+ * cached for a millisecond. Failed checks are counted in ValidationFailures under the name of the rule.
+ * @author Sean Clendening
+ */
+public final class Validation {
+    /**
+     * A validation rule, with the name its failures are counted under, the attribute it checks and the
+     * message reported for it.
+     */
+    public enum Rule {
+        CONTACT_ID("Contact.isValidId", "id", "Invalid ID"),
+        CONTACT_FIRST_NAME("Contact.isValidFirstName", "firstName", "Invalid first name"),
+        CONTACT_LAST_NAME("Contact.isValidLastName", "lastName", "Invalid last name"),
+        CONTACT_PHONE("Contact.isValidPhone", "phone", "Invalid phone number"),
+        CONTACT_ADDRESS("Contact.isValidAddress", "address", "Invalid address"),
+        APPOINTMENT_ID("Appointment.isValidId", "id", "Invalid ID"),
+        APPOINTMENT_DATE("Appointment.isValidDate", "date", "Invalid date"),
+        APPOINTMENT_DESCRIPTION("Appointment.isValidDescription", "description", "Invalid description");
+
+        private static final Rule[] RULES = values();
+
+        private final String name;
+        private final String attribute;
+        private final String message;
+
+        Rule(String name, String attribute, String message) {
+            this.name = name;
+            this.attribute = attribute;
+            this.message = message;
+        }
+
+        /**
+         * Get the bit of the rule in the masks returned by the checks.
+         * @return the bit
+         */
+        public int bit() {
+            return 1 << ordinal();
+        }
+
+        /**
+         * Get the name the rule's failures are counted under, such as "Contact.isValidPhone".
+         * @return the name of the rule
+         */
+        public String ruleName() {
+            return name;
+        }
+
+        /**
+         * Get the attribute the rule checks, such as "phone", named as in the model and the web forms.
+         * @return the name of the attribute
+         */
+        public String attribute() {
+            return attribute;
+        }
+
+        /**
+         * Get the message reported when the rule fails, such as "Invalid phone number".
+         * @return the message
+         */
+        public String message() {
+            return message;
+        }
+    }
+
+    public final static int MAX_CONTACT_ID_LENGTH = 10;
+    public final static int MAX_NAME_LENGTH = 10;
+    public final static int PHONE_LENGTH = 10;
+    public final static int MAX_ADDRESS_LENGTH = 30;
+
+    // The current time, refreshed at most once per millisecond.
+    private static volatile Now now = new Now(Long.MIN_VALUE, LocalDateTime.MIN);
+
+    private Validation() {
+    }
+
+    /**
+     * Check every attribute of a contact.
+     * @return the rules that failed, or 0 if the contact is valid
+     */
+    public static int contact(String id, String firstName, String lastName, String phone, String address) {
+        return contactId(id) | contactAttributes(firstName, lastName, phone, address);
+    }
+
+    /**
+     * Check every attribute of a contact but its ID, before an ID is taken for a new contact.
+     * @return the rules that failed, or 0 if the attributes are valid
+     */
+    public static int contactAttributes(String firstName, String lastName, String phone, String address) {
+        return contactFirstName(firstName) | contactLastName(lastName) | contactPhone(phone) | contactAddress(address);
+    }
+
+    /**
+     * Check every attribute of an appointment, which must be in the future.
+     * @return the rules that failed, or 0 if the appointment is valid
+     */
+    public static int appointment(String id, LocalDateTime date, String description) {
+        return appointmentId(id) | appointmentDate(date) | appointmentDescription(description);
+    }
+
+    /**
+     * Check the ID of a contact: not blank, and at most MAX_CONTACT_ID_LENGTH characters once trimmed.
+     */
+    public static int contactId(String id) {
+        return check(id != null && trimmedLengthWithin(id, MAX_CONTACT_ID_LENGTH), Rule.CONTACT_ID);
+    }
+
+    /**
+     * Check the first name of a contact: not blank, and at most MAX_NAME_LENGTH characters once trimmed.
+     */
+    public static int contactFirstName(String firstName) {
+        return check(firstName != null && trimmedLengthWithin(firstName, MAX_NAME_LENGTH), Rule.CONTACT_FIRST_NAME);
+    }
+
+    /**
+     * Check the last name of a contact: not blank, and at most MAX_NAME_LENGTH characters once trimmed.
+     */
+    public static int contactLastName(String lastName) {
+        return check(lastName != null && trimmedLengthWithin(lastName, MAX_NAME_LENGTH), Rule.CONTACT_LAST_NAME);
+    }
+
+    /**
+     * Check the phone number of a contact: exactly PHONE_LENGTH characters once trimmed.
+     */
+    public static int contactPhone(String phone) {
+        return check(isPhoneNumber(phone), Rule.CONTACT_PHONE);
+    }
+
+    /**
+     * Tell whether a value is a valid phone number, as contactPhone does, without counting a failure:
+     * for values that are not a contact's, such as the number a search looks for.
+     */
+    public static boolean isPhoneNumber(String phone) {
+        return phone != null && trimmedLength(phone) == PHONE_LENGTH;
+    }
+
+    /**
+     * Check the address of a contact: not blank, and at most MAX_ADDRESS_LENGTH characters once trimmed.
+     */
+    public static int contactAddress(String address) {
+        return check(address != null && trimmedLengthWithin(address, MAX_ADDRESS_LENGTH), Rule.CONTACT_ADDRESS);
+    }
+
+    /**
+     * Check the ID of an appointment: not empty, and at most Appointment.MAX_ID_LENGTH characters.
+     */
+    public static int appointmentId(String id) {
+        return check(id != null && !id.isEmpty() && id.length() <= Appointment.MAX_ID_LENGTH, Rule.APPOINTMENT_ID);
+    }
+
+    /**
+     * Check the date of a new appointment: present and in the future.
+     */
+    public static int appointmentDate(LocalDateTime date) {
+        return check(date != null && date.isAfter(now()), Rule.APPOINTMENT_DATE);
+    }
+
+    /**
+     * Check the description of an appointment: not empty, and at most Appointment.MAX_DESCRIPTION_LENGTH
+     * characters.
+     */
+    public static int appointmentDescription(String description) {
+        return check(description != null && !description.isEmpty()
+                && description.length() <= Appointment.MAX_DESCRIPTION_LENGTH, Rule.APPOINTMENT_DESCRIPTION);
+    }
+
+    /**
+     * Throw if any rule failed.
+     * @param failures the rules that failed, as returned by the checks
+     * @throws InvalidAttributesException listing every rule that failed
+     */
+    public static void require(int failures) {
+        if (failures != 0) {
+            throw new InvalidAttributesException(failures);
+        }
+    }
+
+    /**
+     * List the rules in a mask, in the order of their attributes.
+     * @param failures the rules that failed, as returned by the checks
+     * @return the rules
+     */
+    public static List<Rule> rules(int failures) {
+        List<Rule> rules = new ArrayList<>(Integer.bitCount(failures));
+        for (Rule rule : Rule.RULES) {
+            if ((failures & rule.bit()) != 0) {
+                rules.add(rule);
+            }
+        }
+        return rules;
+    }
+
+    private static int check(boolean valid, Rule rule) {
+        if (valid) {
+            return 0;
+        }
+        ValidationFailures.fail(rule.ruleName());
+        return rule.bit();
+    }
+
+    // The length of value.trim(), without creating the trimmed string.
+    static int trimmedLength(String value) {
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end - start;
+    }
+
+    private static boolean trimmedLengthWithin(String value, int max) {
+        int length = trimmedLength(value);
+        return length > 0 && length <= max;
+    }
+
+    private static LocalDateTime now() {
+        long millis = System.currentTimeMillis();
+        Now current = now;
+        if (current.millis != millis) {
+            current = new Now(millis, LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()));
+            now = current;
+        }
+        return current.time;
+    }
+
+    private record Now(long millis, LocalDateTime time) {
+    }
+}
@@ -0,0 +1,37 @@
+package com.seanclen.capstone.model;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the validation checks of the model that failed, by rule.
+ * A rule is named after its check, such as "Contact.isValidPhone". The counts are plain LongAdders so
+ * that the model does not depend on a metrics library; the metrics configuration publishes them.
+ * @author Sean Clendening
+ */
+public final class ValidationFailures {
+    private static final ConcurrentHashMap<String, LongAdder> COUNTS = new ConcurrentHashMap<>();
+
+    private ValidationFailures() {
+    }
+
+    /**
+     * Record a failed check.
+     * @param rule the name of the check
+     * @return false, so that a check can return the result of this call
+     */
+    static boolean fail(String rule) {
+        COUNTS.computeIfAbsent(rule, r -> new LongAdder()).increment();
+        return false;
+    }
+
+    /**
+     * Get the number of times a check has failed.
+     * @param rule the name of the check, such as "Contact.isValidPhone"
+     * @return the number of failures since the application started
+     */
+    public static long count(String rule) {
+        LongAdder count = COUNTS.get(rule);
+        return count != null ? count.sum() : 0;
+    }
+}
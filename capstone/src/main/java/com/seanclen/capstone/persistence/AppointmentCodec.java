@@ -0,0 +1,34 @@
+package com.seanclen.capstone.persistence;
+
+import com.seanclen.capstone.model.Appointment;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Binary form of an appointment: its ID, its date as UTC epoch seconds plus nanoseconds, and its description.
+ * Appointments are read back with Appointment.restore, because a stored appointment may be in the past.
+ */
+public class AppointmentCodec implements EntityCodec<Appointment> {
+    @Override
+    public void write(Appointment appointment, DataOutput out) throws IOException {
+        out.writeUTF(appointment.getId());
+        out.writeLong(appointment.getDate().toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(appointment.getDate().getNano());
+        out.writeUTF(appointment.getDescription());
+    }
+
+    @Override
+    public Appointment read(DataInput in) throws IOException {
+        String id = in.readUTF();
+        LocalDateTime date = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+        try {
+            return Appointment.restore(id, date, in.readUTF());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Stored appointment is invalid: " + e.getMessage(), e);
+        }
+    }
+}
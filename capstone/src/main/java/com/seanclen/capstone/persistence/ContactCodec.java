@@ -0,0 +1,30 @@
+package com.seanclen.capstone.persistence;
+
+import com.seanclen.capstone.model.Contact;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary form of a contact: its five attributes as modified UTF-8 strings.
+ */
+public class ContactCodec implements EntityCodec<Contact> {
+    @Override
+    public void write(Contact contact, DataOutput out) throws IOException {
+        out.writeUTF(contact.getId());
+        out.writeUTF(contact.getFirstName());
+        out.writeUTF(contact.getLastName());
+        out.writeUTF(contact.getPhone());
+        out.writeUTF(contact.getAddress());
+    }
+
+    @Override
+    public Contact read(DataInput in) throws IOException {
+        try {
+            return new Contact(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Stored contact is invalid: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package com.seanclen.capstone.persistence;
+
+import com.seanclen.capstone.model.HasId;
+import com.seanclen.capstone.repository.InMemoryRepository;
+import com.seanclen.capstone.repository.RepositoryJournal;
+import com.seanclen.capstone.repository.WarmupSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Makes an InMemoryRepository durable with a write-ahead log and periodic compacted snapshots.
+ * Every save and delete is appended to the log before the repository call returns. A snapshot folds
+ * the previous snapshot and every sealed log segment into one file holding only the latest version of
+ * each live entity, so recovery loads the snapshot and replays only the log written since.
+ * The snapshot is memory-mapped rather than read: recovery only replays the log tail before the
+ * repository is ready, reads are answered from the mapped file, and a background thread loads the
+ * snapshot into the heap and then unmaps it.
+ * Log records are [byte op][UTF id] followed, for a save, by the entity as written by the codec.
+ * @param <T> the type of entity in the repository
+ */
+public class DurableRepository<T extends HasId> implements RepositoryJournal<T>, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(DurableRepository.class);
+
+    private static final byte SAVE = 1;
+    private static final byte DELETE = 2;
+
+    private final String name;
+    private final InMemoryRepository<T> repository;
+    private final EntityCodec<T> codec;
+    private final Path directory;
+    private final boolean fsync;
+    // Only one snapshot is taken at a time.
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private volatile WriteAheadLog writeAheadLog;
+    // True while the snapshot is being loaded into the heap in the background.
+    private volatile boolean loading;
+
+    /**
+     * Create the durability layer for a repository. Nothing is read or written until recover is called.
+     * @param name a name for log messages, such as "contacts"
+     * @param repository the repository to make durable
+     * @param codec converts the repository's entities to and from bytes
+     * @param directory the directory holding this repository's log segments and snapshots
+     * @param fsync whether to force every commit to disk before acknowledging it
+     */
+    public DurableRepository(String name, InMemoryRepository<T> repository, EntityCodec<T> codec,
+                             Path directory, boolean fsync) {
+        this.name = name;
+        this.repository = repository;
+        this.codec = codec;
+        this.directory = directory;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Make the repository ready from the latest snapshot and the log written since, then start logging
+     * every change. The snapshot is mapped and served from the file while a background thread loads
+     * it into the heap; the log tail is replayed before this method returns.
+     * Must be called once, before the repository is used.
+     * @return what was recovered and how long it took until the repository was ready
+     * @throws IOException if the snapshot or the log cannot be read
+     */
+    public RecoveryReport recover() throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(directory);
+
+        int[] lastUsedId = {0};
+        long firstSegment = 0;
+
+        Path latest = SnapshotFile.latest(directory);
+        SnapshotFile snapshot = latest != null ? SnapshotFile.open(latest) : null;
+        if (snapshot != null) {
+            repository.beginWarmup(new MappedSnapshot(snapshot));
+            lastUsedId[0] = snapshot.lastUsedId();
+            firstSegment = snapshot.segment();
+        }
+
+        long[] replayed = {0};
+        long lastSegment = firstSegment;
+        List<Long> segments = WriteAheadLog.listSegments(directory);
+        for (int i = 0; i < segments.size(); i++) {
+            long segment = segments.get(i);
+            Path file = WriteAheadLog.segmentPath(directory, segment);
+            if (segment < firstSegment) {
+                // Left behind by a snapshot that was interrupted before cleaning up.
+                Files.deleteIfExists(file);
+                continue;
+            }
+
+            long valid = WriteAheadLog.replay(file, payload -> {
+                apply(payload, lastUsedId);
+                replayed[0]++;
+            });
+            lastSegment = segment;
+
+            if (valid < Files.size(file)) {
+                truncate(file, valid);
+                if (i < segments.size() - 1) {
+                    // Later segments were written after a corrupt record and cannot be trusted.
+                    log.error("Corrupt record in {}; ignoring {} later log segment(s) of {}",
+                            file, segments.size() - 1 - i, name);
+                    for (long orphan : segments.subList(i + 1, segments.size())) {
+                        Path orphanFile = WriteAheadLog.segmentPath(directory, orphan);
+                        Files.move(orphanFile, orphanFile.resolveSibling(orphanFile.getFileName() + ".orphaned"));
+                    }
+                    break;
+                }
+                log.warn("Discarded a torn record at the end of {}", file);
+            }
+        }
+
+        repository.restoreIdCounter(lastUsedId[0]);
+        writeAheadLog = new WriteAheadLog(directory, Math.max(lastSegment, firstSegment) + 1, fsync);
+        repository.attachJournal(this);
+
+        if (snapshot != null) {
+            loading = true;
+            Thread loader = new Thread(() -> load(snapshot), "snapshot-loader-" + name);
+            loader.setDaemon(true);
+            loader.start();
+        }
+
+        int snapshotEntities = snapshot != null ? snapshot.size() : 0;
+        return new RecoveryReport(name, snapshotEntities, replayed[0], System.nanoTime() - start);
+    }
+
+    /**
+     * Compact the log: seal the current segment, then merge the previous snapshot with every sealed
+     * segment into a new snapshot and delete the files it replaces. Writers are never blocked; they
+     * keep appending to the new segment while the snapshot is built from files. Only the changes in
+     * the sealed segments are held in memory; the previous snapshot is streamed from its mapping.
+     * @return true if a snapshot was written, false if nothing changed since the last snapshot, the
+     *         previous snapshot is still being loaded, or another snapshot is in progress
+     * @throws IOException if the snapshot cannot be written
+     */
+    public boolean snapshot() throws IOException {
+        if (loading || !snapshotLock.tryLock()) {
+            return false;
+        }
+
+        try {
+            long current = writeAheadLog.currentSegment();
+            if (writeAheadLog.currentSegmentBytes() == 0
+                    && WriteAheadLog.listSegments(directory).stream().noneMatch(segment -> segment < current)) {
+                return false;
+            }
+
+            long sealedBelow = writeAheadLog.rotate().join();
+
+            int[] lastUsedId = {0};
+            int maxEntityBytes = 0;
+            long firstSegment = 0;
+            Path latest = SnapshotFile.latest(directory);
+            SnapshotFile previous = latest != null ? SnapshotFile.open(latest) : null;
+            List<Long> segments;
+            try {
+                if (previous != null) {
+                    lastUsedId[0] = previous.lastUsedId();
+                    maxEntityBytes = previous.maxEntityBytes();
+                    firstSegment = previous.segment();
+                }
+
+                // The latest change of every ID in the sealed segments, in ID order; null marks a delete.
+                NavigableMap<String, byte[]> changes = new TreeMap<>(InMemoryRepository.ID_ORDER);
+                segments = WriteAheadLog.listSegments(directory);
+                for (long segment : segments) {
+                    if (segment >= firstSegment && segment < sealedBelow) {
+                        WriteAheadLog.replay(WriteAheadLog.segmentPath(directory, segment),
+                                payload -> fold(payload, changes, lastUsedId));
+                    }
+                }
+                for (byte[] entity : changes.values()) {
+                    if (entity != null) {
+                        maxEntityBytes = Math.max(maxEntityBytes, entity.length);
+                    }
+                }
+
+                try (SnapshotFile.Writer writer = SnapshotFile.writer(directory, sealedBelow, lastUsedId[0], maxEntityBytes)) {
+                    merge(previous, changes, writer);
+                    writer.commit();
+                }
+            } finally {
+                // Unmap the previous snapshot before its file is deleted.
+                if (previous != null) {
+                    previous.close();
+                }
+            }
+
+            // The new snapshot is in place; everything it covers can go.
+            for (Path old : SnapshotFile.list(directory)) {
+                if (SnapshotFile.segmentOf(old) < sealedBelow) {
+                    Files.deleteIfExists(old);
+                }
+            }
+            for (long segment : segments) {
+                if (segment < sealedBelow) {
+                    Files.deleteIfExists(WriteAheadLog.segmentPath(directory, segment));
+                }
+            }
+            return true;
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> recordSave(T item) {
+        return writeAheadLog.append(encode(SAVE, item.getId(), item));
+    }
+
+    @Override
+    public CompletableFuture<Void> recordDelete(String id) {
+        return writeAheadLog.append(encode(DELETE, id, null));
+    }
+
+    /**
+     * Stop logging and close the log once every pending change is written.
+     */
+    @Override
+    public void close() {
+        repository.attachJournal(null);
+        if (writeAheadLog != null) {
+            writeAheadLog.close();
+        }
+    }
+
+    /**
+     * Load every snapshot entity into the heap, then end the repository's warm-up and unmap the snapshot.
+     */
+    private void load(SnapshotFile snapshot) {
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < snapshot.size(); i++) {
+                try {
+                    repository.restoreFromSnapshot(decode(snapshot.entity(i)));
+                } catch (IOException e) {
+                    log.error("Skipping entity {} of the {} snapshot", i, name, e);
+                }
+            }
+            log.info("Loaded {} {} from the snapshot into memory in {} ms",
+                    String.format("%,d", snapshot.size()), name, (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            repository.endWarmup();
+            // Readers that started during the warm-up may still hold the snapshot; once it is closed
+            // they find nothing there and read the heap instead.
+            snapshot.close();
+            loading = false;
+        }
+    }
+
+    private T decode(byte[] entity) throws IOException {
+        return codec.read(new DataInputStream(new ByteArrayInputStream(entity)));
+    }
+
+    /**
+     * Write the previous snapshot's entities and the changes from the log to a new snapshot, in ID order.
+     */
+    private static void merge(SnapshotFile previous, NavigableMap<String, byte[]> changes,
+                              SnapshotFile.Writer writer) throws IOException {
+        Iterator<Map.Entry<String, byte[]>> pending = changes.entrySet().iterator();
+        Map.Entry<String, byte[]> change = pending.hasNext() ? pending.next() : null;
+
+        int size = previous != null ? previous.size() : 0;
+        for (int i = 0; i < size; i++) {
+            String id = previous.id(i);
+            while (change != null && InMemoryRepository.ID_ORDER.compare(change.getKey(), id) < 0) {
+                addChange(change, writer);
+                change = pending.hasNext() ? pending.next() : null;
+            }
+            if (change != null && change.getKey().equals(id)) {
+                addChange(change, writer);
+                change = pending.hasNext() ? pending.next() : null;
+            } else {
+                writer.add(previous.entity(i));
+            }
+        }
+        while (change != null) {
+            addChange(change, writer);
+            change = pending.hasNext() ? pending.next() : null;
+        }
+    }
+
+    private static void addChange(Map.Entry<String, byte[]> change, SnapshotFile.Writer writer) throws IOException {
+        if (change.getValue() != null) {
+            writer.add(change.getValue());
+        }
+    }
+
+    private byte[] encode(byte op, String id, T item) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(op);
+            out.writeUTF(id);
+            if (item != null) {
+                codec.write(item, out);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // Writing to a byte array cannot fail.
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Replay one log record into the repository.
+     */
+    private void apply(byte[] payload, int[] lastUsedId) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        String id = in.readUTF();
+        lastUsedId[0] = Math.max(lastUsedId[0], sequentialId(id));
+
+        if (op == SAVE) {
+            repository.restore(codec.read(in));
+        } else if (op == DELETE) {
+            repository.restoreDelete(id);
+        } else {
+            throw new IOException("Unknown log record type " + op);
+        }
+    }
+
+    /**
+     * Fold one log record into the changes merged into a snapshot being built.
+     */
+    private static void fold(byte[] payload, Map<String, byte[]> changes, int[] lastUsedId) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        String id = in.readUTF();
+        lastUsedId[0] = Math.max(lastUsedId[0], sequentialId(id));
+
+        if (op == SAVE) {
+            // The entity follows the op byte and the UTF-encoded ID (two length bytes plus the ID bytes).
+            int headerLength = payload.length - in.available();
+            changes.put(id, Arrays.copyOfRange(payload, headerLength, payload.length));
+        } else {
+            changes.put(id, null);
+        }
+    }
+
+    /**
+     * Parse an ID handed out by the repository's counter.
+     * @return the ID as a number, or 0 if it is not a sequential ID
+     */
+    private static int sequentialId(String id) {
+        if (id.isEmpty() || id.length() > 9) {
+            return 0;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+        }
+        return Integer.parseInt(id);
+    }
+
+    private static void truncate(Path file, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        }
+    }
+
+    /**
+     * Serves the repository's reads from the mapped snapshot while it is being loaded.
+     */
+    private final class MappedSnapshot implements WarmupSnapshot<T> {
+        private final SnapshotFile snapshot;
+
+        private MappedSnapshot(SnapshotFile snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public int size() {
+            return snapshot.size();
+        }
+
+        @Override
+        public int indexOf(String id) {
+            try {
+                return snapshot.indexOf(id);
+            } catch (ClosedChannelException e) {
+                return -1;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public int indexAfter(String id) {
+            try {
+                return snapshot.indexAfter(id);
+            } catch (ClosedChannelException e) {
+                // Nothing is read from a closed snapshot, so the walk ends at once.
+                return snapshot.size();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public T entity(int index) {
+            try {
+                return decode(snapshot.entity(index));
+            } catch (ClosedChannelException e) {
+                return null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * What a recovery restored and how long it took until the repository was ready.
+     * @param name the repository name
+     * @param snapshotEntities the number of entities in the mapped snapshot, loaded in the background
+     * @param replayedRecords the number of log records replayed after the snapshot
+     * @param elapsedNanos the time until the repository was ready to serve reads
+     */
+    public record RecoveryReport(String name, int snapshotEntities, long replayedRecords, long elapsedNanos) {
+        @Override
+        public String toString() {
+            return String.format("Ready to serve %s in %,d ms (%,d in mapped snapshot, %,d log records replayed)",
+                    name, elapsedNanos / 1_000_000, snapshotEntities, replayedRecords);
+        }
+    }
+}
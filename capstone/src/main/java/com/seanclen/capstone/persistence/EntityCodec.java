@@ -0,0 +1,28 @@
+package com.seanclen.capstone.persistence;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Converts an entity to and from the binary form stored in the write-ahead log and in snapshots.
+ * @param <T> the type of entity
+ */
+public interface EntityCodec<T> {
+    /**
+     * Write all attributes of an entity. The ID must come first, written with writeUTF, so that
+     * snapshots can find an entity without decoding the rest of it.
+     * @param entity the entity to write
+     * @param out the destination
+     * @throws IOException if the destination cannot be written
+     */
+    void write(T entity, DataOutput out) throws IOException;
+
+    /**
+     * Read an entity written by write.
+     * @param in the source
+     * @return the entity
+     * @throws IOException if the source cannot be read or does not hold a valid entity
+     */
+    T read(DataInput in) throws IOException;
+}
@@ -0,0 +1,73 @@
+package com.seanclen.capstone.persistence;
+
+import com.seanclen.capstone.repository.InMemoryAppointmentRepository;
+import com.seanclen.capstone.repository.InMemoryContactRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Makes the in-memory contact and appointment repositories durable when capstone.persistence.enabled
+ * is true, which it is not by default. It does nothing when capstone.storage.type selects a database,
+ * which is durable on its own.
+ * On startup each repository maps its snapshot and replays its write-ahead log before the application
+ * serves requests, and the time until it is ready is logged. The snapshot is then loaded into memory in
+ * the background while point reads are answered from the mapped file. Snapshots are taken periodically
+ * so that the next startup only replays the log written since.
+ * Settings:
+ * - capstone.persistence.directory: where the logs and snapshots are kept (default "data")
+ * - capstone.persistence.fsync: force every commit to disk before acknowledging it (default true)
+ * - capstone.persistence.snapshot-interval: how often to compact the log (default PT5M)
+ * @author Sean Clendening
+ */
+@Component
+@ConditionalOnExpression("${capstone.persistence.enabled:false} and '${capstone.storage.type:memory}' == 'memory'")
+public class PersistenceManager {
+    private static final Logger log = LoggerFactory.getLogger(PersistenceManager.class);
+
+    private final List<DurableRepository<?>> repositories;
+
+    public PersistenceManager(InMemoryContactRepository contactRepository,
+                              InMemoryAppointmentRepository appointmentRepository,
+                              @Value("${capstone.persistence.directory:data}") String directory,
+                              @Value("${capstone.persistence.fsync:true}") boolean fsync) {
+        Path root = Path.of(directory);
+        this.repositories = List.of(
+                new DurableRepository<>("contacts", contactRepository, new ContactCodec(), root.resolve("contacts"), fsync),
+                new DurableRepository<>("appointments", appointmentRepository, new AppointmentCodec(), root.resolve("appointments"), fsync));
+    }
+
+    @PostConstruct
+    public void recover() throws IOException {
+        for (DurableRepository<?> repository : repositories) {
+            log.info("{}", repository.recover());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${capstone.persistence.snapshot-interval:PT5M}",
+            fixedDelayString = "${capstone.persistence.snapshot-interval:PT5M}")
+    public void snapshot() {
+        for (DurableRepository<?> repository : repositories) {
+            try {
+                repository.snapshot();
+            } catch (IOException | RuntimeException e) {
+                // The log is still intact; the next snapshot will cover what this one missed.
+                log.error("Failed to snapshot repository", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        repositories.forEach(DurableRepository::close);
+    }
+}
@@ -0,0 +1,513 @@
+package com.seanclen.capstone.persistence;
+
+import com.seanclen.capstone.repository.InMemoryRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * A compacted snapshot of a repository: the latest binary form of every live entity, as produced by an
+ * EntityCodec, plus the highest sequential ID ever used.
+ * A snapshot named snapshot-N.dat covers every write-ahead log segment numbered below N, so recovery
+ * loads it and only replays segments N and above.
+ * Entities are stored in fixed-width records sorted by ID (InMemoryRepository.ID_ORDER), so a snapshot
+ * is opened by memory-mapping it with FileChannel.map: record i sits at a computable offset, and an
+ * entity can be found by binary search over the mapped file before anything has been read into the heap.
+ * The record width is chosen when the snapshot is written, from the largest entity in it. The field
+ * limits of contacts and appointments keep that close to the size of a typical entity.
+ * Layout: [long MAGIC][int lastUsedId][int count][int recordWidth], then count records of recordWidth
+ * bytes, each [int CRC32C][int length][entity][zero padding], then [long MAGIC] again to mark a
+ * complete file. Entities start with their ID written by DataOutput.writeUTF.
+ * Snapshots are written to a temporary file and atomically renamed, so a crash never leaves a partial
+ * snapshot behind.
+ * A snapshot must be closed once it is no longer read, which unmaps it at once instead of when the
+ * garbage collector gets to the buffers, so the file can be deleted and its pages are given back.
+ * Reads share a read lock and close takes the write lock, so no read touches an unmapped buffer.
+ */
+public final class SnapshotFile implements Closeable {
+    private static final long MAGIC = 0x43415053_4E415032L;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".dat";
+    private static final int HEADER_BYTES = 20;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int TRAILER_BYTES = 8;
+
+    private final Path file;
+    private final long segment;
+    private final int lastUsedId;
+    private final int count;
+    private final int recordWidth;
+    // A single mapping is limited to 2 GB, so large snapshots are mapped in several regions.
+    private final int recordsPerRegion;
+    private final MappedByteBuffer[] regions;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    private SnapshotFile(Path file, int lastUsedId, int count, int recordWidth, MappedByteBuffer[] regions) {
+        this.file = file;
+        this.segment = segmentOf(file);
+        this.lastUsedId = lastUsedId;
+        this.count = count;
+        this.recordWidth = recordWidth;
+        this.recordsPerRegion = Integer.MAX_VALUE / recordWidth;
+        this.regions = regions;
+    }
+
+    /**
+     * Map a snapshot into memory. Only the header and trailer are read; records are read from the
+     * mapping on demand, so opening takes the same time whatever the size of the snapshot.
+     * @param file the snapshot file
+     * @return the mapped snapshot
+     * @throws IOException if the file cannot be read or is not a complete snapshot
+     */
+    public static SnapshotFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(channel, header, 0);
+            if (header.getLong(0) != MAGIC) {
+                throw new IOException("Not a snapshot: " + file);
+            }
+
+            int lastUsedId = header.getInt(8);
+            int count = header.getInt(12);
+            int recordWidth = header.getInt(16);
+            long recordsEnd = HEADER_BYTES + (long) count * recordWidth;
+            if (count < 0 || recordWidth <= RECORD_HEADER_BYTES || channel.size() != recordsEnd + TRAILER_BYTES) {
+                throw new IOException("Incomplete snapshot: " + file);
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES);
+            readFully(channel, trailer, recordsEnd);
+            if (trailer.getLong(0) != MAGIC) {
+                throw new IOException("Incomplete snapshot: " + file);
+            }
+
+            int recordsPerRegion = Integer.MAX_VALUE / recordWidth;
+            int regionCount = count == 0 ? 0 : (count - 1) / recordsPerRegion + 1;
+            MappedByteBuffer[] regions = new MappedByteBuffer[regionCount];
+            for (int r = 0; r < regionCount; r++) {
+                long first = (long) r * recordsPerRegion;
+                long records = Math.min(recordsPerRegion, count - first);
+                // The mapping stays valid after the channel is closed.
+                regions[r] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_BYTES + first * recordWidth, records * recordWidth);
+            }
+            return new SnapshotFile(file, lastUsedId, count, recordWidth, regions);
+        }
+    }
+
+    /**
+     * Start writing a snapshot covering every log segment below the given one.
+     * Entities must be added in ID order and must not be longer than maxEntityBytes.
+     * @param directory the log directory
+     * @param segment the first log segment not covered by the snapshot
+     * @param lastUsedId the highest sequential ID used so far
+     * @param maxEntityBytes the length of the largest entity that will be added
+     * @return a writer that must be committed for the snapshot to replace the previous one
+     * @throws IOException if the snapshot cannot be created
+     */
+    public static Writer writer(Path directory, long segment, int lastUsedId, int maxEntityBytes) throws IOException {
+        return new Writer(path(directory, segment), lastUsedId, RECORD_HEADER_BYTES + maxEntityBytes);
+    }
+
+    /**
+     * Get the first log segment not covered by this snapshot.
+     * @return the segment number
+     */
+    public long segment() {
+        return segment;
+    }
+
+    /**
+     * Get the highest sequential ID used when the snapshot was taken.
+     * @return the last used ID
+     */
+    public int lastUsedId() {
+        return lastUsedId;
+    }
+
+    /**
+     * Get the number of entities in the snapshot.
+     * @return the entity count
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Get the length of the largest entity the records of this snapshot can hold.
+     * @return the maximum entity length in bytes
+     */
+    public int maxEntityBytes() {
+        return recordWidth - RECORD_HEADER_BYTES;
+    }
+
+    /**
+     * Read the binary form of an entity.
+     * @param index the position of the entity in ID order
+     * @return the entity as written by its codec
+     * @throws IOException if the record fails its checksum
+     * @throws ClosedChannelException if the snapshot is closed
+     */
+    public byte[] entity(int index) throws IOException {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            return readEntity(index);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Read the ID of an entity without decoding the rest of it.
+     * @param index the position of the entity in ID order
+     * @return the ID
+     * @throws IOException if the record is corrupt
+     * @throws ClosedChannelException if the snapshot is closed
+     */
+    public String id(int index) throws IOException {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            return readId(index);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find an entity by binary search over the mapped records.
+     * @param id the ID to look for
+     * @return the position of the entity, or -1 if the snapshot does not contain it
+     * @throws IOException if a record on the search path is corrupt
+     * @throws ClosedChannelException if the snapshot is closed
+     */
+    public int indexOf(String id) throws IOException {
+        int position = search(id);
+        return position >= 0 ? position : -1;
+    }
+
+    /**
+     * Find where the entities after an ID start, by binary search over the mapped records.
+     * @param id the ID, which need not be in the snapshot
+     * @return the position of the first entity with a greater ID, which is size() if there is none
+     * @throws IOException if a record on the search path is corrupt
+     * @throws ClosedChannelException if the snapshot is closed
+     */
+    public int indexAfter(String id) throws IOException {
+        int position = search(id);
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+
+    /**
+     * Unmap the snapshot. Reads made after closing throw ClosedChannelException.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (int r = 0; r < regions.length; r++) {
+                Unmapper.unmap(regions[r]);
+                regions[r] = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private byte[] readEntity(int index) throws IOException {
+        ByteBuffer region = region(index);
+        int offset = offset(index);
+        int checksum = region.getInt(offset);
+        int length = region.getInt(offset + 4);
+        if (length < 0 || length > recordWidth - RECORD_HEADER_BYTES) {
+            throw new IOException("Corrupt entity in snapshot " + file);
+        }
+
+        byte[] entity = new byte[length];
+        region.get(offset + RECORD_HEADER_BYTES, entity);
+        CRC32C crc = new CRC32C();
+        crc.update(entity);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Corrupt entity in snapshot " + file);
+        }
+        return entity;
+    }
+
+    private String readId(int index) throws IOException {
+        ByteBuffer region = region(index);
+        int offset = offset(index) + RECORD_HEADER_BYTES;
+        int length = Short.toUnsignedInt(region.getShort(offset));
+        if (length > recordWidth - RECORD_HEADER_BYTES - 2) {
+            throw new IOException("Corrupt entity in snapshot " + file);
+        }
+
+        byte[] utf = new byte[length];
+        region.get(offset + 2, utf);
+        for (byte b : utf) {
+            if (b < 0) {
+                // Not plain ASCII; let DataInput decode the modified UTF-8.
+                byte[] framed = new byte[length + 2];
+                region.get(offset, framed);
+                return new DataInputStream(new ByteArrayInputStream(framed)).readUTF();
+            }
+        }
+        return new String(utf, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Binary search for an ID, under one read lock for the whole search.
+     * @return the position of the ID, or (-(insertion point) - 1) if the snapshot does not contain it
+     */
+    private int search(String id) throws IOException {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int order = InMemoryRepository.ID_ORDER.compare(readId(middle), id);
+                if (order < 0) {
+                    low = middle + 1;
+                } else if (order > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    /**
+     * Find the most recent snapshot in a directory.
+     * @param directory the log directory
+     * @return the snapshot covering the most segments, or null if there is none
+     * @throws IOException if the directory cannot be listed
+     */
+    public static Path latest(Path directory) throws IOException {
+        List<Path> snapshots = list(directory);
+        return snapshots.isEmpty() ? null : snapshots.get(snapshots.size() - 1);
+    }
+
+    /**
+     * List the snapshots in a directory, oldest first.
+     * @param directory the log directory
+     * @return the snapshot files
+     * @throws IOException if the directory cannot be listed
+     */
+    public static List<Path> list(Path directory) throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return snapshots;
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .forEach(snapshots::add);
+        }
+        return snapshots;
+    }
+
+    /**
+     * Get the first log segment not covered by a snapshot.
+     * @param file the snapshot file
+     * @return the segment number encoded in its name
+     */
+    public static long segmentOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private ByteBuffer region(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return regions[index / recordsPerRegion];
+    }
+
+    private int offset(int index) {
+        return (index % recordsPerRegion) * recordWidth;
+    }
+
+    private static Path path(Path directory, long segment) {
+        return directory.resolve(String.format("%s%016d%s", PREFIX, segment, SUFFIX));
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Incomplete snapshot");
+            }
+        }
+    }
+
+    /**
+     * Releases a mapping without waiting for the garbage collector, through sun.misc.Unsafe.invokeCleaner
+     * (in the jdk.unsupported module). Where that is not available the mapping is released when the
+     * buffer is collected, as before.
+     */
+    private static final class Unmapper {
+        private static final Object UNSAFE;
+        private static final Method INVOKE_CLEANER;
+
+        static {
+            Object unsafe = null;
+            Method invokeCleaner = null;
+            try {
+                Class<?> type = Class.forName("sun.misc.Unsafe");
+                Field field = type.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                unsafe = field.get(null);
+                invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                unsafe = null;
+                invokeCleaner = null;
+            }
+            UNSAFE = unsafe;
+            INVOKE_CLEANER = invokeCleaner;
+        }
+
+        private static void unmap(MappedByteBuffer buffer) {
+            if (INVOKE_CLEANER == null || buffer == null) {
+                return;
+            }
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // Left to the garbage collector.
+            }
+        }
+    }
+
+    /**
+     * Writes the records of a new snapshot with NIO, through a temporary file.
+     * Closing a writer that was not committed deletes the temporary file and leaves the previous
+     * snapshot in place.
+     */
+    public static final class Writer implements Closeable {
+        private static final int BUFFER_BYTES = 1 << 20;
+
+        private final Path target;
+        private final Path temporary;
+        private final int lastUsedId;
+        private final int recordWidth;
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final CRC32C crc = new CRC32C();
+        private int count;
+        private boolean committed;
+
+        private Writer(Path target, int lastUsedId, int recordWidth) throws IOException {
+            this.target = target;
+            this.temporary = target.resolveSibling(target.getFileName() + ".tmp");
+            this.lastUsedId = lastUsedId;
+            this.recordWidth = recordWidth;
+            this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            this.buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_BYTES, recordWidth));
+            // The count is only known at the end; the header is rewritten by commit.
+            buffer.position(HEADER_BYTES);
+        }
+
+        /**
+         * Append the next entity, in ID order.
+         * @param entity the entity as written by its codec
+         * @throws IOException if the snapshot cannot be written
+         */
+        public void add(byte[] entity) throws IOException {
+            if (entity.length > recordWidth - RECORD_HEADER_BYTES) {
+                throw new IOException("Entity does not fit the snapshot record width");
+            }
+            if (buffer.remaining() < recordWidth) {
+                flush();
+            }
+
+            crc.reset();
+            crc.update(entity);
+            int start = buffer.position();
+            buffer.putInt((int) crc.getValue());
+            buffer.putInt(entity.length);
+            buffer.put(entity);
+            while (buffer.position() < start + recordWidth) {
+                buffer.put((byte) 0);
+            }
+            count++;
+        }
+
+        /**
+         * Complete the snapshot, force it to disk and atomically move it into place.
+         * @throws IOException if the snapshot cannot be written
+         */
+        public void commit() throws IOException {
+            if (buffer.remaining() < TRAILER_BYTES) {
+                flush();
+            }
+            buffer.putLong(MAGIC);
+            flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putLong(MAGIC).putInt(lastUsedId).putInt(count).putInt(recordWidth).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+            channel.close();
+
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+            if (!committed) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.seanclen.capstone.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only, checksummed log split into numbered segment files (wal-0000000000000001.log, ...).
+ * Every record is framed as [int length][int CRC32C of the payload][payload], so a torn or corrupt
+ * record at the end of a segment is detected on replay and ignored.
+ * Appends use group commit: callers only enqueue their record, and a single writer thread drains
+ * everything queued, writes it with one write and one fsync, and then completes all of their futures.
+ * The cost of an fsync is therefore shared by every writer that arrived while the previous one ran.
+ */
+public class WriteAheadLog implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+    // Upper bound on the records committed by one write and fsync.
+    private static final int MAX_BATCH_RECORDS = 8192;
+
+    // Queued after the last record on close.
+    private static final Request SHUTDOWN = new Request(null, null, null);
+
+    private final Path directory;
+    private final boolean fsync;
+    private final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean closed;
+    private volatile long segment;
+    private volatile long segmentBytes;
+
+    // Only used by the writer thread.
+    private FileChannel channel;
+    private IOException failure;
+
+    /**
+     * Open a log that appends to a new segment.
+     * @param directory the directory holding the segment files
+     * @param firstSegment the number of the segment to create; it must not exist yet
+     * @param fsync whether to force every commit to disk before acknowledging it
+     * @throws IOException if the segment cannot be created
+     */
+    public WriteAheadLog(Path directory, long firstSegment, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.segment = firstSegment;
+        Files.createDirectories(directory);
+        this.channel = openSegment(firstSegment);
+
+        this.writer = new Thread(this::run, "wal-writer-" + directory.getFileName());
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Append a record. The call never blocks; the returned future completes once the record has been
+     * written (and forced to disk if fsync is enabled), or fails if the log cannot be written.
+     * @param payload the record to append
+     * @return a future that completes when the record is durable
+     * @throws IllegalStateException if the log is closed
+     */
+    public CompletableFuture<Void> append(byte[] payload) {
+        if (payload.length > MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("Record too large");
+        }
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        queue.add(new Request(payload, done, null));
+        return done;
+    }
+
+    /**
+     * Seal the current segment and continue in a new one, after every record appended so far.
+     * @return a future that completes with the number of the new segment; all lower segments are sealed
+     */
+    public CompletableFuture<Long> rotate() {
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+
+        CompletableFuture<Long> rotated = new CompletableFuture<>();
+        queue.add(new Request(null, null, rotated));
+        return rotated;
+    }
+
+    /**
+     * Get the number of the segment currently appended to.
+     * @return the current segment number
+     */
+    public long currentSegment() {
+        return segment;
+    }
+
+    /**
+     * Get the number of bytes committed to the current segment.
+     * @return the size of the current segment
+     */
+    public long currentSegmentBytes() {
+        return segmentBytes;
+    }
+
+    /**
+     * Commit every record appended so far and close the current segment.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        queue.add(SHUTDOWN);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Fail anything that raced with close instead of leaving its caller waiting forever.
+        for (Request request = queue.poll(); request != null; request = queue.poll()) {
+            request.fail(new IllegalStateException("Write-ahead log is closed"));
+        }
+    }
+
+    /**
+     * Read the records of one segment in order.
+     * Reading stops at the end of the file or at the first torn or corrupt record.
+     * @param segmentFile the segment to read
+     * @param handler receives the payload of every valid record
+     * @return the length of the valid prefix of the segment
+     * @throws IOException if the file cannot be read or the handler fails
+     */
+    public static long replay(Path segmentFile, RecordHandler handler) throws IOException {
+        CRC32C crc = new CRC32C();
+        long valid = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segmentFile), 1 << 16))) {
+            while (true) {
+                byte[] payload;
+                int checksum;
+                try {
+                    int length = in.readInt();
+                    checksum = in.readInt();
+                    if (length < 0 || length > MAX_RECORD_BYTES) {
+                        return valid;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    return valid;
+                }
+
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    return valid;
+                }
+
+                handler.accept(payload);
+                valid += HEADER_BYTES + payload.length;
+            }
+        }
+    }
+
+    /**
+     * List the numbers of the segments in a directory, in ascending order.
+     * @param directory the log directory
+     * @return the segment numbers
+     * @throws IOException if the directory cannot be listed
+     */
+    public static List<Long> listSegments(Path directory) throws IOException {
+        List<Long> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()))
+                    .filter(number -> !number.isEmpty() && number.chars().allMatch(Character::isDigit))
+                    .map(Long::parseLong)
+                    .sorted()
+                    .forEach(segments::add);
+        }
+        return segments;
+    }
+
+    /**
+     * Get the file of a segment.
+     * @param directory the log directory
+     * @param segment the segment number
+     * @return the path of the segment file
+     */
+    public static Path segmentPath(Path directory, long segment) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Receives the records of a segment during replay.
+     */
+    public interface RecordHandler {
+        void accept(byte[] payload) throws IOException;
+    }
+
+    private void run() {
+        List<Request> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                // Only close() stops the writer; keep serving until the shutdown request arrives.
+                continue;
+            }
+            queue.drainTo(batch, MAX_BATCH_RECORDS - 1);
+
+            boolean shutdown = process(batch);
+            batch.clear();
+            if (shutdown) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Commit a batch of requests. Rotations and the shutdown request split the batch, so records are
+     * always written to the segment that was current when they were appended.
+     * @return true if the batch contained the shutdown request
+     */
+    private boolean process(List<Request> batch) {
+        int start = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Request request = batch.get(i);
+            if (request.payload != null) {
+                continue;
+            }
+
+            commit(batch.subList(start, i));
+            start = i + 1;
+            if (request == SHUTDOWN) {
+                closeChannel();
+                // Records behind the shutdown request are failed by close().
+                batch.subList(start, batch.size()).forEach(queue::add);
+                return true;
+            }
+            rotateSegment(request.rotated);
+        }
+
+        commit(batch.subList(start, batch.size()));
+        return false;
+    }
+
+    private void commit(List<Request> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        if (failure != null) {
+            records.forEach(request -> request.fail(failure));
+            return;
+        }
+
+        int size = 0;
+        for (Request request : records) {
+            size += HEADER_BYTES + request.payload.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        CRC32C crc = new CRC32C();
+        for (Request request : records) {
+            crc.reset();
+            crc.update(request.payload);
+            buffer.putInt(request.payload.length);
+            buffer.putInt((int) crc.getValue());
+            buffer.put(request.payload);
+        }
+        buffer.flip();
+
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+            segmentBytes += size;
+        } catch (IOException e) {
+            // The segment may now end in a partial record; stop writing so that replay ends cleanly there.
+            log.error("Write-ahead log in {} failed; rejecting all further writes", directory, e);
+            failure = e;
+            records.forEach(request -> request.fail(e));
+            return;
+        }
+
+        records.forEach(request -> request.done.complete(null));
+    }
+
+    private void rotateSegment(CompletableFuture<Long> rotated) {
+        if (failure != null) {
+            rotated.completeExceptionally(failure);
+            return;
+        }
+
+        try {
+            // A sealed segment must be complete on disk before anything relies on it, fsync or not.
+            channel.force(true);
+            channel.close();
+            channel = openSegment(segment + 1);
+            segment = segment + 1;
+            segmentBytes = 0;
+            rotated.complete(segment);
+        } catch (IOException e) {
+            log.error("Write-ahead log in {} failed to rotate; rejecting all further writes", directory, e);
+            failure = e;
+            rotated.completeExceptionally(e);
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            channel.force(true);
+            channel.close();
+        } catch (IOException e) {
+            log.error("Failed to close write-ahead log in {}", directory, e);
+        }
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(segmentPath(directory, number),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * A queued record, rotation or shutdown.
+     */
+    private record Request(byte[] payload, CompletableFuture<Void> done, CompletableFuture<Long> rotated) {
+        void fail(Throwable cause) {
+            if (done != null) {
+                done.completeExceptionally(cause);
+            }
+            if (rotated != null) {
+                rotated.completeExceptionally(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.seanclen.capstone.reminders;
+
+import com.seanclen.capstone.model.Appointment;
+
+import java.util.List;
+
+/**
+ * Published when the reminders of one or more appointments are due, one event per tick of the
+ * ReminderScheduler that had reminders to fire.
+ * @param appointments the appointments, as they are when their reminders fire
+ * @author Sean Clendening
+ */
+public record ReminderEvent(List<Appointment> appointments) {
+}
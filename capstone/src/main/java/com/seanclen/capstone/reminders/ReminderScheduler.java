@@ -0,0 +1,271 @@
+package com.seanclen.capstone.reminders;
+
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.repository.AppointmentRepository;
+import com.seanclen.capstone.repository.ChangeListener;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Reminds of every appointment a lead time before it starts, by publishing a ReminderEvent.
+ * - every pending reminder is one timer in a TimingWheel, linked into the slot of its tick, so
+ *   scheduling and cancelling take constant time and a million pending reminders cost one small
+ *   object and one map entry each, instead of a task in a ScheduledExecutorService's heap
+ * - a reminder is scheduled when an appointment is created, moved when it is updated and cancelled
+ *   when it is deleted, as the repository's change listener: the in-memory repositories call it under
+ *   the appointment's ID lock, so concurrent updates of one appointment reschedule its reminder in the
+ *   order they were applied; the listener only records the change in a map and a queue, and one
+ *   thread applies the queued changes to the wheel every tick
+ * - all reminders due in a tick are fired together, in one event, after checking that each
+ *   appointment still exists and still starts when its reminder was scheduled for; one whose
+ *   appointment has moved is scheduled again from the stored date
+ * - once the application is ready, a reminder is scheduled for every future appointment already
+ *   stored; one whose time passed while the application was down fires right away
+ * Settings:
+ * - capstone.reminders.lead-time: how long before an appointment its reminder fires (default PT15M)
+ * - capstone.reminders.tick: the resolution of the wheel; reminders fire up to one tick late
+ *   (default PT0.1S)
+ * @author Sean Clendening
+ */
+@Component
+public class ReminderScheduler {
+    private static final Logger log = LoggerFactory.getLogger(ReminderScheduler.class);
+
+    // The most queued changes applied in one tick, so that a burst of them cannot delay firing much.
+    private static final int CHANGES_PER_TICK = 100_000;
+
+    private final AppointmentRepository appointmentRepository;
+    private final ApplicationEventPublisher events;
+    private final long leadMillis;
+    private final long tickMillis;
+    // The pending reminder of every appointment, by ID. Whoever removes a reminder from here owns it:
+    // a cancel, a reschedule, or the wheel thread firing it.
+    private final ConcurrentHashMap<String, Reminder> reminders = new ConcurrentHashMap<>();
+    // Reminders scheduled or cancelled since the last tick, in order, for the wheel thread to apply.
+    private final ConcurrentLinkedQueue<Reminder> changes = new ConcurrentLinkedQueue<>();
+    private final TimingWheel wheel;
+    private final Thread thread;
+    private final ChangeListener<Appointment> listener = new ChangeListener<>() {
+        @Override
+        public void saved(Appointment appointment) {
+            schedule(appointment.getId(), epochMillis(appointment.getDate()));
+        }
+
+        @Override
+        public void deleted(String id) {
+            cancel(id);
+        }
+    };
+    private volatile boolean running = true;
+
+    public ReminderScheduler(AppointmentRepository appointmentRepository,
+                             ApplicationEventPublisher events,
+                             @Value("${capstone.reminders.lead-time:PT15M}") Duration leadTime,
+                             @Value("${capstone.reminders.tick:PT0.1S}") Duration tick) {
+        if (leadTime.isNegative() || tick.toMillis() < 1) {
+            throw new IllegalArgumentException("Invalid reminder lead time or tick");
+        }
+        this.appointmentRepository = appointmentRepository;
+        this.events = events;
+        this.leadMillis = leadTime.toMillis();
+        this.tickMillis = tick.toMillis();
+        this.wheel = new TimingWheel(System.currentTimeMillis() / tickMillis);
+        this.thread = new Thread(this::run, "reminder-wheel");
+        this.thread.setDaemon(true);
+        appointmentRepository.attachChangeListener(listener);
+    }
+
+    /**
+     * Start firing reminders, after scheduling one for every future appointment already stored.
+     * Called once the application is ready, so that recovered appointments are included.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Stop firing reminders.
+     */
+    @PreDestroy
+    public void close() {
+        appointmentRepository.detachChangeListener(listener);
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Cancel the reminder of an appointment, if it has one pending.
+     * @param id the ID of the deleted appointment
+     */
+    void cancel(String id) {
+        Reminder reminder = reminders.remove(id);
+        if (reminder != null) {
+            reminder.cancelled = true;
+            changes.add(reminder);
+        }
+    }
+
+    /**
+     * Get the number of reminders pending.
+     * @return the number of appointments with a reminder that has not fired yet
+     */
+    public int pending() {
+        return reminders.size();
+    }
+
+    /**
+     * Schedule a reminder for an appointment starting at a given time.
+     * @param id the ID of the appointment
+     * @param startMillis when the appointment starts, in milliseconds since the epoch
+     */
+    void schedule(String id, long startMillis) {
+        Reminder reminder = new Reminder(id, startMillis, deadline(startMillis));
+        Reminder previous = reminders.put(id, reminder);
+        if (previous != null) {
+            previous.cancelled = true;
+            changes.add(previous);
+        }
+        changes.add(reminder);
+    }
+
+    /**
+     * Check whether every scheduled and cancelled reminder has been applied to the wheel.
+     * @return true if no change is waiting for the next tick
+     */
+    boolean isSettled() {
+        return changes.isEmpty();
+    }
+
+    private void run() {
+        try {
+            scheduleStored();
+        } catch (RuntimeException e) {
+            log.error("Failed to schedule the reminders of stored appointments", e);
+        }
+
+        List<Reminder> due = new ArrayList<>();
+        while (running) {
+            long tick = System.currentTimeMillis() / tickMillis;
+            applyChanges();
+            wheel.advance(tick, timer -> due.add((Reminder) timer));
+            if (!due.isEmpty()) {
+                fire(due);
+                due.clear();
+            }
+
+            long sleep = (tick + 1) * tickMillis - System.currentTimeMillis();
+            if (sleep > 0) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(sleep));
+            }
+        }
+    }
+
+    private void scheduleStored() {
+        long now = System.currentTimeMillis();
+        int scheduled = 0;
+        try (Stream<Appointment> stored = appointmentRepository.stream()) {
+            Iterator<Appointment> appointments = stored.iterator();
+            while (appointments.hasNext()) {
+                Appointment appointment = appointments.next();
+                long start = epochMillis(appointment.getDate());
+                // An appointment saved since the application started already has its reminder.
+                if (start > now && !reminders.containsKey(appointment.getId())) {
+                    Reminder reminder = new Reminder(appointment.getId(), start, deadline(start));
+                    if (reminders.putIfAbsent(reminder.id, reminder) == null) {
+                        changes.add(reminder);
+                        scheduled++;
+                    }
+                }
+            }
+        }
+        log.info("Scheduled reminders for {} stored appointments", scheduled);
+    }
+
+    private void applyChanges() {
+        Reminder reminder;
+        for (int n = 0; n < CHANGES_PER_TICK && (reminder = changes.poll()) != null; n++) {
+            if (reminder.cancelled) {
+                if (reminder.isLinked()) {
+                    wheel.remove(reminder);
+                }
+            } else if (!reminder.isLinked()) {
+                // A reminder that is not cancelled is queued once, when it is scheduled.
+                wheel.add(reminder);
+            }
+        }
+    }
+
+    private void fire(List<Reminder> due) {
+        List<Appointment> appointments = new ArrayList<>(due.size());
+        long now = System.currentTimeMillis();
+        for (Reminder reminder : due) {
+            if (!reminders.remove(reminder.id, reminder)) {
+                continue;
+            }
+            Appointment appointment = appointmentRepository.findById(reminder.id);
+            if (appointment == null) {
+                continue;
+            }
+            long start = epochMillis(appointment.getDate());
+            if (start == reminder.startMillis) {
+                appointments.add(appointment);
+            } else if (start > now) {
+                // Repositories that report changes out of order (see MongoEntityRepository) may leave
+                // the reminder of an older date; the stored date wins, unless it was rescheduled since.
+                Reminder moved = new Reminder(reminder.id, start, deadline(start));
+                if (reminders.putIfAbsent(moved.id, moved) == null) {
+                    changes.add(moved);
+                }
+            }
+        }
+        if (appointments.isEmpty()) {
+            return;
+        }
+        try {
+            events.publishEvent(new ReminderEvent(appointments));
+        } catch (RuntimeException e) {
+            log.error("Failed to deliver {} appointment reminders", appointments.size(), e);
+        }
+    }
+
+    // The first tick at or after the reminder time.
+    private long deadline(long startMillis) {
+        return Math.floorDiv(startMillis - leadMillis + tickMillis - 1, tickMillis);
+    }
+
+    private static long epochMillis(LocalDateTime date) {
+        return date.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static final class Reminder extends TimingWheel.Timer {
+        private final String id;
+        private final long startMillis;
+        // Set by a cancel or a reschedule, which then queues the reminder again for removal.
+        private volatile boolean cancelled;
+
+        private Reminder(String id, long startMillis, long deadline) {
+            super(deadline);
+            this.id = id;
+            this.startMillis = startMillis;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.seanclen.capstone.reminders;
+
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel: timers hashed by deadline into levels of slots, each level's slot as
+ * long as a full turn of the level below. Adding and removing a timer link or unlink it from one
+ * slot's list, whatever the number of timers pending. Every tick expires one slot of the lowest level;
+ * when a level completes a turn, the next slot of the level above is cascaded down, each of its timers
+ * moving closer to its deadline. Four levels of 512 slots cover 2^36 ticks, more than two centuries at
+ * 100 ms; timers further out wait in the last slot of the top level and are placed again as it turns.
+ * Not thread-safe: ReminderScheduler drives it from one thread.
+ * @author Sean Clendening
+ */
+final class TimingWheel {
+    static final int SLOT_BITS = 9;
+    static final int LEVELS = 4;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final long RANGE = 1L << (SLOT_BITS * LEVELS);
+
+    /**
+     * A pending timer. Timers are linked into their slot's list, so they take no other memory in the
+     * wheel.
+     */
+    static class Timer {
+        final long deadline;
+        private Timer previous;
+        private Timer next;
+        // The slot the timer is linked into, as level * SLOTS + slot, or -1 while it is not in the wheel.
+        private int slot = -1;
+
+        Timer(long deadline) {
+            this.deadline = deadline;
+        }
+
+        boolean isLinked() {
+            return slot >= 0;
+        }
+    }
+
+    private final Timer[] slots = new Timer[LEVELS * SLOTS];
+    // The last tick expired.
+    private long current;
+    private int size;
+
+    /**
+     * @param current the current tick; timers added with this deadline or earlier expire on the next one
+     */
+    TimingWheel(long current) {
+        this.current = current;
+    }
+
+    long current() {
+        return current;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Add a timer that is not in the wheel yet.
+     * @param timer the timer; if its deadline has passed, it expires on the next tick
+     */
+    void add(Timer timer) {
+        link(timer, current + 1);
+        size++;
+    }
+
+    /**
+     * Remove a timer that is in the wheel, before it expires.
+     * @param timer the timer
+     */
+    void remove(Timer timer) {
+        unlink(timer);
+        size--;
+    }
+
+    /**
+     * Expire every tick up to and including a given one.
+     * @param tick the tick to advance to; earlier ticks are ignored
+     * @param expired receives every timer whose deadline has come, tick by tick, after it has been
+     *                removed from the wheel
+     */
+    void advance(long tick, Consumer<? super Timer> expired) {
+        while (current < tick) {
+            long next = current + 1;
+            current = next;
+            // Cascade from the highest level whose turn completes, so that its timers are placed
+            // into slots of the lower levels that are cascaded right after, down to this tick's slot.
+            int level = 0;
+            while (level + 1 < LEVELS && (next & ((1L << (SLOT_BITS * (level + 1))) - 1)) == 0) {
+                level++;
+            }
+            for (; level > 0; level--) {
+                cascade(level, (int) (next >>> (SLOT_BITS * level)) & MASK);
+            }
+
+            int slot = (int) next & MASK;
+            Timer timer = slots[slot];
+            slots[slot] = null;
+            while (timer != null) {
+                Timer following = timer.next;
+                timer.previous = null;
+                timer.next = null;
+                timer.slot = -1;
+                size--;
+                expired.accept(timer);
+                timer = following;
+            }
+        }
+    }
+
+    private void cascade(int level, int slot) {
+        int index = level * SLOTS + slot;
+        Timer timer = slots[index];
+        slots[index] = null;
+        while (timer != null) {
+            Timer following = timer.next;
+            timer.previous = null;
+            timer.next = null;
+            // Timers due on this very tick go to the lowest level's slot that is expired next.
+            link(timer, current);
+            timer = following;
+        }
+    }
+
+    private void link(Timer timer, long earliest) {
+        long deadline = Math.max(timer.deadline, earliest);
+        long delta = deadline - current;
+        if (delta >= RANGE) {
+            // Beyond the top level: wait in the slot it reaches last, and be placed again from there.
+            deadline = current + RANGE - 1;
+            delta = RANGE - 1;
+        }
+        int level = 0;
+        while (delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int index = level * SLOTS + ((int) (deadline >>> (SLOT_BITS * level)) & MASK);
+        Timer head = slots[index];
+        timer.next = head;
+        if (head != null) {
+            head.previous = timer;
+        }
+        slots[index] = timer;
+        timer.slot = index;
+    }
+
+    private void unlink(Timer timer) {
+        if (timer.previous != null) {
+            timer.previous.next = timer.next;
+        } else {
+            slots[timer.slot] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.previous = timer.previous;
+        }
+        timer.previous = null;
+        timer.next = null;
+        timer.slot = -1;
+    }
+}
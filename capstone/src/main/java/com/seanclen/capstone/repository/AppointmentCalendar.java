@@ -0,0 +1,119 @@
+package com.seanclen.capstone.repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running counts of appointments by time, kept up to date by the in-memory appointment repository on
+ * every save and delete so that the dashboard never has to look at the appointments themselves.
+ * Appointments are counted per calendar day, per hour and per minute of their local date. A count for a
+ * window is then a fixed number of bucket lookups whatever the number of appointments: one per day for
+ * a range of days, and at most 23 hours plus 60 minutes for a 24-hour window starting at any minute.
+ * Buckets are dropped when their count falls back to zero.
+ */
+public final class AppointmentCalendar implements AppointmentCounts {
+    private static final long MINUTES_PER_DAY = 24 * 60;
+
+    private final LongAdder total = new LongAdder();
+    private final ConcurrentHashMap<Long, Long> days = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> hours = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> minutes = new ConcurrentHashMap<>();
+
+    /**
+     * Count a saved appointment, moving it from its previous date if it had one.
+     * @param previous the date the appointment was counted under before, or null if it is new
+     * @param date the appointment's date
+     */
+    public void move(LocalDateTime previous, LocalDateTime date) {
+        if (previous != null) {
+            if (epochMinute(previous) == epochMinute(date)) {
+                return;
+            }
+            add(previous, -1);
+        } else {
+            total.increment();
+        }
+        add(date, 1);
+    }
+
+    /**
+     * Stop counting a deleted appointment.
+     * @param date the date the appointment was counted under
+     */
+    public void remove(LocalDateTime date) {
+        total.decrement();
+        add(date, -1);
+    }
+
+    /**
+     * Get the number of appointments counted.
+     * @return the total
+     */
+    @Override
+    public long total() {
+        return total.sum();
+    }
+
+    /**
+     * Count the appointments on each of a run of consecutive days.
+     * @param first the first day
+     * @param days the number of days
+     * @return the count for each day, starting with first
+     */
+    @Override
+    public long[] countPerDay(LocalDate first, int days) {
+        long[] counts = new long[days];
+        long day = first.toEpochDay();
+        for (int i = 0; i < days; i++) {
+            counts[i] = this.days.getOrDefault(day + i, 0L);
+        }
+        return counts;
+    }
+
+    /**
+     * Count the appointments in the 24 hours from the start of the minute of now.
+     * @param now the current date and time
+     * @return the number of appointments in [now truncated to the minute, that + 24 hours)
+     */
+    @Override
+    public long countNext24Hours(LocalDateTime now) {
+        long start = epochMinute(now);
+        long end = start + MINUTES_PER_DAY;
+        // Whole hours in the middle, single minutes at either end.
+        long firstHour = Math.floorDiv(start + 59, 60);
+        long lastHour = Math.floorDiv(end, 60);
+        long count = 0;
+        for (long minute = start; minute < firstHour * 60; minute++) {
+            count += minutes.getOrDefault(minute, 0L);
+        }
+        for (long hour = firstHour; hour < lastHour; hour++) {
+            count += hours.getOrDefault(hour, 0L);
+        }
+        for (long minute = lastHour * 60; minute < end; minute++) {
+            count += minutes.getOrDefault(minute, 0L);
+        }
+        return count;
+    }
+
+    private void add(LocalDateTime date, long delta) {
+        long minute = epochMinute(date);
+        add(minutes, minute, delta);
+        add(hours, Math.floorDiv(minute, 60), delta);
+        add(days, date.toLocalDate().toEpochDay(), delta);
+    }
+
+    private static void add(ConcurrentHashMap<Long, Long> buckets, long key, long delta) {
+        buckets.compute(key, (k, count) -> {
+            long updated = (count != null ? count : 0) + delta;
+            return updated != 0 ? updated : null;
+        });
+    }
+
+    private static long epochMinute(LocalDateTime date) {
+        // Local dates have no zone; UTC just turns them into a scalar without shifting them.
+        return Math.floorDiv(date.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+}
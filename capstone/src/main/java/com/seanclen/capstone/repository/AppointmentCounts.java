@@ -0,0 +1,32 @@
+package com.seanclen.capstone.repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Counts of appointments by time, for the dashboard. The in-memory repository keeps them in an
+ * AppointmentCalendar updated on every change; the MongoDB repository computes them from its date
+ * index when they are read.
+ */
+public interface AppointmentCounts {
+    /**
+     * Get the number of appointments.
+     * @return the total
+     */
+    long total();
+
+    /**
+     * Count the appointments on each of a run of consecutive days.
+     * @param first the first day
+     * @param days the number of days
+     * @return the count for each day, starting with first
+     */
+    long[] countPerDay(LocalDate first, int days);
+
+    /**
+     * Count the appointments in the 24 hours from the start of the minute of now.
+     * @param now the current date and time
+     * @return the number of appointments in [now truncated to the minute, that + 24 hours)
+     */
+    long countNext24Hours(LocalDateTime now);
+}
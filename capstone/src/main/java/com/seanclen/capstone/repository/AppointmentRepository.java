@@ -1,71 +1,40 @@
 package com.seanclen.capstone.repository;
 
-import com.seanclen.capstone.model.HasId;
-import org.springframework.stereotype.Repository;
+import com.seanclen.capstone.model.Appointment;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * A simple in-memory repository for storing entities that implement the HasId interface.
- * Uses a HashMap for O(1) average-case lookup, insertion, and deletion by ID.
- * This repository provides basic CRUD operations and will eventually be replaced by a database-backed repository.
+ * Repository for appointments. Implemented in memory by InMemoryAppointmentRepository and in MongoDB
+ * by MongoAppointmentRepository; capstone.storage.type selects which one is used.
  */
-@Repository
-public class AppointmentRepository<T extends HasId> {
-    // Use a HashMap to store items, mapping the ID (String) to the entity (T).
-    // This allows for O(1) average complexity for findById, save, and deleteById.
-    private final HashMap<String, T> items = new HashMap<>();
-    private final AtomicInteger idCounter = new AtomicInteger(0);
-
-    /**
-     * Saves the entity. If the entity has an ID, it is updated. If not, a new ID is assigned.
-     * @param item The entity to save.
-     * @return The saved entity.
-     */
-    public T save(T item) {
-        if (item.getId() == null || item.getId().isEmpty()) {
-            item.setId(getNextId()); 
-        }
-
-        items.put(item.getId(), item);
-        return item;
-    }
-
-    /**
-     * Finds an entity by its ID.
-     * @param id The ID of the entity to find.
-     * @return The entity, or null if not found.
-     */
-    public T findById(String id) {
-        return items.get(id);
-    }
-
+public interface AppointmentRepository extends EntityRepository<Appointment> {
     /**
-     * Finds all entities.
-     * @return A List containing all entities.
+     * Finds appointments whose date falls in the window [from, to), ordered by date.
+     * @param from the inclusive start of the window, or null for no lower bound
+     * @param to the exclusive end of the window, or null for no upper bound
+     * @param limit the maximum number of appointments to return
+     * @return the matching appointments in ascending date order
      */
-    public List<T> findAll() {
-        // Return a copy to prevent external modification
-        return new ArrayList<>(items.values());
-    }
+    List<Appointment> findByDateBetween(LocalDateTime from, LocalDateTime to, int limit);
 
     /**
-     * Deletes an entity by its ID.
-     * @param id The ID of the entity to delete.
-     * @return true if the entity was deleted, false otherwise.
+     * Finds appointments whose description contains every term of a query, optionally within a date
+     * window. Terms are split and matched as described in SearchTerms.
+     * @param query the search terms
+     * @param from the inclusive start of the window, or null for no lower bound
+     * @param to the exclusive end of the window, or null for no upper bound
+     * @param limit the maximum number of appointments to return
+     * @return the matching appointments, in the order of the engine's index; empty if the query has
+     *         no terms
      */
-    public boolean deleteById(String id) {
-        return items.remove(id) != null;
-    }
+    List<Appointment> search(String query, LocalDateTime from, LocalDateTime to, int limit);
 
     /**
-     * Generates the next sequential ID.
-     * @return The next ID as a String.
+     * Gets the counts of appointments by time. Reading them never walks the appointments: the in-memory
+     * repository keeps running counts, and MongoDB counts over its date index.
+     * @return the counts of this repository
      */
-    public String getNextId() {
-        return String.valueOf(idCounter.incrementAndGet());
-    }
-}
\ No newline at end of file
+    AppointmentCounts calendar();
+}
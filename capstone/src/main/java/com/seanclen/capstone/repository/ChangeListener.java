@@ -0,0 +1,23 @@
+package com.seanclen.capstone.repository;
+
+/**
+ * Told about every save and delete a repository applies, for example by the change feed and the
+ * reminder scheduler.
+ * The in-memory repositories call it while the entity's ID is locked, so for any one ID the listener
+ * sees changes in the order the repository applies them. Calls must return within a few microseconds
+ * and never block: they are on the path of every write.
+ * @param <T> the type of entity in the repository
+ */
+public interface ChangeListener<T> {
+    /**
+     * Called after an entity was saved, as a new entity or in place of an existing one.
+     * @param item the saved entity
+     */
+    void saved(T item);
+
+    /**
+     * Called after an entity was deleted.
+     * @param id the ID of the deleted entity
+     */
+    void deleted(String id);
+}
@@ -0,0 +1,48 @@
+package com.seanclen.capstone.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The change listeners attached to one repository, told about every change in the order they were
+ * attached. Attaching and detaching copy the list, so telling them about a write allocates nothing and
+ * takes no lock.
+ * @param <T> the type of entity in the repository
+ */
+public final class ChangeListeners<T> implements ChangeListener<T> {
+    private volatile List<ChangeListener<T>> listeners = List.of();
+
+    /**
+     * @param listener the listener to tell about every subsequent change
+     */
+    public synchronized void attach(ChangeListener<T> listener) {
+        List<ChangeListener<T>> attached = new ArrayList<>(listeners);
+        attached.add(listener);
+        listeners = List.copyOf(attached);
+    }
+
+    /**
+     * @param listener the listener to stop telling about changes; nothing happens if it is not attached
+     */
+    public synchronized void detach(ChangeListener<T> listener) {
+        List<ChangeListener<T>> attached = new ArrayList<>(listeners);
+        attached.remove(listener);
+        listeners = List.copyOf(attached);
+    }
+
+    @Override
+    public void saved(T item) {
+        List<ChangeListener<T>> listeners = this.listeners;
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).saved(item);
+        }
+    }
+
+    @Override
+    public void deleted(String id) {
+        List<ChangeListener<T>> listeners = this.listeners;
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).deleted(id);
+        }
+    }
+}
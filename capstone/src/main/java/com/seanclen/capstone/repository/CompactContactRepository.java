@@ -0,0 +1,691 @@
+package com.seanclen.capstone.repository;
+
+import com.seanclen.capstone.model.Contact;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * In-memory repository for contacts that keeps them as packed records instead of objects, used when
+ * capstone.storage.type is compact. Meant for very large address books: a contact costs about 150
+ * bytes of heap with its indexes (none of them in objects of its own) instead of about 700, and the
+ * garbage collector has a few thousand large arrays to trace instead of seven objects per contact.
+ * - contacts with a sequential ID whose fields fit the model's widths are stored in a ContactSlab,
+ *   in the slot of their ID, with their phone numbers chained in the slab
+ * - their names are indexed in a PackedNameIndex
+ * - any other contact (an ID that is not a sequential number, a name with characters outside
+ *   Latin-1, a phone number that is not ten digits) is kept as an object in an overflow map with
+ *   the indexes of InMemoryContactRepository, and merged into every result in order
+ * Contact objects are only created for the packed contacts a call returns; contacts are immutable,
+ * so overflow contacts are stored and returned as they were saved.
+ * A change takes the write lock of its ID: the StampedLock of the ID's page in the slab, one of
+ * PAGE_LOCKS, or for an ID without a slot the one its hash picks. Changes to different pages therefore
+ * run at the same time, as changes to different IDs do in InMemoryRepository. Point reads are
+ * optimistic and retried under the read lock if a change ran at the same time. The packed name index
+ * has a lock of its own, held only to change or search it; a search then reads the records it found
+ * under their page locks and skips an entry for a name the contact no longer has. Queries over many
+ * contacts are weakly consistent.
+ * The repository is not durable: the write-ahead log works on InMemoryRepository, so the application
+ * refuses to start with capstone.persistence.enabled. Set capstone.storage.compact.off-heap=true to
+ * keep the records outside the Java heap, in direct buffers. Records are found by their sequential
+ * IDs, so the repository also refuses to start with time-based IDs (capstone.ids.generator).
+ * Versions are kept as in InMemoryRepository; a packed contact's version is part of its record, so
+ * tracking them costs no objects.
+ * @author Sean Clendening
+ */
+@Repository
+@ConditionalOnProperty(prefix = "capstone.storage", name = "type", havingValue = "compact")
+public class CompactContactRepository implements ContactRepository {
+    // Estimated heap of a contact in the overflow map, its indexes and its version, as in InMemoryContactRepository.
+    private static final long OVERFLOW_BYTES = 800;
+    // Contacts materialized per read lock while streaming.
+    private static final int BATCH = 256;
+    // Number of page locks; a power of two, so a page's lock is found by masking its index.
+    private static final int PAGE_LOCKS = 64;
+    private static final Comparator<String> ID_ORDER = InMemoryRepository.ID_ORDER;
+
+    private final ContactSlab slab;
+    private final PackedNameIndex names = new PackedNameIndex();
+    private final StampedLock[] pageLocks = newPageLocks();
+    private final StampedLock nameLock = new StampedLock();
+    private final ConcurrentSkipListMap<String, Contact> overflow = new ConcurrentSkipListMap<>(ID_ORDER);
+    private final NamePrefixIndex overflowNames = new NamePrefixIndex();
+    private final PhoneIndex overflowPhones = new PhoneIndex();
+    private final ConcurrentHashMap<String, Long> overflowVersions = new ConcurrentHashMap<>();
+    private final SequentialIdGenerator ids = new SequentialIdGenerator();
+    // The version of the collection, advanced on every change once it is visible to readers.
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis() << 20);
+    // Told about every change, under the ID's lock.
+    private final ChangeListeners<Contact> listeners = new ChangeListeners<>();
+
+    /**
+     * Create an empty repository with its records on the heap.
+     */
+    public CompactContactRepository() {
+        this(false);
+    }
+
+    /**
+     * Create an empty repository.
+     * @param offHeap whether to keep the records in direct buffers, outside the Java heap
+     */
+    public CompactContactRepository(boolean offHeap) {
+        this.slab = new ContactSlab(offHeap);
+    }
+
+    @Autowired
+    public CompactContactRepository(@Value("${capstone.storage.compact.off-heap:false}") boolean offHeap,
+                                    @Value("${capstone.persistence.enabled:false}") boolean persistent,
+                                    IdGenerators ids) {
+        this(offHeap);
+        if (persistent) {
+            throw new IllegalStateException("capstone.storage.type=compact is not durable; set capstone.persistence.enabled=false");
+        }
+        if (!ids.isSequential()) {
+            throw new IllegalStateException("capstone.storage.type=compact needs sequential IDs; set capstone.ids.generator=sequential");
+        }
+    }
+
+    @Override
+    public Contact save(Contact contact) {
+        contact = assignId(contact);
+        StampedLock lock = lock(contact.getId());
+        long stamp = lock.writeLock();
+        try {
+            put(contact);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return contact;
+    }
+
+    /**
+     * Replaces a contact under the write lock of its ID, which every change of the ID takes anyway, so
+     * the version check and the write are one step.
+     */
+    @Override
+    public Versioned<Contact> replace(Contact contact, long expectedVersion) {
+        String id = contact.getId();
+        if (id == null) {
+            return null;
+        }
+
+        StampedLock lock = lock(id);
+        long stamp = lock.writeLock();
+        try {
+            long current = currentVersion(id);
+            if (current == NO_VERSION) {
+                return null;
+            }
+            if (expectedVersion != ANY_VERSION && expectedVersion != current) {
+                throw new VersionConflictException(id, expectedVersion, current);
+            }
+            return new Versioned<>(contact, put(contact));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Saves a batch of contacts, in order, each under the lock of its ID. A run of contacts under the
+     * same lock, such as new contacts on one page, takes it once.
+     */
+    @Override
+    public List<Contact> saveAll(List<Contact> batch) {
+        batch = batch.stream().map(this::assignId).toList();
+        StampedLock held = null;
+        long stamp = 0;
+        try {
+            for (Contact contact : batch) {
+                StampedLock lock = lock(contact.getId());
+                if (lock != held) {
+                    if (held != null) {
+                        held.unlockWrite(stamp);
+                        held = null;
+                    }
+                    stamp = lock.writeLock();
+                    held = lock;
+                }
+                put(contact);
+            }
+        } finally {
+            if (held != null) {
+                held.unlockWrite(stamp);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Finds a contact by its ID, creating a new Contact from its record.
+     */
+    @Override
+    public Contact findById(String id) {
+        if (id == null) {
+            return null;
+        }
+
+        int slot = ContactSlab.slot(id);
+        if (slot == ContactSlab.NO_SLOT) {
+            return overflow.get(id);
+        }
+
+        StampedLock lock = pageLock(slot);
+        long stamp = lock.tryOptimisticRead();
+        String[] fields = null;
+        Contact other = null;
+        try {
+            fields = slab.read(slot);
+            other = fields == null ? overflow.get(id) : null;
+        } catch (RuntimeException e) {
+            // A record read while it was being written; read it again below.
+            stamp = 0;
+        }
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                fields = slab.read(slot);
+                other = fields == null ? overflow.get(id) : null;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return fields != null ? contact(id, fields) : other;
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        if (id == null) {
+            return false;
+        }
+
+        int slot = ContactSlab.slot(id);
+        if (slot == ContactSlab.NO_SLOT) {
+            return overflow.containsKey(id);
+        }
+        StampedLock lock = pageLock(slot);
+        long stamp = lock.readLock();
+        try {
+            return slab.contains(slot) || overflow.containsKey(id);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Finds all contacts, ordered by ID, as a weakly consistent copy.
+     */
+    @Override
+    public List<Contact> findAll() {
+        List<Contact> all = new ArrayList<>();
+        new OrderedIterator(null).forEachRemaining(all::add);
+        return all;
+    }
+
+    /**
+     * Streams all contacts, ordered by ID. The stream is weakly consistent: the records are read a batch
+     * at a time, each batch under the read lock of its page.
+     */
+    @Override
+    public Stream<Contact> stream() {
+        Spliterator<Contact> contacts = Spliterators.spliteratorUnknownSize(new OrderedIterator(null),
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(contacts, false);
+    }
+
+    @Override
+    public Page<Contact> findPage(String afterId, int limit) {
+        OrderedIterator contacts = new OrderedIterator(afterId);
+        List<Contact> page = new ArrayList<>(Math.min(limit, 64));
+        while (page.size() < limit && contacts.hasNext()) {
+            page.add(contacts.next());
+        }
+        String next = contacts.hasNext() && !page.isEmpty() ? Page.encodeCursor(page.get(page.size() - 1).getId()) : null;
+        return new Page<>(page, next);
+    }
+
+    @Override
+    public boolean deleteById(String id) {
+        if (id == null) {
+            return false;
+        }
+
+        StampedLock lock = lock(id);
+        long stamp = lock.writeLock();
+        try {
+            return remove(id);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public List<String> deleteAllById(Collection<String> ids) {
+        List<String> deleted = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            if (deleteById(id)) {
+                deleted.add(id);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Counts the contacts without a lock; a contact moving between the slab and the overflow map at the
+     * same time may be counted twice.
+     */
+    @Override
+    public long count() {
+        return slab.size() + overflow.size();
+    }
+
+    @Override
+    public long version() {
+        return version.get();
+    }
+
+    @Override
+    public long versionOf(String id) {
+        if (id == null) {
+            return NO_VERSION;
+        }
+
+        StampedLock lock = lock(id);
+        long stamp = lock.readLock();
+        try {
+            return currentVersion(id);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void attachChangeListener(ChangeListener<Contact> listener) {
+        listeners.attach(listener);
+    }
+
+    @Override
+    public void detachChangeListener(ChangeListener<Contact> listener) {
+        listeners.detach(listener);
+    }
+
+    @Override
+    public String getNextId() {
+        return ids.nextId();
+    }
+
+    /**
+     * Finds contacts by name prefix, merging the packed index with the overflow contacts in the order
+     * of NamePrefixIndex: by the matching name, then by ID.
+     */
+    @Override
+    public List<Contact> findByNamePrefix(String prefix, int limit) {
+        String from = NamePrefixIndex.normalize(prefix);
+        List<Match> matches = new ArrayList<>();
+        for (Contact contact : overflowNames.search(prefix, limit)) {
+            String first = NamePrefixIndex.normalize(contact.getFirstName());
+            String last = NamePrefixIndex.normalize(contact.getLastName());
+            String name = !first.startsWith(from) || (last.startsWith(from) && last.compareTo(first) < 0) ? last : first;
+            matches.add(new Match(key(name, contact.getId()), contact));
+        }
+
+        // Each contact has at most two entries, so this many entries hold limit contacts if there are.
+        long[] entries;
+        long stamp = nameLock.readLock();
+        try {
+            entries = names.search(from, 2 * limit);
+        } finally {
+            nameLock.unlockRead(stamp);
+        }
+        for (int i = 0; i < entries.length; i += 2) {
+            int slot = PackedNameIndex.slot(entries[i + 1]);
+            String name = PackedNameIndex.name(entries[i], entries[i + 1]);
+            String[] fields = read(slot);
+            // The index is changed after the record, so the contact may have been renamed or deleted since.
+            if (fields != null && NamePrefixIndex.normalize(fields[PackedNameIndex.last(entries[i + 1]) ? 1 : 0]).equals(name)) {
+                String id = Integer.toString(slot);
+                matches.add(new Match(key(name, id), contact(id, fields)));
+            }
+        }
+
+        matches.sort(Comparator.comparing(Match::key));
+        List<Contact> result = new ArrayList<>(Math.min(limit, matches.size()));
+        Set<String> seen = new HashSet<>();
+        for (Match match : matches) {
+            if (result.size() == limit) {
+                break;
+            }
+            if (seen.add(match.contact().getId())) {
+                result.add(match.contact());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Contact> findByPhone(String phone) {
+        List<Contact> others = overflowPhones.get(phone);
+        long key = PhoneIndex.key(phone);
+        if (key == PhoneIndex.NO_KEY) {
+            return List.copyOf(others);
+        }
+
+        int[] slots = slab.slotsWithPhone(key);
+        List<Contact> packed = new ArrayList<>(slots.length + others.size());
+        for (int slot : slots) {
+            String[] fields = read(slot);
+            // The chain is walked before the records are read, so the number may have changed since.
+            if (fields != null && PhoneIndex.key(fields[2]) == key) {
+                packed.add(contact(Integer.toString(slot), fields));
+            }
+        }
+        if (!others.isEmpty()) {
+            packed.addAll(others);
+            packed.sort(Comparator.comparing(Contact::getId, ID_ORDER));
+        }
+        return packed;
+    }
+
+    /**
+     * Estimates the heap used by the contacts and their indexes; records in direct buffers are not
+     * counted (see directBytes).
+     * @return the estimated number of bytes
+     */
+    public long estimatedBytes() {
+        long stamp = nameLock.readLock();
+        try {
+            return slab.heapBytes() + names.heapBytes() + overflow.size() * OVERFLOW_BYTES;
+        } finally {
+            nameLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Reports the memory used by records kept outside the heap.
+     * @return the number of bytes, 0 unless capstone.storage.compact.off-heap is set
+     */
+    public long directBytes() {
+        return slab.directBytes();
+    }
+
+    // Called under the read or write lock of the ID.
+    private long currentVersion(String id) {
+        int slot = ContactSlab.slot(id);
+        long packed = slot != ContactSlab.NO_SLOT ? slab.version(slot) : -1;
+        if (packed >= 0) {
+            return packed;
+        }
+        Long other = overflowVersions.get(id);
+        return other != null ? other : NO_VERSION;
+    }
+
+    private Contact assignId(Contact contact) {
+        return contact.getId() == null || contact.getId().isEmpty() ? contact.withId(getNextId()) : contact;
+    }
+
+    // Store a contact in the slab if it fits, otherwise in the overflow map, removing it from the
+    // other, and return its version. Called under the write lock of the ID. A record is only read under
+    // its page's lock, so it is not visible before that is released, and the version can be advanced
+    // first; the overflow map is read without a lock, so its version is advanced after the change.
+    private long put(Contact contact) {
+        String id = contact.getId();
+        int slot = ContactSlab.slot(id);
+        String first = NamePrefixIndex.normalize(contact.getFirstName());
+        String last = NamePrefixIndex.normalize(contact.getLastName());
+        boolean packs = slot != ContactSlab.NO_SLOT && ContactSlab.fits(contact)
+                && PackedNameIndex.fits(first) && PackedNameIndex.fits(last);
+        String[] old = slot != ContactSlab.NO_SLOT ? slab.read(slot) : null;
+
+        long next;
+        if (!packs) {
+            overflow.put(id, contact);
+            overflowNames.put(contact);
+            overflowPhones.put(contact);
+            if (old != null) {
+                removePacked(slot, old);
+            }
+            next = version.incrementAndGet();
+            overflowVersions.put(id, next);
+        } else {
+            next = version.incrementAndGet();
+            slab.put(slot, contact, next);
+            index(slot, old, first, last);
+            removeOverflow(id);
+        }
+        listeners.saved(contact);
+        return next;
+    }
+
+    // Called under the write lock of the ID.
+    private boolean remove(String id) {
+        int slot = ContactSlab.slot(id);
+        String[] old = slot != ContactSlab.NO_SLOT ? slab.read(slot) : null;
+        boolean removed = old != null ? removePacked(slot, old) : removeOverflow(id);
+        if (removed) {
+            version.incrementAndGet();
+            listeners.deleted(id);
+        }
+        return removed;
+    }
+
+    private boolean removeOverflow(String id) {
+        if (overflow.remove(id) == null) {
+            return false;
+        }
+        overflowNames.remove(id);
+        overflowPhones.remove(id);
+        overflowVersions.remove(id);
+        return true;
+    }
+
+    // Index the names of a packed contact, unless they are those of the record it replaced.
+    private void index(int slot, String[] old, String first, String last) {
+        String oldFirst = old != null ? NamePrefixIndex.normalize(old[0]) : null;
+        String oldLast = old != null ? NamePrefixIndex.normalize(old[1]) : null;
+        if (first.equals(oldFirst) && last.equals(oldLast)) {
+            return;
+        }
+        long stamp = nameLock.writeLock();
+        try {
+            if (oldFirst != null) {
+                names.remove(oldFirst, slot, false);
+                names.remove(oldLast, slot, true);
+            }
+            names.add(first, slot, false);
+            names.add(last, slot, true);
+        } finally {
+            nameLock.unlockWrite(stamp);
+        }
+    }
+
+    private boolean removePacked(int slot, String[] fields) {
+        long stamp = nameLock.writeLock();
+        try {
+            names.remove(NamePrefixIndex.normalize(fields[0]), slot, false);
+            names.remove(NamePrefixIndex.normalize(fields[1]), slot, true);
+        } finally {
+            nameLock.unlockWrite(stamp);
+        }
+        return slab.remove(slot);
+    }
+
+    // Read a record optimistically, and again under its page's read lock if a change ran at the same time.
+    private String[] read(int slot) {
+        StampedLock lock = pageLock(slot);
+        long stamp = lock.tryOptimisticRead();
+        String[] fields = null;
+        try {
+            fields = slab.read(slot);
+        } catch (RuntimeException e) {
+            // A record read while it was being written; read it again below.
+            stamp = 0;
+        }
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                fields = slab.read(slot);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return fields;
+    }
+
+    // The lock every change of an ID takes: its page's, or for an ID without a slot, one picked by its hash.
+    private StampedLock lock(String id) {
+        int slot = ContactSlab.slot(id);
+        if (slot != ContactSlab.NO_SLOT) {
+            return pageLock(slot);
+        }
+        int hash = id.hashCode();
+        return pageLocks[(hash ^ (hash >>> 16)) & (PAGE_LOCKS - 1)];
+    }
+
+    private StampedLock pageLock(int slot) {
+        return pageLocks[ContactSlab.page(slot) & (PAGE_LOCKS - 1)];
+    }
+
+    private static StampedLock[] newPageLocks() {
+        StampedLock[] locks = new StampedLock[PAGE_LOCKS];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new StampedLock();
+        }
+        return locks;
+    }
+
+    private static Contact contact(String id, String[] fields) {
+        return new Contact(id, fields[0], fields[1], fields[2], fields[3]);
+    }
+
+    // The key NamePrefixIndex orders its entries by.
+    private static String key(String name, String id) {
+        return name + '\0' + (char) id.length() + id;
+    }
+
+    /**
+     * The first slot whose ID comes after an ID in ID_ORDER, or NO_SLOT if there is none.
+     */
+    static int firstSlotAfter(String afterId) {
+        if (afterId == null) {
+            return 1;
+        }
+        int slot = ContactSlab.slot(afterId);
+        if (slot != ContactSlab.NO_SLOT) {
+            return slot == Integer.MAX_VALUE ? ContactSlab.NO_SLOT : slot + 1;
+        }
+
+        // Shorter IDs come first, so only numbers with as many digits can come before afterId, and
+        // among them plain string order is numeric order.
+        int digits = afterId.length();
+        if (digits > 10) {
+            return ContactSlab.NO_SLOT;
+        }
+        long low = digits == 1 ? 1 : pow10(digits - 1);
+        long high = Math.min(pow10(digits) - 1, Integer.MAX_VALUE);
+        while (low <= high) {
+            long mid = (low + high) >>> 1;
+            if (Long.toString(mid).compareTo(afterId) > 0) {
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low <= Integer.MAX_VALUE ? (int) low : ContactSlab.NO_SLOT;
+    }
+
+    private static long pow10(int exponent) {
+        long value = 1;
+        for (int i = 0; i < exponent; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    private record Match(String key, Contact contact) {
+    }
+
+    /**
+     * Merges the slab, read a batch at a time, with the overflow map, in ID_ORDER.
+     */
+    private final class OrderedIterator implements Iterator<Contact> {
+        private final ArrayDeque<Contact> packed = new ArrayDeque<>();
+        private final Iterator<Contact> others;
+        private int nextSlot;
+        private Contact other;
+
+        private OrderedIterator(String afterId) {
+            this.nextSlot = firstSlotAfter(afterId);
+            this.others = (afterId == null ? overflow : overflow.tailMap(afterId, false)).values().iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return peekPacked() != null || peekOther() != null;
+        }
+
+        @Override
+        public Contact next() {
+            Contact a = peekPacked();
+            Contact b = peekOther();
+            if (a == null && b == null) {
+                throw new NoSuchElementException();
+            }
+            if (b == null || (a != null && ID_ORDER.compare(a.getId(), b.getId()) < 0)) {
+                return packed.poll();
+            }
+            other = null;
+            return b;
+        }
+
+        private Contact peekOther() {
+            if (other == null && others.hasNext()) {
+                other = others.next();
+            }
+            return other;
+        }
+
+        // Reads up to BATCH records of the next allocated page under its read lock.
+        private Contact peekPacked() {
+            while (packed.isEmpty() && nextSlot != ContactSlab.NO_SLOT) {
+                int from = slab.nextPage(nextSlot);
+                if (from == ContactSlab.NO_SLOT) {
+                    nextSlot = ContactSlab.NO_SLOT;
+                    break;
+                }
+                int last = ContactSlab.lastOfPage(from);
+                StampedLock lock = pageLock(from);
+                long stamp = lock.readLock();
+                try {
+                    int slot = slab.next(from);
+                    for (; slot != ContactSlab.NO_SLOT && packed.size() < BATCH;
+                         slot = slot == last ? ContactSlab.NO_SLOT : slab.next(slot + 1)) {
+                        packed.add(contact(Integer.toString(slot), slab.read(slot)));
+                    }
+                    nextSlot = slot != ContactSlab.NO_SLOT ? slot : last == Integer.MAX_VALUE ? ContactSlab.NO_SLOT : last + 1;
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return packed.peek();
+        }
+    }
+}
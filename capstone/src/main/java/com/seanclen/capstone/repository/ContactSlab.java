@@ -0,0 +1,490 @@
+package com.seanclen.capstone.repository;
+
+import com.seanclen.capstone.model.Contact;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Contacts as fixed-width records in large pages, for CompactContactRepository.
+ * The model limits names to 10 characters, addresses to 30 and phone numbers to 10, so a contact
+ * fits in RECORD_BYTES: each text field is a length byte and its Latin-1 bytes, and the phone number
+ * is a long. A contact with a sequential ID is stored in the slot of that number, so no map from ID to
+ * record is needed, and IDs in slot order are in ID_ORDER. A whole page holds PAGE_RECORDS contacts
+ * in one ByteBuffer, on the heap or off it, so the garbage collector sees one object per page instead
+ * of seven per contact.
+ * Contacts with the same phone number are chained through their records, and the head of each chain
+ * is found in an open-addressing table of primitive longs, as in PhoneIndex.
+ * The records of a page are written and read under the lock CompactContactRepository holds for that
+ * page, so writers to different pages run at the same time. What spans pages has a lock of its own:
+ * the page directory is grown, and pages allocated and released, under pagesLock, and the phone table
+ * and the chain links in the records are changed and walked under phoneLock. Each page counts its
+ * records in a trailer, so the directory holds nothing a page writer updates.
+ * @author Sean Clendening
+ */
+final class ContactSlab {
+    static final int NO_SLOT = -1;
+    static final int RECORD_BYTES = 80;
+
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_RECORDS = 1 << PAGE_SHIFT;
+    // The number of records in the page, after the last record.
+    private static final int PAGE_SIZE = PAGE_RECORDS * RECORD_BYTES;
+    private static final int PAGE_BYTES = PAGE_SIZE + 4;
+    private static final int NAME_WIDTH = 10;
+    private static final int ADDRESS_WIDTH = 30;
+    // Record layout: a presence flag, three length-prefixed text fields, then the phone number, the
+    // previous and next slots with the same number, and the version of the contact.
+    private static final int PRESENT = 0;
+    private static final int FIRST_NAME = 1;
+    private static final int LAST_NAME = FIRST_NAME + 1 + NAME_WIDTH;
+    private static final int ADDRESS = LAST_NAME + 1 + NAME_WIDTH;
+    private static final int PHONE = 56;
+    private static final int PREVIOUS = 64;
+    private static final int NEXT = 68;
+    private static final int VERSION = 72;
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+
+    private final boolean direct;
+    private final ReentrantLock pagesLock = new ReentrantLock();
+    private volatile ByteBuffer[] pages = new ByteBuffer[16];
+    private volatile int allocatedPages;
+    private final AtomicInteger size = new AtomicInteger();
+    private final StampedLock phoneLock = new StampedLock();
+    // Phone number plus one (0 marks an empty slot), and the first slot of its chain.
+    private long[] phoneKeys = new long[1024];
+    private int[] phoneHeads = new int[1024];
+    private int phoneCount;
+
+    /**
+     * @param direct whether to allocate pages outside the Java heap
+     */
+    ContactSlab(boolean direct) {
+        this.direct = direct;
+    }
+
+    /**
+     * Find the slot of a sequential ID: a decimal number without leading zeros.
+     * @param id the ID
+     * @return the slot, or NO_SLOT if the ID is not a sequential one
+     */
+    static int slot(String id) {
+        int length = id.length();
+        if (length == 0 || length > 10 || id.charAt(0) == '0') {
+            return NO_SLOT;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return NO_SLOT;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value <= Integer.MAX_VALUE ? (int) value : NO_SLOT;
+    }
+
+    /**
+     * Find the page of a slot, which CompactContactRepository locks to change or read the slot.
+     * @param slot the slot
+     * @return the index of its page
+     */
+    static int page(int slot) {
+        return slot >>> PAGE_SHIFT;
+    }
+
+    /**
+     * Find the last slot of the page of a slot.
+     * @param slot the slot
+     * @return the last slot of its page
+     */
+    static int lastOfPage(int slot) {
+        return slot | (PAGE_RECORDS - 1);
+    }
+
+    /**
+     * Check that a contact's fields fit a record exactly, so that it reads back unchanged: Latin-1
+     * text within the field widths, and a phone number of exactly ten digits.
+     * @param contact the contact
+     * @return true if the contact can be stored in the slab
+     */
+    static boolean fits(Contact contact) {
+        return fits(contact.getFirstName(), NAME_WIDTH) && fits(contact.getLastName(), NAME_WIDTH)
+                && fits(contact.getAddress(), ADDRESS_WIDTH) && phone(contact.getPhone()) >= 0;
+    }
+
+    /**
+     * Store a contact in its slot, replacing any contact already there.
+     * @param slot the slot of the contact's ID
+     * @param contact the contact, which must fit
+     * @param version the version of the contact
+     */
+    void put(int slot, Contact contact, long version) {
+        long phone = phone(contact.getPhone());
+        ByteBuffer page = page(slot, true);
+        int at = offset(slot);
+        if (page.get(at + PRESENT) == 0) {
+            page.put(at + PRESENT, (byte) 1);
+            page.putInt(PAGE_SIZE, page.getInt(PAGE_SIZE) + 1);
+            size.incrementAndGet();
+            page.putLong(at + PHONE, phone);
+            long stamp = phoneLock.writeLock();
+            try {
+                link(slot, phone);
+            } finally {
+                phoneLock.unlockWrite(stamp);
+            }
+        } else if (page.getLong(at + PHONE) != phone) {
+            long stamp = phoneLock.writeLock();
+            try {
+                unlink(slot);
+                page.putLong(at + PHONE, phone);
+                link(slot, phone);
+            } finally {
+                phoneLock.unlockWrite(stamp);
+            }
+        }
+        write(page, at + FIRST_NAME, contact.getFirstName());
+        write(page, at + LAST_NAME, contact.getLastName());
+        write(page, at + ADDRESS, contact.getAddress());
+        page.putLong(at + VERSION, version);
+    }
+
+    /**
+     * Remove the contact in a slot, releasing its page once the page is empty.
+     * @param slot the slot
+     * @return true if there was a contact in the slot
+     */
+    boolean remove(int slot) {
+        ByteBuffer page = page(slot, false);
+        int at = offset(slot);
+        if (page == null || page.get(at + PRESENT) == 0) {
+            return false;
+        }
+
+        long stamp = phoneLock.writeLock();
+        try {
+            unlink(slot);
+        } finally {
+            phoneLock.unlockWrite(stamp);
+        }
+        page.put(at + PRESENT, (byte) 0);
+        size.decrementAndGet();
+        int records = page.getInt(PAGE_SIZE) - 1;
+        page.putInt(PAGE_SIZE, records);
+        if (records == 0) {
+            release(page(slot));
+        }
+        return true;
+    }
+
+    /**
+     * Get the version of the contact in a slot.
+     * @param slot the slot
+     * @return the version, or -1 if the slot is empty
+     */
+    long version(int slot) {
+        ByteBuffer page = page(slot, false);
+        int at = offset(slot);
+        return page != null && page.get(at + PRESENT) != 0 ? page.getLong(at + VERSION) : -1;
+    }
+
+    boolean contains(int slot) {
+        ByteBuffer page = page(slot, false);
+        return page != null && page.get(offset(slot) + PRESENT) != 0;
+    }
+
+    /**
+     * Read the fields of the contact in a slot. May be called while a writer runs, in which case the
+     * caller must discard the result (or a RuntimeException) and read again under a lock.
+     * @param slot the slot
+     * @return the first name, last name, phone number and address, or null if the slot is empty
+     */
+    String[] read(int slot) {
+        ByteBuffer page = page(slot, false);
+        int at = offset(slot);
+        if (page == null || page.get(at + PRESENT) == 0) {
+            return null;
+        }
+        return new String[] {read(page, at + FIRST_NAME), read(page, at + LAST_NAME),
+                phoneString(page.getLong(at + PHONE)), read(page, at + ADDRESS)};
+    }
+
+    /**
+     * Find the first slot at or after a slot whose page is allocated. Takes no lock, so a page allocated
+     * or released at the same time may be missed or returned; the caller then scans the page with next,
+     * under the page's lock.
+     * @param from the slot to start at
+     * @return the slot, or NO_SLOT if there is none
+     */
+    int nextPage(int from) {
+        ByteBuffer[] pages = this.pages;
+        for (int index = page(from); index < pages.length; index++) {
+            if (pages[index] != null) {
+                return Math.max(from, index << PAGE_SHIFT);
+            }
+        }
+        return NO_SLOT;
+    }
+
+    /**
+     * Find the first occupied slot at or after a slot, up to the end of its page.
+     * @param from the slot to start at
+     * @return the slot, or NO_SLOT if there is none in the rest of the page
+     */
+    int next(int from) {
+        ByteBuffer page = page(from, false);
+        if (page == null) {
+            return NO_SLOT;
+        }
+        int last = lastOfPage(from);
+        for (int slot = from; ; slot++) {
+            if (page.get(offset(slot) + PRESENT) != 0) {
+                return slot;
+            }
+            if (slot == last) {
+                return NO_SLOT;
+            }
+        }
+    }
+
+    /**
+     * Find the slots of the contacts with a phone number. Only the chain is read under phoneLock, so the
+     * caller reads each record under its page's lock and checks that it still has the number.
+     * @param phone the number, as returned by PhoneIndex.key
+     * @return the slots, in ascending order
+     */
+    int[] slotsWithPhone(long phone) {
+        int[] slots = new int[8];
+        int count = 0;
+        long stamp = phoneLock.readLock();
+        try {
+            int i = findPhone(phone);
+            if (phoneKeys[i] == 0) {
+                return new int[0];
+            }
+            for (int slot = phoneHeads[i]; slot != NO_SLOT; slot = page(slot, false).getInt(offset(slot) + NEXT)) {
+                if (count == slots.length) {
+                    slots = Arrays.copyOf(slots, count * 2);
+                }
+                slots[count++] = slot;
+            }
+        } finally {
+            phoneLock.unlockRead(stamp);
+        }
+        slots = Arrays.copyOf(slots, count);
+        Arrays.sort(slots);
+        return slots;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Estimate the heap used by the slab: its pages, unless they are direct, and its tables.
+     * @return the estimated number of bytes
+     */
+    long heapBytes() {
+        long pageBytes = direct ? 0 : (long) allocatedPages * (PAGE_BYTES + 16);
+        long stamp = phoneLock.readLock();
+        try {
+            return pageBytes + 8L * pages.length + 12L * phoneKeys.length;
+        } finally {
+            phoneLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Estimate the memory used by direct pages, outside the heap.
+     * @return the number of bytes, 0 if pages are on the heap
+     */
+    long directBytes() {
+        return direct ? (long) allocatedPages * PAGE_BYTES : 0;
+    }
+
+    /**
+     * Parse a phone number that is stored as is: exactly ten digits, with no surrounding spaces.
+     * @return the number, or -1 if it cannot be stored as a long and read back unchanged
+     */
+    private static long phone(String phone) {
+        if (phone == null || phone.length() != 10 || !phone.equals(phone.strip())) {
+            return -1;
+        }
+        long key = PhoneIndex.key(phone);
+        return key == PhoneIndex.NO_KEY ? -1 : key;
+    }
+
+    private static boolean fits(String value, int width) {
+        if (value == null || value.length() > width) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void write(ByteBuffer page, int at, String value) {
+        page.put(at, (byte) value.length());
+        for (int i = 0; i < value.length(); i++) {
+            page.put(at + 1 + i, (byte) value.charAt(i));
+        }
+    }
+
+    private static String read(ByteBuffer page, int at) {
+        byte[] bytes = new byte[page.get(at)];
+        page.get(at + 1, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private static String phoneString(long phone) {
+        char[] digits = new char[10];
+        for (int i = digits.length - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + phone % 10);
+            phone /= 10;
+        }
+        return new String(digits);
+    }
+
+    private static int offset(int slot) {
+        return (slot & (PAGE_RECORDS - 1)) * RECORD_BYTES;
+    }
+
+    private ByteBuffer page(int slot, boolean create) {
+        int index = page(slot);
+        ByteBuffer[] pages = this.pages;
+        ByteBuffer page = index < pages.length ? pages[index] : null;
+        return page == null && create ? allocate(index) : page;
+    }
+
+    // Only the writer of a page allocates or releases it, under the page's lock and pagesLock.
+    private ByteBuffer allocate(int index) {
+        pagesLock.lock();
+        try {
+            ByteBuffer[] pages = this.pages;
+            if (index >= pages.length) {
+                pages = Arrays.copyOf(pages, Math.max(pages.length * 2, Integer.highestOneBit(index) * 2));
+            }
+            ByteBuffer page = direct ? ByteBuffer.allocateDirect(PAGE_BYTES) : ByteBuffer.allocate(PAGE_BYTES);
+            pages[index] = page;
+            this.pages = pages;
+            allocatedPages++;
+            return page;
+        } finally {
+            pagesLock.unlock();
+        }
+    }
+
+    private void release(int index) {
+        pagesLock.lock();
+        try {
+            pages[index] = null;
+            allocatedPages--;
+        } finally {
+            pagesLock.unlock();
+        }
+    }
+
+    // Insert a slot at the head of its number's chain. Called under phoneLock.
+    private void link(int slot, long phone) {
+        int i = findPhone(phone);
+        int head = NO_SLOT;
+        if (phoneKeys[i] == 0) {
+            phoneKeys[i] = phone + 1;
+            phoneCount++;
+        } else {
+            head = phoneHeads[i];
+            page(head, false).putInt(offset(head) + PREVIOUS, slot);
+        }
+        phoneHeads[i] = slot;
+        ByteBuffer page = page(slot, false);
+        page.putInt(offset(slot) + PREVIOUS, NO_SLOT);
+        page.putInt(offset(slot) + NEXT, head);
+        if (phoneCount * 2 > phoneKeys.length) {
+            resizePhones();
+        }
+    }
+
+    // Called under phoneLock.
+    private void unlink(int slot) {
+        ByteBuffer page = page(slot, false);
+        int at = offset(slot);
+        int previous = page.getInt(at + PREVIOUS);
+        int next = page.getInt(at + NEXT);
+        if (next != NO_SLOT) {
+            page(next, false).putInt(offset(next) + PREVIOUS, previous);
+        }
+        if (previous != NO_SLOT) {
+            page(previous, false).putInt(offset(previous) + NEXT, next);
+            return;
+        }
+
+        int i = findPhone(page.getLong(at + PHONE));
+        if (next != NO_SLOT) {
+            phoneHeads[i] = next;
+        } else {
+            deletePhone(i);
+        }
+    }
+
+    // The table slot of a number, or the empty slot where it would go.
+    private int findPhone(long phone) {
+        long stored = phone + 1;
+        int mask = phoneKeys.length - 1;
+        int i = home(stored, mask);
+        while (phoneKeys[i] != 0 && phoneKeys[i] != stored) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    // Backward-shift deletion, as in PhoneIndex.
+    private void deletePhone(int hole) {
+        int mask = phoneKeys.length - 1;
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            long k = phoneKeys[i];
+            if (k == 0) {
+                break;
+            }
+            int home = home(k, mask);
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                phoneKeys[hole] = k;
+                phoneHeads[hole] = phoneHeads[i];
+                hole = i;
+            }
+        }
+        phoneKeys[hole] = 0;
+        phoneCount--;
+    }
+
+    private void resizePhones() {
+        long[] oldKeys = phoneKeys;
+        int[] oldHeads = phoneHeads;
+        phoneKeys = new long[oldKeys.length * 2];
+        phoneHeads = new int[phoneKeys.length];
+        int mask = phoneKeys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != 0) {
+                int i = home(oldKeys[j], mask);
+                while (phoneKeys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                phoneKeys[i] = oldKeys[j];
+                phoneHeads[i] = oldHeads[j];
+            }
+        }
+    }
+
+    private static int home(long stored, int mask) {
+        return (int) ((stored * MIX) >>> 32) & mask;
+    }
+}
@@ -0,0 +1,364 @@
+package com.seanclen.capstone.repository;
+
+import com.seanclen.capstone.model.Appointment;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * An inverted index from the terms of appointment descriptions (see SearchTerms) to the appointments
+ * that contain them, for keyword search.
+ * Every indexed appointment gets a document number, an int handed out in increasing order. Each term
+ * has a posting list of the document numbers containing it, stored as variable-length deltas in a
+ * byte[] (one byte per posting for common terms), with a skip entry every BLOCK postings so that an
+ * AND query can jump over the parts of a long list that cannot match.
+ * Saving an appointment again gives it a new document number and marks the old one dead, so posting
+ * lists only ever grow at their end. A list is rewritten without its dead postings once more than half
+ * of them are dead. When the document numbers run out and at least half of them are dead, the live
+ * documents are renumbered from 0 in the same order and every list is rebuilt, so the index grows with
+ * the live appointments rather than with the number of saves, and document numbers never overflow.
+ * Matches are returned in document order, that is in the order the appointments were last saved, and
+ * a query stops as soon as it has enough of them. Reads share a StampedLock read lock; writes take the
+ * write lock for the few appends or removals of one appointment.
+ * Writers must hold the appointment's ID lock, as InMemoryRepository.onSave and onDelete do.
+ */
+final class DescriptionIndex {
+    private static final int END = Integer.MAX_VALUE;
+    private static final int BLOCK = 128;
+    // Lists shorter than this are never worth rewriting.
+    private static final int MIN_COMPACT = 64;
+    private static final int MIN_DOCS = 1024;
+
+    private final StampedLock lock = new StampedLock();
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final Map<String, Integer> docsById = new HashMap<>();
+    // The appointment and the description it was indexed with, by document number; null once dead.
+    // Appointments are mutable, so the description on the entity can no longer be trusted to find
+    // its old postings.
+    private Appointment[] docs = new Appointment[MIN_DOCS];
+    private String[] descriptions = new String[MIN_DOCS];
+    private int nextDoc;
+
+    /**
+     * Index a saved appointment, replacing its previous version.
+     * @param appointment the saved appointment
+     */
+    void put(Appointment appointment) {
+        long stamp = lock.writeLock();
+        try {
+            removeDoc(appointment.getId());
+            if (nextDoc == docs.length) {
+                if (docsById.size() * 2 <= docs.length) {
+                    renumber();
+                } else {
+                    docs = Arrays.copyOf(docs, docs.length * 2);
+                    descriptions = Arrays.copyOf(descriptions, docs.length);
+                }
+            }
+            int doc = nextDoc++;
+            docs[doc] = appointment;
+            descriptions[doc] = appointment.getDescription();
+            docsById.put(appointment.getId(), doc);
+            for (String term : SearchTerms.of(appointment.getDescription())) {
+                postings.computeIfAbsent(term, t -> new PostingList()).add(doc);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove a deleted appointment.
+     * @param id the ID of the deleted appointment
+     */
+    void remove(String id) {
+        long stamp = lock.writeLock();
+        try {
+            removeDoc(id);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Count the postings of the rarest term, an upper bound on the number of matches.
+     * @param terms the query terms
+     * @return the length of the shortest posting list, or 0 if a term is not indexed
+     */
+    int estimate(List<String> terms) {
+        long stamp = lock.readLock();
+        try {
+            int smallest = END;
+            for (String term : terms) {
+                PostingList list = postings.get(term);
+                smallest = Math.min(smallest, list != null ? list.live : 0);
+            }
+            return smallest;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Find appointments containing every term by intersecting the posting lists, rarest first.
+     * @param terms the query terms; must not be empty
+     * @param from the inclusive start of the date window, or null for no lower bound
+     * @param to the exclusive end of the date window, or null for no upper bound
+     * @param limit the maximum number of appointments to return
+     * @return the matching appointments in document order
+     */
+    List<Appointment> search(List<String> terms, LocalDateTime from, LocalDateTime to, int limit) {
+        long stamp = lock.readLock();
+        try {
+            Cursor[] cursors = new Cursor[terms.size()];
+            for (int i = 0; i < cursors.length; i++) {
+                PostingList list = postings.get(terms.get(i));
+                if (list == null) {
+                    return List.of();
+                }
+                cursors[i] = new Cursor(list);
+            }
+            Arrays.sort(cursors, (a, b) -> Integer.compare(a.list.count, b.list.count));
+
+            List<Appointment> result = new ArrayList<>(Math.min(limit, 64));
+            Cursor lead = cursors[0];
+            int doc = lead.next();
+            while (doc != END && result.size() < limit) {
+                int matched = 1;
+                while (matched < cursors.length) {
+                    int other = cursors[matched].advance(doc);
+                    if (other == END) {
+                        return result;
+                    }
+                    if (other != doc) {
+                        doc = lead.advance(other);
+                        break;
+                    }
+                    matched++;
+                }
+                if (matched == cursors.length) {
+                    Appointment appointment = docs[doc];
+                    if (appointment != null && inWindow(appointment.getDate(), from, to)) {
+                        result.add(appointment);
+                    }
+                    doc = lead.next();
+                }
+            }
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Find the appointments of a small candidate set (such as a narrow date window) that contain every
+     * term, by checking each candidate's indexed description instead of reading posting lists.
+     * @param candidates the appointments to check
+     * @param terms the query terms
+     * @param limit the maximum number of appointments to return
+     * @return the matching appointments in document order, as search returns them
+     */
+    List<Appointment> filter(Collection<Appointment> candidates, List<String> terms, int limit) {
+        long stamp = lock.readLock();
+        try {
+            int[] matches = new int[candidates.size()];
+            int count = 0;
+            for (Appointment candidate : candidates) {
+                Integer doc = docsById.get(candidate.getId());
+                if (doc != null && SearchTerms.of(descriptions[doc]).containsAll(terms)) {
+                    matches[count++] = doc;
+                }
+            }
+            Arrays.sort(matches, 0, count);
+
+            List<Appointment> result = new ArrayList<>(Math.min(limit, count));
+            for (int i = 0; i < count && result.size() < limit; i++) {
+                result.add(docs[matches[i]]);
+            }
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void removeDoc(String id) {
+        Integer doc = docsById.remove(id);
+        if (doc == null) {
+            return;
+        }
+
+        String description = descriptions[doc];
+        docs[doc] = null;
+        descriptions[doc] = null;
+        for (String term : SearchTerms.of(description)) {
+            PostingList list = postings.get(term);
+            list.live--;
+            if (list.live == 0) {
+                postings.remove(term);
+            } else if (list.count >= MIN_COMPACT && list.live * 2 < list.count) {
+                postings.put(term, list.compact(docs));
+            }
+        }
+    }
+
+    /**
+     * Give the live documents the numbers 0 to n - 1, in their current order, and rebuild every posting
+     * list with the new numbers. Only called once at least half of the numbers handed out are dead, so
+     * the work is paid for by the saves and deletes that killed them.
+     */
+    private void renumber() {
+        int[] renumbered = new int[nextDoc];
+        int live = 0;
+        for (int doc = 0; doc < nextDoc; doc++) {
+            if (docs[doc] != null) {
+                renumbered[doc] = live++;
+            }
+        }
+        postings.replaceAll((term, list) -> list.renumber(docs, renumbered));
+
+        int capacity = Math.max(MIN_DOCS, live * 2);
+        Appointment[] newDocs = new Appointment[capacity];
+        String[] newDescriptions = new String[capacity];
+        for (int doc = 0; doc < nextDoc; doc++) {
+            if (docs[doc] != null) {
+                int renumberedDoc = renumbered[doc];
+                newDocs[renumberedDoc] = docs[doc];
+                newDescriptions[renumberedDoc] = descriptions[doc];
+                docsById.put(docs[doc].getId(), renumberedDoc);
+            }
+        }
+        docs = newDocs;
+        descriptions = newDescriptions;
+        nextDoc = live;
+    }
+
+    private static boolean inWindow(LocalDateTime date, LocalDateTime from, LocalDateTime to) {
+        return (from == null || !date.isBefore(from)) && (to == null || date.isBefore(to));
+    }
+
+    /**
+     * The document numbers containing one term, in increasing order, as varint-encoded deltas.
+     * Block b starts at byte skipOffsets[b] and its first delta is relative to skipDocs[b], the last
+     * document of the block before it.
+     */
+    private static final class PostingList {
+        private byte[] bytes = new byte[8];
+        private int length;
+        private int[] skipDocs = new int[1];
+        private int[] skipOffsets = new int[1];
+        // Postings in the list, and how many of them are still live.
+        private int count;
+        private int live;
+        private int last = -1;
+
+        void add(int doc) {
+            if (count % BLOCK == 0) {
+                int block = count / BLOCK;
+                if (block == skipDocs.length) {
+                    skipDocs = Arrays.copyOf(skipDocs, block * 2);
+                    skipOffsets = Arrays.copyOf(skipOffsets, block * 2);
+                }
+                skipDocs[block] = last;
+                skipOffsets[block] = length;
+            }
+            if (length + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 5));
+            }
+            int delta = doc - last;
+            while ((delta & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            bytes[length++] = (byte) delta;
+            last = doc;
+            count++;
+            live++;
+        }
+
+        PostingList compact(Appointment[] docs) {
+            PostingList compacted = new PostingList();
+            Cursor cursor = new Cursor(this);
+            for (int doc = cursor.next(); doc != END; doc = cursor.next()) {
+                if (docs[doc] != null) {
+                    compacted.add(doc);
+                }
+            }
+            return compacted;
+        }
+
+        /**
+         * Copy the live postings under their new numbers, which keep the order of the old ones.
+         */
+        PostingList renumber(Appointment[] docs, int[] renumbered) {
+            PostingList copy = new PostingList();
+            Cursor cursor = new Cursor(this);
+            for (int doc = cursor.next(); doc != END; doc = cursor.next()) {
+                if (docs[doc] != null) {
+                    copy.add(renumbered[doc]);
+                }
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * Reads a posting list forwards. Both next and advance return END once the list is exhausted.
+     */
+    private static final class Cursor {
+        private final PostingList list;
+        private int offset;
+        private int index;
+        private int doc = -1;
+
+        Cursor(PostingList list) {
+            this.list = list;
+        }
+
+        int next() {
+            if (index >= list.count) {
+                return doc = END;
+            }
+
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = list.bytes[offset++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            index++;
+            return doc += delta;
+        }
+
+        /**
+         * Moves to the first document at or after target, skipping whole blocks that end before it.
+         */
+        int advance(int target) {
+            if (doc >= target) {
+                return doc;
+            }
+
+            int blocks = (list.count + BLOCK - 1) / BLOCK;
+            int block = index / BLOCK;
+            while (block + 1 < blocks && list.skipDocs[block + 1] < target) {
+                block++;
+            }
+            if (block * BLOCK > index) {
+                index = block * BLOCK;
+                offset = list.skipOffsets[block];
+                doc = list.skipDocs[block];
+            }
+            while (doc < target) {
+                next();
+            }
+            return doc;
+        }
+    }
+}
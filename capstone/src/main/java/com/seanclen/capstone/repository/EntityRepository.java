@@ -0,0 +1,175 @@
+package com.seanclen.capstone.repository;
+
+import com.seanclen.capstone.model.HasId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The storage contract shared by every repository engine, in memory or in a database.
+ * Services depend only on this contract, so the engine is chosen by configuration.
+ * Entities are ordered by ID using InMemoryRepository.ID_ORDER (by length, then lexicographically).
+ * @param <T> the type of entity stored in the repository
+ */
+public interface EntityRepository<T extends HasId> {
+    /**
+     * Returned by version and versionOf when the repository does not know the version.
+     */
+    long NO_VERSION = -1;
+
+    /**
+     * Passed to replace to replace an entity whatever its version.
+     */
+    long ANY_VERSION = -2;
+
+    /**
+     * Saves the entity. If the entity has an ID, it is updated. If not, a new ID is assigned.
+     * @param item The entity to save.
+     * @return The saved entity: the one given, or a copy of it with the assigned ID.
+     */
+    T save(T item);
+
+    /**
+     * Saves a batch of entities. Entities without an ID are assigned one.
+     * @param batch The entities to save.
+     * @return The saved entities, in order, with copies in place of those that were assigned an ID.
+     */
+    List<T> saveAll(List<T> batch);
+
+    /**
+     * Replaces an existing entity if it still has the version the caller read, as one atomic
+     * compare-and-set: no other save or delete of the entity can come between the check and the write,
+     * so two callers that read the same version cannot both replace it, and a deleted entity is never
+     * brought back. The default implementation is not atomic and only supports ANY_VERSION;
+     * repositories that track versions override it.
+     * @param item the new state of the entity, with the ID of the entity to replace
+     * @param expectedVersion the version the caller read, or ANY_VERSION to replace any version
+     * @return the saved entity and its new version, or null if there is no entity with the ID
+     * @throws VersionConflictException if the entity has another version
+     */
+    default Versioned<T> replace(T item, long expectedVersion) {
+        if (expectedVersion != ANY_VERSION) {
+            throw new VersionConflictException(item.getId(), expectedVersion, NO_VERSION);
+        }
+        if (!existsById(item.getId())) {
+            return null;
+        }
+        save(item);
+        return new Versioned<>(item, versionOf(item.getId()));
+    }
+
+    /**
+     * Replaces a batch of existing entities, in order, whatever their version. Each entity is replaced
+     * as by replace with ANY_VERSION, so an entity deleted in the meantime is not brought back.
+     * @param batch the new states of the entities, with the IDs of the entities to replace
+     * @return for every entity of the batch, in order, the saved entity and its new version, or null if
+     *         there is no entity with its ID
+     */
+    default List<Versioned<T>> replaceAll(List<T> batch) {
+        List<Versioned<T>> replaced = new ArrayList<>(batch.size());
+        for (T item : batch) {
+            replaced.add(replace(item, ANY_VERSION));
+        }
+        return replaced;
+    }
+
+    /**
+     * Finds an entity by its ID.
+     * @param id The ID of the entity to find.
+     * @return The entity, or null if not found.
+     */
+    T findById(String id);
+
+    /**
+     * Checks whether an entity exists, without loading it.
+     * @param id The ID of the entity.
+     * @return true if an entity with the ID exists.
+     */
+    boolean existsById(String id);
+
+    /**
+     * Finds all entities, ordered by ID.
+     * @return A List containing all entities.
+     */
+    List<T> findAll();
+
+    /**
+     * Streams all entities, ordered by ID, without loading them all at once.
+     * The caller must consume or close the stream.
+     * @return A Stream over all entities.
+     */
+    Stream<T> stream();
+
+    /**
+     * Finds one page of entities, ordered by ID.
+     * @param afterId the ID the page starts after, or null for the first page
+     * @param limit the maximum number of entities on the page
+     * @return the page, with a next cursor if more entities may follow
+     */
+    Page<T> findPage(String afterId, int limit);
+
+    /**
+     * Deletes an entity by its ID.
+     * @param id The ID of the entity to delete.
+     * @return true if the entity was deleted, false otherwise.
+     */
+    boolean deleteById(String id);
+
+    /**
+     * Deletes a batch of entities by their IDs.
+     * @param ids The IDs of the entities to delete.
+     * @return the IDs of the entities that were deleted, in the order given.
+     */
+    List<String> deleteAllById(Collection<String> ids);
+
+    /**
+     * Counts the stored entities.
+     * @return the number of entities in the repository
+     */
+    long count();
+
+    /**
+     * Gets the version of the whole collection, which changes with every save and delete, in O(1).
+     * Versions only grow, and are not reused after a restart, so they can be sent to clients as
+     * ETags. Repositories that cannot tell cheaply, because other instances write to the same
+     * database, return NO_VERSION.
+     * @return the version of the collection, or NO_VERSION
+     */
+    default long version() {
+        return NO_VERSION;
+    }
+
+    /**
+     * Gets the version of one entity, which changes every time it is saved, in O(1) and without
+     * loading the entity.
+     * @param id the ID of the entity
+     * @return the version of the entity, or NO_VERSION if there is no such entity or the repository
+     *         does not track versions
+     */
+    default long versionOf(String id) {
+        return NO_VERSION;
+    }
+
+    /**
+     * Attaches a listener that is told about every subsequent save and delete made through this
+     * repository, after the listeners attached before it. Entities restored from durable storage are
+     * not reported.
+     * @param listener the listener
+     */
+    void attachChangeListener(ChangeListener<T> listener);
+
+    /**
+     * Stops telling a listener about changes.
+     * @param listener a listener attached before; nothing happens if it is not attached
+     */
+    void detachChangeListener(ChangeListener<T> listener);
+
+    /**
+     * Generates the ID of a new entity: the next sequential ID, or an ID from the configured
+     * IdGenerator (see IdGenerators).
+     * @return The next ID as a String.
+     */
+    String getNextId();
+}
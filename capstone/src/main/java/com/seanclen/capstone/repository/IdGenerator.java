@@ -0,0 +1,25 @@
+package com.seanclen.capstone.repository;
+
+/**
+ * Generates the IDs of new entities for a repository. Implemented by SequentialIdGenerator, the
+ * default, and by TimeBasedIdGenerator for instances that share a database; IdGenerators selects one
+ * from the configuration. Every ID fits the 10 character limit of Contact and Appointment IDs.
+ * Implementations are thread-safe.
+ * @author Sean Clendening
+ */
+public interface IdGenerator {
+    /**
+     * Generate a new ID, different from every ID this generator has returned before.
+     * @return the new ID
+     */
+    String nextId();
+
+    /**
+     * Make sure the generator never returns a sequential ID at or below one that was already used,
+     * after the entities of a repository have been reloaded. Generators whose IDs are not sequential
+     * numbers ignore it.
+     * @param lastUsedId the highest sequential ID known to have been used
+     */
+    default void restore(int lastUsedId) {
+    }
+}
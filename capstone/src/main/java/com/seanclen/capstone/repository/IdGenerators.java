@@ -0,0 +1,53 @@
+package com.seanclen.capstone.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the ID generator of each repository from the configuration:
+ * - capstone.ids.generator: sequential (the default) for the IDs 1, 2, 3..., or time-based for IDs
+ *   that stay unique across instances sharing a database (see TimeBasedIdGenerator)
+ * - capstone.ids.node: the node of this instance for time-based IDs, between 0 and
+ *   TimeBasedIdGenerator.MAX_NODE; every instance that shares the database needs its own
+ * @author Sean Clendening
+ */
+@Component
+public class IdGenerators {
+    public static final String SEQUENTIAL = "sequential";
+    public static final String TIME_BASED = "time-based";
+
+    private final String generator;
+    private final int node;
+
+    /**
+     * @throws IllegalArgumentException if the generator is unknown or the node is out of range
+     */
+    public IdGenerators(@Value("${capstone.ids.generator:sequential}") String generator,
+                        @Value("${capstone.ids.node:0}") int node) {
+        if (!generator.equals(SEQUENTIAL) && !generator.equals(TIME_BASED)) {
+            throw new IllegalArgumentException("Invalid capstone.ids.generator " + generator);
+        }
+        if (node < 0 || node > TimeBasedIdGenerator.MAX_NODE) {
+            throw new IllegalArgumentException("Invalid capstone.ids.node " + node);
+        }
+        this.generator = generator;
+        this.node = node;
+    }
+
+    /**
+     * Check whether repositories number their entities in sequence.
+     * @return true for sequential IDs
+     */
+    public boolean isSequential() {
+        return generator.equals(SEQUENTIAL);
+    }
+
+    /**
+     * Create the generator for one repository. Each repository gets its own, so sequential IDs are
+     * counted per repository.
+     * @return a new generator
+     */
+    public IdGenerator create() {
+        return isSequential() ? new SequentialIdGenerator() : new TimeBasedIdGenerator(node);
+    }
+}
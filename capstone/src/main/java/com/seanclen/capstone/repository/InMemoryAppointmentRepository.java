@@ -0,0 +1,157 @@
+package com.seanclen.capstone.repository;
+
+import com.seanclen.capstone.model.Appointment;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory repository for appointments, used unless capstone.storage.type selects a database. It is
+ * also used with the compact storage type, which only changes how contacts are stored.
+ * Storage, ID generation and thread-safety are provided by InMemoryRepository, so the repository
+ * can be shared by all request threads without external synchronization.
+ * In addition to the hash map, appointments are kept in a sorted secondary index on their date
+ * (a ConcurrentSkipListMap), so a date window query costs O(log n + k) instead of scanning every
+ * appointment.
+ * Descriptions are kept in an inverted index (DescriptionIndex) for keyword search, and appointments
+ * are counted by day, hour and minute (AppointmentCalendar) for the dashboard.
+ */
+@Repository
+@ConditionalOnExpression("'${capstone.storage.type:memory}' == 'memory' or '${capstone.storage.type:memory}' == 'compact'")
+public class InMemoryAppointmentRepository extends InMemoryRepository<Appointment> implements AppointmentRepository {
+    // The most appointments of a date window checked one by one during a keyword search.
+    private static final int WINDOW_SCAN_LIMIT = 4096;
+    // The Appointment object with its LocalDateTime, LocalDate and LocalTime, and an appointment's
+    // share of the date index (about 110 bytes) and of the description index (about 90 bytes).
+    private static final long APPOINTMENT_BYTES = 96;
+    private static final long INDEX_BYTES = 200;
+
+    // Appointments ordered by (date, id). The ID breaks ties between appointments at the same time.
+    private final ConcurrentSkipListMap<DateKey, Appointment> byDate = new ConcurrentSkipListMap<>();
+    // The index key each appointment was last saved under. Appointments are mutable, so the date
+    // stored on the entity can no longer be trusted to find its old index entry.
+    private final ConcurrentHashMap<String, DateKey> dateKeys = new ConcurrentHashMap<>();
+    private final DescriptionIndex descriptions = new DescriptionIndex();
+    private final AppointmentCalendar calendar = new AppointmentCalendar();
+
+    /**
+     * Create an empty repository that numbers its entities in sequence.
+     */
+    public InMemoryAppointmentRepository() {
+    }
+
+    @Autowired
+    public InMemoryAppointmentRepository(IdGenerators ids) {
+        super(ids.create());
+    }
+
+    @Override
+    public List<Appointment> findByDateBetween(LocalDateTime from, LocalDateTime to, int limit) {
+        awaitWarmup();
+        NavigableMap<DateKey, Appointment> window = byDate;
+        if (from != null) {
+            window = window.tailMap(DateKey.lowest(from), true);
+        }
+        if (to != null) {
+            window = window.headMap(DateKey.lowest(to), false);
+        }
+
+        List<Appointment> result = new ArrayList<>(Math.min(limit, 64));
+        for (Appointment appointment : window.values()) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(appointment);
+        }
+        return result;
+    }
+
+    /**
+     * With a date window, the window is walked first for as many appointments as the rarest term has
+     * postings, up to WINDOW_SCAN_LIMIT. If it ends by then, checking its appointments is the cheaper
+     * plan; otherwise the posting lists are intersected and their matches checked against the window.
+     */
+    @Override
+    public List<Appointment> search(String query, LocalDateTime from, LocalDateTime to, int limit) {
+        awaitWarmup();
+        List<String> terms = SearchTerms.of(query);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        if (from == null && to == null) {
+            return descriptions.search(terms, null, null, limit);
+        }
+
+        int budget = Math.min(descriptions.estimate(terms), WINDOW_SCAN_LIMIT);
+        if (budget == 0) {
+            return List.of();
+        }
+        List<Appointment> window = findByDateBetween(from, to, budget + 1);
+        if (window.size() <= budget) {
+            return descriptions.filter(window, terms, limit);
+        }
+        return descriptions.search(terms, from, to, limit);
+    }
+
+    /**
+     * Waits for a snapshot warm-up to finish first, so the counts include every appointment.
+     */
+    @Override
+    public AppointmentCalendar calendar() {
+        awaitWarmup();
+        return calendar;
+    }
+
+    @Override
+    protected long estimateSize(Appointment appointment) {
+        return APPOINTMENT_BYTES + INDEX_BYTES + stringSize(appointment.getId()) + stringSize(appointment.getDescription());
+    }
+
+    @Override
+    protected void onSave(Appointment previous, Appointment item) {
+        DateKey key = new DateKey(item.getDate(), item.getId());
+        DateKey oldKey = dateKeys.put(item.getId(), key);
+        // Add the new entry before removing the old one so concurrent readers never miss it.
+        byDate.put(key, item);
+        if (oldKey != null && !oldKey.equals(key)) {
+            byDate.remove(oldKey);
+        }
+        descriptions.put(item);
+        calendar.move(oldKey != null ? oldKey.date() : null, item.getDate());
+    }
+
+    @Override
+    protected void onDelete(Appointment removed) {
+        DateKey oldKey = dateKeys.remove(removed.getId());
+        if (oldKey != null) {
+            byDate.remove(oldKey);
+            calendar.remove(oldKey.date());
+        }
+        descriptions.remove(removed.getId());
+    }
+
+    /**
+     * Key of the date index: appointments sort by date, then by ID.
+     */
+    private record DateKey(LocalDateTime date, String id) implements Comparable<DateKey> {
+        /**
+         * The smallest possible key for a date, used as a search bound. The empty ID sorts before any real ID.
+         */
+        static DateKey lowest(LocalDateTime date) {
+            return new DateKey(date, "");
+        }
+
+        @Override
+        public int compareTo(DateKey other) {
+            int byDate = date.compareTo(other.date);
+            return byDate != 0 ? byDate : ID_ORDER.compare(id, other.id);
+        }
+    }
+}
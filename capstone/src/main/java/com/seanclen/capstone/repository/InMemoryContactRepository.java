@@ -0,0 +1,72 @@
+package com.seanclen.capstone.repository;
+
+import com.seanclen.capstone.model.Contact;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * In-memory repository for contacts, used unless capstone.storage.type selects another engine.
+ * Storage, ID generation and thread-safety are provided by InMemoryRepository, so the repository
+ * can be shared by all request threads without external synchronization.
+ * First and last names are kept in a sorted prefix index (NamePrefixIndex) for search-as-you-type,
+ * and phone numbers in a primitive hash table (PhoneIndex) for inbound-call lookups.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "capstone.storage", name = "type", havingValue = "memory", matchIfMissing = true)
+public class InMemoryContactRepository extends InMemoryRepository<Contact> implements ContactRepository {
+    // The Contact object itself, and a contact's share of the name and phone indexes: about 250 bytes
+    // measured for NamePrefixIndex by NamePrefixIndexTest, and about 100 estimated for PhoneIndex.
+    private static final long CONTACT_BYTES = 40;
+    private static final long INDEX_BYTES = 350;
+
+    private final NamePrefixIndex names = new NamePrefixIndex();
+    private final PhoneIndex phones = new PhoneIndex();
+
+    /**
+     * Create an empty repository that numbers its entities in sequence.
+     */
+    public InMemoryContactRepository() {
+    }
+
+    @Autowired
+    public InMemoryContactRepository(IdGenerators ids) {
+        super(ids.create());
+    }
+
+    @Override
+    public List<Contact> findByNamePrefix(String prefix, int limit) {
+        awaitWarmup();
+        return names.search(prefix, limit);
+    }
+
+    /**
+     * Looks the number up in the phone index without allocating, once the repository is loaded.
+     */
+    @Override
+    public List<Contact> findByPhone(String phone) {
+        awaitWarmup();
+        return phones.get(phone);
+    }
+
+    @Override
+    protected long estimateSize(Contact contact) {
+        // The ID string is shared with the map keys and counted once here.
+        return CONTACT_BYTES + INDEX_BYTES + stringSize(contact.getId()) + stringSize(contact.getFirstName())
+                + stringSize(contact.getLastName()) + stringSize(contact.getPhone()) + stringSize(contact.getAddress());
+    }
+
+    @Override
+    protected void onSave(Contact previous, Contact item) {
+        names.put(item);
+        phones.put(item);
+    }
+
+    @Override
+    protected void onDelete(Contact removed) {
+        names.remove(removed.getId());
+        phones.remove(removed.getId());
+    }
+}
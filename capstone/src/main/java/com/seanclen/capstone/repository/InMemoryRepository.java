@@ -0,0 +1,817 @@
+package com.seanclen.capstone.repository;
+
+import com.seanclen.capstone.model.HasId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A thread-safe in-memory repository for storing entities that implement the HasId interface.
+ * Entities are kept in a ConcurrentHashMap, which gives O(1) average-case lookup, insertion, and
+ * deletion by ID while allowing the repository to be shared by concurrent request threads:
+ * - reads (findById, findAll) never take a lock and always see a fully published entity
+ * - writes (save, deleteById) lock only the ID they touch, through one of ID_LOCKS striped locks, so
+ *   writes to different IDs proceed in parallel across cores instead of serializing on one monitor
+ * The ID locks are ReentrantLocks rather than monitors (synchronized, or the bin locks held by
+ * ConcurrentHashMap.compute), so a virtual thread that waits for one, or for an index lock taken
+ * while holding one, unmounts instead of pinning its carrier thread.
+ * A ConcurrentSkipListMap keeps the same entities ordered by ID for keyset pagination, so a page
+ * costs O(log n + page size) no matter how many entities are stored.
+ * An optional RepositoryJournal, such as a write-ahead log, can be attached to make every change durable.
+ * After a restart the repository can serve reads straight from a snapshot while its entities are
+ * loaded into the heap in the background (see beginWarmup).
+ * The heap used by the entities and their indexes is estimated as they are saved and deleted (see
+ * estimatedBytes), so it can be monitored without walking the repository.
+ * Every save and delete advances a version counter of the collection, and a saved entity takes the new
+ * version as its own (see version and versionOf), so clients can check for changes without reading
+ * any entity. Versions are published after the change they describe, so a reader that reads the
+ * version first and the entities second may label new entities with an old version, which only costs
+ * the client a refresh, but never old entities with a new one.
+ * @param <T> the type of entity stored in the repository
+ * @author Sean Clendening
+ */
+public abstract class InMemoryRepository<T extends HasId> implements EntityRepository<T> {
+    /**
+     * Orders IDs by length and then lexicographically, so sequential numeric IDs sort numerically
+     * ("9" before "10") while any other ID format still has a total, stable order.
+     */
+    public static final Comparator<String> ID_ORDER = Comparator.comparingInt(String::length)
+            .thenComparing(Comparator.naturalOrder());
+
+    // Approximate heap cost of one entity's entries in items and ordered: a hash node and its table
+    // slot, a skip list node and its share of the index levels.
+    private static final long ENTRY_BYTES = 112;
+
+    // Approximate heap cost of an entity's entry in versions: a hash node, its table slot and a Long.
+    private static final long VERSION_BYTES = 56;
+
+    // Number of ID locks; a power of two, so an ID's lock is found by masking its hash.
+    private static final int ID_LOCKS = 1024;
+
+    // Returned for changes that need no journaling, so nothing has to be awaited.
+    private static final CompletableFuture<Void> DURABLE = CompletableFuture.completedFuture(null);
+
+    // Map the ID (String) to the entity (T). ConcurrentHashMap keeps the O(1) average complexity
+    // of the original HashMap but is safe to read and write from multiple threads.
+    private final ConcurrentHashMap<String, T> items = new ConcurrentHashMap<>();
+    // The same entities ordered by ID, maintained under the same per-ID lock as items.
+    private final ConcurrentSkipListMap<String, T> ordered = new ConcurrentSkipListMap<>(ID_ORDER);
+    // Serialize the changes to an ID: journaling, the maps and every secondary index, in one order.
+    private final ReentrantLock[] idLocks = newIdLocks();
+    private final IdGenerator ids;
+    private final LongAdder footprint = new LongAdder();
+    // Versions start from the clock, shifted so that a million changes a millisecond would be needed
+    // to reach the versions of a later start: a restarted repository never reuses a version.
+    private final long firstVersion = System.currentTimeMillis() << 20;
+    // The version of the collection, advanced after every change is visible.
+    private final AtomicLong version = new AtomicLong(firstVersion);
+    // The version of every entity saved since the repository was created; others have firstVersion.
+    private final ConcurrentHashMap<String, Long> versions = new ConcurrentHashMap<>();
+    // Records every change for durability; null when the repository is purely in memory.
+    private volatile RepositoryJournal<T> journal;
+    // Told about every live change, under the ID's lock.
+    private final ChangeListeners<T> listeners = new ChangeListeners<>();
+    // Serves reads from a snapshot that is still being loaded into the heap; null once loaded.
+    private volatile Warmup<T> warmup;
+
+    /**
+     * Create a repository that numbers its entities in sequence.
+     */
+    protected InMemoryRepository() {
+        this(new SequentialIdGenerator());
+    }
+
+    /**
+     * Create a repository.
+     * @param ids generates the IDs of entities saved without one
+     */
+    protected InMemoryRepository(IdGenerator ids) {
+        this.ids = ids;
+    }
+
+    /**
+     * Saves the entity. If the entity has an ID, it is updated. If not, a new ID is assigned.
+     * When a journal is attached, the call returns once the change is durable.
+     * @param item The entity to save.
+     * @return The saved entity.
+     */
+    @Override
+    public T save(T item) {
+        T saved = assignId(item);
+        awaitDurable(put(saved, journal, true));
+        return saved;
+    }
+
+    /**
+     * Replaces an entity under the lock of its ID, the same lock every save and delete of the ID takes,
+     * so the version check and the write are one step and the update path takes no lock of its own.
+     */
+    @Override
+    public Versioned<T> replace(T item, long expectedVersion) {
+        List<CompletableFuture<Void>> pending = new ArrayList<>(1);
+        Versioned<T> replaced = compareAndPut(item, expectedVersion, journal, pending);
+        pending.forEach(InMemoryRepository::awaitDurable);
+        return replaced;
+    }
+
+    /**
+     * Replaces a batch of entities as replace does, each under the lock of its ID. Every change is handed
+     * to the journal before waiting for any of them, as in saveAll.
+     */
+    @Override
+    public List<Versioned<T>> replaceAll(List<T> batch) {
+        RepositoryJournal<T> journal = this.journal;
+        List<Versioned<T>> replaced = new ArrayList<>(batch.size());
+        List<CompletableFuture<Void>> pending = new ArrayList<>(batch.size());
+        for (T item : batch) {
+            replaced.add(compareAndPut(item, ANY_VERSION, journal, pending));
+        }
+        pending.forEach(InMemoryRepository::awaitDurable);
+        return replaced;
+    }
+
+    /**
+     * Saves a batch of entities, in order. Entities without an ID are assigned one.
+     * Every change is handed to the journal before waiting for any of them, so a write-ahead log
+     * can commit the whole batch with a single write.
+     * @param batch The entities to save.
+     * @return The saved entities.
+     */
+    @Override
+    public List<T> saveAll(List<T> batch) {
+        RepositoryJournal<T> journal = this.journal;
+        List<T> saved = new ArrayList<>(batch.size());
+        List<CompletableFuture<Void>> pending = new ArrayList<>(batch.size());
+        for (T item : batch) {
+            T withId = assignId(item);
+            saved.add(withId);
+            pending.add(put(withId, journal, true));
+        }
+        pending.forEach(InMemoryRepository::awaitDurable);
+        return saved;
+    }
+
+    /**
+     * Finds an entity by its ID.
+     * @param id The ID of the entity to find.
+     * @return The entity, or null if not found.
+     */
+    @Override
+    public T findById(String id) {
+        if (id == null) {
+            return null;
+        }
+
+        // Read the warm-up state first: if it is already gone, every snapshot entity is in the heap.
+        Warmup<T> warmup = this.warmup;
+        T item = items.get(id);
+        if (item == null && warmup != null) {
+            item = warmup.lookup(id);
+            if (item == null) {
+                // Changed since the heap was read: loaded from the snapshot and then saved or deleted.
+                item = items.get(id);
+            }
+        }
+        return item;
+    }
+
+    /**
+     * Checks whether an entity exists, without copying it out of a snapshot being loaded.
+     * @param id The ID of the entity.
+     * @return true if an entity with the ID exists.
+     */
+    @Override
+    public boolean existsById(String id) {
+        if (id == null) {
+            return false;
+        }
+
+        // During a warm-up the entity may still be only in the snapshot.
+        return items.containsKey(id) || (warmup != null && findById(id) != null);
+    }
+
+    /**
+     * Finds all entities, ordered by ID.
+     * The returned list is a weakly consistent copy: it reflects every write that completed before
+     * the call and may or may not reflect writes that happen while it is being built.
+     * @return A List containing all entities.
+     */
+    @Override
+    public List<T> findAll() {
+        if (warmup == null) {
+            // Return a copy to prevent external modification
+            return new ArrayList<>(ordered.values());
+        }
+        List<T> all = new ArrayList<>();
+        iterator(null).forEachRemaining(all::add);
+        return all;
+    }
+
+    /**
+     * Streams all entities, ordered by ID, without copying them.
+     * The stream is lazy and weakly consistent: it walks the live index one entity at a time, never
+     * fails because of concurrent writes, and holds no lock. During a warm-up it also walks the
+     * snapshot, reading the entities that are not in the heap yet from there.
+     * @return A Stream over all entities.
+     */
+    @Override
+    public Stream<T> stream() {
+        if (warmup == null) {
+            return ordered.values().stream();
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(null),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Finds one page of entities, ordered by ID.
+     * Only the entities on the page (plus one to detect the end) are visited.
+     * @param afterId the ID the page starts after, or null for the first page
+     * @param limit the maximum number of entities on the page
+     * @return the page, with a next cursor if more entities may follow
+     */
+    @Override
+    public Page<T> findPage(String afterId, int limit) {
+        Iterator<T> rest = iterator(afterId);
+
+        List<T> page = new ArrayList<>(Math.min(limit, 64));
+        String lastId = null;
+        while (rest.hasNext()) {
+            if (page.size() == limit) {
+                return new Page<>(page, Page.encodeCursor(lastId));
+            }
+            T item = rest.next();
+            page.add(item);
+            lastId = item.getId();
+        }
+        return new Page<>(page, null);
+    }
+
+    /**
+     * Deletes an entity by its ID.
+     * When a journal is attached, the call returns once the change is durable.
+     * @param id The ID of the entity to delete.
+     * @return true if the entity was deleted, false otherwise.
+     */
+    @Override
+    public boolean deleteById(String id) {
+        CompletableFuture<Void> durable = remove(id, journal, true);
+        awaitDurable(durable);
+        return durable != null;
+    }
+
+    /**
+     * Deletes a batch of entities by their IDs.
+     * @param ids The IDs of the entities to delete.
+     * @return the number of entities that were deleted.
+     */
+    @Override
+    public List<String> deleteAllById(Collection<String> ids) {
+        RepositoryJournal<T> journal = this.journal;
+        List<String> deleted = new ArrayList<>(ids.size());
+        List<CompletableFuture<Void>> pending = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            CompletableFuture<Void> durable = remove(id, journal, true);
+            if (durable != null) {
+                deleted.add(id);
+                pending.add(durable);
+            }
+        }
+        pending.forEach(InMemoryRepository::awaitDurable);
+        return deleted;
+    }
+
+    /**
+     * Deletes a batch of entities, each only if it still has the version the caller read. Each check
+     * and delete is one step under the lock of the ID, as in replace, so an entity saved since its
+     * version was read is kept. Every delete is handed to the journal before waiting for any of them.
+     * @param expectedVersions the version read of every entity to delete, by ID
+     * @return the IDs of the entities that were deleted, in the order of the map
+     */
+    public List<String> deleteAllIfVersion(Map<String, Long> expectedVersions) {
+        RepositoryJournal<T> journal = this.journal;
+        List<String> deleted = new ArrayList<>(expectedVersions.size());
+        List<CompletableFuture<Void>> pending = new ArrayList<>(expectedVersions.size());
+        for (Map.Entry<String, Long> entry : expectedVersions.entrySet()) {
+            String id = entry.getKey();
+            ReentrantLock lock = idLock(id);
+            lock.lock();
+            try {
+                long current = versionOf(id);
+                if (current == NO_VERSION || current != entry.getValue()) {
+                    continue;
+                }
+                // The lock is reentrant, so remove takes it again at no cost.
+                CompletableFuture<Void> durable = remove(id, journal, true);
+                if (durable != null) {
+                    deleted.add(id);
+                    pending.add(durable);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        pending.forEach(InMemoryRepository::awaitDurable);
+        return deleted;
+    }
+
+    /**
+     * Counts the stored entities without copying them. During a warm-up the snapshot entities that are
+     * neither loaded nor changed yet are added to the heap's count, so the count is as weakly
+     * consistent as after the load and never waits for it.
+     * @return the number of entities in the repository
+     */
+    @Override
+    public long count() {
+        Warmup<T> warmup = this.warmup;
+        long count = items.mappingCount();
+        return warmup == null ? count : count + warmup.pending.sum();
+    }
+
+    @Override
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Gets the version of an entity from the version map, falling back to an existence check for
+     * entities that have not been saved since the repository was loaded.
+     */
+    @Override
+    public long versionOf(String id) {
+        if (id == null) {
+            return NO_VERSION;
+        }
+        Long saved = versions.get(id);
+        if (saved != null) {
+            return saved;
+        }
+        return existsById(id) ? firstVersion : NO_VERSION;
+    }
+
+    /**
+     * Estimates the heap used by the entities in the repository and by their index entries. The estimate
+     * is maintained on every save and delete, so reading it is O(1).
+     * @return the estimated number of bytes
+     */
+    public long estimatedBytes() {
+        return footprint.sum();
+    }
+
+    /**
+     * Attaches the journal that records every subsequent save and delete.
+     * Entities restored before the journal is attached are not recorded again.
+     * @param journal the journal, or null to stop journaling
+     */
+    public void attachJournal(RepositoryJournal<T> journal) {
+        this.journal = journal;
+    }
+
+    @Override
+    public void attachChangeListener(ChangeListener<T> listener) {
+        listeners.attach(listener);
+    }
+
+    @Override
+    public void detachChangeListener(ChangeListener<T> listener) {
+        listeners.detach(listener);
+    }
+
+    /**
+     * Puts an entity recovered from durable storage back into the repository, without journaling it.
+     * Secondary indexes are updated as for a normal save.
+     * @param item the recovered entity
+     */
+    public void restore(T item) {
+        put(item, null, false);
+    }
+
+    /**
+     * Replays a recovered delete, without journaling it.
+     * @param id the ID of the deleted entity
+     */
+    public void restoreDelete(String id) {
+        remove(id, null, false);
+    }
+
+    /**
+     * Starts serving reads from a snapshot that is still being loaded into the heap.
+     * Until endWarmup is called, findById falls back to the snapshot for an ID that is not in the heap
+     * yet and has not been saved or deleted since the warm-up began; findAll, stream and findPage merge
+     * the heap with the snapshot's unchanged entities in ID order; and count adds the snapshot entities
+     * not loaded yet. Queries on the subclasses' secondary indexes wait for the load to finish (see
+     * awaitWarmup). Must be called before the repository is used.
+     * @param snapshot the snapshot being loaded
+     */
+    public void beginWarmup(WarmupSnapshot<T> snapshot) {
+        this.warmup = new Warmup<>(snapshot);
+    }
+
+    /**
+     * Loads an entity from the warm-up snapshot into the heap, without journaling it. The entity is
+     * dropped if its ID was saved or deleted since the warm-up began, because the snapshot's copy is
+     * then out of date.
+     * @param item the entity read from the snapshot
+     */
+    public void restoreFromSnapshot(T item) {
+        Warmup<T> warmup = this.warmup;
+        String id = item.getId();
+        ReentrantLock lock = idLock(id);
+        lock.lock();
+        try {
+            if (items.containsKey(id) || (warmup != null && warmup.changed.containsKey(id))) {
+                return;
+            }
+            onSave(null, item);
+            ordered.put(id, item);
+            items.put(id, item);
+            footprint.add(ENTRY_BYTES + estimateSize(item));
+            if (warmup != null) {
+                warmup.pending.decrement();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends the warm-up once every snapshot entity has been restored, releasing waiting queries.
+     */
+    public void endWarmup() {
+        Warmup<T> warmup = this.warmup;
+        this.warmup = null;
+        if (warmup != null) {
+            warmup.loaded.countDown();
+        }
+    }
+
+    /**
+     * Makes sure the ID generator never hands out a sequential ID at or below one that was already used.
+     * @param lastUsedId the highest sequential ID known to have been used
+     */
+    public void restoreIdCounter(int lastUsedId) {
+        ids.restore(lastUsedId);
+    }
+
+    /**
+     * Called while the entity's ID is locked, before the new entity becomes visible to readers.
+     * Subclasses override this to keep secondary indexes consistent with the primary map.
+     * @param previous the entity previously stored under the same ID, or null if there was none.
+     * @param item the entity being saved
+     */
+    protected void onSave(T previous, T item) {
+    }
+
+    /**
+     * Estimates the heap used by one entity and by its entries in the subclass's indexes, for
+     * estimatedBytes. Called while the entity's ID is locked.
+     * @param item the entity
+     * @return the estimated number of bytes
+     */
+    protected abstract long estimateSize(T item);
+
+    /**
+     * Estimates the heap used by a String with compact (Latin-1) storage: the object and its byte array.
+     * @param value the string, or null
+     * @return the estimated number of bytes
+     */
+    protected static long stringSize(String value) {
+        return value == null ? 0 : 24 + ((16 + value.length() + 7) & ~7L);
+    }
+
+    /**
+     * Called while the entity's ID is locked, before the entity is removed from the repository.
+     * @param removed the entity being deleted
+     */
+    protected void onDelete(T removed) {
+    }
+
+    /**
+     * Waits until the warm-up snapshot is fully loaded, so a query over many entities sees all of them.
+     * Subclasses call this before reading their secondary indexes.
+     * @throws IllegalStateException if the thread is interrupted while waiting
+     */
+    protected void awaitWarmup() {
+        Warmup<T> warmup = this.warmup;
+        if (warmup == null) {
+            return;
+        }
+
+        try {
+            warmup.loaded.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading the repository", e);
+        }
+    }
+
+    // withId returns a copy of the entity's own class.
+    @SuppressWarnings("unchecked")
+    private T assignId(T item) {
+        return item.getId() == null || item.getId().isEmpty() ? (T) item.withId(getNextId()) : item;
+    }
+
+    /**
+     * Stores an entity and updates every index.
+     * @param versioned whether the save is a live change, which gets a version of its own and is reported
+     *                  to the change listener; entities restored from durable storage keep firstVersion,
+     *                  so the version map only grows with new changes
+     * @return a future that completes when the change is durable
+     */
+    private CompletableFuture<Void> put(T item, RepositoryJournal<T> journal, boolean versioned) {
+        Warmup<T> warmup = this.warmup;
+        String id = item.getId();
+        // Holding the ID's lock, concurrent saves and deletes of the same ID are journaled and applied
+        // to the maps and to any secondary index in the same order.
+        ReentrantLock lock = idLock(id);
+        lock.lock();
+        try {
+            T previous = items.get(id);
+            if (warmup != null) {
+                warmup.markChanged(id, previous != null);
+            }
+            CompletableFuture<Void> durable = journal != null ? journal.recordSave(item) : DURABLE;
+            onSave(previous, item);
+            ordered.put(id, item);
+            items.put(id, item);
+            long next = version.incrementAndGet();
+            long bytes = previous != null ? estimateSize(item) - estimateSize(previous) : ENTRY_BYTES + estimateSize(item);
+            if (versioned) {
+                bytes += versions.put(id, next) == null ? VERSION_BYTES : 0;
+            } else {
+                bytes -= versions.remove(id) != null ? VERSION_BYTES : 0;
+            }
+            footprint.add(bytes);
+            if (versioned) {
+                listeners.saved(item);
+            }
+            return durable;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stores an entity in place of an existing one if it has the expected version.
+     * @param pending collects the future that completes when the change is durable
+     * @return the saved entity and its new version, or null if there is no entity with the ID
+     * @throws VersionConflictException if the entity has another version
+     */
+    private Versioned<T> compareAndPut(T item, long expectedVersion, RepositoryJournal<T> journal,
+                                       List<CompletableFuture<Void>> pending) {
+        String id = item.getId();
+        if (id == null) {
+            return null;
+        }
+
+        ReentrantLock lock = idLock(id);
+        lock.lock();
+        try {
+            long current = versionOf(id);
+            if (current == NO_VERSION) {
+                return null;
+            }
+            if (expectedVersion != ANY_VERSION && expectedVersion != current) {
+                throw new VersionConflictException(id, expectedVersion, current);
+            }
+            // The lock is reentrant, so put takes it again at no cost.
+            pending.add(put(item, journal, true));
+            return new Versioned<>(item, versions.get(id));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes an entity and its index entries.
+     * @param live whether the delete is a live change, which is reported to the change listener
+     * @return a future that completes when the change is durable, or null if there was no such entity
+     */
+    private CompletableFuture<Void> remove(String id, RepositoryJournal<T> journal, boolean live) {
+        if (id == null) {
+            return null;
+        }
+
+        Warmup<T> warmup = this.warmup;
+        ReentrantLock lock = idLock(id);
+        lock.lock();
+        try {
+            T existing = items.get(id);
+            // An entity that is still only in the snapshot is deleted by hiding the snapshot's copy.
+            boolean exists = existing != null || (warmup != null && warmup.lookup(id) != null);
+            if (warmup != null) {
+                warmup.markChanged(id, existing != null);
+            }
+            if (!exists) {
+                return null;
+            }
+
+            CompletableFuture<Void> durable = journal != null ? journal.recordDelete(id) : DURABLE;
+            if (existing != null) {
+                onDelete(existing);
+                ordered.remove(id);
+                items.remove(id);
+                footprint.add(-ENTRY_BYTES - estimateSize(existing) - (versions.remove(id) != null ? VERSION_BYTES : 0));
+            }
+            version.incrementAndGet();
+            if (live) {
+                listeners.deleted(id);
+            }
+            return durable;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Walks the entities after an ID in ID order, without copying them.
+     */
+    private Iterator<T> iterator(String afterId) {
+        Warmup<T> warmup = this.warmup;
+        return warmup == null ? heapAfter(afterId) : new WarmupIterator(warmup, afterId);
+    }
+
+    private Iterator<T> heapAfter(String afterId) {
+        NavigableMap<String, T> rest = afterId == null ? ordered : ordered.tailMap(afterId, false);
+        return rest.values().iterator();
+    }
+
+    private ReentrantLock idLock(String id) {
+        int hash = id.hashCode();
+        // Spread the high bits, as ConcurrentHashMap does, so similar IDs land on different locks.
+        return idLocks[(hash ^ (hash >>> 16)) & (ID_LOCKS - 1)];
+    }
+
+    private static ReentrantLock[] newIdLocks() {
+        ReentrantLock[] locks = new ReentrantLock[ID_LOCKS];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+
+    /**
+     * Waits until a journaled change is durable.
+     * @throws IllegalStateException if the journal failed to persist the change
+     */
+    private static void awaitDurable(CompletableFuture<Void> durable) {
+        if (durable == null || durable == DURABLE) {
+            return;
+        }
+
+        try {
+            durable.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Failed to persist change", e.getCause());
+        }
+    }
+
+    /**
+     * A snapshot being loaded into the heap, and the IDs changed since it was taken.
+     */
+    private static final class Warmup<T> {
+        private final WarmupSnapshot<T> snapshot;
+        // IDs saved or deleted during the warm-up; the snapshot's copies of them are stale.
+        private final ConcurrentHashMap<String, Boolean> changed = new ConcurrentHashMap<>();
+        // Snapshot entities that are neither loaded into the heap nor changed, counted by count.
+        private final LongAdder pending = new LongAdder();
+        private final CountDownLatch loaded = new CountDownLatch(1);
+
+        private Warmup(WarmupSnapshot<T> snapshot) {
+            this.snapshot = snapshot;
+            pending.add(snapshot.size());
+        }
+
+        /**
+         * Finds an entity that is only in the snapshot.
+         */
+        private T lookup(String id) {
+            if (changed.containsKey(id)) {
+                return null;
+            }
+            int index = snapshot.indexOf(id);
+            return index < 0 ? null : snapshot.entity(index);
+        }
+
+        /**
+         * Records a save or delete of an ID, called while the ID is locked. The first change of an ID
+         * that is still only in the snapshot takes its snapshot entity out of the pending count; from
+         * then on the heap alone decides whether the ID exists.
+         */
+        private void markChanged(String id, boolean inHeap) {
+            if (changed.putIfAbsent(id, Boolean.TRUE) == null && !inHeap && snapshot.indexOf(id) >= 0) {
+                pending.decrement();
+            }
+        }
+    }
+
+    /**
+     * Walks the entities in ID order during a warm-up: the heap's entities merged with the snapshot's
+     * entities that have not been changed since it was taken. An entity already loaded from the snapshot
+     * is met in both and returned once, from the heap. Like the heap's own iterators it is weakly
+     * consistent. If the snapshot is closed during the walk, every entity is in the heap by then, so the
+     * walk carries on in the heap alone after the last entity returned.
+     */
+    private final class WarmupIterator implements Iterator<T> {
+        private final Warmup<T> warmup;
+        private Iterator<T> heap;
+        private T heapNext;
+        // The position of the next snapshot entity to read.
+        private int index;
+        private T snapshotNext;
+        private boolean snapshotDone;
+        private String lastId;
+        private T next;
+
+        private WarmupIterator(Warmup<T> warmup, String afterId) {
+            this.warmup = warmup;
+            // Search the snapshot first: if it is already closed, the heap iterator sees every entity.
+            this.index = afterId == null ? 0 : warmup.snapshot.indexAfter(afterId);
+            this.heap = heapAfter(afterId);
+            this.lastId = afterId;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T item = next;
+            next = null;
+            lastId = item.getId();
+            return item;
+        }
+
+        private T advance() {
+            if (heapNext == null && heap.hasNext()) {
+                heapNext = heap.next();
+            }
+            while (snapshotNext == null && !snapshotDone) {
+                if (index >= warmup.snapshot.size()) {
+                    snapshotDone = true;
+                    break;
+                }
+                T candidate = warmup.snapshot.entity(index++);
+                if (candidate == null) {
+                    // Closed once loaded: start over in the heap, which now holds the rest.
+                    snapshotDone = true;
+                    heap = heapAfter(lastId);
+                    heapNext = heap.hasNext() ? heap.next() : null;
+                } else if (!warmup.changed.containsKey(candidate.getId())) {
+                    snapshotNext = candidate;
+                }
+            }
+
+            if (heapNext == null || snapshotNext == null) {
+                T item = heapNext != null ? heapNext : snapshotNext;
+                heapNext = null;
+                snapshotNext = null;
+                return item;
+            }
+            int order = ID_ORDER.compare(heapNext.getId(), snapshotNext.getId());
+            T item = order <= 0 ? heapNext : snapshotNext;
+            if (order <= 0) {
+                heapNext = null;
+            }
+            if (order >= 0) {
+                snapshotNext = null;
+            }
+            return item;
+        }
+    }
+
+    /**
+     * Generates the next ID with the repository's IdGenerator.
+     * @return The next ID as a String.
+     */
+    @Override
+    public String getNextId() {
+        return ids.nextId();
+    }
+}
@@ -0,0 +1,98 @@
+package com.seanclen.capstone.repository;
+
+import com.seanclen.capstone.model.Contact;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A sorted index of contact first and last names for search-as-you-type.
+ * Every contact has two entries in a ConcurrentSkipListMap, one per name, so all names starting with
+ * a prefix are one contiguous range of the map: a search costs O(log n + limit) and never scans
+ * contacts that do not match, whatever the number of contacts.
+ * Keys are the normalized name (stripped and lower-cased), a NUL separator, the ID length as one
+ * char and the ID. Plain string order therefore sorts by name and then by ID in ID_ORDER, and a
+ * contact whose first and last names are equal still gets two distinct keys.
+ * Writers must hold the contact's ID lock, as InMemoryRepository.onSave and onDelete do.
+ */
+final class NamePrefixIndex {
+    private static final char SEPARATOR = '\0';
+
+    private final ConcurrentSkipListMap<String, Contact> names = new ConcurrentSkipListMap<>();
+    // The keys each contact was last indexed under. Contacts are mutable, so the names stored on
+    // the entity can no longer be trusted to find its old entries.
+    private final ConcurrentHashMap<String, String[]> keys = new ConcurrentHashMap<>();
+
+    /**
+     * Index a saved contact, replacing the entries of its previous version.
+     * @param contact the saved contact
+     */
+    void put(Contact contact) {
+        String id = contact.getId();
+        String[] updated = {key(contact.getFirstName(), id), key(contact.getLastName(), id) + SEPARATOR};
+        String[] old = keys.put(id, updated);
+        // Add the new entries before removing the old ones so concurrent searches never miss the contact.
+        names.put(updated[0], contact);
+        names.put(updated[1], contact);
+        if (old != null) {
+            for (String key : old) {
+                if (!key.equals(updated[0]) && !key.equals(updated[1])) {
+                    names.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove a deleted contact.
+     * @param id the ID of the deleted contact
+     */
+    void remove(String id) {
+        String[] old = keys.remove(id);
+        if (old != null) {
+            for (String key : old) {
+                names.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Find contacts whose first or last name starts with a prefix, ignoring case and leading spaces.
+     * @param prefix the prefix to search for
+     * @param limit the maximum number of contacts to return
+     * @return the matching contacts, ordered by the matching name and then by ID; a contact whose
+     *         first and last names both match appears once
+     */
+    List<Contact> search(String prefix, int limit) {
+        String from = normalize(prefix);
+        List<Contact> result = new ArrayList<>(Math.min(limit, 64));
+        Set<String> seen = new HashSet<>();
+        for (Contact contact : names.subMap(from, true, from + Character.MAX_VALUE, false).values()) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (seen.add(contact.getId())) {
+                result.add(contact);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Normalize a name or prefix for case-insensitive matching.
+     * @param name the name
+     * @return the stripped, lower-case name
+     */
+    static String normalize(String name) {
+        return name.strip().toLowerCase(Locale.ROOT);
+    }
+
+    private static String key(String name, String id) {
+        return normalize(name) + SEPARATOR + (char) id.length() + id;
+    }
+}
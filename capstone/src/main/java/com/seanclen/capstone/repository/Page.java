@@ -0,0 +1,70 @@
+package com.seanclen.capstone.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing.
+ * The next cursor is an opaque token that encodes the ID of the last entity on the page. The next page
+ * starts strictly after that ID, so pages stay consistent while entities are inserted or deleted:
+ * an entity that exists for the whole traversal is returned exactly once.
+ * @param <T> the type of entity in the page
+ */
+public class Page<T> {
+    private final List<T> items;
+    private final String nextCursor;
+
+    /**
+     * Create a page.
+     * @param items the entities on this page
+     * @param nextCursor the cursor of the following page, or null if this is the last page
+     */
+    public Page(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Get the entities on this page.
+     * @return the entities on this page
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Get the cursor to pass back to fetch the following page.
+     * @return the next cursor, or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Encode the ID of the last entity on a page as an opaque cursor.
+     * @param id the ID to encode
+     * @return the cursor token
+     */
+    public static String encodeCursor(String id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor produced by encodeCursor.
+     * @param cursor the cursor token; null or empty means the first page
+     * @return the ID the next page starts after, or null for the first page
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static String decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.seanclen.capstone.repository;
+
+import com.seanclen.capstone.model.Contact;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A reverse index from phone number to the contacts that have it, for inbound-call lookups.
+ * A ten-digit phone number fits in a long, so the index is an open-addressing hash table over a
+ * primitive long[]: a lookup parses the number in place and probes the table without boxing, hashing
+ * a String or allocating anything. Each slot holds an immutable List of the contacts with that number,
+ * ordered by ID, which is handed to callers as is. A number shared by more than SMALL_GROUP contacts
+ * (a switchboard, or test data) is held in a LargeGroup instead, so that saving one of its contacts
+ * costs O(log n) rather than a copy of the whole list, and callers get a read-only view of it.
+ * Lookups are lock-free optimistic reads of a StampedLock, retried under the read lock only if a write
+ * ran at the same time. Writes take the write lock, so they are short and never nested.
+ * Phone numbers that are not all digits (the model only checks their length) are kept in a plain map.
+ * Writers must hold the contact's ID lock, as InMemoryRepository.onSave and onDelete do.
+ */
+final class PhoneIndex {
+    /** Returned by key for phone numbers that are not ten digits. */
+    static final long NO_KEY = -1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    // Fibonacci hashing: multiply by 2^64 / golden ratio and take the slot from the high half.
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+    // Contacts sharing a number up to which their list is copied on every change.
+    private static final int SMALL_GROUP = 16;
+
+    private final StampedLock lock = new StampedLock();
+    // keys[i] is the phone number plus one, so that 0 marks an empty slot; contacts[i] is its list.
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private Object[] contacts = new Object[INITIAL_CAPACITY];
+    private int size;
+    // Values are a List<Contact> or a LargeGroup, as in the table.
+    private final ConcurrentHashMap<String, Object> others = new ConcurrentHashMap<>();
+    // The phone number each contact was last indexed under. Contacts are mutable, so the number
+    // stored on the entity can no longer be trusted to find its old entry.
+    private final ConcurrentHashMap<String, String> phones = new ConcurrentHashMap<>();
+
+    /**
+     * Index a saved contact, moving it from the entry of its previous phone number if it changed.
+     * @param contact the saved contact
+     */
+    void put(Contact contact) {
+        String phone = contact.getPhone().strip();
+        String old = phones.put(contact.getId(), phone);
+        if (old != null && !old.equals(phone)) {
+            update(old, contact.getId(), null);
+        }
+        update(phone, contact.getId(), contact);
+    }
+
+    /**
+     * Remove a deleted contact.
+     * @param id the ID of the deleted contact
+     */
+    void remove(String id) {
+        String old = phones.remove(id);
+        if (old != null) {
+            update(old, id, null);
+        }
+    }
+
+    /**
+     * Find the contacts with a phone number. Does not allocate.
+     * @param phone the phone number; leading and trailing spaces are ignored
+     * @return the contacts with the number, ordered by ID, or an empty list
+     */
+    List<Contact> get(String phone) {
+        long key = key(phone);
+        return key != NO_KEY ? get(key) : list(others.get(phone.strip()));
+    }
+
+    /**
+     * Find the contacts with a ten-digit phone number. Does not allocate.
+     * @param key the phone number, as returned by key
+     * @return the contacts with the number, ordered by ID, or an empty list
+     */
+    List<Contact> get(long key) {
+        long stamp = lock.tryOptimisticRead();
+        Object found = probe(key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                found = probe(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return list(found);
+    }
+
+    /**
+     * Parse a phone number into the key used by the table, without allocating.
+     * @param phone the phone number
+     * @return the number as a long, or NO_KEY if it is not ten digits once stripped
+     */
+    static long key(String phone) {
+        int start = 0;
+        int end = phone.length();
+        while (start < end && Character.isWhitespace(phone.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(phone.charAt(end - 1))) {
+            end--;
+        }
+        if (end - start != 10) {
+            return NO_KEY;
+        }
+
+        long key = 0;
+        for (int i = start; i < end; i++) {
+            char c = phone.charAt(i);
+            if (c < '0' || c > '9') {
+                return NO_KEY;
+            }
+            key = key * 10 + (c - '0');
+        }
+        return key;
+    }
+
+    // Reads may run concurrently with a write, so they re-read nothing they have already checked and
+    // give up after one pass over the table; the caller then retries under the read lock.
+    private Object probe(long key) {
+        long[] keys = this.keys;
+        Object[] contacts = this.contacts;
+        if (keys.length != contacts.length) {
+            return null;
+        }
+
+        int mask = keys.length - 1;
+        long stored = key + 1;
+        for (int i = slot(stored, mask), probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+            long k = keys[i];
+            if (k == stored) {
+                return contacts[i];
+            }
+            if (k == 0) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private void update(String phone, String id, Contact contact) {
+        long key = key(phone);
+        if (key == NO_KEY) {
+            others.compute(phone, (p, current) -> replace(current, id, contact));
+            return;
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            long stored = key + 1;
+            int mask = keys.length - 1;
+            int i = slot(stored, mask);
+            while (keys[i] != 0 && keys[i] != stored) {
+                i = (i + 1) & mask;
+            }
+
+            Object updated = replace(contacts[i], id, contact);
+            if (keys[i] != 0) {
+                if (updated != null) {
+                    contacts[i] = updated;
+                } else {
+                    delete(i);
+                }
+            } else if (updated != null) {
+                keys[i] = stored;
+                contacts[i] = updated;
+                if (++size * 2 > keys.length) {
+                    resize();
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Backward-shift deletion: move later entries of the probe run into the hole so that no
+    // tombstones are needed and lookups can stop at the first empty slot.
+    private void delete(int hole) {
+        int mask = keys.length - 1;
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            long k = keys[i];
+            if (k == 0) {
+                break;
+            }
+            int home = slot(k, mask);
+            // The entry can fill the hole if its home slot is not cyclically in (hole, i].
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = k;
+                contacts[hole] = contacts[i];
+                hole = i;
+            }
+        }
+        keys[hole] = 0;
+        contacts[hole] = null;
+        size--;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        Object[] oldContacts = contacts;
+        long[] newKeys = new long[oldKeys.length * 2];
+        Object[] newContacts = new Object[newKeys.length];
+        int mask = newKeys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != 0) {
+                int i = slot(oldKeys[j], mask);
+                while (newKeys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                newKeys[i] = oldKeys[j];
+                newContacts[i] = oldContacts[j];
+            }
+        }
+        keys = newKeys;
+        contacts = newContacts;
+    }
+
+    private static int slot(long stored, int mask) {
+        return (int) ((stored * MIX) >>> 32) & mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Contact> list(Object entry) {
+        if (entry == null) {
+            return List.of();
+        }
+        return entry instanceof LargeGroup group ? group.list() : (List<Contact>) entry;
+    }
+
+    /**
+     * Replace, add or (when contact is null) remove the contact of one ID in the entry of a number.
+     * A small group is copied; a large one is changed in place, and turned back into a list once it
+     * has shrunk to half of SMALL_GROUP, so that a group hovering at the limit is not converted back
+     * and forth.
+     * @return the new entry, or null if no contact is left
+     */
+    @SuppressWarnings("unchecked")
+    private static Object replace(Object entry, String id, Contact contact) {
+        if (entry instanceof LargeGroup group) {
+            group.set(id, contact);
+            return group.size > SMALL_GROUP / 2 ? group : List.copyOf(group.byId.values());
+        }
+
+        List<Contact> current = (List<Contact>) entry;
+        List<Contact> updated = new ArrayList<>(current != null ? current.size() + 1 : 1);
+        boolean added = contact == null;
+        if (current != null) {
+            for (Contact existing : current) {
+                int order = InMemoryRepository.ID_ORDER.compare(existing.getId(), id);
+                if (order > 0 && !added) {
+                    updated.add(contact);
+                    added = true;
+                }
+                if (order != 0) {
+                    updated.add(existing);
+                }
+            }
+        }
+        if (!added) {
+            updated.add(contact);
+        }
+        if (updated.isEmpty()) {
+            return null;
+        }
+        return updated.size() > SMALL_GROUP ? new LargeGroup(updated) : List.copyOf(updated);
+    }
+
+    /**
+     * The contacts of a number shared by many contacts, in a map sorted by ID. Readers are handed a
+     * read-only view of the map, the same one for every read, so neither reads nor writes copy the group.
+     * The view is weakly consistent, like the repository's other iterators: it reflects the writes made
+     * before it is iterated, and may or may not reflect writes made while it is. Its get(i) walks the
+     * first i contacts. Changed only by writers, under the index's locks.
+     */
+    private static final class LargeGroup {
+        private final ConcurrentSkipListMap<String, Contact> byId = new ConcurrentSkipListMap<>(InMemoryRepository.ID_ORDER);
+        private final List<Contact> view = new View();
+        // Read by the view without a lock; ConcurrentSkipListMap.size walks the whole map.
+        private volatile int size;
+
+        private LargeGroup(List<Contact> contacts) {
+            contacts.forEach(contact -> byId.put(contact.getId(), contact));
+            size = contacts.size();
+        }
+
+        private void set(String id, Contact contact) {
+            Contact previous = contact != null ? byId.put(id, contact) : byId.remove(id);
+            if (contact != null && previous == null) {
+                size++;
+            } else if (contact == null && previous != null) {
+                size--;
+            }
+        }
+
+        private List<Contact> list() {
+            return view;
+        }
+
+        private final class View extends AbstractList<Contact> {
+            @Override
+            public Contact get(int index) {
+                if (index >= 0) {
+                    int i = 0;
+                    for (Contact contact : byId.values()) {
+                        if (i++ == index) {
+                            return contact;
+                        }
+                    }
+                }
+                throw new IndexOutOfBoundsException(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Contact> iterator() {
+                return Collections.unmodifiableCollection(byId.values()).iterator();
+            }
+
+            @Override
+            public Spliterator<Contact> spliterator() {
+                return Collections.unmodifiableCollection(byId.values()).spliterator();
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.seanclen.capstone.repository;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Records every change made to an InMemoryRepository, for example in a write-ahead log, so that the
+ * repository can be rebuilt after a restart.
+ * The record methods are called while the entity's ID is locked, so for any one ID the journal sees
+ * changes in the same order as the repository applies them. They must not block: the repository waits
+ * for the returned future only after releasing the lock.
+ * @param <T> the type of entity in the repository
+ */
+public interface RepositoryJournal<T> {
+    /**
+     * Record that an entity was saved.
+     * @param item the saved entity
+     * @return a future that completes once the change is durable
+     */
+    CompletableFuture<Void> recordSave(T item);
+
+    /**
+     * Record that an entity was deleted.
+     * @param id the ID of the deleted entity
+     * @return a future that completes once the change is durable
+     */
+    CompletableFuture<Void> recordDelete(String id);
+}
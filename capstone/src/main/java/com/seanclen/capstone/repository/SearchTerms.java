@@ -0,0 +1,39 @@
+package com.seanclen.capstone.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits text into the terms used by keyword search. Every storage engine indexes descriptions and
+ * parses queries with the same rules, so a query finds the same appointments whichever engine runs it.
+ * A term is a run of letters and digits, lower-cased; everything else separates terms, so "Follow-up"
+ * becomes "follow" and "up".
+ */
+public final class SearchTerms {
+    private SearchTerms() {
+    }
+
+    /**
+     * Gets the distinct terms of a text, in the order they first appear.
+     * @param text the text to split
+     * @return the terms; empty if the text has no letters or digits
+     */
+    public static List<String> of(String text) {
+        List<String> terms = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inTerm = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inTerm && start < 0) {
+                start = i;
+            } else if (!inTerm && start >= 0) {
+                String term = text.substring(start, i).toLowerCase(Locale.ROOT);
+                if (!terms.contains(term)) {
+                    terms.add(term);
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+}
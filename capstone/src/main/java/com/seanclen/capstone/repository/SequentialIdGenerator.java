@@ -0,0 +1,23 @@
+package com.seanclen.capstone.repository;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates the IDs 1, 2, 3 and so on from a counter. The IDs are short and sort in creation order,
+ * but the counter belongs to one instance, so two instances writing to the same database would hand
+ * out the same IDs; use TimeBasedIdGenerator for those.
+ * @author Sean Clendening
+ */
+public class SequentialIdGenerator implements IdGenerator {
+    private final AtomicInteger counter = new AtomicInteger(0);
+
+    @Override
+    public String nextId() {
+        return String.valueOf(counter.incrementAndGet());
+    }
+
+    @Override
+    public void restore(int lastUsedId) {
+        counter.accumulateAndGet(lastUsedId, Math::max);
+    }
+}
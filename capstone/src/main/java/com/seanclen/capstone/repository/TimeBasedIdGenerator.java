@@ -0,0 +1,138 @@
+package com.seanclen.capstone.repository;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Generates IDs that are unique across instances without any coordination between them, for
+ * instances that share a database. An ID is a 59-bit number, written as ten base62 characters so it
+ * fits the 10 character limit of Contact and Appointment IDs:
+ * - 41 bits: milliseconds since 2024-01-01 UTC, which lasts until 2093
+ * - 6 bits: a sequence within the millisecond
+ * - 4 bits: the lane that generated the ID
+ * - 8 bits: the node, set per instance (capstone.ids.node), so instances with distinct nodes never
+ *   generate the same ID
+ * Each lane keeps its own counter of time and sequence, on its own cache line, and a thread always
+ * uses the lane its thread ID hashes to, so threads only compete for a counter when they share a lane,
+ * as with the cells of a LongAdder. A counter takes the clock's value when the clock is ahead of it
+ * and otherwise counts on from its last value, so an ID is never repeated when the clock is set back,
+ * and a lane that needs more than 64 IDs in a millisecond borrows from the next ones (one node
+ * sustains about a million IDs a second before its IDs run ahead of the clock).
+ * The base62 digits are in ASCII order and the IDs have a fixed length, so IDs sort by the time they
+ * were generated, within a millisecond or so across lanes and nodes.
+ * The counters start from the clock, so IDs stay unique across restarts as long as the clock at
+ * startup is later than the last ID generated before; a node that restarts right after running ahead
+ * of the clock, or with its clock set back over the restart, must wait for the clock to catch up.
+ * @author Sean Clendening
+ */
+public class TimeBasedIdGenerator implements IdGenerator {
+    public static final int NODE_BITS = 8;
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    public static final int ID_LENGTH = 10;
+
+    // 2024-01-01T00:00:00Z
+    static final long EPOCH_MILLIS = 1_704_067_200_000L;
+    static final int SEQUENCE_BITS = 6;
+    static final int LANE_BITS = 4;
+    static final int LANES = 1 << LANE_BITS;
+
+    private static final int TIME_BITS = 41;
+    private static final long MAX_COUNTER = (1L << (TIME_BITS + SEQUENCE_BITS)) - 1;
+    // Longs between two lanes' counters, so each counter has a 128-byte cache line pair to itself.
+    private static final int STRIDE = 16;
+    private static final char[] DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    private final int node;
+    private final LongSupplier clock;
+    // The last time and sequence of each lane, at lane * STRIDE.
+    private final AtomicLongArray counters = new AtomicLongArray(LANES * STRIDE);
+
+    /**
+     * Create a generator for a node.
+     * @param node the node of this instance, between 0 and MAX_NODE, distinct from every other
+     *             instance that shares the database
+     * @throws IllegalArgumentException if the node is out of range
+     */
+    public TimeBasedIdGenerator(int node) {
+        this(node, System::currentTimeMillis);
+    }
+
+    TimeBasedIdGenerator(int node, LongSupplier clock) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Invalid node " + node + "; it must be between 0 and " + MAX_NODE);
+        }
+        this.node = node;
+        this.clock = clock;
+    }
+
+    @Override
+    public String nextId() {
+        return encode(nextValue());
+    }
+
+    /**
+     * Generate a new ID as a number, before it is written in base62.
+     * @return the new ID
+     * @throws IllegalStateException if the 41 bits of time have run out
+     */
+    long nextValue() {
+        int lane = lane();
+        int at = lane * STRIDE;
+        long now = Math.max(0, clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        while (true) {
+            long last = counters.get(at);
+            long next = Math.max(last + 1, now);
+            if (next > MAX_COUNTER) {
+                throw new IllegalStateException("Time-based IDs have run out");
+            }
+            if (counters.compareAndSet(at, last, next)) {
+                return next << (LANE_BITS + NODE_BITS) | (long) lane << NODE_BITS | node;
+            }
+        }
+    }
+
+    /**
+     * Write an ID in ten base62 digits.
+     * @param value the ID, between 0 and 62^10 - 1
+     * @return the digits
+     */
+    static String encode(long value) {
+        char[] digits = new char[ID_LENGTH];
+        for (int i = ID_LENGTH - 1; i >= 0; i--) {
+            digits[i] = DIGITS[(int) (value % DIGITS.length)];
+            value /= DIGITS.length;
+        }
+        return new String(digits);
+    }
+
+    /**
+     * Read an ID written by encode.
+     * @param id the digits
+     * @return the ID
+     * @throws IllegalArgumentException if the ID is not ten base62 digits
+     */
+    static long decode(String id) {
+        if (id.length() != ID_LENGTH) {
+            throw new IllegalArgumentException("Invalid ID");
+        }
+        long value = 0;
+        for (int i = 0; i < ID_LENGTH; i++) {
+            char c = id.charAt(i);
+            int digit = c >= '0' && c <= '9' ? c - '0'
+                    : c >= 'A' && c <= 'Z' ? c - 'A' + 10
+                    : c >= 'a' && c <= 'z' ? c - 'a' + 36
+                    : -1;
+            if (digit < 0) {
+                throw new IllegalArgumentException("Invalid ID");
+            }
+            value = value * DIGITS.length + digit;
+        }
+        return value;
+    }
+
+    // Spread consecutive thread IDs over the lanes (Fibonacci hashing).
+    @SuppressWarnings("deprecation")
+    private static int lane() {
+        return (int) (Thread.currentThread().getId() * 0x9E3779B97F4A7C15L >>> (Long.SIZE - LANE_BITS));
+    }
+}
@@ -0,0 +1,33 @@
+package com.seanclen.capstone.repository;
+
+/**
+ * Thrown when an entity is replaced on the condition that it still has the version the caller read,
+ * and another save has changed it since (see EntityRepository.replace).
+ * @author Sean Clendening
+ */
+public class VersionConflictException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    private final long expectedVersion;
+    private final long currentVersion;
+
+    /**
+     * Create an exception for a replace that found another version.
+     * @param id the ID of the entity
+     * @param expectedVersion the version the caller expected
+     * @param currentVersion the version the entity has, or EntityRepository.NO_VERSION if unknown
+     */
+    public VersionConflictException(String id, long expectedVersion, long currentVersion) {
+        super("Entity " + id + " has changed");
+        this.expectedVersion = expectedVersion;
+        this.currentVersion = currentVersion;
+    }
+
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+}
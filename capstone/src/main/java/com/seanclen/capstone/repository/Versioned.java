@@ -0,0 +1,12 @@
+package com.seanclen.capstone.repository;
+
+/**
+ * An entity together with the version it was saved as, so the version can be sent with the entity
+ * without reading it again after another save may have changed it.
+ * @param item the entity
+ * @param version its version, or EntityRepository.NO_VERSION if the repository does not track versions
+ * @param <T> the type of the entity
+ * @author Sean Clendening
+ */
+public record Versioned<T>(T item, long version) {
+}
@@ -0,0 +1,37 @@
+package com.seanclen.capstone.repository;
+
+/**
+ * A snapshot of a repository's entities, sorted by ID (InMemoryRepository.ID_ORDER), that serves reads
+ * while it is loaded into the heap (see InMemoryRepository.beginWarmup).
+ * The snapshot may be closed once it is loaded. A closed snapshot finds nothing, and the repository
+ * then reads the heap, which holds every entity by that time.
+ * @param <T> the type of entity in the snapshot
+ */
+public interface WarmupSnapshot<T> {
+    /**
+     * Get the number of entities in the snapshot.
+     * @return the entity count
+     */
+    int size();
+
+    /**
+     * Find an entity by ID.
+     * @param id the ID to look for
+     * @return the position of the entity in ID order, or -1 if it is not in the snapshot or the snapshot is closed
+     */
+    int indexOf(String id);
+
+    /**
+     * Find where the entities after an ID start.
+     * @param id the ID, which need not be in the snapshot
+     * @return the position of the first entity with a greater ID, which is size() if there is none
+     */
+    int indexAfter(String id);
+
+    /**
+     * Read an entity.
+     * @param index the position of the entity in ID order
+     * @return the entity, or null if the snapshot is closed
+     */
+    T entity(int index);
+}
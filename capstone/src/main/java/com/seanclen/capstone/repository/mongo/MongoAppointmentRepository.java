@@ -0,0 +1,173 @@
+package com.seanclen.capstone.repository.mongo;
+
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Sorts;
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.repository.AppointmentCounts;
+import com.seanclen.capstone.repository.AppointmentRepository;
+import com.seanclen.capstone.repository.IdGenerators;
+import com.seanclen.capstone.repository.SearchTerms;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * MongoDB repository for appointments, used when capstone.storage.type is "mongo".
+ * Each appointment is one document in the "appointments" collection. BSON dates only hold
+ * milliseconds, so the date is stored as a UTC date plus its nano-of-second, and an index on
+ * (date, nanos, idLength, _id) serves date window queries in the same order as the in-memory index.
+ * The description's search terms are stored as an array with a multikey index for keyword search.
+ * The dashboard's counts are computed when they are read, so they include the writes of every
+ * process sharing the collection: the total from the collection's metadata, and the counts of a window
+ * by a $match on the date index, grouped by day with $group where needed.
+ * Past appointments are read back with Appointment.restore.
+ * @author Sean Clendening
+ */
+@Repository
+@ConditionalOnProperty(prefix = "capstone.storage", name = "type", havingValue = "mongo")
+public class MongoAppointmentRepository extends MongoEntityRepository<Appointment> implements AppointmentRepository {
+    private static final String DATE = "date";
+    private static final String NANOS = "nanos";
+    private static final String DESCRIPTION = "description";
+    private static final String TERMS = "terms";
+
+    private static final Bson DATE_SORT = Sorts.ascending(DATE, NANOS, ID_LENGTH, ID);
+
+    private final AppointmentCounts counts = new IndexedCounts();
+
+    public MongoAppointmentRepository(MongoDatabase database) {
+        this(database, null);
+    }
+
+    /**
+     * @param database the database holding the collection
+     * @param ids the ID generators; IDs are numbered in sequence in the database when ids is null
+     *            or selects sequential IDs
+     */
+    @Autowired
+    public MongoAppointmentRepository(MongoDatabase database, IdGenerators ids) {
+        super(database, ids == null || ids.isSequential() ? null : ids.create(), "appointments", DATE, NANOS, DESCRIPTION);
+        collection().createIndex(Indexes.ascending(DATE, NANOS, ID_LENGTH, ID));
+        collection().createIndex(Indexes.ascending(TERMS, ID_LENGTH, ID));
+    }
+
+    @Override
+    public List<Appointment> findByDateBetween(LocalDateTime from, LocalDateTime to, int limit) {
+        List<Appointment> result = new ArrayList<>(Math.min(limit, 64));
+        for (Document document : collection().find(window(from, to)).projection(projection()).sort(DATE_SORT).limit(limit)) {
+            result.add(fromDocument(document));
+        }
+        return result;
+    }
+
+    /**
+     * Matches every term with $all on the multikey terms index, returning appointments in ID order.
+     */
+    @Override
+    public List<Appointment> search(String query, LocalDateTime from, LocalDateTime to, int limit) {
+        List<String> terms = SearchTerms.of(query);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        List<Appointment> result = new ArrayList<>(Math.min(limit, 64));
+        for (Document document : collection().find(Filters.and(Filters.all(TERMS, terms), window(from, to)))
+                .projection(projection())
+                .sort(Sorts.ascending(ID_LENGTH, ID))
+                .limit(limit)) {
+            result.add(fromDocument(document));
+        }
+        return result;
+    }
+
+    private static Bson window(LocalDateTime from, LocalDateTime to) {
+        List<Bson> bounds = new ArrayList<>(2);
+        if (from != null) {
+            // date > from, or the same millisecond and nanos >= from
+            bounds.add(Filters.or(Filters.gt(DATE, toDate(from)),
+                    Filters.and(Filters.eq(DATE, toDate(from)), Filters.gte(NANOS, from.getNano()))));
+        }
+        if (to != null) {
+            // date < to, or the same millisecond and nanos < to
+            bounds.add(Filters.or(Filters.lt(DATE, toDate(to)),
+                    Filters.and(Filters.eq(DATE, toDate(to)), Filters.lt(NANOS, to.getNano()))));
+        }
+        return bounds.isEmpty() ? Filters.empty() : Filters.and(bounds);
+    }
+
+    /**
+     * Counts are read from the server on every call, so they cost a round trip each but are never stale.
+     */
+    @Override
+    public AppointmentCounts calendar() {
+        return counts;
+    }
+
+    @Override
+    protected Document toDocument(Appointment appointment) {
+        return new Document(DATE, toDate(appointment.getDate()))
+                .append(NANOS, appointment.getDate().getNano())
+                .append(DESCRIPTION, appointment.getDescription())
+                .append(TERMS, SearchTerms.of(appointment.getDescription()));
+    }
+
+    @Override
+    protected Appointment fromDocument(Document document) {
+        return Appointment.restore(document.getString(ID), toLocalDateTime(document), document.getString(DESCRIPTION));
+    }
+
+    private static LocalDateTime toLocalDateTime(Document document) {
+        long millis = document.getDate(DATE).getTime();
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), document.getInteger(NANOS), ZoneOffset.UTC);
+    }
+
+    private static Date toDate(LocalDateTime date) {
+        return Date.from(date.toInstant(ZoneOffset.UTC));
+    }
+
+    /**
+     * Counts appointments over the date index. Dates are stored as UTC instants of the local date and
+     * time, so grouping by UTC day gives the local day.
+     */
+    private final class IndexedCounts implements AppointmentCounts {
+        @Override
+        public long total() {
+            return collection().estimatedDocumentCount();
+        }
+
+        @Override
+        public long[] countPerDay(LocalDate first, int days) {
+            long[] counts = new long[days];
+            Bson day = new Document("$dateToString", new Document("format", "%Y-%m-%d")
+                    .append("date", "$" + DATE)
+                    .append("timezone", "UTC"));
+            for (Document group : collection().aggregate(List.of(
+                    Aggregates.match(window(first.atStartOfDay(), first.plusDays(days).atStartOfDay())),
+                    Aggregates.group(day, Accumulators.sum("count", 1))))) {
+                int index = (int) ChronoUnit.DAYS.between(first, LocalDate.parse(group.getString(ID)));
+                counts[index] = ((Number) group.get("count")).longValue();
+            }
+            return counts;
+        }
+
+        @Override
+        public long countNext24Hours(LocalDateTime now) {
+            LocalDateTime start = now.truncatedTo(ChronoUnit.MINUTES);
+            return collection().countDocuments(window(start, start.plusHours(24)));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.seanclen.capstone.repository.mongo;
+
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Sorts;
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.repository.ContactRepository;
+import com.seanclen.capstone.repository.IdGenerators;
+import com.seanclen.capstone.repository.InMemoryRepository;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * MongoDB repository for contacts, used when capstone.storage.type is "mongo".
+ * Each contact is one document in the "contacts" collection. The stripped, lower-case first and last
+ * names are stored alongside the contact and indexed, so a name prefix search is an index range scan.
+ * The stripped phone number is indexed the same way for lookups by phone.
+ * @author Sean Clendening
+ */
+@Repository
+@ConditionalOnProperty(prefix = "capstone.storage", name = "type", havingValue = "mongo")
+public class MongoContactRepository extends MongoEntityRepository<Contact> implements ContactRepository {
+    private static final String FIRST_NAME = "firstName";
+    private static final String LAST_NAME = "lastName";
+    private static final String PHONE = "phone";
+    private static final String ADDRESS = "address";
+    private static final String FIRST_NAME_KEY = "firstNameKey";
+    private static final String LAST_NAME_KEY = "lastNameKey";
+    private static final String PHONE_KEY = "phoneKey";
+
+    public MongoContactRepository(MongoDatabase database) {
+        this(database, null);
+    }
+
+    /**
+     * @param database the database holding the collection
+     * @param ids the ID generators; IDs are numbered in sequence in the database when ids is null
+     *            or selects sequential IDs
+     */
+    @Autowired
+    public MongoContactRepository(MongoDatabase database, IdGenerators ids) {
+        super(database, ids == null || ids.isSequential() ? null : ids.create(), "contacts", FIRST_NAME, LAST_NAME, PHONE, ADDRESS);
+        collection().createIndex(Indexes.ascending(FIRST_NAME_KEY, ID_LENGTH, ID));
+        collection().createIndex(Indexes.ascending(LAST_NAME_KEY, ID_LENGTH, ID));
+        collection().createIndex(Indexes.ascending(PHONE_KEY, ID_LENGTH, ID));
+    }
+
+    /**
+     * Runs one range query per name field, then merges the two sorted results.
+     */
+    @Override
+    public List<Contact> findByNamePrefix(String prefix, int limit) {
+        String from = nameKey(prefix);
+        List<Contact> byFirst = findByKeyPrefix(FIRST_NAME_KEY, from, limit);
+        List<Contact> byLast = findByKeyPrefix(LAST_NAME_KEY, from, limit);
+
+        List<Contact> result = new ArrayList<>(Math.min(limit, byFirst.size() + byLast.size()));
+        Set<String> seen = new HashSet<>();
+        int first = 0;
+        int last = 0;
+        while (result.size() < limit && (first < byFirst.size() || last < byLast.size())) {
+            boolean takeFirst = last >= byLast.size() || (first < byFirst.size()
+                    && compare(nameKey(byFirst.get(first).getFirstName()), byFirst.get(first),
+                    nameKey(byLast.get(last).getLastName()), byLast.get(last)) <= 0);
+            Contact next = takeFirst ? byFirst.get(first++) : byLast.get(last++);
+            if (seen.add(next.getId())) {
+                result.add(next);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Contact> findByPhone(String phone) {
+        return collection().find(Filters.eq(PHONE_KEY, phone.strip()))
+                .projection(projection())
+                .sort(Sorts.ascending(PHONE_KEY, ID_LENGTH, ID))
+                .map(this::fromDocument)
+                .into(new ArrayList<>());
+    }
+
+    @Override
+    protected Document toDocument(Contact contact) {
+        return new Document(FIRST_NAME, contact.getFirstName())
+                .append(LAST_NAME, contact.getLastName())
+                .append(PHONE, contact.getPhone())
+                .append(ADDRESS, contact.getAddress())
+                .append(FIRST_NAME_KEY, nameKey(contact.getFirstName()))
+                .append(LAST_NAME_KEY, nameKey(contact.getLastName()))
+                .append(PHONE_KEY, contact.getPhone().strip());
+    }
+
+    @Override
+    protected Contact fromDocument(Document document) {
+        return new Contact(document.getString(ID), document.getString(FIRST_NAME), document.getString(LAST_NAME),
+                document.getString(PHONE), document.getString(ADDRESS));
+    }
+
+    private List<Contact> findByKeyPrefix(String field, String prefix, int limit) {
+        List<Contact> contacts = new ArrayList<>(Math.min(limit, 64));
+        for (Document document : collection()
+                .find(Filters.and(Filters.gte(field, prefix), Filters.lt(field, prefix + Character.MAX_VALUE)))
+                .projection(projection())
+                .sort(Sorts.ascending(field, ID_LENGTH, ID))
+                .limit(limit)) {
+            contacts.add(fromDocument(document));
+        }
+        return contacts;
+    }
+
+    private static int compare(String key, Contact contact, String otherKey, Contact other) {
+        int byName = key.compareTo(otherKey);
+        return byName != 0 ? byName : InMemoryRepository.ID_ORDER.compare(contact.getId(), other.getId());
+    }
+
+    private static String nameKey(String name) {
+        return name.strip().toLowerCase(Locale.ROOT);
+    }
+}
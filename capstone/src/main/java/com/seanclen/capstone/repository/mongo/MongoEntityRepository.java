@@ -0,0 +1,357 @@
+package com.seanclen.capstone.repository.mongo;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.seanclen.capstone.model.HasId;
+import com.seanclen.capstone.repository.ChangeListener;
+import com.seanclen.capstone.repository.ChangeListeners;
+import com.seanclen.capstone.repository.EntityRepository;
+import com.seanclen.capstone.repository.IdGenerator;
+import com.seanclen.capstone.repository.Page;
+import com.seanclen.capstone.repository.VersionConflictException;
+import com.seanclen.capstone.repository.Versioned;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A repository that stores each entity as one document in a MongoDB collection, keyed by its ID.
+ * - batch saves and deletes are sent as one unordered bulk write, so the server applies them in
+ *   parallel instead of one round trip per entity
+ * - reads project only the entity's fields, leaving out the bookkeeping fields stored for indexing
+ * - documents also store the length of their ID, and an index on (idLength, _id) gives the same
+ *   ID order as the in-memory repositories, so findAll and keyset pages are served from the index
+ * - sequential IDs come from a counter document per collection, incremented atomically
+ * - versions are not tracked (version and versionOf return NO_VERSION): other instances write to the
+ *   same collection, so a counter in this process would miss their changes
+ * - the change listener hears about writes made by this process only, after the server acknowledged
+ *   them; concurrent writes to one ID may be reported in a different order than the server applied them
+ * @param <T> the type of entity stored in the repository
+ * @author Sean Clendening
+ */
+public abstract class MongoEntityRepository<T extends HasId> implements EntityRepository<T> {
+    static final String ID = "_id";
+    static final String ID_LENGTH = "idLength";
+    private static final String COUNTERS = "counters";
+    private static final String SEQUENCE = "seq";
+    // Documents fetched per round trip when reading many entities.
+    private static final int BATCH_SIZE = 1000;
+
+    private static final Bson ID_SORT = Sorts.ascending(ID_LENGTH, ID);
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+    private static final ReplaceOptions UPSERT = new ReplaceOptions().upsert(true);
+
+    private final MongoCollection<Document> collection;
+    private final MongoCollection<Document> counters;
+    private final IdGenerator ids;
+    private final String name;
+    private final Bson projection;
+    private final ChangeListeners<T> listeners = new ChangeListeners<>();
+
+    /**
+     * @param database the database holding the collection
+     * @param name the collection name
+     * @param fields the entity fields read back, besides the ID
+     */
+    protected MongoEntityRepository(MongoDatabase database, String name, String... fields) {
+        this(database, null, name, fields);
+    }
+
+    /**
+     * @param database the database holding the collection
+     * @param ids generates the IDs of new entities; null to number them in sequence with a counter
+     *            document shared by every instance, at the cost of a round trip per ID
+     * @param name the collection name
+     * @param fields the entity fields read back, besides the ID
+     */
+    protected MongoEntityRepository(MongoDatabase database, IdGenerator ids, String name, String... fields) {
+        this.ids = ids;
+        this.collection = database.getCollection(name);
+        this.counters = database.getCollection(COUNTERS);
+        this.name = name;
+        this.projection = Projections.include(fields);
+        collection.createIndex(Indexes.ascending(ID_LENGTH, ID));
+    }
+
+    /**
+     * Converts an entity to the document stored for it, without the ID fields.
+     * @param item the entity
+     * @return the document
+     */
+    protected abstract Document toDocument(T item);
+
+    /**
+     * Converts a projected document back to an entity.
+     * @param document the document, holding the ID and the projected fields
+     * @return the entity
+     */
+    protected abstract T fromDocument(Document document);
+
+    /**
+     * Gets the collection, for queries that subclasses add.
+     * @return the collection
+     */
+    protected MongoCollection<Document> collection() {
+        return collection;
+    }
+
+    /**
+     * Gets the projection of the entity fields, for queries that subclasses add.
+     * @return the projection
+     */
+    protected Bson projection() {
+        return projection;
+    }
+
+    @Override
+    public T save(T item) {
+        item = assignId(item);
+        collection.replaceOne(Filters.eq(ID, item.getId()), document(item), UPSERT);
+        publishSaved(item);
+        return item;
+    }
+
+    /**
+     * Replaces an entity only if its document exists, in one conditional write, so an update never
+     * brings back an entity another instance deleted. Versions are not tracked, so only ANY_VERSION is
+     * accepted.
+     */
+    @Override
+    public Versioned<T> replace(T item, long expectedVersion) {
+        if (expectedVersion != ANY_VERSION) {
+            throw new VersionConflictException(item.getId(), expectedVersion, NO_VERSION);
+        }
+        if (item.getId() == null) {
+            return null;
+        }
+
+        if (collection.replaceOne(Filters.eq(ID, item.getId()), document(item)).getMatchedCount() == 0) {
+            return null;
+        }
+        publishSaved(item);
+        return new Versioned<>(item, NO_VERSION);
+    }
+
+    /**
+     * Saves a batch of entities with one unordered bulk write. The server may apply the writes in any
+     * order, so when the batch holds the same ID more than once only its last entity is written.
+     */
+    @Override
+    public List<T> saveAll(List<T> batch) {
+        List<T> saved = new ArrayList<>(batch.size());
+        Map<String, T> latest = new LinkedHashMap<>();
+        for (T item : batch) {
+            T withId = assignId(item);
+            saved.add(withId);
+            latest.put(withId.getId(), withId);
+        }
+        if (latest.isEmpty()) {
+            return saved;
+        }
+
+        List<WriteModel<Document>> writes = new ArrayList<>(latest.size());
+        for (T item : latest.values()) {
+            writes.add(new ReplaceOneModel<>(Filters.eq(ID, item.getId()), document(item), UPSERT));
+        }
+        collection.bulkWrite(writes, UNORDERED);
+        for (T item : latest.values()) {
+            publishSaved(item);
+        }
+        return saved;
+    }
+
+    @Override
+    public T findById(String id) {
+        if (id == null) {
+            return null;
+        }
+
+        Document document = collection.find(Filters.eq(ID, id)).projection(projection).first();
+        return document != null ? fromDocument(document) : null;
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        if (id == null) {
+            return false;
+        }
+
+        return collection.find(Filters.eq(ID, id)).projection(Projections.include(ID)).first() != null;
+    }
+
+    @Override
+    public List<T> findAll() {
+        List<T> all = new ArrayList<>();
+        try (Stream<T> entities = stream()) {
+            entities.forEach(all::add);
+        }
+        return all;
+    }
+
+    /**
+     * Streams all entities from a server-side cursor, fetching them in batches as the stream is consumed.
+     * Closing the stream closes the cursor.
+     */
+    @Override
+    public Stream<T> stream() {
+        MongoCursor<Document> cursor = collection.find()
+                .projection(projection)
+                .sort(ID_SORT)
+                .batchSize(BATCH_SIZE)
+                .iterator();
+        Spliterator<Document> documents = Spliterators.spliteratorUnknownSize(cursor,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(documents, false)
+                .map(this::fromDocument)
+                .onClose(cursor::close);
+    }
+
+    @Override
+    public Page<T> findPage(String afterId, int limit) {
+        Bson filter = afterId == null ? Filters.empty() : Filters.or(
+                Filters.gt(ID_LENGTH, afterId.length()),
+                Filters.and(Filters.eq(ID_LENGTH, afterId.length()), Filters.gt(ID, afterId)));
+
+        // Fetch one more entity than requested to know whether another page follows.
+        List<Document> documents = collection.find(filter).projection(projection).sort(ID_SORT)
+                .limit(limit + 1).into(new ArrayList<>(Math.min(limit + 1, 64)));
+
+        List<T> page = new ArrayList<>(Math.min(limit, documents.size()));
+        for (int i = 0; i < documents.size() && i < limit; i++) {
+            page.add(fromDocument(documents.get(i)));
+        }
+        String nextCursor = documents.size() > limit ? Page.encodeCursor(page.get(limit - 1).getId()) : null;
+        return new Page<>(page, nextCursor);
+    }
+
+    @Override
+    public boolean deleteById(String id) {
+        if (id == null) {
+            return false;
+        }
+
+        boolean deleted = collection.deleteOne(Filters.eq(ID, id)).getDeletedCount() > 0;
+        if (deleted) {
+            publishDeleted(id);
+        }
+        return deleted;
+    }
+
+    /**
+     * Deletes a batch of entities with one unordered bulk write. The write does not say which of the IDs
+     * existed, so the IDs that exist are read first, with one extra query per batch, and only those are
+     * deleted, reported to the change listener and returned. An entity another instance deletes between
+     * the query and the write is still returned.
+     */
+    @Override
+    public List<String> deleteAllById(Collection<String> ids) {
+        List<String> present = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            if (id != null) {
+                present.add(id);
+            }
+        }
+        if (present.isEmpty()) {
+            return List.of();
+        }
+
+        Set<String> found = new HashSet<>(findExistingIds(present));
+        List<String> existing = new ArrayList<>(found.size());
+        List<WriteModel<Document>> writes = new ArrayList<>(found.size());
+        for (String id : present) {
+            if (found.remove(id)) {
+                existing.add(id);
+                writes.add(new DeleteOneModel<>(Filters.eq(ID, id)));
+            }
+        }
+        if (writes.isEmpty()) {
+            return existing;
+        }
+        collection.bulkWrite(writes, UNORDERED);
+        existing.forEach(this::publishDeleted);
+        return existing;
+    }
+
+    /**
+     * Reads the count from the collection's metadata instead of counting documents, so it costs the same
+     * whatever the size of the collection. After an unclean shutdown it may be briefly off until the
+     * server corrects it.
+     */
+    @Override
+    public long count() {
+        return collection.estimatedDocumentCount();
+    }
+
+    @Override
+    public void attachChangeListener(ChangeListener<T> listener) {
+        listeners.attach(listener);
+    }
+
+    @Override
+    public void detachChangeListener(ChangeListener<T> listener) {
+        listeners.detach(listener);
+    }
+
+    @Override
+    public String getNextId() {
+        if (ids != null) {
+            return ids.nextId();
+        }
+        Document counter = counters.findOneAndUpdate(Filters.eq(ID, name), Updates.inc(SEQUENCE, 1L),
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+        return String.valueOf(((Number) counter.get(SEQUENCE)).longValue());
+    }
+
+    private List<String> findExistingIds(Collection<String> ids) {
+        List<String> existing = new ArrayList<>(ids.size());
+        for (Document document : collection.find(Filters.in(ID, ids)).projection(Projections.include(ID)).batchSize(BATCH_SIZE)) {
+            existing.add(document.getString(ID));
+        }
+        return existing;
+    }
+
+    private void publishSaved(T item) {
+        listeners.saved(item);
+    }
+
+    private void publishDeleted(String id) {
+        listeners.deleted(id);
+    }
+
+    // withId returns a copy of the entity's own class.
+    @SuppressWarnings("unchecked")
+    private T assignId(T item) {
+        return item.getId() == null || item.getId().isEmpty() ? (T) item.withId(getNextId()) : item;
+    }
+
+    private Document document(T item) {
+        Document document = toDocument(item);
+        document.put(ID, item.getId());
+        document.put(ID_LENGTH, item.getId().length());
+        return document;
+    }
+}
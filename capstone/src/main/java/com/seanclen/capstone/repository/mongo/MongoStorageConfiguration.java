@@ -0,0 +1,64 @@
+package com.seanclen.capstone.repository.mongo;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoDatabase;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connects to MongoDB when capstone.storage.type is "mongo".
+ * Settings:
+ * - capstone.mongo.uri: the connection string; the MONGO_URI environment variable by default. The
+ *   database named in it is used, or "capstone" if it names none.
+ * - capstone.mongo.pool.max-size: the most connections kept open per server (default 100)
+ * - capstone.mongo.pool.min-size: the connections kept open even when idle (default 0)
+ * - capstone.mongo.pool.max-wait: how long a request waits for a free connection before failing (default PT2S)
+ * Request threads block on a connection for every repository call, so max-size bounds the number of
+ * concurrent database calls; size it to the request thread pool rather than to the expected load.
+ * @author Sean Clendening
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "capstone.storage", name = "type", havingValue = "mongo")
+public class MongoStorageConfiguration {
+    private static final String DEFAULT_DATABASE = "capstone";
+
+    @Bean
+    public MongoClient mongoClient(@Value("${capstone.mongo.uri}") String uri,
+                                   @Value("${capstone.mongo.pool.max-size:100}") int maxPoolSize,
+                                   @Value("${capstone.mongo.pool.min-size:0}") int minPoolSize,
+                                   @Value("${capstone.mongo.pool.max-wait:PT2S}") Duration maxWait) {
+        return MongoClients.create(clientSettings(uri, maxPoolSize, minPoolSize, maxWait));
+    }
+
+    @Bean
+    public MongoDatabase mongoDatabase(MongoClient client, @Value("${capstone.mongo.uri}") String uri) {
+        String database = new ConnectionString(uri).getDatabase();
+        return client.getDatabase(database != null ? database : DEFAULT_DATABASE);
+    }
+
+    /**
+     * Build the client settings for a connection string and pool size.
+     * @param uri the MongoDB connection string
+     * @param maxPoolSize the most connections per server
+     * @param minPoolSize the connections kept open when idle
+     * @param maxWait how long to wait for a free connection
+     * @return the client settings
+     */
+    public static MongoClientSettings clientSettings(String uri, int maxPoolSize, int minPoolSize, Duration maxWait) {
+        return MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(uri))
+                .applyToConnectionPoolSettings(pool -> pool
+                        .maxSize(maxPoolSize)
+                        .minSize(minPoolSize)
+                        .maxWaitTime(maxWait.toMillis(), TimeUnit.MILLISECONDS))
+                .build();
+    }
+}
@@ -1,29 +1,63 @@
 package com.seanclen.capstone.service;
 
+import com.seanclen.capstone.archive.AppointmentArchive;
 import com.seanclen.capstone.model.Appointment;
 import com.seanclen.capstone.repository.AppointmentRepository;
+import com.seanclen.capstone.repository.EntityRepository;
+import com.seanclen.capstone.repository.Page;
+import com.seanclen.capstone.repository.SearchTerms;
+import com.seanclen.capstone.repository.VersionConflictException;
+import com.seanclen.capstone.repository.Versioned;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Service class for managing appointments.
  * Provides methods to add, retrieve, update, and delete appointments.
+ * Past appointments are moved to the AppointmentArchive after a while, and are read from there.
  * @author Sean Clendening
  */
 @Service
 public class AppointmentService {
-    private final AppointmentRepository<Appointment> appointmentRepository;
+    // Bounds for date window and paginated queries, so a single request cannot return the whole repository.
+    public final static int DEFAULT_QUERY_LIMIT = 100;
+    public final static int MAX_QUERY_LIMIT = 1000;
 
-    public AppointmentService(AppointmentRepository<Appointment> appointmentRepository) {
+    private final AppointmentRepository appointmentRepository;
+    // Null when past appointments are not archived.
+    private final AppointmentArchive archive;
+
+    /**
+     * Create a service whose past appointments are not archived.
+     * @param appointmentRepository the repository of appointments
+     */
+    public AppointmentService(AppointmentRepository appointmentRepository) {
+        this(appointmentRepository, null);
+    }
+
+    @Autowired
+    public AppointmentService(AppointmentRepository appointmentRepository, AppointmentArchive archive) {
         this.appointmentRepository = appointmentRepository;
+        this.archive = archive;
     }
 
     public List<Appointment> getAllAppointments() {
         return appointmentRepository.findAll();
     }
 
+    /**
+     * Stream all appointments, ordered by ID, without building a list of them first.
+     * The caller must consume or close the stream; memory use does not grow with the number of appointments.
+     * @return a lazy stream over all appointments
+     */
+    public Stream<Appointment> streamAllAppointments() {
+        return appointmentRepository.stream();
+    }
+
     /**
      * Retrieve an appointment by its ID.
      * @param id the ID of the appointment
@@ -33,6 +67,111 @@ public class AppointmentService {
         return appointmentRepository.findById(id);
     }
 
+    /**
+     * Get the version of the appointments, which changes whenever any appointment is saved or deleted.
+     * @return the version, or EntityRepository.NO_VERSION if the repository does not track versions
+     */
+    public long getAppointmentsVersion() {
+        return appointmentRepository.version();
+    }
+
+    /**
+     * Get the version of an appointment without loading it.
+     * @param id the ID of the appointment
+     * @return the version, or EntityRepository.NO_VERSION if not found or not tracked
+     */
+    public long getAppointmentVersion(String id) {
+        return appointmentRepository.versionOf(id);
+    }
+
+    /**
+     * Retrieve one page of appointments, ordered by ID.
+     * @param cursor the cursor returned with the previous page, or null or empty for the first page
+     * @param limit the maximum number of appointments on the page, between 1 and MAX_QUERY_LIMIT
+     * @return the page of appointments and the cursor of the following page
+     * @throws IllegalArgumentException if the cursor or the limit is invalid
+     */
+    public Page<Appointment> getAppointmentsPage(String cursor, int limit) {
+        if (limit < 1 || limit > MAX_QUERY_LIMIT) {
+            throw new IllegalArgumentException("Invalid limit");
+        }
+
+        return appointmentRepository.findPage(Page.decodeCursor(cursor), limit);
+    }
+
+    /**
+     * Retrieve the appointments scheduled in the window [from, to), ordered by date.
+     * Uses the repository's date index, so the cost depends on the number of matches rather than
+     * the number of stored appointments.
+     * @param from the inclusive start of the window, or null for no lower bound
+     * @param to the exclusive end of the window, or null for no upper bound
+     * @param limit the maximum number of appointments to return, between 1 and MAX_QUERY_LIMIT
+     * @return the appointments in the window in ascending date order
+     * @throws IllegalArgumentException if the window or the limit is invalid
+     */
+    public List<Appointment> getAppointmentsBetween(LocalDateTime from, LocalDateTime to, int limit) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("Invalid date range");
+        }
+        if (limit < 1 || limit > MAX_QUERY_LIMIT) {
+            throw new IllegalArgumentException("Invalid limit");
+        }
+
+        return appointmentRepository.findByDateBetween(from, to, limit);
+    }
+
+    /**
+     * Search appointments by keywords in their description, optionally within the window [from, to).
+     * Every term of the query must appear; case and punctuation are ignored (see SearchTerms).
+     * @param query the keywords
+     * @param from the inclusive start of the window, or null for no lower bound
+     * @param to the exclusive end of the window, or null for no upper bound
+     * @param limit the maximum number of appointments to return, between 1 and MAX_QUERY_LIMIT
+     * @return the matching appointments
+     * @throws IllegalArgumentException if the query has no terms, or the window or the limit is invalid
+     */
+    public List<Appointment> searchAppointments(String query, LocalDateTime from, LocalDateTime to, int limit) {
+        if (query == null || SearchTerms.of(query).isEmpty()) {
+            throw new IllegalArgumentException("Invalid query");
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("Invalid date range");
+        }
+        if (limit < 1 || limit > MAX_QUERY_LIMIT) {
+            throw new IllegalArgumentException("Invalid limit");
+        }
+
+        return appointmentRepository.search(query, from, to, limit);
+    }
+
+    /**
+     * Retrieve an archived appointment by its ID.
+     * @param id the ID of the appointment
+     * @return the archived appointment with the given ID, or null if not found
+     */
+    public Appointment getArchivedAppointmentById(String id) {
+        return archive != null ? archive.findById(id) : null;
+    }
+
+    /**
+     * Retrieve the archived appointments dated in the window [from, to), ordered by date.
+     * @param from the inclusive start of the window, or null for no lower bound
+     * @param to the exclusive end of the window, or null for no upper bound
+     * @param limit the maximum number of appointments to return, between 1 and MAX_QUERY_LIMIT
+     * @return the archived appointments in the window in ascending date order
+     * @throws IllegalArgumentException if the window or the limit is invalid
+     */
+    public List<Appointment> getArchivedAppointmentsBetween(LocalDateTime from, LocalDateTime to, int limit) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("Invalid date range");
+        }
+        if (limit < 1 || limit > MAX_QUERY_LIMIT) {
+            throw new IllegalArgumentException("Invalid limit");
+        }
+
+        return archive != null ? archive.findByDateBetween(from, to, limit) : List.of();
+    }
+
     /**
      * Create a new appointment with the given attributes.
      * @param dateTime the date and time of the appointment
@@ -42,12 +181,11 @@ public class AppointmentService {
      */
     public Appointment createAppointment(LocalDateTime dateTime, String description) {
         String id = appointmentRepository.getNextId();
-        Appointment appointment = new Appointment(id, dateTime, description);
-        return appointmentRepository.save(appointment);
+        return appointmentRepository.save(new Appointment(id, dateTime, description));
     }
 
     /**
-     * Update an existing appointment with new attributes.
+     * Update an existing appointment with new attributes, whatever its version.
      * @param id the ID of the appointment to update
      * @param dateTime the new date and time of the appointment
      * @param description the new description of the appointment
@@ -55,22 +193,29 @@ public class AppointmentService {
      * @throws IllegalArgumentException if the appointment is not found or any of the new attributes are invalid
      */
     public Appointment updateAppointment(String id, LocalDateTime dateTime, String description) {
-        Appointment appointment = appointmentRepository.findById(id);
-        if (appointment == null) {
-            throw new IllegalArgumentException("Appointment not found");
-        }
+        return updateAppointment(id, dateTime, description, EntityRepository.ANY_VERSION).item();
+    }
 
-        // Validate new attributes before updating.
-        if (!Appointment.isValidDate(dateTime)) {
-            throw new IllegalArgumentException("Invalid date");
-        }
-        if (!Appointment.isValidDescription(description)) {
-            throw new IllegalArgumentException("Invalid description");
+    /**
+     * Update an existing appointment if it still has the version the caller read. The stored
+     * appointment is replaced by a new one through a compare-and-set in the repository, so concurrent
+     * readers never observe a half-updated appointment, the date index sees both the old and the new
+     * date, and of two updates made from the same version only the first is applied.
+     * @param id the ID of the appointment to update
+     * @param dateTime the new date and time of the appointment
+     * @param description the new description of the appointment
+     * @param expectedVersion the version the caller read, or EntityRepository.ANY_VERSION
+     * @return the updated appointment and its new version
+     * @throws IllegalArgumentException if the appointment is not found or any of the new attributes are invalid
+     * @throws VersionConflictException if the appointment has another version
+     */
+    public Versioned<Appointment> updateAppointment(String id, LocalDateTime dateTime, String description, long expectedVersion) {
+        // The constructor validates all new attributes before anything is replaced.
+        Versioned<Appointment> updated = appointmentRepository.replace(new Appointment(id, dateTime, description), expectedVersion);
+        if (updated == null) {
+            throw new IllegalArgumentException("Appointment not found");
         }
-
-        appointment.setDate(dateTime);
-        appointment.setDescription(description);
-        return appointmentRepository.save(appointment);
+        return updated;
     }
 
     /**
@@ -1,10 +1,22 @@
 package com.seanclen.capstone.service;
 
+import com.seanclen.capstone.form.ContactBatchOperation;
+import com.seanclen.capstone.form.ContactBatchResult;
 import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.model.Validation;
 import com.seanclen.capstone.repository.ContactRepository;
+import com.seanclen.capstone.repository.EntityRepository;
+import com.seanclen.capstone.repository.Page;
+import com.seanclen.capstone.repository.VersionConflictException;
+import com.seanclen.capstone.repository.Versioned;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Service class for managing contacts.
@@ -13,9 +25,15 @@ import java.util.List;
  */
 @Service
 public class ContactService {
-    private final ContactRepository<Contact> contactRepository;
+    // Bounds for paginated queries, so a single request cannot return the whole repository.
+    public final static int DEFAULT_QUERY_LIMIT = 100;
+    public final static int MAX_QUERY_LIMIT = 1000;
+    // Search-as-you-type only shows a handful of suggestions.
+    public final static int DEFAULT_SEARCH_LIMIT = 10;
 
-    public ContactService(ContactRepository<Contact> contactRepository) {
+    private final ContactRepository contactRepository;
+
+    public ContactService(ContactRepository contactRepository) {
         this.contactRepository = contactRepository;
     }
 
@@ -23,6 +41,63 @@ public class ContactService {
         return contactRepository.findAll();
     }
 
+    /**
+     * Stream all contacts, ordered by ID, without building a list of them first.
+     * The caller must consume or close the stream; memory use does not grow with the number of contacts.
+     * @return a lazy stream over all contacts
+     */
+    public Stream<Contact> streamAllContacts() {
+        return contactRepository.stream();
+    }
+
+    /**
+     * Retrieve one page of contacts, ordered by ID.
+     * @param cursor the cursor returned with the previous page, or null or empty for the first page
+     * @param limit the maximum number of contacts on the page, between 1 and MAX_QUERY_LIMIT
+     * @return the page of contacts and the cursor of the following page
+     * @throws IllegalArgumentException if the cursor or the limit is invalid
+     */
+    public Page<Contact> getContactsPage(String cursor, int limit) {
+        if (limit < 1 || limit > MAX_QUERY_LIMIT) {
+            throw new IllegalArgumentException("Invalid limit");
+        }
+
+        return contactRepository.findPage(Page.decodeCursor(cursor), limit);
+    }
+
+    /**
+     * Search contacts by the start of their first or last name, ignoring case.
+     * @param prefix the start of the name; leading and trailing spaces are ignored
+     * @param limit the maximum number of contacts to return, between 1 and MAX_QUERY_LIMIT
+     * @return the matching contacts, ordered by the matching name
+     * @throws IllegalArgumentException if the prefix is blank or the limit is invalid
+     */
+    public List<Contact> searchContacts(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            throw new IllegalArgumentException("Invalid prefix");
+        }
+        if (limit < 1 || limit > MAX_QUERY_LIMIT) {
+            throw new IllegalArgumentException("Invalid limit");
+        }
+
+        return contactRepository.findByNamePrefix(prefix, limit);
+    }
+
+    /**
+     * Find the contacts with a phone number, for inbound-call lookups.
+     * @param phone the phone number
+     * @return the contacts with the number, ordered by ID; empty if there are none
+     * @throws IllegalArgumentException if the phone number is invalid
+     */
+    public List<Contact> findContactsByPhone(String phone) {
+        // A malformed search is not a contact that failed validation, so it is not counted as one.
+        if (!Validation.isPhoneNumber(phone)) {
+            throw new IllegalArgumentException("Invalid phone number");
+        }
+
+        return contactRepository.findByPhone(phone);
+    }
+
     /**
      * Retrieve a contact by its ID.
      * @param id the ID of the contact
@@ -32,6 +107,23 @@ public class ContactService {
         return contactRepository.findById(id);
     }
 
+    /**
+     * Get the version of the contacts, which changes whenever any contact is saved or deleted.
+     * @return the version, or EntityRepository.NO_VERSION if the repository does not track versions
+     */
+    public long getContactsVersion() {
+        return contactRepository.version();
+    }
+
+    /**
+     * Get the version of a contact without loading it.
+     * @param id the ID of the contact
+     * @return the version, or EntityRepository.NO_VERSION if not found or not tracked
+     */
+    public long getContactVersion(String id) {
+        return contactRepository.versionOf(id);
+    }
+
     /**
      * Create a new contact with the given attributes.
      * @param firstName the first name of the contact
@@ -42,13 +134,11 @@ public class ContactService {
      * @throws IllegalArgumentException if any of the attributes are invalid
      */
     public Contact createContact(String firstName, String lastName, String phone, String address) {
-        String id = contactRepository.getNextId();
-        Contact contact = new Contact(id, firstName, lastName, phone, address);
-        return contactRepository.save(contact);
+        return contactRepository.save(newContact(firstName, lastName, phone, address));
     }
 
     /**
-     * Update an existing contact with new attributes.
+     * Update an existing contact with new attributes, whatever its version.
      * @param id the ID of the contact to update
      * @param firstName the new first name of the contact
      * @param lastName the new last name of the contact
@@ -58,31 +148,134 @@ public class ContactService {
      * @throws IllegalArgumentException if the contact is not found or any of the new attributes are invalid
      */
     public Contact updateContact(String id, String firstName, String lastName, String phone, String address) {
-        Contact contact = contactRepository.findById(id);
-        if (contact == null) {
+        return updateContact(id, firstName, lastName, phone, address, EntityRepository.ANY_VERSION).item();
+    }
+
+    /**
+     * Update an existing contact if it still has the version the caller read. The stored contact is
+     * replaced by a new one, never mutated, through a compare-and-set in the repository, so of two
+     * updates made from the same version only the first is applied, and a contact deleted in the
+     * meantime is not brought back.
+     * @param id the ID of the contact to update
+     * @param firstName the new first name of the contact
+     * @param lastName the new last name of the contact
+     * @param phone the new phone number of the contact
+     * @param address the new address of the contact
+     * @param expectedVersion the version the caller read, or EntityRepository.ANY_VERSION
+     * @return the updated contact and its new version
+     * @throws IllegalArgumentException if the contact is not found or any of the new attributes are invalid
+     * @throws VersionConflictException if the contact has another version
+     */
+    public Versioned<Contact> updateContact(String id, String firstName, String lastName, String phone, String address,
+                                            long expectedVersion) {
+        // The constructor validates all attributes before anything is replaced.
+        Versioned<Contact> updated = contactRepository.replace(new Contact(id, firstName, lastName, phone, address), expectedVersion);
+        if (updated == null) {
             throw new IllegalArgumentException("Contact not found");
         }
+        return updated;
+    }
 
-        // Validate new attributes before updating. All attributes must be valid.
-        if (!Contact.isValidFirstName(firstName)) {
-            throw new IllegalArgumentException("Invalid first name");
-        }
-        if (!Contact.isValidLastName(lastName)) {
-            throw new IllegalArgumentException("Invalid last name");
+    /**
+     * Apply a batch of create, update and delete operations.
+     * All operations are validated first, in one pass through the Contact validation rules, and the
+     * accepted changes are then written to the repository together. An invalid operation is reported
+     * in its result and does not prevent the other operations from being applied.
+     * Operations are evaluated in order, so an update or delete of a contact that was deleted earlier
+     * in the same batch is rejected, and the last update of a contact wins. Updates replace the stored
+     * contact as updateContact does, so a contact deleted by another request while the batch is applied
+     * is reported as not found instead of being brought back; so is a delete of a contact another
+     * request deleted first.
+     * @param operations the operations to apply
+     * @return one result per operation, in the same order as the operations
+     */
+    public List<ContactBatchResult> applyBatch(List<ContactBatchOperation> operations) {
+        List<ContactBatchResult> results = new ArrayList<>(operations.size());
+        List<Contact> creates = new ArrayList<>();
+        List<Contact> updates = new ArrayList<>();
+        // The index in results of every update, in the order of updates.
+        List<Integer> updateResults = new ArrayList<>();
+        List<String> deletes = new ArrayList<>();
+        // The index in results of every delete, in the order of deletes.
+        List<Integer> deleteResults = new ArrayList<>();
+        Set<String> deleted = new HashSet<>();
+
+        for (ContactBatchOperation operation : operations) {
+            ContactBatchResult result = stage(operation, creates, updates, deletes, deleted);
+            if (result.getStatus().equals(ContactBatchResult.UPDATED)) {
+                updateResults.add(results.size());
+            } else if (result.getStatus().equals(ContactBatchResult.DELETED)) {
+                deleteResults.add(results.size());
+            }
+            results.add(result);
         }
-        if (!Contact.isValidPhone(phone)) {
-            throw new IllegalArgumentException("Invalid phone number");
+
+        contactRepository.saveAll(creates);
+        List<Versioned<Contact>> replaced = contactRepository.replaceAll(updates);
+        for (int i = 0; i < replaced.size(); i++) {
+            if (replaced.get(i) == null) {
+                results.set(updateResults.get(i), ContactBatchResult.error(updates.get(i).getId(), "Contact not found"));
+            }
         }
-        if (!Contact.isValidAddress(address)) {
-            throw new IllegalArgumentException("Invalid address");
+        Set<String> removed = new HashSet<>(contactRepository.deleteAllById(deletes));
+        for (int i = 0; i < deletes.size(); i++) {
+            if (!removed.contains(deletes.get(i))) {
+                results.set(deleteResults.get(i), ContactBatchResult.error(deletes.get(i), "Contact not found"));
+            }
         }
+        return results;
+    }
+
+    /**
+     * Validate one batch operation and stage the change it makes.
+     * @return the result of the operation
+     */
+    private ContactBatchResult stage(ContactBatchOperation operation, List<Contact> creates, List<Contact> updates,
+                                     List<String> deletes, Set<String> deleted) {
+        String op = operation.getOp() == null ? "" : operation.getOp().toLowerCase(Locale.ROOT);
+        String id = operation.getId();
+
+        try {
+            if (op.equals(ContactBatchOperation.CREATE)) {
+                Contact contact = newContact(operation.getFirstName(), operation.getLastName(),
+                        operation.getPhone(), operation.getAddress());
+                creates.add(contact);
+                return new ContactBatchResult(ContactBatchResult.CREATED, contact.getId(), null);
+            }
 
-        contact.setFirstName(firstName);;
-        contact.setLastName(lastName);
-        contact.setPhone(phone);
-        contact.setAddress(address);
+            if (op.equals(ContactBatchOperation.UPDATE)) {
+                // A contact missing from the repository is found when the update is applied.
+                if (deleted.contains(id)) {
+                    throw new IllegalArgumentException("Contact not found");
+                }
+                // The constructor validates all attributes; the stored contact is replaced, not mutated.
+                updates.add(new Contact(id, operation.getFirstName(), operation.getLastName(),
+                        operation.getPhone(), operation.getAddress()));
+                return new ContactBatchResult(ContactBatchResult.UPDATED, id, null);
+            }
 
-        return contact;
+            if (op.equals(ContactBatchOperation.DELETE)) {
+                if (deleted.contains(id) || !contactRepository.existsById(id)) {
+                    throw new IllegalArgumentException("Contact not found");
+                }
+                deleted.add(id);
+                deletes.add(id);
+                return new ContactBatchResult(ContactBatchResult.DELETED, id, null);
+            }
+
+            throw new IllegalArgumentException("Invalid operation");
+        } catch (IllegalArgumentException e) {
+            return ContactBatchResult.error(id, e.getMessage());
+        }
+    }
+
+    /**
+     * Validate the attributes of a new contact, then give it the next ID, so an invalid contact does
+     * not use one up.
+     * @throws IllegalArgumentException if any of the attributes are invalid
+     */
+    private Contact newContact(String firstName, String lastName, String phone, String address) {
+        return Contact.create(contactRepository::getNextId, firstName, lastName, phone, address);
     }
 
     /**
@@ -0,0 +1,107 @@
+package com.seanclen.capstone.service;
+
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.repository.AppointmentRepository;
+import com.seanclen.capstone.repository.InMemoryRepository;
+import com.seanclen.capstone.repository.Page;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Non-blocking variant of AppointmentService, for the /api/v2 endpoints.
+ * Operations are delegated to AppointmentService and scheduled as in ReactiveContactService: writes,
+ * and reads from a database, run on Schedulers.boundedElastic(); reads from memory run in place.
+ * @author Sean Clendening
+ */
+@Service
+public class ReactiveAppointmentService {
+    private final AppointmentService appointmentService;
+    private final boolean readsBlock;
+
+    public ReactiveAppointmentService(AppointmentService appointmentService, AppointmentRepository appointmentRepository) {
+        this.appointmentService = appointmentService;
+        this.readsBlock = !(appointmentRepository instanceof InMemoryRepository);
+    }
+
+    /**
+     * Stream all appointments, ordered by ID, reading them only as the subscriber requests them.
+     * @return the appointments
+     */
+    public Flux<Appointment> streamAllAppointments() {
+        Flux<Appointment> appointments = Flux.fromStream(appointmentService::streamAllAppointments);
+        return readsBlock ? appointments.subscribeOn(Schedulers.boundedElastic()) : appointments;
+    }
+
+    /**
+     * Retrieve one page of appointments, ordered by ID.
+     * @see AppointmentService#getAppointmentsPage(String, int)
+     */
+    public Mono<Page<Appointment>> getAppointmentsPage(String cursor, int limit) {
+        return read(() -> appointmentService.getAppointmentsPage(cursor, limit));
+    }
+
+    /**
+     * Retrieve the appointments scheduled in the window [from, to), ordered by date.
+     * @see AppointmentService#getAppointmentsBetween(LocalDateTime, LocalDateTime, int)
+     */
+    public Mono<List<Appointment>> getAppointmentsBetween(LocalDateTime from, LocalDateTime to, int limit) {
+        return read(() -> appointmentService.getAppointmentsBetween(from, to, limit));
+    }
+
+    /**
+     * Search appointments by keywords in their description.
+     * @see AppointmentService#searchAppointments(String, LocalDateTime, LocalDateTime, int)
+     */
+    public Mono<List<Appointment>> searchAppointments(String query, LocalDateTime from, LocalDateTime to, int limit) {
+        return read(() -> appointmentService.searchAppointments(query, from, to, limit));
+    }
+
+    /**
+     * Retrieve an appointment by its ID.
+     * @param id the ID of the appointment
+     * @return the appointment, or an empty Mono if not found
+     */
+    public Mono<Appointment> getAppointmentById(String id) {
+        return read(() -> appointmentService.getAppointmentById(id));
+    }
+
+    /**
+     * Create a new appointment with the given attributes.
+     * @see AppointmentService#createAppointment(LocalDateTime, String)
+     */
+    public Mono<Appointment> createAppointment(LocalDateTime dateTime, String description) {
+        return write(() -> appointmentService.createAppointment(dateTime, description));
+    }
+
+    /**
+     * Update an existing appointment with new attributes.
+     * @see AppointmentService#updateAppointment(String, LocalDateTime, String)
+     */
+    public Mono<Appointment> updateAppointment(String id, LocalDateTime dateTime, String description) {
+        return write(() -> appointmentService.updateAppointment(id, dateTime, description));
+    }
+
+    /**
+     * Delete an appointment by its ID.
+     * @param id the ID of the appointment to delete
+     * @return true if the appointment was deleted, false if it was not found
+     */
+    public Mono<Boolean> deleteAppointment(String id) {
+        return write(() -> appointmentService.deleteAppointment(id));
+    }
+
+    private <T> Mono<T> read(Callable<T> call) {
+        Mono<T> result = Mono.fromCallable(call);
+        return readsBlock ? result.subscribeOn(Schedulers.boundedElastic()) : result;
+    }
+
+    private static <T> Mono<T> write(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+}
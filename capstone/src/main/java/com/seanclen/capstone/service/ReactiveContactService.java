@@ -0,0 +1,114 @@
+package com.seanclen.capstone.service;
+
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.repository.CompactContactRepository;
+import com.seanclen.capstone.repository.ContactRepository;
+import com.seanclen.capstone.repository.InMemoryRepository;
+import com.seanclen.capstone.repository.Page;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Non-blocking variant of ContactService, for the /api/v2 endpoints.
+ * Every operation is delegated to ContactService, so validation and errors are the same: an invalid
+ * argument is signalled as an IllegalArgumentException, and a missing contact as an empty Mono.
+ * Calls that may block are run on Schedulers.boundedElastic() instead of the subscriber's thread:
+ * writes always (the write-ahead log may wait for an fsync), and reads unless the contacts are held in
+ * memory, where a read never waits and the thread switch would cost more than the read itself.
+ * @author Sean Clendening
+ */
+@Service
+public class ReactiveContactService {
+    private final ContactService contactService;
+    private final boolean readsBlock;
+
+    public ReactiveContactService(ContactService contactService, ContactRepository contactRepository) {
+        this.contactService = contactService;
+        this.readsBlock = !(contactRepository instanceof InMemoryRepository
+                || contactRepository instanceof CompactContactRepository);
+    }
+
+    /**
+     * Stream all contacts, ordered by ID.
+     * Contacts are read from the repository only as the subscriber requests them, so a slow subscriber
+     * holds back the repository instead of having the contacts buffered for it. The underlying stream
+     * is closed when the Flux completes, fails or is cancelled.
+     * @return the contacts
+     */
+    public Flux<Contact> streamAllContacts() {
+        Flux<Contact> contacts = Flux.fromStream(contactService::streamAllContacts);
+        return readsBlock ? contacts.subscribeOn(Schedulers.boundedElastic()) : contacts;
+    }
+
+    /**
+     * Retrieve one page of contacts, ordered by ID.
+     * @see ContactService#getContactsPage(String, int)
+     */
+    public Mono<Page<Contact>> getContactsPage(String cursor, int limit) {
+        return read(() -> contactService.getContactsPage(cursor, limit));
+    }
+
+    /**
+     * Search contacts by the start of their first or last name, ignoring case.
+     * @see ContactService#searchContacts(String, int)
+     */
+    public Mono<List<Contact>> searchContacts(String prefix, int limit) {
+        return read(() -> contactService.searchContacts(prefix, limit));
+    }
+
+    /**
+     * Find the contacts with a phone number.
+     * @see ContactService#findContactsByPhone(String)
+     */
+    public Mono<List<Contact>> findContactsByPhone(String phone) {
+        return read(() -> contactService.findContactsByPhone(phone));
+    }
+
+    /**
+     * Retrieve a contact by its ID.
+     * @param id the ID of the contact
+     * @return the contact, or an empty Mono if not found
+     */
+    public Mono<Contact> getContactById(String id) {
+        return read(() -> contactService.getContactById(id));
+    }
+
+    /**
+     * Create a new contact with the given attributes.
+     * @see ContactService#createContact(String, String, String, String)
+     */
+    public Mono<Contact> createContact(String firstName, String lastName, String phone, String address) {
+        return write(() -> contactService.createContact(firstName, lastName, phone, address));
+    }
+
+    /**
+     * Update an existing contact with new attributes.
+     * @see ContactService#updateContact(String, String, String, String, String)
+     */
+    public Mono<Contact> updateContact(String id, String firstName, String lastName, String phone, String address) {
+        return write(() -> contactService.updateContact(id, firstName, lastName, phone, address));
+    }
+
+    /**
+     * Delete a contact by its ID.
+     * @param id the ID of the contact to delete
+     * @return true if the contact was deleted, false if it was not found
+     */
+    public Mono<Boolean> deleteContact(String id) {
+        return write(() -> contactService.deleteContact(id));
+    }
+
+    private <T> Mono<T> read(Callable<T> call) {
+        Mono<T> result = Mono.fromCallable(call);
+        return readsBlock ? result.subscribeOn(Schedulers.boundedElastic()) : result;
+    }
+
+    private static <T> Mono<T> write(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,60 @@
+package com.seanclen.capstone.service;
+
+import com.seanclen.capstone.form.DashboardStatistics;
+import com.seanclen.capstone.repository.AppointmentCounts;
+import com.seanclen.capstone.repository.AppointmentRepository;
+import com.seanclen.capstone.repository.ContactRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Service class for the dashboard figures.
+ * The figures are read from counts that the repositories keep up to date on every change or compute
+ * from an index (see AppointmentCounts), so building them never copies either repository.
+ * @author Sean Clendening
+ */
+@Service
+public class StatisticsService {
+    // The number of days, starting today, with a per-day appointment count.
+    public final static int DAYS_AHEAD = 30;
+
+    private final ContactRepository contactRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final Clock clock;
+
+    @Autowired
+    public StatisticsService(ContactRepository contactRepository, AppointmentRepository appointmentRepository) {
+        this(contactRepository, appointmentRepository, Clock.systemDefaultZone());
+    }
+
+    StatisticsService(ContactRepository contactRepository, AppointmentRepository appointmentRepository, Clock clock) {
+        this.contactRepository = contactRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.clock = clock;
+    }
+
+    /**
+     * Get the current dashboard figures. After a restart, waits until the appointments snapshot is
+     * fully loaded, since the per-day counts need every appointment (see
+     * InMemoryAppointmentRepository.calendar).
+     * @return the contact and appointment totals, the appointments in the next 24 hours and the
+     *         appointments on each of the next DAYS_AHEAD days
+     */
+    public DashboardStatistics getStatistics() {
+        LocalDateTime now = LocalDateTime.now(clock);
+        AppointmentCounts calendar = appointmentRepository.calendar();
+
+        long[] counts = calendar.countPerDay(now.toLocalDate(), DAYS_AHEAD);
+        List<DashboardStatistics.DayCount> perDay = new ArrayList<>(DAYS_AHEAD);
+        for (int i = 0; i < DAYS_AHEAD; i++) {
+            perDay.add(new DashboardStatistics.DayCount(now.toLocalDate().plusDays(i), counts[i]));
+        }
+        return new DashboardStatistics(contactRepository.count(), calendar.total(),
+                calendar.countNext24Hours(now), perDay);
+    }
+}
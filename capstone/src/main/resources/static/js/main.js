@@ -2,17 +2,120 @@ document.addEventListener('DOMContentLoaded', function() {
 
     // Show messages if they exist and hide them after a delay
     const messages = document.querySelectorAll('.message');
-    messages.forEach(function(message) {
-        if (message.textContent.trim().length > 0) {
-            message.classList.add('show');
-            
+    messages.forEach(showMessage);
+
+    // Keep listed contacts and appointments up to date with the change feed
+    document.querySelectorAll('tbody[data-changes]').forEach(followChanges);
+});
+
+function showMessage(message) {
+    if (message.textContent.trim().length > 0) {
+        message.classList.add('show');
+
+        setTimeout(function() {
+            message.classList.remove('show');
+
             setTimeout(function() {
-                message.classList.remove('show');
+                message.style.display = 'none';
+            }, 500);
+        }, 4000);
+    }
+}
+
+// Apply every saved and deleted entity of the table's collection to its rows. The EventSource
+// reconnects on its own and resumes after the last change it received; after a reset the feed has
+// lost changes, so the page is loaded again.
+function followChanges(table) {
+    const fields = table.dataset.fields.split(' ');
+    const source = new EventSource(table.dataset.changes);
+
+    source.addEventListener('saved', function(event) {
+        const change = JSON.parse(event.data);
+        const row = findRow(table, change.id) || insertRow(table, change.id, fields.length);
+        fields.forEach(function(field, i) {
+            row.cells[i + 1].textContent = formatValue(change.entity[field]);
+        });
+    });
 
-                setTimeout(function() {
-                    message.style.display = 'none'; 
-                }, 500); 
-            }, 4000); 
+    source.addEventListener('deleted', function(event) {
+        const row = findRow(table, JSON.parse(event.data).id);
+        if (row) {
+            row.remove();
         }
     });
-});
\ No newline at end of file
+
+    // Reminders arrive on the appointments feed when an appointment is about to start.
+    source.addEventListener('reminder', function(event) {
+        const appointment = JSON.parse(event.data).entity;
+        const message = document.createElement('p');
+        message.className = 'message message-success';
+        message.textContent = 'Reminder: ' + appointment.description + ' at ' + formatValue(appointment.date);
+        document.getElementById('message-container').append(message);
+        showMessage(message);
+    });
+
+    source.addEventListener('reset', function() {
+        source.close();
+        window.location.reload();
+    });
+}
+
+function findRow(table, id) {
+    return Array.from(table.rows).find(function(row) {
+        return row.dataset.id === id;
+    });
+}
+
+// Rows are ordered by ID as the server orders them: shorter IDs first, then alphabetically.
+function compareIds(a, b) {
+    return a.length - b.length || (a < b ? -1 : a > b ? 1 : 0);
+}
+
+function insertRow(table, id, fieldCount) {
+    const row = document.createElement('tr');
+    row.dataset.id = id;
+    row.insertCell().textContent = id;
+    for (let i = 0; i < fieldCount; i++) {
+        row.insertCell();
+    }
+
+    const url = table.dataset.base + '/' + encodeURIComponent(id);
+    const actions = row.insertCell();
+    actions.className = 'actions';
+
+    const edit = document.createElement('a');
+    edit.href = url;
+    edit.type = 'button';
+    edit.textContent = 'Edit';
+
+    const form = document.createElement('form');
+    form.action = url;
+    form.method = 'post';
+    form.style.display = 'inline';
+    const method = document.createElement('input');
+    method.type = 'hidden';
+    method.name = '_method';
+    method.value = 'delete';
+    const remove = document.createElement('button');
+    remove.type = 'submit';
+    remove.textContent = 'Delete';
+    remove.addEventListener('click', function(event) {
+        if (!confirm(table.dataset.confirm)) {
+            event.preventDefault();
+        }
+    });
+    form.append(method, remove);
+    actions.append(edit, ' ', form);
+
+    const next = Array.from(table.rows).find(function(other) {
+        return compareIds(other.dataset.id, id) > 0;
+    });
+    table.insertBefore(row, next || null);
+    return row;
+}
+
+// Dates arrive as yyyy-MM-ddTHH:mm:ss; the server renders them without seconds when those are zero.
+function formatValue(value) {
+    const text = value == null ? '' : String(value);
+    return /^\d{4}-\d\d-\d\dT\d\d:\d\d:00$/.test(text) ? text.slice(0, -3) : text;
+}
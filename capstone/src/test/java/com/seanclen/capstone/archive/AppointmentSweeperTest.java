@@ -0,0 +1,233 @@
+package com.seanclen.capstone.archive;
+
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.persistence.WriteAheadLog;
+import com.seanclen.capstone.repository.InMemoryAppointmentRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the sweeper moves appointments past the cutoff into the archive and nothing else, that
+ * the archive survives a restart and drops appointments after the retention period, and that an
+ * appointment saved after its version was read is not deleted. Also reports the heap an appointment
+ * takes in the repository and in the archive, and how long reads wait while a sweep runs.
+ */
+class AppointmentSweeperTest {
+    private static final Duration AFTER = Duration.ofDays(1);
+    private static final Duration RETENTION = Duration.ofDays(30);
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2030-06-01T12:00:00Z"));
+    private final InMemoryAppointmentRepository repository = new InMemoryAppointmentRepository();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void movesAppointmentsPastTheCutoffIntoTheArchive() {
+        AppointmentArchive archive = new AppointmentArchive();
+        AppointmentSweeper sweeper = new AppointmentSweeper(repository, archive, AFTER, Duration.ZERO, null, false, clock);
+        LocalDateTime now = LocalDateTime.now(clock);
+
+        // Three sweeps of appointments one to five days old, each a different number of batches.
+        List<Appointment> archived = new ArrayList<>();
+        for (int sweep = 0; sweep < 3; sweep++) {
+            for (int n = 0; n < AppointmentSweeper.BATCH_SIZE * sweep + 100; n++) {
+                archived.add(save(now.minusDays(2).minusMinutes(n % 4000).minusSeconds(sweep)));
+            }
+            assertEquals(AppointmentSweeper.BATCH_SIZE * sweep + 100, sweeper.sweep());
+        }
+        Appointment recent = save(now.minusHours(2));
+        Appointment future = save(now.plusHours(2));
+        assertEquals(0, sweeper.sweep());
+
+        assertEquals(2, repository.count());
+        assertEquals(archived.size(), archive.count());
+        // Each segment is larger than the next, so batches of at least 100 make a handful of segments.
+        assertTrue(archive.segmentCount() <= 5, archive.segmentCount() + " segments");
+        assertNull(archive.findById(recent.getId()));
+        assertNull(archive.findById(future.getId()));
+        for (Appointment appointment : archived) {
+            assertNull(repository.findById(appointment.getId()));
+            Appointment found = archive.findById(appointment.getId());
+            assertEquals(appointment.getDate(), found.getDate());
+            assertEquals(appointment.getDescription(), found.getDescription());
+        }
+
+        // A date window is merged across segments in (date, ID) order, as in the repository.
+        archived.sort(ArchiveSegment.ORDER);
+        LocalDateTime from = archived.get(500).getDate();
+        LocalDateTime to = archived.get(2000).getDate();
+        List<Appointment> window = archive.findByDateBetween(from, to, 5000);
+        List<Appointment> expected = archived.stream()
+                .filter(appointment -> !appointment.getDate().isBefore(from) && appointment.getDate().isBefore(to))
+                .toList();
+        assertEquals(expected.stream().map(Appointment::getId).toList(), window.stream().map(Appointment::getId).toList());
+        assertEquals(10, archive.findByDateBetween(null, null, 10).size());
+    }
+
+    @Test
+    void keepsAnAppointmentSavedAfterItsVersionWasRead() {
+        LocalDateTime now = LocalDateTime.now(clock);
+        Appointment kept = save(now.minusDays(3));
+        Appointment deleted = save(now.minusDays(3));
+        long keptVersion = repository.versionOf(kept.getId());
+        long deletedVersion = repository.versionOf(deleted.getId());
+        repository.save(Appointment.restore(kept.getId(), now.plusDays(1), "Moved"));
+
+        List<String> result = repository.deleteAllIfVersion(Map.of(kept.getId(), keptVersion, deleted.getId(), deletedVersion));
+        assertEquals(List.of(deleted.getId()), result);
+        assertEquals("Moved", repository.findById(kept.getId()).getDescription());
+    }
+
+    @Test
+    void archiveSurvivesARestartAndExpiresAfterTheRetentionPeriod() throws IOException {
+        LocalDateTime now = LocalDateTime.now(clock);
+        AppointmentArchive archive = new AppointmentArchive();
+        AppointmentSweeper sweeper = new AppointmentSweeper(repository, archive, AFTER, RETENTION, directory, false, clock);
+        sweeper.recover();
+        List<Appointment> old = new ArrayList<>();
+        for (int n = 0; n < 2000; n++) {
+            old.add(save(now.minusDays(5).minusSeconds(n)));
+        }
+        assertEquals(old.size(), sweeper.sweep());
+        sweeper.close();
+
+        // Appointments archived after the restart land in a new log segment.
+        AppointmentArchive recovered = new AppointmentArchive();
+        sweeper = new AppointmentSweeper(repository, recovered, AFTER, RETENTION, directory, false, clock);
+        sweeper.recover();
+        assertEquals(old.size(), recovered.count());
+        assertEquals(old.get(1234).getDescription(), recovered.findById(old.get(1234).getId()).getDescription());
+        clock.advance(Duration.ofDays(20));
+        Appointment later = save(now.plusDays(15));
+        assertEquals(1, sweeper.sweep());
+        int segments = WriteAheadLog.listSegments(directory).size();
+
+        // Thirty days after the first appointments: they expire, and so does the segment holding them.
+        clock.advance(Duration.ofDays(20));
+        assertEquals(0, sweeper.sweep());
+        assertEquals(1, recovered.count());
+        assertNull(recovered.findById(old.get(0).getId()));
+        assertNotNull(recovered.findById(later.getId()));
+        assertEquals(List.of(later.getId()), recovered.findByDateBetween(null, null, 10).stream().map(Appointment::getId).toList());
+        assertTrue(WriteAheadLog.listSegments(directory).size() < segments);
+        sweeper.close();
+
+        AppointmentArchive restarted = new AppointmentArchive();
+        sweeper = new AppointmentSweeper(repository, restarted, AFTER, RETENTION, directory, false, clock);
+        sweeper.recover();
+        assertEquals(1, restarted.count());
+        sweeper.close();
+    }
+
+    @Test
+    @Tag("benchmark")
+    void reportsHeapAndReadLatencyWhileSweepingPastAppointments(TestReporter reporter) throws InterruptedException {
+        int past = Integer.getInteger("capstone.benchmark.archive", 500_000);
+        int upcoming = 10_000;
+        LocalDateTime now = LocalDateTime.now(clock);
+        Random random = new Random(11);
+        for (int n = 0; n < past; n++) {
+            save(now.minusDays(2).minusSeconds(random.nextInt(365 * 86_400)));
+        }
+        List<String> live = new ArrayList<>(upcoming);
+        for (int n = 0; n < upcoming; n++) {
+            live.add(save(now.plusDays(1).plusSeconds(random.nextInt(30 * 86_400))).getId());
+        }
+        long hotBytes = repository.estimatedBytes();
+
+        // A reader looks up upcoming appointments throughout the sweep.
+        AtomicBoolean sweeping = new AtomicBoolean(true);
+        // The latest reads, and the longest of them all.
+        long[] latencies = new long[1 << 20];
+        long[] reads = {0, 0};
+        Thread reader = new Thread(() -> {
+            Random pick = new Random(3);
+            while (sweeping.get()) {
+                long start = System.nanoTime();
+                assertNotNull(repository.findById(live.get(pick.nextInt(upcoming))));
+                long latency = System.nanoTime() - start;
+                latencies[(int) reads[0]++ & (latencies.length - 1)] = latency;
+                reads[1] = Math.max(reads[1], latency);
+            }
+        });
+
+        AppointmentArchive archive = new AppointmentArchive();
+        AppointmentSweeper sweeper = new AppointmentSweeper(repository, archive, AFTER, Duration.ZERO, null, false, clock);
+        reader.start();
+        long start = System.nanoTime();
+        int archived = sweeper.sweep();
+        long elapsed = System.nanoTime() - start;
+        sweeping.set(false);
+        reader.join();
+
+        long[] sorted = Arrays.copyOf(latencies, (int) Math.min(reads[0], latencies.length));
+        Arrays.sort(sorted);
+        reporter.publishEntry("pastAppointments", String.valueOf(past));
+        reporter.publishEntry("bytesPerAppointment.repository", String.valueOf(hotBytes / (past + upcoming)));
+        reporter.publishEntry("bytesPerAppointment.archive", String.valueOf(archive.estimatedBytes() / past));
+        reporter.publishEntry("repositoryBytes.before", String.valueOf(hotBytes));
+        reporter.publishEntry("repositoryBytes.after", String.valueOf(repository.estimatedBytes()));
+        reporter.publishEntry("sweepMillis", String.valueOf(elapsed / 1_000_000));
+        reporter.publishEntry("readsDuringSweep", String.valueOf(reads[0]));
+        // Latencies include GC pauses and time off the CPU.
+        reporter.publishEntry("readNanos.p99", String.valueOf(sorted[sorted.length * 99 / 100]));
+        reporter.publishEntry("readMicros.max", String.valueOf(reads[1] / 1000));
+        assertEquals(past, archived);
+        assertEquals(past, archive.count());
+        assertEquals(upcoming, repository.count());
+        assertTrue(archive.estimatedBytes() * 4 < hotBytes, "archive takes " + archive.estimatedBytes() + " bytes");
+    }
+
+    private Appointment save(LocalDateTime date) {
+        return repository.save(Appointment.restore(repository.getNextId(), date, "Checkup " + date.getDayOfYear()));
+    }
+
+    private static final class MutableClock extends Clock {
+        private volatile Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("UTC");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.seanclen.capstone.changes;
+
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.repository.InMemoryAppointmentRepository;
+import com.seanclen.capstone.repository.InMemoryContactRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the change feed delivers every save and delete in order, resumes after a sequence while
+ * the history still holds it, and resets subscribers that fall behind instead of buffering for them.
+ * Also reports what publishing adds to a save.
+ */
+class ChangeFeedTest {
+    private final InMemoryContactRepository contacts = new InMemoryContactRepository();
+    private final InMemoryAppointmentRepository appointments = new InMemoryAppointmentRepository();
+
+    @Test
+    void deliversChangesInOrderAndFiltersByCollection() throws InterruptedException {
+        ChangeFeed feed = new ChangeFeed(contacts, appointments, 1024, 64);
+        try {
+            Recorder all = Recorder.follow(feed, null, null);
+            Recorder onlyContacts = Recorder.follow(feed, Change.CONTACTS, null);
+
+            Contact contact = contacts.save(newContact("Jane"));
+            Appointment appointment = appointments.save(new Appointment(appointments.getNextId(), LocalDateTime.now().plusDays(1), "Checkup"));
+            contacts.deleteById(contact.getId());
+            // Restored entities are recovered state, not changes.
+            contacts.restore(new Contact("99", "Old", "Doe", "5551234567", "1 Main St"));
+
+            Change saved = all.next();
+            assertEquals(Change.SAVED, saved.type());
+            assertEquals(Change.CONTACTS, saved.collection());
+            assertEquals(contact, saved.entity());
+            Change other = all.next();
+            assertEquals(Change.APPOINTMENTS, other.collection());
+            assertEquals(appointment.getId(), other.id());
+            Change deleted = all.next();
+            assertEquals(Change.DELETED, deleted.type());
+            assertEquals(contact.getId(), deleted.id());
+            assertNull(deleted.entity());
+            assertEquals(saved.sequence() + 2, deleted.sequence());
+            assertEquals(deleted.sequence(), feed.lastSequence());
+
+            assertEquals(saved.sequence(), onlyContacts.next().sequence());
+            assertEquals(deleted.sequence(), onlyContacts.next().sequence());
+            assertNull(all.changes.poll(100, TimeUnit.MILLISECONDS));
+            assertThrows(IllegalArgumentException.class, () -> feed.changes("calendars", null));
+        } finally {
+            feed.close();
+        }
+    }
+
+    @Test
+    void resumesAfterASequenceWhileTheHistoryHoldsIt() throws InterruptedException {
+        ChangeFeed feed = new ChangeFeed(contacts, appointments, 16, 64);
+        try {
+            long start = feed.lastSequence();
+            contacts.save(newContact("Jane"));
+            long seen = feed.lastSequence();
+            for (int n = 0; n < 3; n++) {
+                contacts.save(newContact("John"));
+            }
+
+            Recorder resumed = Recorder.follow(feed, null, seen);
+            for (int n = 1; n <= 3; n++) {
+                assertEquals(seen + n, resumed.next().sequence());
+            }
+            contacts.save(newContact("Jim"));
+            assertEquals(seen + 4, resumed.next().sequence());
+
+            // Twenty more changes push the first ones out of a history of sixteen.
+            for (int n = 0; n < 20; n++) {
+                contacts.save(newContact("Joe"));
+            }
+            assertEquals(feed.lastSequence(), assertReset(Recorder.follow(feed, null, seen)).sequence());
+            // Sequences from before the feed started, or that it never published, are reset too.
+            assertReset(Recorder.follow(feed, null, start - 1));
+            assertReset(Recorder.follow(feed, null, feed.lastSequence() + 1));
+        } finally {
+            feed.close();
+        }
+    }
+
+    @Test
+    void resetsASubscriberThatFallsBehindWithoutHoldingUpOthers() throws InterruptedException {
+        ChangeFeed feed = new ChangeFeed(contacts, appointments, 1024, 16);
+        try {
+            Recorder fast = Recorder.follow(feed, null, null);
+            Recorder stalled = new Recorder(1);
+            feed.changes(null, null).subscribe(stalled);
+
+            for (int n = 0; n < 100; n++) {
+                contacts.save(newContact("Jane"));
+            }
+            for (int n = 0; n < 100; n++) {
+                assertEquals(Change.SAVED, fast.next().type());
+            }
+
+            assertEquals(Change.SAVED, stalled.next().type());
+            assertNull(stalled.changes.poll(100, TimeUnit.MILLISECONDS));
+            // Once it asks for more, the stalled subscriber gets a reset rather than the 99 changes it missed.
+            stalled.subscription.request(Long.MAX_VALUE);
+            assertReset(stalled);
+        } finally {
+            feed.close();
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void reportsWhatPublishingAddsToASave(TestReporter reporter) throws InterruptedException {
+        int ids = 1_000;
+        int saves = 200_000;
+        List<Contact> batch = new ArrayList<>(ids);
+        for (int n = 0; n < ids; n++) {
+            batch.add(contacts.save(newContact("Jane")));
+        }
+
+        long without = medianNanosPerSave(batch, saves);
+        ChangeFeed feed = new ChangeFeed(contacts, appointments, 16384, 1024);
+        try {
+            long idle = medianNanosPerSave(batch, saves);
+            Recorder subscriber = Recorder.follow(feed, null, null);
+            subscriber.discard = true;
+            long followed = medianNanosPerSave(batch, saves);
+            reporter.publishEntry("nanosPerSave.withoutFeed", String.valueOf(without));
+            reporter.publishEntry("nanosPerSave.noSubscriber", String.valueOf(idle));
+            reporter.publishEntry("nanosPerSave.oneSubscriber", String.valueOf(followed));
+            reporter.publishEntry("changesReceived", String.valueOf(subscriber.received));
+        } finally {
+            feed.close();
+        }
+    }
+
+    private long medianNanosPerSave(List<Contact> batch, int saves) {
+        long[] runs = new long[5];
+        for (int run = 0; run < runs.length; run++) {
+            long start = System.nanoTime();
+            for (int n = 0; n < saves; n++) {
+                contacts.save(batch.get(n % batch.size()));
+            }
+            runs[run] = (System.nanoTime() - start) / saves;
+        }
+        Arrays.sort(runs);
+        return runs[runs.length / 2];
+    }
+
+    private Contact newContact(String firstName) {
+        return new Contact(contacts.getNextId(), firstName, "Doe", "5551234567", "1 Main St");
+    }
+
+    private static Change assertReset(Recorder recorder) throws InterruptedException {
+        Change reset = recorder.next();
+        assertEquals(Change.RESET, reset.type());
+        assertTrue(recorder.completed.await(5, TimeUnit.SECONDS));
+        return reset;
+    }
+
+    private static final class Recorder implements Subscriber<Change> {
+        private final BlockingQueue<Change> changes = new LinkedBlockingQueue<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final long initialRequest;
+        private volatile Subscription subscription;
+        private volatile boolean discard;
+        private volatile long received;
+
+        private Recorder(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        static Recorder follow(ChangeFeed feed, String collection, Long after) {
+            Recorder recorder = new Recorder(Long.MAX_VALUE);
+            feed.changes(collection, after).subscribe(recorder);
+            return recorder;
+        }
+
+        Change next() throws InterruptedException {
+            Change change = changes.poll(5, TimeUnit.SECONDS);
+            assertNotNull(change, "no change arrived");
+            return change;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(Change change) {
+            received++;
+            if (!discard) {
+                changes.add(change);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            throw new AssertionError(error);
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+}
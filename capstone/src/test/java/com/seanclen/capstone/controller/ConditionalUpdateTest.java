@@ -0,0 +1,73 @@
+package com.seanclen.capstone.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests updates with If-Match over real HTTP: they only apply to the version the client has seen, and
+ * fail their precondition for an entity that does not exist.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "capstone.persistence.enabled=false")
+class ConditionalUpdateTest {
+    private static final String CONTACT = "?firstName=Jane&lastName=Doe&phone=5551234567&address=1%20Main%20St";
+    // Outside the date window ReactiveApiTest lists, as the two share an application context.
+    private static final String APPOINTMENT = "?date=2098-06-01T09:00:00&description=Checkup";
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void updatesContactsOnlyAtTheVersionSeen() throws Exception {
+        assertUpdatesOnlyAtTheVersionSeen("/api/contacts", CONTACT);
+    }
+
+    @Test
+    void updatesAppointmentsOnlyAtTheVersionSeen() throws Exception {
+        assertUpdatesOnlyAtTheVersionSeen("/api/appointments", APPOINTMENT);
+    }
+
+    @Test
+    void failsThePreconditionForMissingEntities() throws Exception {
+        for (String path : new String[] {"/api/contacts/missing" + CONTACT, "/api/appointments/missing" + APPOINTMENT}) {
+            assertEquals(412, send("PUT", path, "*").statusCode());
+            assertEquals(412, send("PUT", path, "\"1\"").statusCode());
+            // Without If-Match, a missing entity is still a bad request.
+            assertEquals(400, send("PUT", path, null).statusCode());
+        }
+    }
+
+    private void assertUpdatesOnlyAtTheVersionSeen(String collection, String attributes) throws Exception {
+        HttpResponse<String> created = send("POST", collection + attributes, null);
+        assertEquals(201, created.statusCode());
+        String id = objectMapper.readTree(created.body()).get("id").asText();
+        String tag = send("GET", collection + "/" + id, null).headers().firstValue("ETag").orElseThrow();
+
+        HttpResponse<String> updated = send("PUT", collection + "/" + id + attributes, tag);
+        assertEquals(200, updated.statusCode());
+        assertEquals(412, send("PUT", collection + "/" + id + attributes, tag).statusCode());
+        assertEquals(200, send("PUT", collection + "/" + id + attributes,
+                updated.headers().firstValue("ETag").orElseThrow()).statusCode());
+    }
+
+    private HttpResponse<String> send(String method, String path, String ifMatch) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .method(method, HttpRequest.BodyPublishers.noBody());
+        if (ifMatch != null) {
+            request.header("If-Match", ifMatch);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
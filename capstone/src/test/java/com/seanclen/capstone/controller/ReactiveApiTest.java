@@ -0,0 +1,90 @@
+package com.seanclen.capstone.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the /api/v2 endpoints over real HTTP, side by side with the /api endpoints they mirror.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "capstone.persistence.enabled=false")
+class ReactiveApiTest {
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void answersLikeTheBlockingApi() throws Exception {
+        HttpResponse<String> created = send("POST", "/api/v2/contacts?firstName=Jane&lastName=Doe&phone=5551234567&address=1%20Main%20St");
+        assertEquals(201, created.statusCode());
+        String id = objectMapper.readTree(created.body()).get("id").asText();
+
+        // Both APIs read the same contacts.
+        assertEquals(200, send("GET", "/api/contacts/" + id).statusCode());
+        assertEquals("Jane", objectMapper.readTree(send("GET", "/api/v2/contacts/" + id).body()).get("firstName").asText());
+        assertEquals(404, send("GET", "/api/v2/contacts/missing").statusCode());
+        assertEquals(400, send("POST", "/api/v2/contacts?firstName=Jane&lastName=Doe&phone=555&address=1%20Main%20St").statusCode());
+        assertEquals(400, send("GET", "/api/v2/contacts/search?prefix=%20").statusCode());
+        assertEquals(200, send("PUT", "/api/v2/contacts/" + id + "?firstName=Janet&lastName=Doe&phone=5551234567&address=1%20Main%20St").statusCode());
+        assertEquals(204, send("DELETE", "/api/v2/contacts/" + id).statusCode());
+        assertEquals(404, send("DELETE", "/api/v2/contacts/" + id).statusCode());
+    }
+
+    @Test
+    void streamsEveryContactAsNewlineDelimitedJson() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            assertEquals(201, send("POST", "/api/contacts?firstName=Jane&lastName=Doe&phone=5551234567&address=1%20Main%20St").statusCode());
+        }
+
+        HttpResponse<String> response = send("GET", "/api/v2/contacts");
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith(NdjsonExport.MEDIA_TYPE));
+        List<String> lines = response.body().lines().filter(line -> !line.isBlank()).toList();
+        int total = objectMapper.readTree(send("GET", "/api/contacts").body()).size();
+        assertEquals(total, lines.size());
+        for (String line : lines) {
+            JsonNode contact = objectMapper.readTree(line);
+            assertTrue(contact.hasNonNull("id"));
+        }
+
+        HttpRequest events = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v2/contacts"))
+                .header("Accept", "text/event-stream")
+                .build();
+        HttpResponse<String> eventResponse = client.send(events, HttpResponse.BodyHandlers.ofString());
+        assertTrue(eventResponse.headers().firstValue("Content-Type").orElse("").startsWith("text/event-stream"));
+        assertEquals(total, eventResponse.body().lines().filter(line -> line.startsWith("data:")).count());
+    }
+
+    @Test
+    void listsAppointmentsInADateWindow() throws Exception {
+        assertEquals(201, send("POST", "/api/v2/appointments?date=2099-01-01T09:00:00&description=Checkup").statusCode());
+
+        HttpResponse<String> window = send("GET", "/api/v2/appointments?from=2099-01-01T00:00:00&to=2099-01-02T00:00:00");
+        assertEquals(200, window.statusCode());
+        assertEquals(1, objectMapper.readTree(window.body()).size());
+        assertEquals(400, send("GET", "/api/v2/appointments?from=2099-01-02T00:00:00&to=2099-01-01T00:00:00").statusCode());
+        assertEquals(200, send("GET", "/api/v2/stats").statusCode());
+    }
+
+    private HttpResponse<String> send(String method, String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
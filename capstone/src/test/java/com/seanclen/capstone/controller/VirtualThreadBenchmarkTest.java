@@ -0,0 +1,124 @@
+package com.seanclen.capstone.controller;
+
+import com.seanclen.capstone.CapstoneApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares Tomcat's platform thread pool with virtual threads (spring.threads.virtual.enabled) at
+ * 10,000 concurrent connections, over real HTTP against the embedded server.
+ * Every connection creates a contact with the write-ahead log on and fsync enabled, so each request
+ * blocks until its change is on disk: the slow call that caps a 200-thread pool. Reports throughput,
+ * peak heap and peak platform threads for both modes.
+ * Tagged as a benchmark, so it only runs with ./gradlew benchmarkTest -PjavaVersion=21: it needs Java 21
+ * or later, and a file descriptor limit above 20,000 (ulimit -n), since both ends of every connection
+ * are in this JVM.
+ */
+@Tag("benchmark")
+@EnabledForJreRange(min = JRE.JAVA_21)
+class VirtualThreadBenchmarkTest {
+    private static final int CONNECTIONS = 10_000;
+    private static final int ROUNDS = 3;
+
+    @Test
+    void virtualThreadsServeTenThousandConnectionsWithFewerPlatformThreads(TestReporter reporter) throws Exception {
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        reporter.publishEntry("platformThreads", platform.toString());
+        reporter.publishEntry("virtualThreads", virtual.toString());
+        assertTrue(virtual.peakThreads < platform.peakThreads,
+                "virtual threads should need fewer platform threads than Tomcat's pool");
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        Path data = Files.createTempDirectory("virtual-threads");
+        try (ConfigurableApplicationContext application = new SpringApplicationBuilder(CapstoneApplication.class)
+                .properties("server.port=0",
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "server.tomcat.max-connections=" + 2 * CONNECTIONS,
+                        "server.tomcat.accept-count=" + CONNECTIONS,
+                        "capstone.persistence.enabled=true",
+                        "capstone.persistence.fsync=true",
+                        "capstone.persistence.directory=" + data)
+                .run()) {
+            int port = ((WebServerApplicationContext) application).getWebServer().getPort();
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            // Warm up, so the comparison is not dominated by JIT compilation.
+            round(client, port, CONNECTIONS / 10);
+
+            System.gc();
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            threads.resetPeakThreadCount();
+            List<MemoryPoolMXBean> heap = ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(pool -> pool.getType() == MemoryType.HEAP)
+                    .toList();
+            heap.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                round(client, port, CONNECTIONS);
+            }
+            long elapsed = System.nanoTime() - start;
+
+            long peakHeap = heap.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+            return new Result(ROUNDS * CONNECTIONS * 1e9 / elapsed, peakHeap, threads.getPeakThreadCount());
+        }
+    }
+
+    // Opens count connections at once, each creating one contact, and waits for all of them.
+    private static void round(HttpClient client, int port, int count) {
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port
+                            + "/api/contacts?firstName=Jane&lastName=Doe&phone=5551234567&address=1%20Main%20St"))
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build();
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            assertEquals(201, response.join().statusCode());
+        }
+    }
+
+    private static final class Result {
+        private final double requestsPerSecond;
+        private final long peakHeapBytes;
+        private final int peakThreads;
+
+        private Result(double requestsPerSecond, long peakHeapBytes, int peakThreads) {
+            this.requestsPerSecond = requestsPerSecond;
+            this.peakHeapBytes = peakHeapBytes;
+            this.peakThreads = peakThreads;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d concurrent connections: %,.0f requests/s, %,d MB peak heap, %,d peak threads",
+                    CONNECTIONS, requestsPerSecond, peakHeapBytes >> 20, peakThreads);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.seanclen.capstone.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the web forms show every attribute the validation rejected at once, next to its field.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "capstone.persistence.enabled=false")
+class WebFormValidationTest {
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void showsEveryInvalidContactFieldAtOnce() throws Exception {
+        HttpResponse<String> response = post("/contacts", "firstName=NameTooLong!&lastName=Doe&phone=555&address=1%20Main%20St");
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("Invalid first name"));
+        assertTrue(response.body().contains("Invalid phone number"));
+        assertFalse(response.body().contains("Invalid last name"));
+        assertTrue(response.body().contains("value=\"NameTooLong!\""));
+    }
+
+    @Test
+    void keepsEditingAContactWithInvalidFields() throws Exception {
+        HttpResponse<String> created = post("/api/contacts?firstName=Jane&lastName=Doe&phone=5551234567&address=1%20Main%20St", "");
+        String id = objectMapper.readTree(created.body()).get("id").asText();
+
+        HttpResponse<String> response = post("/contacts/" + id, "_method=put&firstName=Jane&lastName=&phone=5551234567&address=1%20Main%20St");
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("Edit Contact: " + id));
+        assertTrue(response.body().contains("Invalid last name"));
+    }
+
+    @Test
+    void showsEveryInvalidAppointmentFieldAtOnce() throws Exception {
+        HttpResponse<String> response = post("/appointments", "date=tomorrow&description=");
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("Invalid date"));
+        assertTrue(response.body().contains("Invalid description"));
+        assertTrue(response.body().contains("value=\"tomorrow\""));
+    }
+
+    private HttpResponse<String> post(String path, String form) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,70 @@
+package com.seanclen.capstone.metrics;
+
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.repository.InMemoryAppointmentRepository;
+import com.seanclen.capstone.repository.InMemoryContactRepository;
+import com.seanclen.capstone.service.ContactService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the repository and service timers, the repository gauges and the validation failure counters.
+ */
+class MetricsAspectTest {
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final MetricsAspect aspect = new MetricsAspect(registry);
+    private final InMemoryContactRepository contacts = proxy(new InMemoryContactRepository());
+    private final ContactService contactService = proxy(new ContactService(contacts));
+
+    @Test
+    void timesRepositoryOperationsAndServiceMethods() {
+        Contact contact = contactService.createContact("Jane", "Doe", "5551234567", "1 Main St");
+        contactService.getContactById(contact.getId());
+        contactService.getContactById(contact.getId());
+
+        assertEquals(1, registry.get(MetricsAspect.REPOSITORY_TIMER)
+                .tags("repository", "InMemoryContactRepository", "operation", "save").timer().count());
+        assertEquals(2, registry.get(MetricsAspect.SERVICE_TIMER)
+                .tags("service", "ContactService", "method", "getContactById").timer().count());
+        // Reads by ID are timed by the service that makes them, not again at the repository.
+        assertNull(registry.find(MetricsAspect.REPOSITORY_TIMER).tags("operation", "findById").timer());
+    }
+
+    @Test
+    void timesCallsThatThrow() {
+        assertThrows(IllegalArgumentException.class, () -> contactService.updateContact("404", "Jane", "Doe", "5551234567", "1 Main St"));
+
+        assertEquals(1, registry.get(MetricsAspect.SERVICE_TIMER)
+                .tags("service", "ContactService", "method", "updateContact").timer().count());
+    }
+
+    @Test
+    void publishesEntityCountsMemoryAndValidationFailures() {
+        new RepositoryMetrics(contacts, new InMemoryAppointmentRepository()).bindTo(registry);
+        double before = registry.get(RepositoryMetrics.VALIDATION_FAILURES).tags("entity", "Contact", "rule", "isValidPhone")
+                .functionCounter().count();
+
+        contactService.createContact("Jane", "Doe", "5551234567", "1 Main St");
+        assertThrows(IllegalArgumentException.class, () -> contactService.createContact("Jane", "Doe", "555", "1 Main St"));
+
+        assertEquals(1, registry.get(RepositoryMetrics.ENTITIES).tags("repository", "contacts").gauge().value());
+        assertTrue(registry.get(RepositoryMetrics.MEMORY).tags("repository", "contacts").gauge().value() > 0);
+        assertEquals(before + 1, registry.get(RepositoryMetrics.VALIDATION_FAILURES)
+                .tags("entity", "Contact", "rule", "isValidPhone").functionCounter().count());
+    }
+
+    private <T> T proxy(T target) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        // Subclass proxies, as Spring Boot creates them, so repositories keep their concrete type.
+        factory.setProxyTargetClass(true);
+        factory.addAspect(aspect);
+        return factory.getProxy();
+    }
+}
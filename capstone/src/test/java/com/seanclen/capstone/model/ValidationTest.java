@@ -0,0 +1,82 @@
+package com.seanclen.capstone.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the validation rules are checked in one pass, report every failure, keep the rules of
+ * the model, and allocate nothing for valid input.
+ */
+class ValidationTest {
+    @Test
+    void reportsEveryInvalidAttributeAtOnce() {
+        long phoneFailures = ValidationFailures.count("Contact.isValidPhone");
+        long firstNameFailures = ValidationFailures.count("Contact.isValidFirstName");
+
+        InvalidAttributesException e = assertThrows(InvalidAttributesException.class,
+                () -> new Contact("1", "NameTooLong!", "Doe", "555", "1 Main St"));
+
+        assertEquals(List.of("Invalid first name", "Invalid phone number"), e.getErrors());
+        assertEquals("Invalid first name, Invalid phone number", e.getMessage());
+        assertEquals(firstNameFailures + 1, ValidationFailures.count("Contact.isValidFirstName"));
+        assertEquals(phoneFailures + 1, ValidationFailures.count("Contact.isValidPhone"));
+
+        // Checking a value that is not a contact's, such as a search parameter, counts nothing.
+        assertFalse(Validation.isPhoneNumber("555"));
+        assertEquals(phoneFailures + 1, ValidationFailures.count("Contact.isValidPhone"));
+
+        e = assertThrows(InvalidAttributesException.class,
+                () -> new Appointment("", LocalDateTime.now().minusDays(1), ""));
+        assertEquals(List.of("Invalid ID", "Invalid date", "Invalid description"), e.getErrors());
+    }
+
+    @Test
+    void keepsTheRulesOfTheModel() {
+        assertTrue(Contact.isValidFirstName("  Jane  "));
+        assertTrue(Contact.isValidPhone(" 5551234567 "));
+        assertFalse(Contact.isValidFirstName("   "));
+        assertFalse(Contact.isValidAddress("1234 Main Street, Springfield, IL"));
+        assertFalse(Contact.isValidId(null));
+        assertFalse(Appointment.isValidId("12345678901"));
+        assertTrue(Appointment.isValidDescription(" "));
+        assertFalse(Appointment.isValidDate(LocalDateTime.now().minusSeconds(1)));
+        assertTrue(Appointment.isValidDate(LocalDateTime.now().plusSeconds(1)));
+        assertEquals(4, Validation.trimmedLength("\t Jane \n"));
+
+        Contact contact = new Contact("1", "Jane", "Doe", "5551234567", "1 Main St");
+        assertThrows(InvalidAttributesException.class, () -> contact.withId("12345678901"));
+        assertEquals("1", contact.getId());
+        assertEquals("2", contact.withId("2").getId());
+        assertEquals("5551234567", contact.withId("2").getPhone());
+    }
+
+    @Test
+    void allocatesNothingForValidInput() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        LocalDateTime date = LocalDateTime.now().plusYears(1);
+        int failures = 0;
+        long allocated = 0;
+        // The first rounds warm up the JIT; only the last one is measured.
+        for (int round = 0; round < 5; round++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < 100_000; i++) {
+                failures |= Validation.contact("1234567890", "Jennifer", "Rodriguez", "5551234567", "1234 Main Street");
+                failures |= Validation.appointment("1234567890", date, "Annual checkup");
+            }
+            allocated = threads.getThreadAllocatedBytes(thread) - before;
+        }
+
+        assertEquals(0, failures);
+        // The cached current time is refreshed once per millisecond; allow for those few objects.
+        assertTrue(allocated < 64 * 1024, allocated + " bytes allocated validating 200,000 entities");
+    }
+}
@@ -0,0 +1,275 @@
+package com.seanclen.capstone.persistence;
+
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.repository.InMemoryAppointmentRepository;
+import com.seanclen.capstone.repository.InMemoryContactRepository;
+import com.seanclen.capstone.repository.InMemoryRepository;
+import com.seanclen.capstone.service.ContactService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for recovery of the in-memory repositories from the write-ahead log and snapshots.
+ */
+class DurableRepositoryTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversSavesDeletesAndIdCounterFromLog() throws Exception {
+        InMemoryContactRepository repository = new InMemoryContactRepository();
+        DurableRepository<Contact> durable = open(repository);
+        durable.recover();
+        for (int i = 0; i < 10; i++) {
+            repository.save(newContact(repository.getNextId(), "Name" + i));
+        }
+        repository.save(newContact("3", "Renamed"));
+        repository.deleteById("5");
+        durable.close();
+
+        InMemoryContactRepository recovered = new InMemoryContactRepository();
+        DurableRepository<Contact> reopened = open(recovered);
+        DurableRepository.RecoveryReport report = reopened.recover();
+
+        assertEquals(9, recovered.count());
+        assertEquals(12, report.replayedRecords());
+        assertEquals("Renamed", recovered.findById("3").getFirstName());
+        assertNull(recovered.findById("5"));
+        assertEquals("11", recovered.getNextId());
+        reopened.close();
+    }
+
+    @Test
+    void snapshotReplacesLogAndRecoveryReplaysOnlyTheTail() throws Exception {
+        InMemoryContactRepository repository = new InMemoryContactRepository();
+        DurableRepository<Contact> durable = open(repository);
+        durable.recover();
+        for (int i = 0; i < 100; i++) {
+            repository.save(newContact(repository.getNextId(), "Name"));
+        }
+        repository.deleteById("100");
+        assertTrue(durable.snapshot());
+        repository.save(newContact("1", "After"));
+        durable.close();
+
+        assertEquals(1, SnapshotFile.list(directory).size());
+        assertEquals(1, WriteAheadLog.listSegments(directory).size());
+
+        InMemoryContactRepository recovered = new InMemoryContactRepository();
+        DurableRepository<Contact> reopened = open(recovered);
+        DurableRepository.RecoveryReport report = reopened.recover();
+
+        assertEquals(99, report.snapshotEntities());
+        assertEquals(1, report.replayedRecords());
+        assertEquals("After", recovered.findById("1").getFirstName());
+        // The deleted ID 100 must not be handed out again.
+        assertEquals("101", recovered.getNextId());
+        reopened.close();
+    }
+
+    @Test
+    void closedSnapshotRefusesReads() throws Exception {
+        InMemoryContactRepository repository = new InMemoryContactRepository();
+        DurableRepository<Contact> durable = open(repository);
+        durable.recover();
+        repository.save(newContact(repository.getNextId(), "Name"));
+        assertTrue(durable.snapshot());
+        durable.close();
+
+        SnapshotFile snapshot = SnapshotFile.open(SnapshotFile.latest(directory));
+        assertEquals(0, snapshot.indexOf("1"));
+        assertEquals(1, snapshot.indexAfter("1"));
+        snapshot.close();
+        assertThrows(ClosedChannelException.class, () -> snapshot.entity(0));
+        assertThrows(ClosedChannelException.class, () -> snapshot.indexOf("1"));
+    }
+
+    @Test
+    void recoversUpdatesMadeThroughContactService() throws Exception {
+        InMemoryContactRepository repository = new InMemoryContactRepository();
+        DurableRepository<Contact> durable = open(repository);
+        durable.recover();
+        ContactService service = new ContactService(repository);
+        Contact created = service.createContact("First", "Last", "5551234567", "123 Main St");
+        service.updateContact(created.getId(), "Updated", "Last", "5557654321", "456 Oak Ave");
+        durable.close();
+
+        InMemoryContactRepository recovered = new InMemoryContactRepository();
+        DurableRepository<Contact> reopened = open(recovered);
+        reopened.recover();
+
+        assertEquals("Updated", recovered.findById(created.getId()).getFirstName());
+        assertEquals("5557654321", recovered.findById(created.getId()).getPhone());
+        reopened.close();
+    }
+
+    @Test
+    void snapshotMergesLogChangesInIdOrder() throws Exception {
+        InMemoryContactRepository repository = new InMemoryContactRepository();
+        DurableRepository<Contact> durable = open(repository);
+        durable.recover();
+        for (int i = 0; i < 20; i++) {
+            repository.save(newContact(repository.getNextId(), "Name"));
+        }
+        assertTrue(durable.snapshot());
+        repository.save(newContact("7", "Updated"));
+        repository.deleteById("3");
+        repository.save(newContact("100", "Added"));
+        assertTrue(durable.snapshot());
+        durable.close();
+
+        SnapshotFile snapshot = SnapshotFile.open(SnapshotFile.latest(directory));
+        assertEquals(20, snapshot.size());
+        for (int i = 1; i < snapshot.size(); i++) {
+            assertTrue(InMemoryRepository.ID_ORDER.compare(snapshot.id(i - 1), snapshot.id(i)) < 0);
+        }
+        assertEquals(-1, snapshot.indexOf("3"));
+        assertEquals("100", snapshot.id(snapshot.indexOf("100")));
+        assertEquals(100, snapshot.lastUsedId());
+
+        InMemoryContactRepository recovered = new InMemoryContactRepository();
+        DurableRepository<Contact> reopened = open(recovered);
+        reopened.recover();
+        // Served from the mapping or the heap, depending on how far the loader has got.
+        assertEquals("Updated", recovered.findById("7").getFirstName());
+        assertNull(recovered.findById("3"));
+        assertEquals(20, recovered.count());
+        reopened.close();
+    }
+
+    @Test
+    void ignoresTornRecordAtEndOfLog() throws Exception {
+        InMemoryContactRepository repository = new InMemoryContactRepository();
+        DurableRepository<Contact> durable = open(repository);
+        durable.recover();
+        repository.save(newContact("1", "Kept"));
+        durable.close();
+
+        // Simulate a crash in the middle of writing a record.
+        Path segment = WriteAheadLog.segmentPath(directory, WriteAheadLog.listSegments(directory).get(0));
+        Files.write(segment, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        InMemoryContactRepository recovered = new InMemoryContactRepository();
+        DurableRepository<Contact> reopened = open(recovered);
+        reopened.recover();
+
+        assertEquals(1, recovered.count());
+        recovered.save(newContact("2", "Next"));
+        reopened.close();
+
+        InMemoryContactRepository again = new InMemoryContactRepository();
+        DurableRepository<Contact> third = new DurableRepository<>("contacts", again, new ContactCodec(), directory, false);
+        third.recover();
+        assertEquals(2, again.count());
+        third.close();
+    }
+
+    @Test
+    void recoversPastAppointmentsAndDateIndex() throws Exception {
+        InMemoryAppointmentRepository repository = new InMemoryAppointmentRepository();
+        DurableRepository<Appointment> durable =
+                new DurableRepository<>("appointments", repository, new AppointmentCodec(), directory, false);
+        durable.recover();
+        LocalDateTime date = LocalDateTime.now().plusNanos(50_000_000);
+        repository.save(new Appointment("1", date, "Soon"));
+        durable.close();
+        Thread.sleep(100);
+
+        InMemoryAppointmentRepository recovered = new InMemoryAppointmentRepository();
+        DurableRepository<Appointment> reopened =
+                new DurableRepository<>("appointments", recovered, new AppointmentCodec(), directory, false);
+        reopened.recover();
+
+        assertEquals(date, recovered.findById("1").getDate());
+        assertEquals(1, recovered.findByDateBetween(null, null, 10).size());
+        reopened.close();
+    }
+
+    @Test
+    void groupCommitKeepsEveryConcurrentWrite() throws Exception {
+        InMemoryContactRepository repository = new InMemoryContactRepository();
+        DurableRepository<Contact> durable =
+                new DurableRepository<>("contacts", repository, new ContactCodec(), directory, true);
+        durable.recover();
+
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 32; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 50; i++) {
+                    repository.save(newContact(repository.getNextId(), "Name"));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        durable.close();
+
+        InMemoryContactRepository recovered = new InMemoryContactRepository();
+        DurableRepository<Contact> reopened = open(recovered);
+        reopened.recover();
+        assertEquals(32 * 50, recovered.count());
+        reopened.close();
+    }
+
+    @Test
+    @Tag("benchmark")
+    void reportsRecoveryTimeForOneMillionContacts(TestReporter reporter) throws Exception {
+        int total = 1_000_000;
+        InMemoryContactRepository repository = new InMemoryContactRepository();
+        DurableRepository<Contact> durable = open(repository);
+        durable.recover();
+
+        List<Contact> batch = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            batch.add(newContact(repository.getNextId(), "Name"));
+            if (batch.size() == 10_000) {
+                repository.saveAll(batch);
+                batch = new ArrayList<>();
+            }
+            // Leave the last 10% in the log tail, as after a crash between snapshots.
+            if (i == total * 9 / 10) {
+                durable.snapshot();
+            }
+        }
+        repository.saveAll(batch);
+        durable.close();
+
+        InMemoryContactRepository recovered = new InMemoryContactRepository();
+        DurableRepository<Contact> reopened = open(recovered);
+        DurableRepository.RecoveryReport report = reopened.recover();
+        reporter.publishEntry("recovery", report.toString());
+
+        assertEquals(total, recovered.count());
+        reopened.close();
+    }
+
+    private DurableRepository<Contact> open(InMemoryContactRepository repository) {
+        return new DurableRepository<>("contacts", repository, new ContactCodec(), directory, false);
+    }
+
+    private static Contact newContact(String id, String firstName) {
+        return new Contact(id, firstName, "Last", "5551234567", "123 Main St");
+    }
+}
@@ -0,0 +1,92 @@
+package com.seanclen.capstone.persistence;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.repository.InMemoryContactRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Compares the time until a restarted repository can serve reads when it starts from a memory-mapped
+ * snapshot with the time it takes to reload the same contacts from a JSON file.
+ * The number of contacts defaults to one million and can be raised with -Dcapstone.benchmark.contacts=5000000.
+ * Tagged as a benchmark, so it only runs with ./gradlew benchmarkTest, which reports the times.
+ */
+@Tag("benchmark")
+class WarmStartBenchmarkTest {
+    private static final int CONTACTS = Integer.getInteger("capstone.benchmark.contacts", 1_000_000);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void mappedSnapshotIsReadyBeforeJsonReload(TestReporter reporter) throws Exception {
+        List<Contact> contacts = new ArrayList<>(CONTACTS);
+        InMemoryContactRepository repository = new InMemoryContactRepository();
+        DurableRepository<Contact> durable = open(repository);
+        durable.recover();
+        List<Contact> batch = new ArrayList<>();
+        for (int i = 0; i < CONTACTS; i++) {
+            Contact contact = new Contact(repository.getNextId(), "First" + (i % 1000), "Last" + (i % 997),
+                    String.format("555%07d", i % 10_000_000), i + " Main St");
+            contacts.add(contact);
+            batch.add(contact);
+            if (batch.size() == 10_000) {
+                repository.saveAll(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        repository.saveAll(batch);
+        durable.snapshot();
+        durable.close();
+
+        ObjectMapper mapper = new ObjectMapper();
+        Path json = directory.resolve("contacts.json");
+        mapper.writeValue(json.toFile(), contacts);
+        contacts = null;
+
+        // Warm start from the mapped snapshot: ready once recover returns.
+        InMemoryContactRepository mapped = new InMemoryContactRepository();
+        DurableRepository<Contact> reopened = open(mapped);
+        long start = System.nanoTime();
+        reopened.recover();
+        Contact last = mapped.findById(String.valueOf(CONTACTS));
+        long readyNanos = System.nanoTime() - start;
+        // The name index is only queried once the whole snapshot is in the heap.
+        assertFalse(mapped.findByNamePrefix("First", 1).isEmpty());
+        long loadedNanos = System.nanoTime() - start;
+        assertEquals(CONTACTS, mapped.count());
+        reopened.close();
+
+        // Reload from JSON: not ready until every contact is parsed and stored.
+        InMemoryContactRepository reloaded = new InMemoryContactRepository();
+        start = System.nanoTime();
+        List<Map<String, String>> rows = mapper.readValue(json.toFile(), new TypeReference<>() {
+        });
+        for (Map<String, String> row : rows) {
+            reloaded.save(new Contact(row.get("id"), row.get("firstName"), row.get("lastName"),
+                    row.get("phone"), row.get("address")));
+        }
+        long jsonNanos = System.nanoTime() - start;
+
+        reporter.publishEntry("warmStart", String.format("%,d contacts: mapped snapshot ready in %,d ms "
+                        + "(fully in heap after %,d ms), JSON reload %,d ms",
+                CONTACTS, readyNanos / 1_000_000, loadedNanos / 1_000_000, jsonNanos / 1_000_000));
+        assertEquals(last.getAddress(), reloaded.findById(last.getId()).getAddress());
+    }
+
+    private DurableRepository<Contact> open(InMemoryContactRepository repository) {
+        return new DurableRepository<>("contacts", repository, new ContactCodec(), directory, false);
+    }
+}
@@ -0,0 +1,199 @@
+package com.seanclen.capstone.reminders;
+
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.repository.InMemoryAppointmentRepository;
+import com.seanclen.capstone.service.AppointmentService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the timing wheel expires every timer on its tick, whatever its level, and that reminders
+ * follow appointments as they are created, rescheduled and deleted. Also reports the memory taken by a
+ * million pending reminders and how late reminders fire while they are pending.
+ */
+class ReminderSchedulerTest {
+    private static final Duration LEAD_TIME = Duration.ofHours(1);
+
+    @Test
+    void wheelExpiresEveryTimerOnItsTickAcrossAllLevels() {
+        long start = 1_000_003;
+        TimingWheel wheel = new TimingWheel(start);
+        Random random = new Random(42);
+        Map<TimingWheel.Timer, Long> expected = new HashMap<>();
+        List<TimingWheel.Timer> removed = new ArrayList<>();
+        for (int n = 0; n < 100_000; n++) {
+            // Deadlines up to 2^22 ticks ahead land on the first three levels; some have already passed.
+            long deadline = start + (n % 10 == 0 ? -random.nextInt(100) : random.nextInt(1 << (2 + n % 21)));
+            TimingWheel.Timer timer = new TimingWheel.Timer(deadline);
+            wheel.add(timer);
+            if (n % 7 == 0) {
+                removed.add(timer);
+            } else {
+                expected.put(timer, Math.max(deadline, start + 1));
+            }
+        }
+        removed.forEach(wheel::remove);
+        assertEquals(expected.size(), wheel.size());
+
+        wheel.advance(start + (1 << 22), timer -> assertEquals((long) expected.remove(timer), wheel.current()));
+        assertTrue(expected.isEmpty(), expected.size() + " timers did not expire");
+        assertEquals(0, wheel.size());
+        removed.forEach(timer -> assertTrue(!timer.isLinked()));
+    }
+
+    @Test
+    void remindersFollowAppointmentsAsTheyAreCreatedRescheduledAndDeleted() throws InterruptedException {
+        InMemoryAppointmentRepository repository = new InMemoryAppointmentRepository();
+        BlockingQueue<Appointment> reminded = new LinkedBlockingQueue<>();
+        ReminderScheduler reminders = new ReminderScheduler(repository,
+                event -> reminded.addAll(((ReminderEvent) event).appointments()), LEAD_TIME, Duration.ofMillis(10));
+        reminders.start();
+        try {
+            AppointmentService appointmentService = new AppointmentService(repository);
+            LocalDateTime remindNow = LocalDateTime.now().plus(LEAD_TIME);
+            Appointment kept = appointmentService.createAppointment(remindNow.plusNanos(300_000_000), "Checkup");
+            Appointment deleted = appointmentService.createAppointment(remindNow.plusNanos(200_000_000), "Dentist");
+            Appointment moved = appointmentService.createAppointment(remindNow.plusNanos(100_000_000), "Haircut");
+            Appointment later = appointmentService.createAppointment(remindNow.plusDays(1), "Annual review");
+            appointmentService.deleteAppointment(deleted.getId());
+            appointmentService.updateAppointment(moved.getId(), remindNow.plusNanos(400_000_000), "Haircut");
+            assertEquals(3, reminders.pending());
+
+            Appointment first = reminded.poll(5, TimeUnit.SECONDS);
+            Appointment second = reminded.poll(5, TimeUnit.SECONDS);
+            assertEquals(kept.getId(), first.getId());
+            assertEquals(moved.getId(), second.getId());
+            assertEquals(remindNow.plusNanos(400_000_000), second.getDate());
+            assertNull(reminded.poll(300, TimeUnit.MILLISECONDS));
+            assertEquals(1, reminders.pending());
+
+            appointmentService.deleteAppointment(later.getId());
+            assertEquals(0, reminders.pending());
+        } finally {
+            reminders.close();
+        }
+    }
+
+    @Test
+    void concurrentUpdatesLeaveTheReminderOfTheStoredDate() throws InterruptedException {
+        InMemoryAppointmentRepository repository = new InMemoryAppointmentRepository();
+        BlockingQueue<Appointment> reminded = new LinkedBlockingQueue<>();
+        ReminderScheduler reminders = new ReminderScheduler(repository,
+                event -> reminded.addAll(((ReminderEvent) event).appointments()), LEAD_TIME, Duration.ofMillis(10));
+        reminders.start();
+        try {
+            AppointmentService appointmentService = new AppointmentService(repository);
+            LocalDateTime remindNow = LocalDateTime.now().plus(LEAD_TIME);
+            String id = appointmentService.createAppointment(remindNow.plusSeconds(2), "Checkup").getId();
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                Thread updater = new Thread(() -> {
+                    for (int n = 0; n < 1_000; n++) {
+                        long offset = 1_500_000_000L + (n * 8L + thread) * 10_000;
+                        appointmentService.updateAppointment(id, remindNow.plusNanos(offset), "Checkup");
+                    }
+                });
+                updater.start();
+                threads.add(updater);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            LocalDateTime stored = appointmentService.getAppointmentById(id).getDate();
+
+            Appointment fired = reminded.poll(5, TimeUnit.SECONDS);
+            assertEquals(id, fired.getId());
+            assertEquals(stored, fired.getDate());
+            assertEquals(0, reminders.pending());
+        } finally {
+            reminders.close();
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void reportsMemoryAndLatenessWithAMillionRemindersPending(TestReporter reporter) throws InterruptedException {
+        int pending = Integer.getInteger("capstone.benchmark.reminders", 1_000_000);
+        int measured = 2_000;
+        InMemoryAppointmentRepository repository = new InMemoryAppointmentRepository();
+        Map<String, Long> firedAt = new ConcurrentHashMap<>();
+        ReminderScheduler reminders = new ReminderScheduler(repository, event -> {
+            long now = System.currentTimeMillis();
+            ((ReminderEvent) event).appointments().forEach(appointment -> firedAt.put(appointment.getId(), now));
+        }, LEAD_TIME, Duration.ofMillis(100));
+        reminders.start();
+        try {
+            // Appointments spread over the next thirty days; the IDs exist before the heap is measured.
+            Random random = new Random(7);
+            long now = System.currentTimeMillis();
+            String[] ids = new String[pending];
+            for (int n = 0; n < pending; n++) {
+                ids[n] = "p" + n;
+            }
+            long before = usedHeap();
+            for (int n = 0; n < pending; n++) {
+                reminders.schedule(ids[n], now + LEAD_TIME.toMillis() + 60_000 + (long) (random.nextDouble() * 30 * 86_400_000L));
+            }
+            while (!reminders.isSettled()) {
+                Thread.sleep(10);
+            }
+            long bytes = usedHeap() - before;
+
+            AppointmentService appointmentService = new AppointmentService(repository);
+            LocalDateTime remindNow = LocalDateTime.now().plus(LEAD_TIME);
+            List<Appointment> appointments = new ArrayList<>(measured);
+            for (int n = 0; n < measured; n++) {
+                long offset = 500_000_000L + random.nextInt(2_000_000_000);
+                appointments.add(appointmentService.createAppointment(remindNow.plusNanos(offset), "Checkup " + n));
+            }
+            while (firedAt.size() < measured) {
+                Thread.sleep(50);
+            }
+
+            long[] lateness = new long[measured];
+            for (int n = 0; n < measured; n++) {
+                Appointment appointment = appointments.get(n);
+                long due = appointment.getDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() - LEAD_TIME.toMillis();
+                lateness[n] = firedAt.get(appointment.getId()) - due;
+            }
+            Arrays.sort(lateness);
+            reporter.publishEntry("pending", String.valueOf(reminders.pending()));
+            reporter.publishEntry("bytesPerReminder", String.valueOf(bytes / pending));
+            reporter.publishEntry("latenessMillis.p50", String.valueOf(lateness[measured / 2]));
+            reporter.publishEntry("latenessMillis.p99", String.valueOf(lateness[measured * 99 / 100]));
+            reporter.publishEntry("latenessMillis.max", String.valueOf(lateness[measured - 1]));
+            assertTrue(lateness[0] >= 0, "a reminder fired " + -lateness[0] + " ms early");
+            assertEquals(pending, reminders.pending());
+        } finally {
+            reminders.close();
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,77 @@
+package com.seanclen.capstone.repository;
+
+import com.seanclen.capstone.model.Appointment;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the date index of InMemoryAppointmentRepository stays consistent with the primary map.
+ */
+class AppointmentRepositoryTest {
+    private static final LocalDateTime BASE = LocalDateTime.now().plusDays(1).withNano(0);
+
+    private final InMemoryAppointmentRepository repository = new InMemoryAppointmentRepository();
+
+    @Test
+    void findsAppointmentsInWindowOrderedByDate() {
+        repository.save(new Appointment("1", BASE.plusHours(3), "Third"));
+        repository.save(new Appointment("2", BASE.plusHours(1), "First"));
+        repository.save(new Appointment("3", BASE.plusHours(2), "Second"));
+        repository.save(new Appointment("4", BASE.plusHours(5), "Outside"));
+
+        List<Appointment> window = repository.findByDateBetween(BASE, BASE.plusHours(5), 10);
+
+        assertEquals(List.of("2", "3", "1"), ids(window));
+    }
+
+    @Test
+    void windowIsInclusiveOfFromAndExclusiveOfTo() {
+        repository.save(new Appointment("1", BASE, "At from"));
+        repository.save(new Appointment("2", BASE.plusHours(1), "At to"));
+
+        assertEquals(List.of("1"), ids(repository.findByDateBetween(BASE, BASE.plusHours(1), 10)));
+        assertEquals(List.of("1", "2"), ids(repository.findByDateBetween(null, null, 10)));
+    }
+
+    @Test
+    void honorsLimit() {
+        for (int i = 1; i <= 20; i++) {
+            repository.save(new Appointment(String.valueOf(i), BASE.plusMinutes(i), "Appointment"));
+        }
+
+        assertEquals(List.of("1", "2", "3"), ids(repository.findByDateBetween(BASE, null, 3)));
+    }
+
+    @Test
+    void reindexesOnUpdate() {
+        repository.save(new Appointment("1", BASE.plusHours(1), "Moved"));
+        repository.save(new Appointment("2", BASE.plusHours(2), "Fixed"));
+
+        repository.save(new Appointment("1", BASE.plusHours(3), "Moved"));
+
+        assertEquals(List.of("2", "1"), ids(repository.findByDateBetween(BASE, null, 10)));
+        assertTrue(repository.findByDateBetween(BASE, BASE.plusHours(2), 10).isEmpty());
+
+        repository.save(new Appointment("1", BASE.plusMinutes(30), "Replaced"));
+        assertEquals(List.of("1", "2"), ids(repository.findByDateBetween(BASE, null, 10)));
+    }
+
+    @Test
+    void removesDeletedAppointmentsFromIndex() {
+        repository.save(new Appointment("1", BASE.plusHours(1), "Deleted"));
+        repository.save(new Appointment("2", BASE.plusHours(2), "Kept"));
+
+        repository.deleteById("1");
+
+        assertEquals(List.of("2"), ids(repository.findByDateBetween(null, null, 10)));
+    }
+
+    private static List<String> ids(List<Appointment> appointments) {
+        return appointments.stream().map(Appointment::getId).toList();
+    }
+}
@@ -0,0 +1,278 @@
+package com.seanclen.capstone.repository;
+
+import com.seanclen.capstone.model.Contact;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that CompactContactRepository answers every query as InMemoryContactRepository does, for
+ * contacts that pack and contacts that overflow, and reports its heap use and GC pauses against it.
+ * The footprint test is tagged as a benchmark, so it only runs with ./gradlew benchmarkTest, at one
+ * million contacts; add -Dcapstone.benchmark.contacts=10000000 and a large enough heap for the ten
+ * million the layout is sized for.
+ */
+class CompactContactRepositoryTest {
+    private static final String[] NAMES = {"Ann", "Anna", "Annis", "Bob", "bobby", "Carol", " Dave", "\u00c9lo\u00efse",
+            "Zo\u00eb", "Bartholom  ", "Ann Marie", "\u03a9mega"};
+    private static final String[] PHONES = {"5551234567", "5559876543", "0000000000", "555-123-45"};
+
+    @Test
+    void answersLikeTheObjectRepository() {
+        InMemoryContactRepository expected = new InMemoryContactRepository();
+        CompactContactRepository actual = new CompactContactRepository();
+        Random random = new Random(7);
+
+        for (int i = 0; i < 20_000; i++) {
+            String id = randomId(random);
+            switch (random.nextInt(10)) {
+                case 0, 1 -> assertEquals(expected.deleteById(id), actual.deleteById(id));
+                default -> {
+                    Contact contact = randomContact(random, id);
+                    expected.save(contact);
+                    actual.save(copy(contact));
+                }
+            }
+            if (i % 1000 == 0) {
+                assertSameAnswers(expected, actual, random);
+            }
+        }
+        assertSameAnswers(expected, actual, random);
+    }
+
+    @Test
+    void keepsRecordsOffTheHeapWhenAsked() {
+        CompactContactRepository repository = new CompactContactRepository(true);
+        repository.save(new Contact("1", "Jane", "Doe", "5551234567", "1 Main St"));
+
+        assertTrue(repository.directBytes() > 0);
+        assertEquals("Jane", repository.findById("1").getFirstName());
+        assertTrue(repository.deleteById("1"));
+        assertNull(repository.findById("1"));
+    }
+
+    @Test
+    void renamesAPackedContact() {
+        CompactContactRepository repository = new CompactContactRepository();
+        Contact saved = repository.save(new Contact(repository.getNextId(), "Jane", "Doe", "5551234567", "1 Main St"));
+
+        repository.save(new Contact(saved.getId(), "Mary", "Doe", "5551234567", "1 Main St"));
+
+        assertEquals("Mary", repository.findById(saved.getId()).getFirstName());
+        assertTrue(repository.findByNamePrefix("jane", 10).isEmpty());
+        assertEquals(List.of(saved.getId()), repository.findByNamePrefix("mary", 10).stream().map(Contact::getId).toList());
+    }
+
+    @Test
+    void keepsOverflowContactsAsSaved() {
+        CompactContactRepository repository = new CompactContactRepository();
+        // A name with a character outside Latin-1 does not pack, so the contact is kept as saved.
+        Contact saved = repository.save(new Contact("c1", "\u03a9mega", "Doe", "5551234567", "1 Main St"));
+
+        assertSame(saved, repository.findById("c1"));
+        assertEquals(List.of(saved), repository.findByPhone("5551234567"));
+        assertEquals(List.of(saved), repository.findByNamePrefix("doe", 10));
+    }
+
+    @Test
+    void concurrentWritesToDifferentPagesLoseNothing() throws Exception {
+        CompactContactRepository repository = new CompactContactRepository();
+        int threads = 8;
+        int perThread = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                // Interleaved IDs, so every thread writes to every page; all share a few phone numbers and
+                // names, so the phone chains and the name index are changed from every thread.
+                for (int i = 0; i < perThread; i++) {
+                    int n = 1 + i * threads + thread;
+                    repository.save(new Contact(String.valueOf(n), NAMES[n % 5], "Doe", PHONES[n % 3], "1 Main St"));
+                }
+                for (int i = 0; i < perThread; i += 2) {
+                    int n = 1 + i * threads + thread;
+                    repository.save(new Contact(String.valueOf(n), "Moved", "Doe", PHONES[(n + 1) % 3], "1 Main St"));
+                }
+                for (int i = 1; i < perThread; i += 4) {
+                    repository.deleteById(String.valueOf(1 + i * threads + thread));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        InMemoryContactRepository expected = new InMemoryContactRepository();
+        for (Contact contact : repository.findAll()) {
+            expected.save(contact);
+        }
+        int total = threads * perThread;
+        assertEquals(total - (total / 4), repository.count());
+        assertEquals(repository.count(), expected.count());
+        for (String phone : new String[] {PHONES[0], PHONES[1], PHONES[2]}) {
+            assertEquals(render(expected.findByPhone(phone)), render(repository.findByPhone(phone)));
+        }
+        for (String prefix : new String[] {"a", "mov", "doe", "b"}) {
+            assertEquals(render(expected.findByNamePrefix(prefix, 100_000)), render(repository.findByNamePrefix(prefix, 100_000)));
+        }
+    }
+
+    @Test
+    void refusesToStartWithPersistenceOrTimeBasedIds() {
+        IdGenerators sequential = new IdGenerators(IdGenerators.SEQUENTIAL, 0);
+        assertThrows(IllegalStateException.class, () -> new CompactContactRepository(false, true, sequential));
+        IdGenerators timeBased = new IdGenerators(IdGenerators.TIME_BASED, 0);
+        assertThrows(IllegalStateException.class, () -> new CompactContactRepository(false, false, timeBased));
+    }
+
+    @Test
+    void findsTheFirstSlotAfterAnyId() {
+        assertEquals(1, CompactContactRepository.firstSlotAfter(null));
+        assertEquals(10, CompactContactRepository.firstSlotAfter("9"));
+        assertEquals(10, CompactContactRepository.firstSlotAfter("0a"));
+        assertEquals(20, CompactContactRepository.firstSlotAfter("1a"));
+        assertEquals(100, CompactContactRepository.firstSlotAfter("zz"));
+        assertEquals(ContactSlab.NO_SLOT, CompactContactRepository.firstSlotAfter("zzzzzzzzzz"));
+        assertEquals(ContactSlab.NO_SLOT, CompactContactRepository.firstSlotAfter("2147483647"));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void reportsHeapAndGarbageCollectionAgainstTheObjectRepository(TestReporter reporter) {
+        int total = Integer.getInteger("capstone.benchmark.contacts", 1_000_000);
+        Footprint objects = measure(InMemoryContactRepository::new, total);
+        Footprint compact = measure(CompactContactRepository::new, total);
+
+        reporter.publishEntry("objects", String.format("%,d contacts: %,d bytes per contact, full GC %,d ms",
+                total, objects.bytes() / total, objects.gcMillis()));
+        reporter.publishEntry("compact", String.format("%,d contacts: %,d bytes per contact, full GC %,d ms",
+                total, compact.bytes() / total, compact.gcMillis()));
+        assertTrue(compact.bytes() * 4 <= objects.bytes(),
+                "compact layout uses " + compact.bytes() / total + " bytes per contact, objects " + objects.bytes() / total);
+    }
+
+    private static void assertSameAnswers(ContactRepository expected, ContactRepository actual, Random random) {
+        assertEquals(expected.count(), actual.count());
+        assertEquals(render(expected.findAll()), render(actual.findAll()));
+        assertEquals(render(expected.stream().toList()), render(actual.stream().toList()));
+
+        String cursor = null;
+        do {
+            Page<Contact> page = expected.findPage(cursor == null ? null : Page.decodeCursor(cursor), 37);
+            String after = cursor == null ? null : Page.decodeCursor(cursor);
+            assertEquals(render(page.getItems()), render(actual.findPage(after, 37).getItems()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        for (int i = 0; i < 50; i++) {
+            String id = randomId(random);
+            assertEquals(render(listOf(expected.findById(id))), render(listOf(actual.findById(id))));
+            assertEquals(expected.existsById(id), actual.existsById(id));
+            String name = NAMES[random.nextInt(NAMES.length)].strip();
+            String prefix = name.substring(0, 1 + random.nextInt(name.length()));
+            int limit = 1 + random.nextInt(20);
+            assertEquals(render(expected.findByNamePrefix(prefix, limit)), render(actual.findByNamePrefix(prefix, limit)));
+            String phone = PHONES[random.nextInt(PHONES.length)];
+            assertEquals(render(expected.findByPhone(phone)), render(actual.findByPhone(phone)));
+        }
+    }
+
+    private static Footprint measure(Supplier<ContactRepository> factory, int total) {
+        Random random = new Random(42);
+        long before = usedHeap();
+        ContactRepository repository = factory.get();
+        List<Contact> batch = new ArrayList<>(10_000);
+        for (int i = 1; i <= total; i++) {
+            batch.add(new Contact(String.valueOf(i), randomName(random), randomName(random),
+                    String.valueOf(5_550_000_000L + random.nextInt(10_000_000)), "1 Main St"));
+            if (batch.size() == 10_000) {
+                repository.saveAll(batch);
+                batch = new ArrayList<>(10_000);
+            }
+        }
+        repository.saveAll(batch);
+        long bytes = usedHeap() - before;
+
+        // The time of a full collection grows with the objects it has to trace.
+        long gcBefore = gcMillis();
+        System.gc();
+        long gc = gcMillis() - gcBefore;
+        assertEquals(total, repository.count());
+        return new Footprint(bytes, gc);
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Mostly sequential IDs, with some that are not numbers or do not fit a slot.
+    private static String randomId(Random random) {
+        return switch (random.nextInt(20)) {
+            case 0 -> "c" + random.nextInt(50);
+            case 1 -> "0" + random.nextInt(50);
+            case 2 -> String.valueOf(3_000_000_000L + random.nextInt(10));
+            default -> String.valueOf(1 + random.nextInt(2000));
+        };
+    }
+
+    private static Contact randomContact(Random random, String id) {
+        return new Contact(id, NAMES[random.nextInt(NAMES.length)], NAMES[random.nextInt(NAMES.length)],
+                PHONES[random.nextInt(PHONES.length)], random.nextBoolean() ? "1 Main St" : "Flat 2, 10 Downing Street");
+    }
+
+    private static String randomName(Random random) {
+        char[] name = new char[3 + random.nextInt(8)];
+        name[0] = (char) ('A' + random.nextInt(26));
+        for (int i = 1; i < name.length; i++) {
+            name[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(name);
+    }
+
+    private static Contact copy(Contact contact) {
+        return new Contact(contact.getId(), contact.getFirstName(), contact.getLastName(), contact.getPhone(), contact.getAddress());
+    }
+
+    private static List<Contact> listOf(Contact contact) {
+        return contact == null ? List.of() : List.of(contact);
+    }
+
+    private static List<String> render(List<Contact> contacts) {
+        return contacts.stream()
+                .map(c -> String.join("|", c.getId(), c.getFirstName(), c.getLastName(), c.getPhone(), c.getAddress()))
+                .toList();
+    }
+
+    private record Footprint(long bytes, long gcMillis) {
+    }
+}
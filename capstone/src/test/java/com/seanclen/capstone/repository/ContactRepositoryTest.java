@@ -0,0 +1,94 @@
+package com.seanclen.capstone.repository;
+
+import com.seanclen.capstone.model.Contact;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for keyset pagination of the in-memory repositories.
+ */
+class ContactRepositoryTest {
+    private final InMemoryContactRepository repository = new InMemoryContactRepository();
+
+    @Test
+    void pagesThroughAllContactsInIdOrder() {
+        for (int n = 1; n <= 25; n++) {
+            repository.save(newContact(n));
+        }
+
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            Page<Contact> page = repository.findPage(Page.decodeCursor(cursor), 10);
+            page.getItems().forEach(contact -> seen.add(contact.getId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(25, seen.size());
+        for (int n = 1; n <= 25; n++) {
+            assertEquals(String.valueOf(n), seen.get(n - 1));
+        }
+    }
+
+    @Test
+    void lastFullPageHasNoNextCursorWhenNothingFollows() {
+        for (int n = 1; n <= 10; n++) {
+            repository.save(newContact(n));
+        }
+
+        Page<Contact> page = repository.findPage(null, 10);
+
+        assertEquals(10, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void pagesStayConsistentWhileContactsAreInsertedAndDeleted() {
+        for (int n = 1; n <= 100; n++) {
+            repository.save(newContact(n));
+        }
+
+        Set<String> seen = new HashSet<>();
+        String cursor = null;
+        int next = 101;
+        do {
+            Page<Contact> page = repository.findPage(Page.decodeCursor(cursor), 7);
+            for (Contact contact : page.getItems()) {
+                assertTrue(seen.add(contact.getId()), "duplicate " + contact.getId());
+            }
+            cursor = page.getNextCursor();
+
+            // Mutate between pages: delete a multiple of 10 and append a new contact.
+            repository.deleteById(String.valueOf((next - 100) * 10));
+            repository.save(newContact(next++));
+        } while (cursor != null && next < 1000);
+
+        // Every contact that was never deleted must have been returned exactly once.
+        for (int n = 1; n <= 100; n++) {
+            if (repository.findById(String.valueOf(n)) != null) {
+                assertTrue(seen.contains(String.valueOf(n)), "skipped " + n);
+            }
+        }
+    }
+
+    @Test
+    void rejectsMalformedCursor() {
+        assertThrows(IllegalArgumentException.class, () -> Page.decodeCursor("not a cursor!"));
+    }
+
+    private static Contact newContact(int n) {
+        return new Contact(String.valueOf(n), "First", "Last", "5551234567", "123 Main St");
+    }
+}
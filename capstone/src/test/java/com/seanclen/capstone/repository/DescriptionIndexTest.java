@@ -0,0 +1,127 @@
+package com.seanclen.capstone.repository;
+
+import com.seanclen.capstone.model.Appointment;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests keyword search through InMemoryAppointmentRepository. Its latency as the number of appointments
+ * grows is measured by AppointmentSearchBenchmark.
+ */
+class DescriptionIndexTest {
+    private static final LocalDateTime BASE = LocalDateTime.now().plusDays(1).withNano(0);
+    private static final String[] WORDS = {"checkup", "mri", "follow", "up", "dental", "cleaning", "consult",
+            "xray", "blood", "test", "physical", "therapy", "vaccine", "review", "results", "surgery", "prep",
+            "eye", "exam", "annual"};
+
+    private final InMemoryAppointmentRepository repository = new InMemoryAppointmentRepository();
+
+    @Test
+    void matchesEveryTermIgnoringCaseAndPunctuation() {
+        repository.save(new Appointment("1", BASE, "MRI follow-up"));
+        repository.save(new Appointment("2", BASE, "Follow up on blood test"));
+        repository.save(new Appointment("3", BASE, "MRI scan"));
+
+        assertEquals(List.of("1", "2"), ids(repository.search("follow-up", null, null, 10)));
+        assertEquals(List.of("1"), ids(repository.search("mri FOLLOW", null, null, 10)));
+        assertEquals(List.of("1", "3"), ids(repository.search("mri", null, null, 10)));
+        assertTrue(repository.search("mri blood", null, null, 10).isEmpty());
+        assertTrue(repository.search("x-ray", null, null, 10).isEmpty());
+        assertTrue(repository.search("--", null, null, 10).isEmpty());
+    }
+
+    @Test
+    void followsUpdatesAndDeletes() {
+        Appointment appointment = repository.save(new Appointment("1", BASE, "MRI scan"));
+        repository.save(new Appointment("2", BASE, "Dental cleaning"));
+
+        repository.save(new Appointment(appointment.getId(), appointment.getDate(), "Dental checkup"));
+        assertTrue(repository.search("mri", null, null, 10).isEmpty());
+        assertEquals(List.of("2", "1"), ids(repository.search("dental", null, null, 10)));
+
+        repository.deleteById("2");
+        assertEquals(List.of("1"), ids(repository.search("dental", null, null, 10)));
+    }
+
+    @Test
+    void combinesTermsWithADateWindow() {
+        for (int i = 1; i <= 10_000; i++) {
+            repository.save(new Appointment(String.valueOf(i), BASE.plusMinutes(i), i % 2 == 0 ? "MRI scan" : "Checkup"));
+        }
+
+        // A narrow window is checked appointment by appointment, a wide one through the posting lists.
+        assertEquals(List.of("10", "12", "14"), ids(repository.search("mri", BASE.plusMinutes(9), BASE.plusMinutes(15), 10)));
+        assertEquals(List.of("5002", "5004"), ids(repository.search("mri", BASE.plusMinutes(5001), null, 2)));
+        assertTrue(repository.search("mri", null, BASE.plusMinutes(2), 10).isEmpty());
+    }
+
+    @Test
+    void agreesWithAScanAfterManyUpdates() {
+        Random random = new Random(7);
+        List<Appointment> saved = new ArrayList<>();
+        for (int i = 1; i <= 5_000; i++) {
+            saved.add(repository.save(new Appointment(String.valueOf(i), BASE, description(random))));
+        }
+        // Rewrite and delete enough appointments for posting lists to be compacted.
+        for (int i = 0; i < 20_000; i++) {
+            String id = String.valueOf(1 + random.nextInt(5_000));
+            if (random.nextInt(10) == 0) {
+                repository.deleteById(id);
+            } else {
+                repository.save(new Appointment(id, BASE, description(random)));
+            }
+        }
+
+        for (int i = 0; i < 200; i++) {
+            String query = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+            Set<String> expected = new HashSet<>();
+            for (Appointment appointment : repository.findAll()) {
+                if (SearchTerms.of(appointment.getDescription()).containsAll(SearchTerms.of(query))) {
+                    expected.add(appointment.getId());
+                }
+            }
+            assertEquals(expected, new HashSet<>(ids(repository.search(query, null, null, 10_000))), query);
+        }
+    }
+
+    @Test
+    void keepsSaveOrderWhenDocumentsAreRenumbered() {
+        repository.save(new Appointment("1", BASE, "MRI scan"));
+        repository.save(new Appointment("2", BASE, "MRI follow-up"));
+        repository.save(new Appointment("3", BASE, "Dental checkup"));
+        // Enough saves of one appointment to use up the document numbers several times over.
+        for (int i = 0; i < 100_000; i++) {
+            repository.save(new Appointment("1", BASE, i % 2 == 0 ? "MRI scan" : "MRI review"));
+        }
+        repository.save(new Appointment("4", BASE, "MRI prep"));
+
+        assertEquals(List.of("2", "1", "4"), ids(repository.search("mri", null, null, 10)));
+        assertEquals(List.of("1"), ids(repository.search("mri review", null, null, 10)));
+        assertEquals(List.of("3"), ids(repository.search("dental", null, null, 10)));
+        assertTrue(repository.search("scan", null, null, 10).isEmpty());
+    }
+
+    // Two to four words, skewed so that some terms are far more common than others.
+    private static String description(Random random) {
+        StringBuilder description = new StringBuilder();
+        int words = 2 + random.nextInt(3);
+        for (int i = 0; i < words; i++) {
+            int word = (int) (WORDS.length * Math.pow(random.nextDouble(), 2));
+            description.append(i == 0 ? "" : " ").append(WORDS[word]);
+        }
+        return description.toString();
+    }
+
+    private static List<String> ids(List<Appointment> appointments) {
+        return appointments.stream().map(Appointment::getId).toList();
+    }
+}
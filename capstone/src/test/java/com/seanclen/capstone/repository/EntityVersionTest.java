@@ -0,0 +1,86 @@
+package com.seanclen.capstone.repository;
+
+import com.seanclen.capstone.model.Contact;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the versions behind the ETags change with every save and delete, in both contact
+ * repositories.
+ */
+class EntityVersionTest {
+    @Test
+    void objectRepositoryVersionsChangeWithEverySaveAndDelete() {
+        assertVersionsFollowChanges(new InMemoryContactRepository());
+    }
+
+    @Test
+    void compactRepositoryVersionsChangeWithEverySaveAndDelete() {
+        assertVersionsFollowChanges(new CompactContactRepository());
+    }
+
+    @Test
+    void restoredEntitiesShareTheFirstVersionUntilSaved() {
+        InMemoryContactRepository repository = new InMemoryContactRepository();
+        long first = repository.version();
+        repository.restore(new Contact("1", "Jane", "Doe", "5551234567", "1 Main St"));
+        repository.restore(new Contact("2", "John", "Doe", "5551234568", "2 Main St"));
+
+        assertEquals(first, repository.versionOf("1"));
+        assertEquals(first, repository.versionOf("2"));
+        assertTrue(repository.version() > first);
+
+        repository.save(new Contact("2", "John", "Smith", "5551234568", "2 Main St"));
+        assertEquals(first, repository.versionOf("1"));
+        assertEquals(repository.version(), repository.versionOf("2"));
+    }
+
+    @Test
+    void versionsAreNotReusedByANewRepository() throws InterruptedException {
+        InMemoryContactRepository before = new InMemoryContactRepository();
+        for (int n = 0; n < 1000; n++) {
+            before.save(new Contact(before.getNextId(), "Jane", "Doe", "5551234567", "1 Main St"));
+        }
+        Thread.sleep(2);
+
+        assertTrue(new InMemoryContactRepository().version() > before.version());
+    }
+
+    private static void assertVersionsFollowChanges(ContactRepository repository) {
+        long empty = repository.version();
+        assertNotEquals(EntityRepository.NO_VERSION, empty);
+        assertEquals(EntityRepository.NO_VERSION, repository.versionOf("1"));
+        assertEquals(EntityRepository.NO_VERSION, repository.versionOf(null));
+
+        Contact jane = repository.save(new Contact(repository.getNextId(), "Jane", "Doe", "5551234567", "1 Main St"));
+        // A name outside Latin-1 keeps this one out of the compact repository's packed records.
+        Contact other = repository.save(new Contact("X1", "\u0141ukasz", "Nowak", "5551234568", "2 Main St"));
+        long afterSaves = repository.version();
+        assertTrue(afterSaves > empty);
+        assertTrue(repository.versionOf(jane.getId()) > empty);
+        assertEquals(afterSaves, repository.versionOf(other.getId()));
+
+        long janeBefore = repository.versionOf(jane.getId());
+        long otherBefore = repository.versionOf(other.getId());
+        repository.save(new Contact(jane.getId(), "Jane", "Smith", "5551234567", "1 Main St"));
+        assertTrue(repository.versionOf(jane.getId()) > janeBefore);
+        assertEquals(otherBefore, repository.versionOf(other.getId()));
+        assertTrue(repository.version() > afterSaves);
+
+        long beforeDelete = repository.version();
+        repository.deleteAllById(List.of(jane.getId(), other.getId()));
+        assertTrue(repository.version() > beforeDelete);
+        assertEquals(EntityRepository.NO_VERSION, repository.versionOf(jane.getId()));
+        assertEquals(EntityRepository.NO_VERSION, repository.versionOf(other.getId()));
+
+        // Deleting nothing changes nothing, so clients keep their tags.
+        long unchanged = repository.version();
+        repository.deleteById(jane.getId());
+        assertEquals(unchanged, repository.version());
+    }
+}
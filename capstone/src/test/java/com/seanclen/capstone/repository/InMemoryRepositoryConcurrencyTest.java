@@ -0,0 +1,215 @@
+package com.seanclen.capstone.repository;
+
+import com.seanclen.capstone.model.Contact;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Multi-threaded stress tests for the in-memory repositories.
+ * In most tests every thread works on its own slice of IDs so the expected final state is known exactly;
+ * any lost write or corrupted read shows up as a wrong count or a missing entity. Where threads contend
+ * for the same IDs, every structure of the repository must agree on whichever state won.
+ */
+class InMemoryRepositoryConcurrencyTest {
+    private static final int[] THREAD_COUNTS = {1, 4, 16, 64};
+    private static final int OPERATIONS_PER_RUN = 400_000;
+
+    @Test
+    void concurrentSavesAndDeletesLoseNoUpdates() throws Exception {
+        InMemoryContactRepository repository = new InMemoryContactRepository();
+        int threads = 64;
+        int perThread = 2_000;
+
+        runConcurrently(threads, thread -> {
+            for (int i = 0; i < perThread; i++) {
+                repository.save(newContact(thread * perThread + i));
+            }
+            // Delete every other entity this thread wrote while the other threads are still writing.
+            for (int i = 0; i < perThread; i += 2) {
+                repository.deleteById(String.valueOf(thread * perThread + i));
+            }
+        });
+
+        assertEquals((long) threads * perThread / 2, repository.count());
+        assertEquals(threads * perThread / 2, repository.findAll().size());
+        for (int n = 0; n < threads * perThread; n++) {
+            Contact contact = repository.findById(String.valueOf(n));
+            if (n % 2 == 0) {
+                assertNull(contact);
+            } else {
+                assertNotNull(contact);
+                assertEquals(String.valueOf(n), contact.getId());
+            }
+        }
+    }
+
+    @Test
+    void contendedWritesToTheSameIdsKeepEveryIndexConsistent() throws Exception {
+        InMemoryContactRepository repository = new InMemoryContactRepository();
+        String[] names = {"Alpha", "Bravo", "Charlie", "Delta"};
+        String[] phones = {"5550000001", "5550000002", "5550000003"};
+        int ids = 8;
+        int threads = 16;
+        int perThread = 20_000;
+
+        // Every thread saves, replaces and deletes the same few IDs, so most writes wait on an ID's lock.
+        runConcurrently(threads, thread -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < perThread; i++) {
+                String id = String.valueOf(random.nextInt(ids));
+                Contact contact = new Contact(id, names[random.nextInt(names.length)], names[random.nextInt(names.length)],
+                        phones[random.nextInt(phones.length)], "1 Main St");
+                int op = random.nextInt(4);
+                if (op == 0) {
+                    repository.save(contact);
+                } else if (op == 1) {
+                    try {
+                        repository.replace(contact, repository.versionOf(id));
+                    } catch (VersionConflictException e) {
+                        // Another thread changed the ID between the read and the replace.
+                    }
+                } else if (op == 2) {
+                    repository.replace(contact, EntityRepository.ANY_VERSION);
+                } else {
+                    repository.deleteById(id);
+                }
+            }
+        });
+
+        List<Contact> stored = new ArrayList<>();
+        for (int n = 0; n < ids; n++) {
+            String id = String.valueOf(n);
+            Contact contact = repository.findById(id);
+            assertEquals(contact != null, repository.existsById(id));
+            assertEquals(contact == null, repository.versionOf(id) == EntityRepository.NO_VERSION);
+            assertTrue(repository.versionOf(id) <= repository.version());
+            if (contact != null) {
+                stored.add(contact);
+            }
+        }
+        // The primary map, the map ordered by ID and the count agree.
+        assertEquals(stored.size(), repository.count());
+        assertEquals(ids(stored), ids(repository.findAll()));
+        assertEquals(ids(stored), ids(repository.findPage(null, ids).getItems()));
+        // The name and phone indexes hold exactly the stored contacts, under their current attributes.
+        for (String name : names) {
+            List<String> named = ids(stored.stream()
+                    .filter(c -> c.getFirstName().equals(name) || c.getLastName().equals(name)).toList());
+            assertEquals(named, ids(repository.findByNamePrefix(name, ids)).stream().sorted().toList());
+        }
+        for (String phone : phones) {
+            assertEquals(ids(stored.stream().filter(c -> c.getPhone().equals(phone)).toList()),
+                    ids(repository.findByPhone(phone)));
+        }
+        // So does the estimated footprint: the same contacts saved without contention take the same space.
+        InMemoryContactRepository fresh = new InMemoryContactRepository();
+        fresh.saveAll(stored);
+        assertEquals(fresh.estimatedBytes(), repository.estimatedBytes());
+    }
+
+    @Test
+    void concurrentIdGenerationNeverRepeats() throws Exception {
+        InMemoryContactRepository repository = new InMemoryContactRepository();
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        int threads = 16;
+        int perThread = 10_000;
+
+        runConcurrently(threads, thread -> {
+            for (int i = 0; i < perThread; i++) {
+                ids.add(repository.getNextId());
+            }
+        });
+
+        assertEquals(threads * perThread, ids.size());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void reportsThroughputAtIncreasingThreadCounts(TestReporter reporter) throws Exception {
+        int keySpace = 10_000;
+
+        for (int threads : THREAD_COUNTS) {
+            InMemoryContactRepository repository = new InMemoryContactRepository();
+            for (int n = 0; n < keySpace; n++) {
+                repository.save(newContact(n));
+            }
+
+            int perThread = OPERATIONS_PER_RUN / threads;
+            long start = System.nanoTime();
+            runConcurrently(threads, thread -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < perThread; i++) {
+                    int n = random.nextInt(keySpace);
+                    // 80% reads, 15% writes, 5% deletes: roughly the mix of the REST API.
+                    int op = random.nextInt(100);
+                    if (op < 80) {
+                        repository.findById(String.valueOf(n));
+                    } else if (op < 95) {
+                        repository.save(newContact(n));
+                    } else {
+                        repository.deleteById(String.valueOf(n));
+                    }
+                }
+            });
+            long elapsed = System.nanoTime() - start;
+
+            double opsPerSecond = (double) perThread * threads / elapsed * TimeUnit.SECONDS.toNanos(1);
+            reporter.publishEntry("opsPerSecond." + threads, String.format("%.0f", opsPerSecond));
+        }
+    }
+
+    private static List<String> ids(List<Contact> contacts) {
+        return contacts.stream().map(Contact::getId).toList();
+    }
+
+    private static Contact newContact(int n) {
+        return new Contact(String.valueOf(n), "First", "Last", "5551234567", "123 Main St");
+    }
+
+    private interface Worker {
+        void run(int thread) throws Exception;
+    }
+
+    /**
+     * Start all workers at the same time to maximize contention, then wait for every one of them,
+     * rethrowing the first failure.
+     */
+    private static void runConcurrently(int threads, Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    worker.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
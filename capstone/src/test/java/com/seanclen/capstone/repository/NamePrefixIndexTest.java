@@ -0,0 +1,94 @@
+package com.seanclen.capstone.repository;
+
+import com.seanclen.capstone.model.Contact;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the contact name prefix index through InMemoryContactRepository, and reports its memory use at
+ * one million contacts. Search latency is measured by ContactSearchBenchmark.
+ */
+class NamePrefixIndexTest {
+    private final InMemoryContactRepository repository = new InMemoryContactRepository();
+
+    @Test
+    void findsContactsByFirstOrLastNamePrefixIgnoringCase() {
+        repository.save(new Contact("1", "John", "Smith", "5551234567", "1 Main St"));
+        repository.save(new Contact("2", "Sam", "Johnson", "5551234567", "2 Main St"));
+        repository.save(new Contact("3", "Alice", "Jones", "5551234567", "3 Main St"));
+        repository.save(new Contact("4", "Bob", "Brown", "5551234567", "4 Main St"));
+
+        assertEquals(List.of("1", "2"), ids(repository.findByNamePrefix("JOH", 10)));
+        assertEquals(List.of("1", "2", "3"), ids(repository.findByNamePrefix(" jo", 10)));
+        assertEquals(List.of("1"), ids(repository.findByNamePrefix("jo", 1)));
+        assertTrue(repository.findByNamePrefix("x", 10).isEmpty());
+    }
+
+    @Test
+    void listsAContactOnceWhenBothNamesMatch() {
+        repository.save(new Contact("1", "Ann", "Annis", "5551234567", "1 Main St"));
+        repository.save(new Contact("2", "Ann", "Ann", "5551234567", "2 Main St"));
+
+        assertEquals(List.of("1", "2"), ids(repository.findByNamePrefix("ann", 10)));
+    }
+
+    @Test
+    void followsUpdatesAndDeletes() {
+        repository.save(new Contact("1", "John", "Smith", "5551234567", "1 Main St"));
+        repository.save(new Contact("1", "Jane", "Smith", "5551234567", "1 Main St"));
+        repository.save(new Contact("2", "Joe", "Smith", "5551234567", "2 Main St"));
+        repository.deleteById("2");
+
+        assertTrue(repository.findByNamePrefix("john", 10).isEmpty());
+        assertEquals(List.of("1"), ids(repository.findByNamePrefix("ja", 10)));
+        assertEquals(List.of("1"), ids(repository.findByNamePrefix("smi", 10)));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void reportsMemoryAtOneMillionContacts(TestReporter reporter) {
+        int total = 1_000_000;
+        Random random = new Random(42);
+        List<Contact> contacts = new ArrayList<>(total);
+        for (int i = 1; i <= total; i++) {
+            contacts.add(new Contact(String.valueOf(i), randomName(random), randomName(random), "5551234567", "1 Main St"));
+        }
+
+        long before = usedHeap();
+        NamePrefixIndex index = new NamePrefixIndex();
+        contacts.forEach(index::put);
+        long after = usedHeap();
+
+        reporter.publishEntry("bytesPerContact", String.valueOf((after - before) / total));
+        assertEquals(10, index.search(contacts.get(0).getFirstName().substring(0, 1), 10).size());
+    }
+
+    private static String randomName(Random random) {
+        char[] name = new char[3 + random.nextInt(8)];
+        name[0] = (char) ('A' + random.nextInt(26));
+        for (int i = 1; i < name.length; i++) {
+            name[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(name);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static List<String> ids(List<Contact> contacts) {
+        return contacts.stream().map(Contact::getId).toList();
+    }
+}
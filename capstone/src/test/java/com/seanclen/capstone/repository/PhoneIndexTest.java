@@ -0,0 +1,161 @@
+package com.seanclen.capstone.repository;
+
+import com.seanclen.capstone.model.Contact;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the phone number index through InMemoryContactRepository, and checks that lookups allocate
+ * nothing. Lookup latency is measured by ContactSearchBenchmark.
+ */
+class PhoneIndexTest {
+    private final InMemoryContactRepository repository = new InMemoryContactRepository();
+
+    @Test
+    void findsEveryContactWithANumberInIdOrder() {
+        repository.save(newContact("10", "5551234567"));
+        repository.save(newContact("9", "5551234567"));
+        repository.save(newContact("1", "5557654321"));
+
+        assertEquals(List.of("9", "10"), ids(repository.findByPhone("5551234567")));
+        assertEquals(List.of("9", "10"), ids(repository.findByPhone(" 5551234567 ")));
+        assertEquals(List.of("1"), ids(repository.findByPhone("5557654321")));
+        assertTrue(repository.findByPhone("5550000000").isEmpty());
+    }
+
+    @Test
+    void followsUpdatesAndDeletes() {
+        repository.save(newContact("1", "5551234567"));
+        repository.save(newContact("1", "5557654321"));
+        assertTrue(repository.findByPhone("5551234567").isEmpty());
+        assertEquals(List.of("1"), ids(repository.findByPhone("5557654321")));
+
+        repository.deleteById("1");
+        assertTrue(repository.findByPhone("5557654321").isEmpty());
+    }
+
+    @Test
+    void keepsOrderWhenManyContactsShareANumber() {
+        for (String phone : List.of("5551234567", "555-123-45")) {
+            List<String> expected = new ArrayList<>();
+            for (int i = 1; i <= 100; i++) {
+                repository.save(newContact(phone.length() + "-" + i, phone));
+            }
+            for (int i = 1; i <= 100; i++) {
+                if (i % 10 != 0) {
+                    repository.deleteById(phone.length() + "-" + i);
+                } else {
+                    expected.add(phone.length() + "-" + i);
+                }
+            }
+            expected.sort(InMemoryRepository.ID_ORDER);
+
+            List<Contact> found = repository.findByPhone(phone);
+            assertEquals(expected, ids(found));
+            assertEquals(expected.size(), found.size());
+            assertEquals(expected.get(3), found.get(3).getId());
+            assertSame(found, repository.findByPhone(phone));
+            assertThrows(UnsupportedOperationException.class, () -> found.remove(0));
+        }
+    }
+
+    @Test
+    void indexesNumbersThatAreNotAllDigits() {
+        repository.save(newContact("1", "555-123-45"));
+
+        assertEquals(List.of("1"), ids(repository.findByPhone("555-123-45")));
+        repository.deleteById("1");
+        assertTrue(repository.findByPhone("555-123-45").isEmpty());
+    }
+
+    @Test
+    void keepsProbeRunsIntactWhenEntriesAreRemoved() {
+        // Enough numbers to collide and resize several times, then delete every other one.
+        for (int i = 0; i < 20_000; i++) {
+            repository.save(newContact(String.valueOf(i), phone(i * 7919L)));
+        }
+        for (int i = 0; i < 20_000; i += 2) {
+            repository.deleteById(String.valueOf(i));
+        }
+
+        for (int i = 0; i < 20_000; i++) {
+            List<Contact> found = repository.findByPhone(phone(i * 7919L));
+            assertEquals(i % 2 == 0 ? List.of() : List.of(String.valueOf(i)), ids(found));
+        }
+    }
+
+    @Test
+    void parsesTenDigitNumbersOnly() {
+        assertEquals(5551234567L, PhoneIndex.key("5551234567"));
+        assertEquals(0L, PhoneIndex.key(" 0000000000"));
+        assertEquals(PhoneIndex.NO_KEY, PhoneIndex.key("555123456"));
+        assertEquals(PhoneIndex.NO_KEY, PhoneIndex.key("555123456x"));
+    }
+
+    /**
+     * Looks up random numbers among ten thousand contacts and checks the bytes allocated by the lookup
+     * thread, which must be none.
+     */
+    @Test
+    void lookupsAllocateNothing() {
+        int total = 10_000;
+        Random random = new Random(42);
+        String[] phones = new String[total];
+        List<Contact> batch = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            phones[i] = phone(random.nextLong(10_000_000_000L));
+            batch.add(newContact(String.valueOf(i + 1), phones[i]));
+            if (batch.size() == 10_000) {
+                repository.saveAll(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        repository.saveAll(batch);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        int found = 0;
+        // The first rounds warm up the JIT; only the last one is checked.
+        long allocated = 0;
+        for (int round = 0; round < 5; round++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            found = 0;
+            for (int i = 0; i < total; i++) {
+                found += repository.findByPhone(phones[random.nextInt(total)]).size();
+            }
+            allocated = threads.getThreadAllocatedBytes(thread) - before;
+        }
+
+        assertTrue(found >= total);
+        // Reading the counter can itself allocate a few bytes; anything per lookup would be megabytes.
+        assertTrue(allocated < 1024, "lookups allocated " + allocated + " bytes");
+    }
+
+    @Test
+    void returnsTheStoredListWithoutCopying() {
+        repository.save(newContact("1", "5551234567"));
+
+        assertSame(repository.findByPhone("5551234567"), repository.findByPhone("5551234567"));
+    }
+
+    private static Contact newContact(String id, String phone) {
+        return new Contact(id, "First", "Last", phone, "123 Main St");
+    }
+
+    private static String phone(long number) {
+        return String.format("%010d", number % 10_000_000_000L);
+    }
+
+    private static List<String> ids(List<Contact> contacts) {
+        return contacts.stream().map(Contact::getId).toList();
+    }
+}
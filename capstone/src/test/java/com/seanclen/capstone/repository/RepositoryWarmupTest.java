@@ -0,0 +1,160 @@
+package com.seanclen.capstone.repository;
+
+import com.seanclen.capstone.model.Contact;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for serving reads from a snapshot while the repository is still being loaded from it.
+ */
+class RepositoryWarmupTest {
+    private final InMemoryContactRepository repository = new InMemoryContactRepository();
+    private final TestSnapshot snapshot = new TestSnapshot();
+
+    @Test
+    void servesPointReadsFromSnapshotBeforeTheyAreLoaded() {
+        snapshot.add(newContact("1", "Snapshot"));
+        repository.beginWarmup(snapshot);
+
+        assertEquals("Snapshot", repository.findById("1").getFirstName());
+        assertNull(repository.findById("2"));
+    }
+
+    @Test
+    void changesMadeDuringWarmupWinOverTheSnapshot() {
+        snapshot.add(newContact("1", "Snapshot"));
+        snapshot.add(newContact("2", "Snapshot"));
+        repository.beginWarmup(snapshot);
+
+        repository.save(newContact("1", "Updated"));
+        assertTrue(repository.deleteById("2"));
+        assertNull(repository.findById("2"));
+        assertFalse(repository.deleteById("2"));
+        assertEquals(1, repository.count());
+
+        // The loader reaches the stale snapshot copies afterwards.
+        snapshot.entities.values().forEach(repository::restoreFromSnapshot);
+        repository.endWarmup();
+
+        assertEquals("Updated", repository.findById("1").getFirstName());
+        assertNull(repository.findById("2"));
+        assertEquals(1, repository.count());
+    }
+
+    @Test
+    void countsAndPagesWithoutWaitingForTheLoad() {
+        for (int i = 1; i <= 5; i++) {
+            snapshot.add(newContact(String.valueOf(i), "Snapshot"));
+        }
+        repository.beginWarmup(snapshot);
+
+        repository.restoreFromSnapshot(snapshot.entities.get("2"));
+        repository.save(newContact("3", "Updated"));
+        repository.deleteById("4");
+        repository.save(newContact("6", "New"));
+
+        assertEquals(5, repository.count());
+        Page<Contact> first = repository.findPage(null, 2);
+        assertEquals(List.of("1", "2"), ids(first.getItems()));
+        Page<Contact> second = repository.findPage(Page.decodeCursor(first.getNextCursor()), 2);
+        assertEquals(List.of("3", "5"), ids(second.getItems()));
+        assertEquals("Updated", second.getItems().get(0).getFirstName());
+        Page<Contact> last = repository.findPage(Page.decodeCursor(second.getNextCursor()), 2);
+        assertEquals(List.of("6"), ids(last.getItems()));
+        assertNull(last.getNextCursor());
+        assertEquals(List.of("1", "2", "3", "5", "6"), ids(repository.findAll()));
+
+        snapshot.entities.values().forEach(repository::restoreFromSnapshot);
+        repository.endWarmup();
+        assertEquals(5, repository.count());
+        assertEquals(List.of("1", "2", "3", "5", "6"), ids(repository.findAll()));
+    }
+
+    @Test
+    void walkCarriesOnInTheHeapWhenTheSnapshotIsClosed() {
+        for (int i = 1; i <= 4; i++) {
+            snapshot.add(newContact(String.valueOf(i), "Snapshot"));
+        }
+        repository.beginWarmup(snapshot);
+
+        Iterator<Contact> walk = repository.stream().iterator();
+        assertEquals("1", walk.next().getId());
+        snapshot.entities.values().forEach(repository::restoreFromSnapshot);
+        repository.endWarmup();
+        snapshot.closed = true;
+
+        List<String> rest = new ArrayList<>();
+        walk.forEachRemaining(contact -> rest.add(contact.getId()));
+        assertEquals(List.of("2", "3", "4"), rest);
+    }
+
+    @Test
+    void indexQueriesWaitForTheLoad() throws Exception {
+        snapshot.add(newContact("1", "Snapshot"));
+        repository.beginWarmup(snapshot);
+
+        CompletableFuture<List<Contact>> search = CompletableFuture.supplyAsync(
+                () -> repository.findByNamePrefix("Snap", 10));
+        Thread.sleep(50);
+        assertFalse(search.isDone());
+
+        snapshot.entities.values().forEach(repository::restoreFromSnapshot);
+        repository.endWarmup();
+        assertEquals(1, search.get(5, TimeUnit.SECONDS).size());
+    }
+
+    private static List<String> ids(List<Contact> contacts) {
+        List<String> ids = new ArrayList<>();
+        contacts.forEach(contact -> ids.add(contact.getId()));
+        return ids;
+    }
+
+    private static Contact newContact(String id, String firstName) {
+        return new Contact(id, firstName, "Last", "5551234567", "123 Main St");
+    }
+
+    /**
+     * A snapshot held in a sorted map, which finds nothing once closed.
+     */
+    private static final class TestSnapshot implements WarmupSnapshot<Contact> {
+        private final TreeMap<String, Contact> entities = new TreeMap<>(InMemoryRepository.ID_ORDER);
+        private List<String> ids = List.of();
+        private volatile boolean closed;
+
+        void add(Contact contact) {
+            entities.put(contact.getId(), contact);
+            ids = new ArrayList<>(entities.keySet());
+        }
+
+        @Override
+        public int size() {
+            return ids.size();
+        }
+
+        @Override
+        public int indexOf(String id) {
+            return closed ? -1 : ids.indexOf(id);
+        }
+
+        @Override
+        public int indexAfter(String id) {
+            return entities.headMap(id, true).size();
+        }
+
+        @Override
+        public Contact entity(int index) {
+            return closed ? null : entities.get(ids.get(index));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.seanclen.capstone.repository;
+
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.model.Contact;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that time-based IDs fit the model, survive clock steps, and never collide across threads and
+ * nodes, and reports their throughput. The benchmark generates twenty million IDs; run it with
+ * -Dcapstone.benchmark.ids=100000000 and a large enough heap for more.
+ */
+class TimeBasedIdGeneratorTest {
+    @Test
+    void generatesIdsThatFitTheModelAndSortByTime() {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        TimeBasedIdGenerator generator = new TimeBasedIdGenerator(TimeBasedIdGenerator.MAX_NODE, clock::get);
+
+        String previous = generator.nextId();
+        for (int i = 0; i < 10_000; i++) {
+            clock.addAndGet(i % 3);
+            String id = generator.nextId();
+            assertEquals(TimeBasedIdGenerator.ID_LENGTH, id.length());
+            assertTrue(InMemoryRepository.ID_ORDER.compare(previous, id) < 0, previous + " before " + id);
+            assertEquals(id, TimeBasedIdGenerator.encode(TimeBasedIdGenerator.decode(id)));
+            previous = id;
+        }
+        new Contact(previous, "Jane", "Doe", "5551234567", "1 Main St");
+        new Appointment(previous, LocalDateTime.now().plusDays(1), "Checkup");
+
+        // The last millisecond before the 41 bits of time run out, in 2093, still fits ten digits.
+        long last = TimeBasedIdGenerator.EPOCH_MILLIS + (1L << 41) - 1;
+        String id = new TimeBasedIdGenerator(TimeBasedIdGenerator.MAX_NODE, () -> last).nextId();
+        assertEquals(TimeBasedIdGenerator.ID_LENGTH, id.length());
+    }
+
+    @Test
+    void neverRepeatsAnIdWhenTheClockIsSetBack() {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        TimeBasedIdGenerator generator = new TimeBasedIdGenerator(1, clock::get);
+        Set<String> ids = new HashSet<>();
+
+        for (int i = 0; i < 100_000; i++) {
+            if (i % 10_000 == 0) {
+                // An hour back, then two forward.
+                clock.addAndGet(i % 20_000 == 0 ? -3_600_000 : 7_200_000);
+            }
+            assertTrue(ids.add(generator.nextId()));
+        }
+    }
+
+    @Test
+    void rejectsNodesOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new TimeBasedIdGenerator(-1));
+        assertThrows(IllegalArgumentException.class, () -> new TimeBasedIdGenerator(TimeBasedIdGenerator.MAX_NODE + 1));
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerators("uuid", 0));
+    }
+
+    @Test
+    void neverCollidesAcrossThreadsAndNodes() throws InterruptedException {
+        assertDistinct(generateConcurrently(400_000, 2, 4, new ArrayList<>()));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void neverCollidesAcrossThreadsAndNodesAtTensOfMillionsOfIds(TestReporter reporter) throws InterruptedException {
+        int total = Integer.getInteger("capstone.benchmark.ids", 20_000_000);
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        long[] values = generateConcurrently(total, 2, 4, threads);
+        long nanos = System.nanoTime() - start;
+        assertDistinct(values);
+
+        String sample = new TimeBasedIdGenerator(0).nextId();
+        long encodeStart = System.nanoTime();
+        int length = 0;
+        TimeBasedIdGenerator generator = new TimeBasedIdGenerator(0);
+        for (int i = 0; i < 1_000_000; i++) {
+            length += generator.nextId().length();
+        }
+        long encodeNanos = System.nanoTime() - encodeStart;
+        assertEquals(10_000_000, length);
+        reporter.publishEntry("ids", String.valueOf(values.length));
+        reporter.publishEntry("threads", String.valueOf(threads.size()));
+        reporter.publishEntry("idsPerSecond", String.format("%.0f", values.length * 1e9 / nanos));
+        reporter.publishEntry("nanosPerStringId", String.valueOf(encodeNanos / 1_000_000));
+        reporter.publishEntry("sampleId", sample);
+    }
+
+    /**
+     * Generate IDs on several threads of several nodes at once.
+     * @param threads receives the threads that generated them
+     * @return the generated values, in no particular order
+     */
+    private static long[] generateConcurrently(int total, int nodes, int threadsPerNode, List<Thread> threads)
+            throws InterruptedException {
+        int perThread = total / (nodes * threadsPerNode);
+        long[] values = new long[perThread * nodes * threadsPerNode];
+        for (int node = 0; node < nodes; node++) {
+            // Both nodes start from the same clock, as two instances started together would.
+            TimeBasedIdGenerator generator = new TimeBasedIdGenerator(node);
+            for (int t = 0; t < threadsPerNode; t++) {
+                int from = (node * threadsPerNode + t) * perThread;
+                threads.add(new Thread(() -> {
+                    for (int i = from; i < from + perThread; i++) {
+                        values[i] = generator.nextValue();
+                    }
+                }));
+            }
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return values;
+    }
+
+    private static void assertDistinct(long[] values) {
+        Arrays.parallelSort(values);
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] == values[i - 1]) {
+                throw new AssertionError("ID " + TimeBasedIdGenerator.encode(values[i]) + " generated twice");
+            }
+        }
+    }
+}
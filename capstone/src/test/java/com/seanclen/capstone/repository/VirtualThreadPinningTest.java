@@ -0,0 +1,116 @@
+package com.seanclen.capstone.repository;
+
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.persistence.AppointmentCodec;
+import com.seanclen.capstone.persistence.ContactCodec;
+import com.seanclen.capstone.persistence.DurableRepository;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the repository hot paths on virtual threads, with many threads writing the same few IDs and a
+ * write-ahead log attached, and fails if a virtual thread ever blocks while pinned to its carrier
+ * thread (the JFR event jdk.VirtualThreadPinned), for example by parking inside a synchronized block.
+ * Only runs on Java 21 and later; see -PjavaVersion in build.gradle.
+ */
+@EnabledForJreRange(min = JRE.JAVA_21)
+class VirtualThreadPinningTest {
+    private static final int THREADS = 1_000;
+    private static final int OPERATIONS = 20;
+
+    @Test
+    void repositoryWritesAndReadsNeverPinACarrierThread() throws Exception {
+        Path directory = Files.createTempDirectory("pinning");
+        InMemoryContactRepository contacts = new InMemoryContactRepository();
+        InMemoryAppointmentRepository appointments = new InMemoryAppointmentRepository();
+        LocalDateTime base = LocalDateTime.now().plusDays(1).withNano(0);
+        List<String> pinned = new CopyOnWriteArrayList<>();
+
+        try (DurableRepository<Contact> durableContacts = new DurableRepository<>("contacts", contacts,
+                     new ContactCodec(), directory.resolve("contacts"), false);
+             DurableRepository<Appointment> durableAppointments = new DurableRepository<>("appointments", appointments,
+                     new AppointmentCodec(), directory.resolve("appointments"), false);
+             RecordingStream recording = new RecordingStream()) {
+            durableContacts.recover();
+            durableAppointments.recover();
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.onEvent("jdk.VirtualThreadPinned", event -> pinned.add(describe(event)));
+            recording.startAsync();
+
+            ExecutorService executor = newVirtualThreadPerTaskExecutor();
+            try {
+                Future<?>[] tasks = new Future<?>[THREADS];
+                for (int t = 0; t < THREADS; t++) {
+                    int thread = t;
+                    tasks[t] = executor.submit(() -> {
+                        for (int i = 0; i < OPERATIONS; i++) {
+                            // Few IDs, so that writers contend on the same locks.
+                            String id = String.valueOf(1 + (thread + i) % 16);
+                            contacts.save(new Contact(id, "Jo" + i, "Doe", "555123456" + i % 10, "1 Main St"));
+                            appointments.save(new Appointment(id, base.plusMinutes(i), "MRI follow-up " + i));
+                            contacts.findById(id);
+                            contacts.findByNamePrefix("jo", 10);
+                            contacts.findByPhone("5551234567");
+                            appointments.search("mri", null, null, 10);
+                            appointments.calendar().countNext24Hours(base);
+                            if (i % 10 == 9) {
+                                contacts.deleteById(id);
+                                appointments.deleteById(id);
+                            }
+                        }
+                        return null;
+                    });
+                }
+                for (Future<?> task : tasks) {
+                    // A carrier pinned by a thread waiting for a lock can stall every other virtual
+                    // thread, so a run that does not finish is reported as pinning too.
+                    task.get(1, TimeUnit.MINUTES);
+                }
+            } finally {
+                executor.shutdown();
+            }
+            // Let the stream deliver the last events.
+            Thread.sleep(1_500);
+        }
+
+        assertTrue(pinned.isEmpty(), pinned.size() + " pinned virtual threads, first:\n"
+                + pinned.stream().limit(3).collect(Collectors.joining("\n")));
+        assertEquals(contacts.count(), contacts.findAll().size());
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() throws ReflectiveOperationException {
+        // Compiled for Java 17, so reached by reflection.
+        return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    }
+
+    private static String describe(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return event.toString();
+        }
+        return event.getStackTrace().getFrames().stream()
+                .limit(20)
+                .map(RecordedFrame::getMethod)
+                .map(method -> "  at " + method.getType().getName() + "." + method.getName())
+                .collect(Collectors.joining("\n"));
+    }
+}
@@ -0,0 +1,226 @@
+package com.seanclen.capstone.repository.mongo;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoDatabase;
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.repository.ChangeListener;
+import com.seanclen.capstone.repository.Page;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the MongoDB repositories against mongo-java-server, an in-process stand-in that speaks the
+ * MongoDB wire protocol on a loopback port, so no database installation or network access is needed.
+ */
+class MongoRepositoryIntegrationTest {
+    private MongoServer server;
+    private MongoClient client;
+    private MongoContactRepository contacts;
+    private MongoAppointmentRepository appointments;
+
+    @BeforeEach
+    void startServer() {
+        server = new MongoServer(new MemoryBackend());
+        client = connect(server.bind());
+        MongoDatabase database = client.getDatabase("capstone");
+        contacts = new MongoContactRepository(database);
+        appointments = new MongoAppointmentRepository(database);
+    }
+
+    @AfterEach
+    void stopServer() {
+        client.close();
+        server.shutdownNow();
+    }
+
+    /**
+     * Connects with the same settings the application uses, through the configured pool.
+     */
+    static MongoClient connect(InetSocketAddress address) {
+        String uri = "mongodb://" + address.getHostString() + ":" + address.getPort() + "/capstone";
+        return MongoClients.create(MongoStorageConfiguration.clientSettings(uri, 16, 0, Duration.ofSeconds(2)));
+    }
+
+    @Test
+    void savesFindsAndDeletesContacts() {
+        Contact saved = contacts.save(new Contact(contacts.getNextId(), "First", "Last", "5551234567", "123 Main St"));
+
+        Contact found = contacts.findById(saved.getId());
+        assertEquals("First", found.getFirstName());
+        assertEquals("123 Main St", found.getAddress());
+        assertTrue(contacts.existsById(saved.getId()));
+
+        contacts.save(new Contact(saved.getId(), "Renamed", "Last", "5551234567", "123 Main St"));
+        assertEquals("Renamed", contacts.findById(saved.getId()).getFirstName());
+        assertEquals(1, contacts.count());
+
+        assertTrue(contacts.deleteById(saved.getId()));
+        assertFalse(contacts.deleteById(saved.getId()));
+        assertNull(contacts.findById(saved.getId()));
+        assertFalse(contacts.existsById(saved.getId()));
+    }
+
+    @Test
+    void listsAndPagesContactsInIdOrder() {
+        for (int n = 1; n <= 25; n++) {
+            contacts.save(newContact(String.valueOf(n)));
+        }
+
+        List<String> all = contacts.findAll().stream().map(Contact::getId).toList();
+        assertEquals("9", all.get(8));
+        assertEquals("10", all.get(9));
+
+        List<String> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            Page<Contact> page = contacts.findPage(Page.decodeCursor(cursor), 10);
+            page.getItems().forEach(contact -> paged.add(contact.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(all, paged);
+
+        try (Stream<Contact> stream = contacts.stream()) {
+            assertEquals(all, stream.map(Contact::getId).toList());
+        }
+    }
+
+    @Test
+    void batchWritesKeepTheLastUpdateOfAnId() {
+        List<Contact> batch = new ArrayList<>();
+        for (int n = 1; n <= 100; n++) {
+            batch.add(newContact(String.valueOf(n)));
+        }
+        batch.add(new Contact("7", "Last", "Update", "5551234567", "123 Main St"));
+        contacts.saveAll(batch);
+
+        assertEquals(100, contacts.count());
+        assertEquals("Last", contacts.findById("7").getFirstName());
+        assertEquals(List.of("1", "2"), contacts.deleteAllById(List.of("1", "2", "missing")));
+        assertEquals(98, contacts.count());
+    }
+
+    @Test
+    void reportsOnlyTheIdsABatchDeleteRemoved() {
+        contacts.saveAll(List.of(newContact("1"), newContact("2"), newContact("3")));
+        List<String> deleted = new ArrayList<>();
+        contacts.attachChangeListener(new ChangeListener<>() {
+            @Override
+            public void saved(Contact item) {
+            }
+
+            @Override
+            public void deleted(String id) {
+                deleted.add(id);
+            }
+        });
+
+        assertEquals(List.of("1", "3"), contacts.deleteAllById(List.of("1", "missing", "3")));
+        deleted.sort(null);
+        assertEquals(List.of("1", "3"), deleted);
+    }
+
+    @Test
+    void findsContactsByNamePrefixInNameOrder() {
+        contacts.save(new Contact("1", "John", "Smith", "5551234567", "1 Main St"));
+        contacts.save(new Contact("2", "Sam", "Johnson", "5551234567", "2 Main St"));
+        contacts.save(new Contact("3", "Jo", "Jones", "5551234567", "3 Main St"));
+
+        List<String> ids = contacts.findByNamePrefix(" JO", 10).stream().map(Contact::getId).toList();
+        assertEquals(List.of("3", "1", "2"), ids);
+        assertEquals(1, contacts.findByNamePrefix("jo", 1).size());
+    }
+
+    @Test
+    void findsContactsByPhone() {
+        contacts.save(new Contact("10", "John", "Smith", "5551234567", "1 Main St"));
+        contacts.save(new Contact("9", "Sam", "Johnson", "5551234567", "2 Main St"));
+        contacts.save(new Contact("1", "Jo", "Jones", "5557654321", "3 Main St"));
+
+        assertEquals(List.of("9", "10"), contacts.findByPhone(" 5551234567").stream().map(Contact::getId).toList());
+        assertTrue(contacts.findByPhone("5550000000").isEmpty());
+    }
+
+    @Test
+    void searchesDescriptionsForEveryTermWithinAWindow() {
+        LocalDateTime base = LocalDateTime.of(2030, 1, 1, 9, 0);
+        appointments.save(new Appointment("1", base, "MRI follow-up"));
+        appointments.save(new Appointment("2", base.plusDays(1), "Follow up on MRI"));
+        appointments.save(new Appointment("3", base, "MRI scan"));
+
+        assertEquals(List.of("1", "2"), appointments.search("mri FOLLOW-UP", null, null, 10).stream().map(Appointment::getId).toList());
+        assertEquals(List.of("1"), appointments.search("mri follow", base, base.plusHours(1), 10).stream().map(Appointment::getId).toList());
+        assertTrue(appointments.search("--", null, null, 10).isEmpty());
+    }
+
+    @Test
+    void countsAppointmentsOverTheDateIndex() {
+        LocalDateTime base = LocalDateTime.of(2030, 1, 1, 9, 0);
+        appointments.save(new Appointment("1", base, "Moved"));
+        appointments.saveAll(List.of(new Appointment("2", base, "Kept"), new Appointment("3", base, "Deleted")));
+        appointments.save(new Appointment("1", base.plusDays(2), "Moved"));
+        appointments.deleteById("3");
+
+        assertEquals(2, appointments.calendar().total());
+        assertEquals(1, appointments.calendar().countNext24Hours(base));
+        assertArrayEquals(new long[] {1, 0, 1}, appointments.calendar().countPerDay(base.toLocalDate(), 3));
+        // Another repository over the same collection, as in another instance, sees the same counts.
+        MongoAppointmentRepository other = new MongoAppointmentRepository(client.getDatabase("capstone"));
+        other.save(new Appointment("4", base.plusDays(2).plusHours(1), "Added elsewhere"));
+        assertEquals(2, appointments.calendar().countPerDay(base.toLocalDate().plusDays(2), 1)[0]);
+    }
+
+    @Test
+    void handsOutSequentialIds() {
+        assertEquals("1", contacts.getNextId());
+        assertEquals("2", contacts.getNextId());
+        // Every collection has its own counter.
+        assertEquals("1", appointments.getNextId());
+    }
+
+    @Test
+    void findsAppointmentsInDateWindowOrderedByDate() {
+        LocalDateTime base = LocalDateTime.of(2030, 1, 1, 9, 0);
+        appointments.save(new Appointment("1", base.plusHours(2), "Third"));
+        appointments.save(new Appointment("2", base, "First"));
+        appointments.save(new Appointment("3", base.plusHours(3), "Fourth"));
+        appointments.save(new Appointment("4", base.plusHours(1), "Second"));
+        // In the same millisecond as the end of the window, but after it by nanoseconds.
+        appointments.save(new Appointment("5", base.plusHours(3).plusNanos(900), "Outside"));
+
+        List<Appointment> window = appointments.findByDateBetween(base, base.plusHours(3).plusNanos(500), 10);
+        assertEquals(List.of("2", "4", "1", "3"), window.stream().map(Appointment::getId).toList());
+        assertEquals(base.plusHours(3).plusNanos(900), appointments.findById("5").getDate());
+        assertEquals(2, appointments.findByDateBetween(base, null, 2).size());
+    }
+
+    @Test
+    void readsBackAppointmentsThatAreNowInThePast() {
+        LocalDateTime past = LocalDateTime.of(2001, 1, 1, 9, 0);
+        appointments.save(Appointment.restore("1", past, "Long ago"));
+
+        assertEquals(past, appointments.findById("1").getDate());
+        assertEquals(1, appointments.findByDateBetween(null, LocalDateTime.of(2002, 1, 1, 0, 0), 10).size());
+    }
+
+    private static Contact newContact(String id) {
+        return new Contact(id, "First", "Last", "5551234567", "123 Main St");
+    }
+}
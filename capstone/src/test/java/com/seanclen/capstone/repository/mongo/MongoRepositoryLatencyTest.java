@@ -0,0 +1,82 @@
+package com.seanclen.capstone.repository.mongo;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.repository.ContactRepository;
+import com.seanclen.capstone.repository.InMemoryContactRepository;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the latency of repository calls on the in-memory engine and on MongoDB.
+ * The MongoDB numbers come from the in-process stand-in over loopback, so they measure the driver,
+ * the connection pool and a network round trip rather than a real server's storage engine; rerun
+ * against a real server with -Dcapstone.mongo.uri=mongodb://host:27017/capstone-benchmark.
+ * Tagged as a benchmark, so it only runs with ./gradlew benchmarkTest, which reports the percentiles.
+ */
+@Tag("benchmark")
+class MongoRepositoryLatencyTest {
+    private static final int CONTACTS = 10_000;
+    private static final int OPERATIONS = 20_000;
+
+    @Test
+    void reportsLatencyOfInMemoryAndMongoRepositories(TestReporter reporter) {
+        measure("in-memory", new InMemoryContactRepository(), reporter);
+
+        String uri = System.getProperty("capstone.mongo.uri");
+        if (uri != null) {
+            try (MongoClient client = MongoClients.create(
+                    MongoStorageConfiguration.clientSettings(uri, 16, 0, Duration.ofSeconds(2)))) {
+                client.getDatabase("capstone-benchmark").drop();
+                measure("mongodb", new MongoContactRepository(client.getDatabase("capstone-benchmark")), reporter);
+            }
+            return;
+        }
+
+        MongoServer server = new MongoServer(new MemoryBackend());
+        try (MongoClient client = MongoRepositoryIntegrationTest.connect(server.bind())) {
+            measure("mongo stand-in", new MongoContactRepository(client.getDatabase("capstone")), reporter);
+        } finally {
+            server.shutdownNow();
+        }
+    }
+
+    private static void measure(String engine, ContactRepository repository, TestReporter reporter) {
+        long[] saves = new long[CONTACTS];
+        for (int i = 0; i < CONTACTS; i++) {
+            long start = System.nanoTime();
+            repository.save(new Contact(String.valueOf(i + 1), "First", "Last", "5551234567", "123 Main St"));
+            saves[i] = System.nanoTime() - start;
+        }
+        assertEquals(CONTACTS, repository.count());
+
+        long[] finds = new long[OPERATIONS];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < OPERATIONS; i++) {
+            String id = String.valueOf(random.nextInt(CONTACTS) + 1);
+            long start = System.nanoTime();
+            repository.findById(id);
+            finds[i] = System.nanoTime() - start;
+        }
+
+        reporter.publishEntry(engine, String.format("save p50 %,.1f us, p99 %,.1f us; findById p50 %,.1f us, p99 %,.1f us",
+                percentile(saves, 0.50), percentile(saves, 0.99),
+                percentile(finds, 0.50), percentile(finds, 0.99)));
+    }
+
+    private static double percentile(long[] nanos, double quantile) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(quantile * sorted.length))] / 1000.0;
+    }
+}
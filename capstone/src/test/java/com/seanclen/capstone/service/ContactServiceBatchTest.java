@@ -0,0 +1,113 @@
+package com.seanclen.capstone.service;
+
+import com.seanclen.capstone.form.ContactBatchOperation;
+import com.seanclen.capstone.form.ContactBatchResult;
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.repository.InMemoryContactRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for batch operations of ContactService.
+ */
+class ContactServiceBatchTest {
+    private final InMemoryContactRepository repository = new InMemoryContactRepository();
+    private final ContactService contactService = new ContactService(repository);
+
+    @Test
+    void appliesValidOperationsAndReportsInvalidOnes() {
+        Contact existing = contactService.createContact("Jane", "Doe", "5551234567", "1 Main St");
+        Contact doomed = contactService.createContact("John", "Doe", "5557654321", "2 Main St");
+
+        List<ContactBatchResult> results = contactService.applyBatch(List.of(
+                operation(ContactBatchOperation.CREATE, null, "Ann"),
+                operation(ContactBatchOperation.CREATE, null, "NameTooLong!"),
+                operation(ContactBatchOperation.UPDATE, existing.getId(), "Janet"),
+                operation(ContactBatchOperation.DELETE, doomed.getId(), null),
+                operation(ContactBatchOperation.UPDATE, doomed.getId(), "Johnny"),
+                operation("upsert", existing.getId(), "Jan")));
+
+        assertEquals(ContactBatchResult.CREATED, results.get(0).getStatus());
+        assertEquals("Ann", repository.findById(results.get(0).getId()).getFirstName());
+        assertEquals(ContactBatchResult.ERROR, results.get(1).getStatus());
+        assertEquals("Invalid first name", results.get(1).getError());
+        assertEquals(ContactBatchResult.UPDATED, results.get(2).getStatus());
+        assertEquals("Janet", repository.findById(existing.getId()).getFirstName());
+        assertEquals(ContactBatchResult.DELETED, results.get(3).getStatus());
+        assertNull(repository.findById(doomed.getId()));
+        assertEquals("Contact not found", results.get(4).getError());
+        assertEquals("Invalid operation", results.get(5).getError());
+        assertEquals(2, repository.count());
+    }
+
+    @Test
+    void doesNotBringBackAContactDeletedWhileTheBatchIsApplied() {
+        InMemoryContactRepository racing = new InMemoryContactRepository() {
+            @Override
+            public List<Contact> saveAll(List<Contact> batch) {
+                // Another request deletes the contact after the batch was validated.
+                deleteById("1");
+                return super.saveAll(batch);
+            }
+        };
+        ContactService service = new ContactService(racing);
+        Contact existing = service.createContact("Jane", "Doe", "5551234567", "1 Main St");
+
+        List<ContactBatchResult> results = service.applyBatch(List.of(
+                operation(ContactBatchOperation.UPDATE, existing.getId(), "Janet")));
+
+        assertEquals(ContactBatchResult.ERROR, results.get(0).getStatus());
+        assertEquals("Contact not found", results.get(0).getError());
+        assertNull(racing.findById(existing.getId()));
+    }
+
+    @Test
+    void reportsADeleteOfAContactDeletedWhileTheBatchIsApplied() {
+        InMemoryContactRepository racing = new InMemoryContactRepository() {
+            @Override
+            public List<String> deleteAllById(Collection<String> ids) {
+                // Another request deletes one of the contacts after the batch was validated.
+                deleteById("1");
+                return super.deleteAllById(ids);
+            }
+        };
+        ContactService service = new ContactService(racing);
+        Contact first = service.createContact("Jane", "Doe", "5551234567", "1 Main St");
+        Contact second = service.createContact("John", "Doe", "5557654321", "2 Main St");
+
+        List<ContactBatchResult> results = service.applyBatch(List.of(
+                operation(ContactBatchOperation.DELETE, first.getId(), null),
+                operation(ContactBatchOperation.DELETE, second.getId(), null)));
+
+        assertEquals(ContactBatchResult.ERROR, results.get(0).getStatus());
+        assertEquals("Contact not found", results.get(0).getError());
+        assertEquals(ContactBatchResult.DELETED, results.get(1).getStatus());
+        assertEquals(0, racing.count());
+    }
+
+    @Test
+    void invalidCreatesDoNotUseUpIds() {
+        List<ContactBatchResult> results = contactService.applyBatch(List.of(
+                operation(ContactBatchOperation.CREATE, null, "NameTooLong!"),
+                operation(ContactBatchOperation.CREATE, null, "Ann")));
+
+        assertEquals(ContactBatchResult.ERROR, results.get(0).getStatus());
+        assertEquals("1", results.get(1).getId());
+    }
+
+    private static ContactBatchOperation operation(String op, String id, String firstName) {
+        ContactBatchOperation operation = new ContactBatchOperation();
+        operation.setOp(op);
+        operation.setId(id);
+        operation.setFirstName(firstName);
+        operation.setLastName("Doe");
+        operation.setPhone("5550001111");
+        operation.setAddress("3 Main St");
+        return operation;
+    }
+}
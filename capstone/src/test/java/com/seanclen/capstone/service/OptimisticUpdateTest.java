@@ -0,0 +1,169 @@
+package com.seanclen.capstone.service;
+
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.repository.CompactContactRepository;
+import com.seanclen.capstone.repository.ContactRepository;
+import com.seanclen.capstone.repository.EntityRepository;
+import com.seanclen.capstone.repository.InMemoryAppointmentRepository;
+import com.seanclen.capstone.repository.InMemoryContactRepository;
+import com.seanclen.capstone.repository.VersionConflictException;
+import com.seanclen.capstone.repository.Versioned;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests that conditional updates are compare-and-sets: read-modify-write loops on a few hot contacts
+ * lose no update, stale versions are rejected, and deleted entities stay deleted. Also reports the
+ * throughput of such updates as threads are added.
+ */
+class OptimisticUpdateTest {
+    private static final int[] THREAD_COUNTS = {1, 4, 16, 64};
+    private static final int UPDATES_PER_RUN = 200_000;
+
+    @Test
+    void readModifyWriteLosesNoUpdateInEitherContactRepository() throws Exception {
+        assertNoLostIncrements(new InMemoryContactRepository());
+        assertNoLostIncrements(new CompactContactRepository());
+    }
+
+    @Test
+    void rejectsStaleVersionsAndMissingEntities() {
+        ContactService contactService = new ContactService(new InMemoryContactRepository());
+        Contact contact = contactService.createContact("Jane", "Doe", "5551234567", "1 Main St");
+        long read = contactService.getContactVersion(contact.getId());
+
+        Versioned<Contact> first = contactService.updateContact(contact.getId(), "Jane", "Smith", "5551234567", "1 Main St", read);
+        assertEquals(contactService.getContactVersion(contact.getId()), first.version());
+        VersionConflictException conflict = assertThrows(VersionConflictException.class,
+                () -> contactService.updateContact(contact.getId(), "Jane", "Jones", "5551234567", "1 Main St", read));
+        assertEquals(first.version(), conflict.getCurrentVersion());
+        assertEquals("Smith", contactService.getContactById(contact.getId()).getLastName());
+
+        // An update without a version still applies, but never brings back a deleted contact.
+        contactService.updateContact(contact.getId(), "Jane", "Jones", "5551234567", "1 Main St");
+        contactService.deleteContact(contact.getId());
+        assertThrows(IllegalArgumentException.class,
+                () -> contactService.updateContact(contact.getId(), "Jane", "Doe", "5551234567", "1 Main St"));
+        assertNull(contactService.getContactById(contact.getId()));
+
+        AppointmentService appointmentService = new AppointmentService(new InMemoryAppointmentRepository());
+        Appointment appointment = appointmentService.createAppointment(LocalDateTime.now().plusDays(1), "Checkup");
+        long version = appointmentService.getAppointmentVersion(appointment.getId());
+        appointmentService.updateAppointment(appointment.getId(), LocalDateTime.now().plusDays(2), "Moved", version);
+        assertThrows(VersionConflictException.class,
+                () -> appointmentService.updateAppointment(appointment.getId(), LocalDateTime.now().plusDays(3), "Again", version));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void reportsConditionalUpdateThroughputAtIncreasingThreadCounts(TestReporter reporter) throws Exception {
+        int hotContacts = 64;
+
+        for (int threads : THREAD_COUNTS) {
+            ContactService contactService = new ContactService(new InMemoryContactRepository());
+            List<String> ids = new ArrayList<>();
+            for (int n = 0; n < hotContacts; n++) {
+                ids.add(contactService.createContact("Jane", "Doe", "5551234567", "0").getId());
+            }
+
+            int perThread = UPDATES_PER_RUN / threads;
+            LongAdder conflicts = new LongAdder();
+            long start = System.nanoTime();
+            runConcurrently(threads, thread -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < perThread; i++) {
+                    conflicts.add(increment(contactService, ids.get(random.nextInt(hotContacts))));
+                }
+            });
+            long elapsed = System.nanoTime() - start;
+
+            int updates = perThread * threads;
+            long total = 0;
+            for (String id : ids) {
+                total += Long.parseLong(contactService.getContactById(id).getAddress());
+            }
+            assertEquals(updates, total);
+            reporter.publishEntry("updatesPerSecond." + threads, String.format("%.0f", updates * 1e9 / elapsed));
+            reporter.publishEntry("retriedPercent." + threads, String.format("%.2f", 100.0 * conflicts.sum() / updates));
+        }
+    }
+
+    private static void assertNoLostIncrements(ContactRepository repository) throws Exception {
+        ContactService contactService = new ContactService(repository);
+        String id = contactService.createContact("Jane", "Doe", "5551234567", "0").getId();
+        int threads = 16;
+        int perThread = 2_000;
+
+        runConcurrently(threads, thread -> {
+            for (int i = 0; i < perThread; i++) {
+                increment(contactService, id);
+            }
+        });
+
+        assertEquals(String.valueOf(threads * perThread), contactService.getContactById(id).getAddress());
+    }
+
+    /**
+     * Add one to the number a contact keeps in its address, retrying until no other update intervenes.
+     * @return the number of retries
+     */
+    private static int increment(ContactService contactService, String id) {
+        for (int retries = 0; ; retries++) {
+            // The version is read first: the contact read after it is at least as new.
+            long version = contactService.getContactVersion(id);
+            Contact contact = contactService.getContactById(id);
+            assertNotEquals(EntityRepository.NO_VERSION, version);
+            String next = String.valueOf(Long.parseLong(contact.getAddress()) + 1);
+            try {
+                contactService.updateContact(id, contact.getFirstName(), contact.getLastName(), contact.getPhone(), next, version);
+                return retries;
+            } catch (VersionConflictException e) {
+                // Another thread updated the contact first; read it again.
+            }
+        }
+    }
+
+    private interface Worker {
+        void run(int thread) throws Exception;
+    }
+
+    private static void runConcurrently(int threads, Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    worker.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
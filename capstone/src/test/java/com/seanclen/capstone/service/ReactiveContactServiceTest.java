@@ -0,0 +1,84 @@
+package com.seanclen.capstone.service;
+
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.repository.InMemoryContactRepository;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the reactive service keeps the rules of ContactService, and that a stream of contacts
+ * reads no further ahead than its subscriber has asked for.
+ */
+class ReactiveContactServiceTest {
+    private final InMemoryContactRepository repository = new InMemoryContactRepository();
+    private final AtomicInteger read = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final ContactService contactService = new ContactService(repository) {
+        @Override
+        public Stream<Contact> streamAllContacts() {
+            return super.streamAllContacts().peek(contact -> read.incrementAndGet()).onClose(() -> closed.set(true));
+        }
+    };
+    private final ReactiveContactService reactiveService = new ReactiveContactService(contactService, repository);
+
+    @Test
+    void keepsTheRulesOfContactService() {
+        Contact created = reactiveService.createContact("Jane", "Doe", "5551234567", "1 Main St").block();
+
+        assertEquals(created.getId(), reactiveService.getContactById(created.getId()).block().getId());
+        assertFalse(reactiveService.getContactById("missing").blockOptional().isPresent());
+        assertThrows(IllegalArgumentException.class,
+                () -> reactiveService.createContact("Jane", "Doe", "555", "1 Main St").block());
+        assertThrows(IllegalArgumentException.class,
+                () -> reactiveService.updateContact("missing", "Jane", "Doe", "5551234567", "1 Main St").block());
+        assertTrue(reactiveService.deleteContact(created.getId()).block());
+        assertFalse(reactiveService.deleteContact(created.getId()).block());
+    }
+
+    @Test
+    void createsNothingUntilSubscribed() {
+        reactiveService.createContact("Jane", "Doe", "5551234567", "1 Main St");
+
+        assertEquals(0, repository.count());
+    }
+
+    @Test
+    void streamsOnlyWhatTheSubscriberRequests() {
+        for (int i = 1; i <= 10_000; i++) {
+            repository.save(new Contact(String.valueOf(i), "First", "Last", "5551234567", "123 Main St"));
+        }
+
+        List<String> received = new ArrayList<>();
+        reactiveService.streamAllContacts().subscribe(new BaseSubscriber<Contact>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(10);
+            }
+
+            @Override
+            protected void hookOnNext(Contact contact) {
+                received.add(contact.getId());
+                if (received.size() == 10) {
+                    cancel();
+                }
+            }
+        });
+
+        assertEquals(List.of("1", "2", "3", "4", "5", "6", "7", "8", "9", "10"), received);
+        // The stream may look one contact ahead to find out whether there is another.
+        assertTrue(read.get() <= 11, "read " + read.get() + " contacts for 10 requested");
+        assertTrue(closed.get(), "the repository stream was not closed on cancel");
+    }
+}
@@ -0,0 +1,136 @@
+package com.seanclen.capstone.service;
+
+import com.seanclen.capstone.form.DashboardStatistics;
+import com.seanclen.capstone.model.Appointment;
+import com.seanclen.capstone.model.Contact;
+import com.seanclen.capstone.repository.InMemoryAppointmentRepository;
+import com.seanclen.capstone.repository.InMemoryContactRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the dashboard figures follow every change, and that reading them does not depend on the
+ * number of appointments. The last is tagged as a benchmark, so it only runs with ./gradlew benchmarkTest,
+ * which reports the time and bytes allocated per read.
+ */
+class StatisticsServiceTest {
+    // Tomorrow at 10:30:15, so that every appointment in the tests is in the future.
+    private static final LocalDateTime NOW = LocalDateTime.now().plusDays(1).withHour(10).withMinute(30).withSecond(15).withNano(0);
+
+    private final InMemoryContactRepository contacts = new InMemoryContactRepository();
+    private final InMemoryAppointmentRepository appointments = new InMemoryAppointmentRepository();
+    private final AppointmentService appointmentService = new AppointmentService(appointments);
+    private final StatisticsService statisticsService = new StatisticsService(contacts, appointments,
+            Clock.fixed(NOW.atZone(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault()));
+
+    @Test
+    void countsTotalsAndTheNext24Hours() {
+        contacts.save(new Contact("1", "Jane", "Doe", "5551234567", "1 Main St"));
+        appointmentService.createAppointment(NOW.withSecond(0), "Start of this minute");
+        appointmentService.createAppointment(NOW.plusHours(5), "Later today");
+        appointmentService.createAppointment(NOW.plusHours(24).withSecond(0).minusNanos(1), "Last moment");
+        appointmentService.createAppointment(NOW.plusHours(24).withSecond(0), "Just outside");
+        appointmentService.createAppointment(NOW.plusDays(40), "Far away");
+
+        DashboardStatistics statistics = statisticsService.getStatistics();
+
+        assertEquals(1, statistics.getContactCount());
+        assertEquals(5, statistics.getAppointmentCount());
+        assertEquals(3, statistics.getAppointmentsNext24Hours());
+    }
+
+    @Test
+    void countsAppointmentsPerDayForTheNext30Days() {
+        appointmentService.createAppointment(NOW.plusHours(1), "Today");
+        appointmentService.createAppointment(NOW.plusHours(2), "Today");
+        appointmentService.createAppointment(NOW.plusDays(29), "Last day");
+        appointmentService.createAppointment(NOW.plusDays(30), "Past the range");
+
+        List<DashboardStatistics.DayCount> perDay = statisticsService.getStatistics().getAppointmentsPerDay();
+
+        assertEquals(StatisticsService.DAYS_AHEAD, perDay.size());
+        assertEquals(NOW.toLocalDate(), perDay.get(0).getDate());
+        assertEquals(2, perDay.get(0).getCount());
+        assertEquals(0, perDay.get(1).getCount());
+        assertEquals(1, perDay.get(29).getCount());
+    }
+
+    @Test
+    void followsUpdatesAndDeletes() {
+        Appointment moved = appointmentService.createAppointment(NOW.plusHours(1), "Moved");
+        Appointment deleted = appointmentService.createAppointment(NOW.plusHours(2), "Deleted");
+
+        appointmentService.updateAppointment(moved.getId(), NOW.plusDays(3), "Moved");
+        appointmentService.deleteAppointment(deleted.getId());
+
+        DashboardStatistics statistics = statisticsService.getStatistics();
+        assertEquals(1, statistics.getAppointmentCount());
+        assertEquals(0, statistics.getAppointmentsNext24Hours());
+        assertEquals(0, statistics.getAppointmentsPerDay().get(0).getCount());
+        assertEquals(1, statistics.getAppointmentsPerDay().get(3).getCount());
+    }
+
+    @Test
+    void followsRescheduledAppointments() {
+        appointments.save(new Appointment("1", NOW.plusHours(1), "Rescheduled"));
+
+        appointments.save(new Appointment("1", NOW.plusDays(2), "Rescheduled"));
+
+        DashboardStatistics statistics = statisticsService.getStatistics();
+        assertEquals(0, statistics.getAppointmentsNext24Hours());
+        assertEquals(1, statistics.getAppointmentsPerDay().get(2).getCount());
+    }
+
+    /**
+     * Reads the figures with 10,000 and with 1,000,000 appointments spread over the next 60 days, and
+     * reports the time and the bytes allocated per read, which must not grow with the data.
+     */
+    @Test
+    @Tag("benchmark")
+    void readingDoesNotDependOnTheNumberOfAppointments(TestReporter reporter) {
+        int total = Integer.getInteger("capstone.benchmark.appointments", 1_000_000);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long[] allocated = new long[2];
+        int loaded = 0;
+        int run = 0;
+        for (int size : new int[] {10_000, total}) {
+            List<Appointment> batch = new ArrayList<>();
+            while (loaded < size) {
+                loaded++;
+                batch.add(new Appointment(String.valueOf(loaded), NOW.plusSeconds(loaded * 5L % (60 * 86_400)), "Visit"));
+                if (batch.size() == 10_000) {
+                    appointments.saveAll(batch);
+                    batch = new ArrayList<>();
+                }
+            }
+            appointments.saveAll(batch);
+
+            int reads = 2_000;
+            long before = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            for (int i = 0; i < reads; i++) {
+                statisticsService.getStatistics();
+            }
+            long elapsed = System.nanoTime() - start;
+            allocated[run++] = (threads.getThreadAllocatedBytes(thread) - before) / reads;
+            reporter.publishEntry("microsPerRead." + size, String.format("%.1f", elapsed / 1000.0 / reads));
+            reporter.publishEntry("bytesPerRead." + size, String.valueOf(allocated[run - 1]));
+        }
+
+        assertEquals(total, statisticsService.getStatistics().getAppointmentCount());
+        // Per-read allocation is a fixed-size result; allow for noise, but not for growth with the data.
+        assertTrue(allocated[1] < allocated[0] * 2 + 1024, "allocation grew with the number of appointments");
+    }
+}